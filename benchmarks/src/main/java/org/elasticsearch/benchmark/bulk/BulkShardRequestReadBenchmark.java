@@ -0,0 +1,176 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.bulk;
+
+import org.elasticsearch.action.bulk.BulkItemRequest;
+import org.elasticsearch.action.bulk.BulkShardRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.shard.ShardId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a {@link BulkShardRequest} off the wire while copying the sources of its items to the heap with reading it while
+ * sharing them with the network buffer, as the Netty transport does with retained slices. The benchmark has no Netty buffers at hand,
+ * so it shares slices of the serialized request instead, which is what a retained slice amounts to as far as allocations go.
+ * Run it with {@code -prof gc} and scale {@code gc.alloc.rate.norm}, the bytes allocated per read request, by
+ * {@code 2^30 / serializedSize} to get the bytes allocated per GB of ingested requests.
+ */
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class BulkShardRequestReadBenchmark {
+
+    @Param({"512", "16384"})
+    public int sourceSize;
+
+    @Param({"100"})
+    public int items;
+
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        BulkItemRequest[] itemRequests = new BulkItemRequest[items];
+        for (int i = 0; i < items; i++) {
+            StringBuilder source = new StringBuilder("{\"body\":\"");
+            while (source.length() < sourceSize - 2) {
+                source.append((char) ('a' + random.nextInt(26)));
+            }
+            source.append("\"}");
+            IndexRequest request = new IndexRequest("index", "_doc", Integer.toString(i))
+                .source(source.toString(), XContentType.JSON);
+            itemRequests[i] = new BulkItemRequest(i, request);
+        }
+        BulkShardRequest request = new BulkShardRequest(new ShardId("index", "_na_", 0), WriteRequest.RefreshPolicy.NONE, itemRequests);
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            request.writeTo(out);
+            serialized = BytesReference.toBytes(out.bytes());
+        }
+    }
+
+    @Benchmark
+    public BulkShardRequest readCopying() throws IOException {
+        return read(new ByteArrayStreamInput(serialized, false));
+    }
+
+    @Benchmark
+    public BulkShardRequest readSharing() throws IOException {
+        return read(new ByteArrayStreamInput(serialized, true));
+    }
+
+    private static BulkShardRequest read(StreamInput in) throws IOException {
+        BulkShardRequest request = new BulkShardRequest();
+        request.readFrom(in);
+        request.close();
+        return request;
+    }
+
+    /**
+     * A stream over a byte array that, if asked to, shares slices of the array rather than copying them when reading bytes
+     * references that may be released later on.
+     */
+    private static final class ByteArrayStreamInput extends StreamInput {
+
+        private final byte[] bytes;
+        private final boolean share;
+        private int position;
+
+        ByteArrayStreamInput(byte[] bytes, boolean share) {
+            this.bytes = bytes;
+            this.share = share;
+        }
+
+        @Override
+        public ReleasableBytesReference readReleasableBytesReference(int length) throws IOException {
+            if (share == false) {
+                return super.readReleasableBytesReference(length);
+            }
+            ensureCanReadBytes(length);
+            ReleasableBytesReference reference = ReleasableBytesReference.wrap(new BytesArray(bytes, position, length));
+            position += length;
+            return reference;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            ensureCanReadBytes(1);
+            return bytes[position++];
+        }
+
+        @Override
+        public void readBytes(byte[] b, int offset, int len) throws IOException {
+            ensureCanReadBytes(len);
+            System.arraycopy(bytes, position, b, offset, len);
+            position += len;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public void reset() {
+            position = 0;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public int available() {
+            return bytes.length - position;
+        }
+
+        @Override
+        protected void ensureCanReadBytes(int length) throws EOFException {
+            if (length > bytes.length - position) {
+                throw new EOFException("tried to read: " + length + " bytes but only " + (bytes.length - position) + " remaining");
+            }
+        }
+    }
+}
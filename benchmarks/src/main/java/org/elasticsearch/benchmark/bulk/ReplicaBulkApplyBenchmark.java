@@ -0,0 +1,144 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.bulk;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the throughput of applying a shard bulk request on a replica scales with the number of lanes the items are split into
+ * by {@code index.bulk.replica_parallelism}. Like the replica, the benchmark routes all updates of an id to the same lane and applies
+ * the lanes concurrently to a single {@link IndexWriter}; a single lane is the sequential baseline.
+ */
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(ReplicaBulkApplyBenchmark.BULK_SIZE)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class ReplicaBulkApplyBenchmark {
+
+    static final int BULK_SIZE = 1000;
+
+    @Param({"1", "2", "4", "8"})
+    public int lanes;
+
+    private Path path;
+    private Directory directory;
+    private IndexWriter writer;
+    private ExecutorService executor;
+    private int[][] itemsPerLane;
+    private String[] ids;
+    private String[] bodies;
+
+    @Setup
+    public void setUp() throws IOException {
+        path = Files.createTempDirectory("replica-bulk");
+        directory = FSDirectory.open(path);
+        writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+        executor = Executors.newFixedThreadPool(lanes);
+
+        Random random = new Random(42);
+        ids = new String[BULK_SIZE];
+        bodies = new String[BULK_SIZE];
+        List<List<Integer>> lanesList = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            lanesList.add(new ArrayList<>());
+        }
+        for (int i = 0; i < BULK_SIZE; i++) {
+            ids[i] = Integer.toString(random.nextInt(BULK_SIZE * 10));
+            StringBuilder body = new StringBuilder();
+            for (int w = 0; w < 50; w++) {
+                body.append("term").append(random.nextInt(10000)).append(' ');
+            }
+            bodies[i] = body.toString();
+            lanesList.get(Math.floorMod(ids[i].hashCode(), lanes)).add(i);
+        }
+        itemsPerLane = new int[lanes][];
+        for (int i = 0; i < lanes; i++) {
+            itemsPerLane[i] = lanesList.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        IOUtils.close(writer, directory);
+        IOUtils.rm(path);
+    }
+
+    @Benchmark
+    public long applyBulk() throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(lanes);
+        for (int[] laneItems : itemsPerLane) {
+            futures.add(executor.submit(() -> applyLane(laneItems)));
+        }
+        long seqNo = 0;
+        for (Future<Long> future : futures) {
+            seqNo = Math.max(seqNo, future.get());
+        }
+        return seqNo;
+    }
+
+    private long applyLane(int[] laneItems) throws IOException {
+        long seqNo = 0;
+        for (int index : laneItems) {
+            Document document = new Document();
+            document.add(new StringField("_id", ids[index], Field.Store.YES));
+            document.add(new TextField("body", bodies[index], Field.Store.NO));
+            seqNo = writer.updateDocument(new Term("_id", ids[index]), document);
+        }
+        return seqNo;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.bucket.terms.GlobalOrdinalsStringTermsAggregator.SegmentOrdinalsCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways the terms aggregation counts the values of a field with global ordinals: looking up the global ordinal of
+ * every match and counting it in a big array, like the regular global ordinals aggregator does, and the segment ordinals counter
+ * that the low cardinality variant of the aggregator collects with, which counts the segment ordinals of the matches in a plain
+ * array that is mapped to global ordinals once per segment.
+ */
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TermsOrdinalsCountingBenchmark {
+
+    private static final String FIELD = "field";
+    private static final int NUM_DOCS = 1_000_000;
+    private static final int NUM_SEGMENTS = 10;
+
+    // low, medium and high cardinality
+    @Param({"16", "2048", "100000"})
+    public int cardinality;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private OrdinalMap ordinalMap;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = new RAMDirectory();
+        Random random = new Random(42);
+        IndexWriterConfig config = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            for (int i = 0; i < NUM_DOCS; i++) {
+                Document document = new Document();
+                document.add(new SortedDocValuesField(FIELD, new BytesRef("term" + random.nextInt(cardinality))));
+                writer.addDocument(document);
+                if ((i + 1) % (NUM_DOCS / NUM_SEGMENTS) == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        List<LeafReaderContext> leaves = reader.leaves();
+        SortedDocValues[] values = new SortedDocValues[leaves.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = DocValues.getSorted(leaves.get(i).reader(), FIELD);
+        }
+        ordinalMap = OrdinalMap.build(null, values, PackedInts.DEFAULT);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public long globalOrdinals() throws IOException {
+        try (IntArray counts = BigArrays.NON_RECYCLING_INSTANCE.newIntArray(ordinalMap.getValueCount(), true)) {
+            for (LeafReaderContext leaf : reader.leaves()) {
+                SortedDocValues values = DocValues.getSorted(leaf.reader(), FIELD);
+                LongValues globalOrds = ordinalMap.getGlobalOrds(leaf.ord);
+                for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                    if (values.advanceExact(doc)) {
+                        counts.increment(globalOrds.get(values.ordValue()), 1);
+                    }
+                }
+            }
+            return counts.get(0);
+        }
+    }
+
+    @Benchmark
+    public long segmentOrdinals() throws IOException {
+        try (IntArray counts = BigArrays.NON_RECYCLING_INSTANCE.newIntArray(ordinalMap.getValueCount(), true)) {
+            SegmentOrdinalsCounter counter = new SegmentOrdinalsCounter(bytes -> {}, counts::increment);
+            for (LeafReaderContext leaf : reader.leaves()) {
+                LongValues globalOrds = ordinalMap.getGlobalOrds(leaf.ord);
+                LeafBucketCollector collector = counter.getLeafCollector(DocValues.getSortedSet(leaf.reader(), FIELD), globalOrds::get,
+                    LeafBucketCollector.NO_OP_COLLECTOR);
+                for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                    collector.collect(doc, 0);
+                }
+            }
+            counter.flush();
+            return counts.get(0);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.translog;
+
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.Channels;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.index.translog.BufferedChecksumStreamOutput;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.TranslogConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways {@link org.elasticsearch.index.translog.TranslogWriter} can hand a serialized operation to its file channel:
+ * copying it into the writer's buffered output stream, or flushing the buffer and writing the operation's pages with a single
+ * gathering write. Both variants include serializing the operation into recycled pages, as {@link Translog#add} does.
+ */
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class TranslogOperationWriteBenchmark {
+
+    @Param({"512", "16384", "131072"})
+    public int sourceSize;
+
+    private BigArrays bigArrays;
+    private Translog.Index operation;
+    private Path file;
+    private FileChannel channel;
+    private OutputStream bufferedStream;
+
+    @Setup
+    public void setUp() throws IOException {
+        bigArrays = new BigArrays(new PageCacheRecycler(Settings.EMPTY), null, CircuitBreaker.REQUEST);
+        byte[] source = new byte[sourceSize];
+        new Random(42).nextBytes(source);
+        operation = new Translog.Index("_doc", "1", 0, 1, source);
+        file = Files.createTempFile("translog", ".tlog");
+    }
+
+    @Setup(Level.Iteration)
+    public void openChannel() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        bufferedStream = new BufferedOutputStream(java.nio.channels.Channels.newOutputStream(channel),
+            TranslogConfig.DEFAULT_BUFFER_SIZE.bytesAsInt());
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeChannel() throws IOException {
+        bufferedStream.flush();
+        channel.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long bufferedWrite() throws IOException {
+        try (ReleasableBytesStreamOutput out = serialize()) {
+            BytesReference bytes = out.bytes();
+            bytes.writeTo(bufferedStream);
+            return bytes.length();
+        }
+    }
+
+    @Benchmark
+    public long gatheringWrite() throws IOException {
+        try (ReleasableBytesStreamOutput out = serialize()) {
+            BytesReference bytes = out.bytes();
+            bufferedStream.flush();
+            Channels.writeToChannel(BytesReference.toByteBuffers(bytes), channel);
+            return bytes.length();
+        }
+    }
+
+    private ReleasableBytesStreamOutput serialize() throws IOException {
+        ReleasableBytesStreamOutput out = new ReleasableBytesStreamOutput(bigArrays);
+        final long start = out.position();
+        out.skip(Integer.BYTES);
+        Translog.writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
+        final long end = out.position();
+        out.seek(start);
+        out.writeInt((int) (end - Integer.BYTES - start));
+        out.seek(end);
+        return out;
+    }
+}
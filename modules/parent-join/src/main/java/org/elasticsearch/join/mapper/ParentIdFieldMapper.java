@@ -115,7 +115,8 @@ public final class ParentIdFieldMapper extends FieldMapper {
         @Override
         public IndexFieldData.Builder fielddataBuilder(String fullyQualifiedIndexName) {
             failIfNoDocValues();
-            return new DocValuesIndexFieldData.Builder();
+            // has_child and has_parent queries join through the Lucene ordinal map of the global ordinals
+            return new DocValuesIndexFieldData.Builder().disableIncrementalGlobalOrdinals();
         }
 
         @Override
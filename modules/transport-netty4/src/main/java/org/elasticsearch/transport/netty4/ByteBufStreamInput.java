@@ -21,7 +21,9 @@ package org.elasticsearch.transport.netty4;
 
 import io.netty.buffer.ByteBuf;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 
 import java.io.EOFException;
@@ -54,6 +56,18 @@ class ByteBufStreamInput extends StreamInput {
         return super.readBytesReference(length);
     }
 
+    @Override
+    public ReleasableBytesReference readReleasableBytesReference(int length) throws IOException {
+        if (length == 0) {
+            return ReleasableBytesReference.wrap(BytesArray.EMPTY);
+        }
+        ensureCanReadBytes(length);
+        // the retained slice keeps the buffer from being released back to its pool until the reference is closed
+        final ByteBuf slice = buffer.retainedSlice(buffer.readerIndex(), length);
+        buffer.skipBytes(length);
+        return new ReleasableBytesReference(Netty4Utils.toBytesReference(slice), slice::release);
+    }
+
     @Override
     public BytesRef readBytesRef(int length) throws IOException {
         // NOTE: It is unsafe to share a reference of the internal structure, so we
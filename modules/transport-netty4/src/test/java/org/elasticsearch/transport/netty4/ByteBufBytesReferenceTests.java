@@ -23,7 +23,10 @@ import io.netty.buffer.Unpooled;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.bytes.AbstractBytesReferenceTestCase;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 
 import java.io.IOException;
 
@@ -81,4 +84,30 @@ public class ByteBufBytesReferenceTests extends AbstractBytesReferenceTestCase {
         channelBuffer.readInt(); // this advances the index of the channel buffer
         assertEquals(utf8ToString, byteBufBytesReference.utf8ToString());
     }
+
+    public void testReadReleasableBytesReference() throws IOException {
+        final BytesReference content = newBytesReference(randomIntBetween(1, 3 * PAGE_SIZE));
+        final BytesStreamOutput out = new BytesStreamOutput();
+        out.writeVInt(randomInt());
+        out.writeBytesReference(content);
+        out.writeString("after");
+        final ByteBuf buffer = Unpooled.copiedBuffer(BytesReference.toBytes(out.bytes()));
+        final ReleasableBytesReference read;
+        try (StreamInput in = Netty4Utils.toBytesReference(buffer).streamInput()) {
+            in.readVInt();
+            read = in.readReleasableBytesReference();
+            assertEquals("after", in.readString());
+        }
+        // the network layer releases the buffer once the message has been read
+        buffer.release();
+        assertEquals(1, buffer.refCnt());
+        assertEquals(content, read);
+
+        read.retain();
+        read.close();
+        assertEquals(1, buffer.refCnt());
+        assertEquals(content, read);
+        read.close();
+        assertEquals(0, buffer.refCnt());
+    }
 }
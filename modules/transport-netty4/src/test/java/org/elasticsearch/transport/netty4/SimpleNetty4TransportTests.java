@@ -22,6 +22,7 @@ package org.elasticsearch.transport.netty4;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.settings.ClusterSettings;
@@ -44,6 +45,7 @@ import org.elasticsearch.transport.TransportSettings;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Collections;
+import java.util.Set;
 
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
@@ -61,11 +63,11 @@ public class SimpleNetty4TransportTests extends AbstractSimpleTransportTestCase
 
             @Override
             public void executeHandshake(DiscoveryNode node, TcpChannel channel, ConnectionProfile profile,
-                                         ActionListener<Version> listener) {
+                                         ActionListener<Tuple<Version, Set<String>>> listener) {
                 if (doHandshake) {
                     super.executeHandshake(node, channel, profile, listener);
                 } else {
-                    listener.onResponse(version.minimumCompatibilityVersion());
+                    listener.onResponse(Tuple.tuple(version.minimumCompatibilityVersion(), Collections.emptySet()));
                 }
             }
         };
@@ -57,5 +57,33 @@ public class OneMergeHelper {
         return merge.totalBytesSize();
     }
 
+    /**
+     * Returns the merge the given merge thread runs.
+     */
+    public static MergePolicy.OneMerge getMerge(ConcurrentMergeScheduler.MergeThread thread) {
+        return thread.merge;
+    }
+
+    /**
+     * Sets the rate limit of the given merge thread in MB per second.
+     */
+    public static void setMbPerSec(ConcurrentMergeScheduler.MergeThread thread, double mbPerSec) {
+        thread.rateLimiter.setMBPerSec(mbPerSec);
+    }
+
+    /**
+     * The current MB per second rate limit of the given merge thread.
+     */
+    public static double getMbPerSec(ConcurrentMergeScheduler.MergeThread thread) {
+        return thread.rateLimiter.getMBPerSec();
+    }
+
+    /**
+     * Returns the number of segments in the index of the given writer.
+     */
+    public static int getSegmentCount(IndexWriter writer) {
+        return writer.getSegmentCount();
+    }
+
 
 }
@@ -113,6 +113,11 @@ class BulkPrimaryExecutionContext {
         return getCurrentItem().request();
     }
 
+    /** the position of the current item in the shard request */
+    public int getCurrentItemIndex() {
+        return currentIndex;
+    }
+
     public BulkShardRequest getBulkShardRequest() {
         return request;
     }
@@ -0,0 +1,186 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.shard.IndexShard;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Parses the documents of the index operations of a shard level bulk request ahead of them being executed on the primary.
+ * Workers forked to an executor claim the items in order and parse them concurrently while the thread executing the bulk request
+ * works through the items one after the other. That thread takes part in parsing: if it reaches an item that no worker has claimed
+ * yet it parses the document itself, and it only ever waits for documents that are being parsed at that moment. This leaves the
+ * order in which operations are executed, and with it the assignment of sequence numbers, untouched and guarantees progress even if
+ * the workers are never scheduled.
+ */
+final class BulkShardDocumentParser implements Releasable {
+
+    private static final Logger logger = LogManager.getLogger(BulkShardDocumentParser.class);
+
+    private static final int PENDING = 0;
+    private static final int PARSING = 1;
+    private static final int PARSED = 2;
+    private static final int TAKEN = 3;
+
+    private final BulkItemRequest[] items;
+    private final IndexShard primary;
+    private final AtomicIntegerArray states;
+    private final AtomicReferenceArray<IndexShard.PreParsedDocument> documents;
+    private final AtomicInteger nextItem = new AtomicInteger();
+    private volatile boolean closed;
+
+    private BulkShardDocumentParser(BulkItemRequest[] items, IndexShard primary) {
+        this.items = items;
+        this.primary = primary;
+        this.states = new AtomicIntegerArray(items.length);
+        this.documents = new AtomicReferenceArray<>(items.length);
+        for (int i = 0; i < items.length; i++) {
+            if (canParseAhead(items[i]) == false) {
+                states.set(i, TAKEN);
+            }
+        }
+    }
+
+    /**
+     * Starts parsing the documents of the given request with {@code parallelism - 1} workers, or returns {@code null} if the request
+     * doesn't have enough documents to parse for that to pay off.
+     */
+    @Nullable
+    static BulkShardDocumentParser start(BulkShardRequest request, IndexShard primary, Executor executor, int parallelism) {
+        if (parallelism <= 1) {
+            return null;
+        }
+        int numDocuments = 0;
+        for (BulkItemRequest item : request.items()) {
+            if (canParseAhead(item)) {
+                numDocuments++;
+            }
+        }
+        if (numDocuments <= 1) {
+            return null;
+        }
+        final BulkShardDocumentParser parser = new BulkShardDocumentParser(request.items(), primary);
+        final int numWorkers = Math.min(parallelism - 1, numDocuments - 1);
+        for (int i = 0; i < numWorkers; i++) {
+            final Worker worker = parser.new Worker();
+            try {
+                executor.execute(worker);
+            } catch (EsRejectedExecutionException e) {
+                // the executor is busy, the thread executing the bulk request parses what the other workers don't get to
+                worker.onRejection(e);
+                break;
+            }
+        }
+        return parser;
+    }
+
+    private static boolean canParseAhead(BulkItemRequest item) {
+        final DocWriteRequest.OpType opType = item.request().opType();
+        if (opType != DocWriteRequest.OpType.INDEX && opType != DocWriteRequest.OpType.CREATE) {
+            return false;
+        }
+        final BulkItemResponse response = item.getPrimaryResponse();
+        return response == null || response.isFailed() == false || response.getFailure().isAborted() == false;
+    }
+
+    /**
+     * Returns the document of the item at the given position if it was parsed ahead of time, or {@code null} if it must be parsed
+     * while the operation is executed. Waits if a worker is parsing the document at the moment. Each document is only returned once.
+     */
+    @Nullable
+    IndexShard.PreParsedDocument take(int index) {
+        if (states.compareAndSet(index, PENDING, TAKEN)) {
+            return null;
+        }
+        if (states.get(index) == PARSING) {
+            synchronized (this) {
+                while (states.get(index) == PARSING) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+            }
+        }
+        states.set(index, TAKEN);
+        final IndexShard.PreParsedDocument document = documents.getAndSet(index, null);
+        if (document != null) {
+            primary.bulkItemParsed(items[index].request().type(), document.getParseTimeInNanos());
+        }
+        return document;
+    }
+
+    /**
+     * Stops the workers from claiming further documents once the bulk request was executed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void parsePending() {
+        for (int index = nextItem.getAndIncrement(); index < items.length && closed == false; index = nextItem.getAndIncrement()) {
+            if (states.compareAndSet(index, PENDING, PARSING)) {
+                try {
+                    final IndexRequest request = (IndexRequest) items[index].request();
+                    documents.set(index, primary.preParseIndexSource(TransportShardBulkAction.sourceToParse(request)));
+                } finally {
+                    states.set(index, PARSED);
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private final class Worker extends AbstractRunnable {
+
+        @Override
+        protected void doRun() {
+            parsePending();
+        }
+
+        @Override
+        public void onRejection(Exception e) {
+            logger.trace(() -> new ParameterizedMessage("{} rejected parsing bulk documents ahead of time", primary.shardId()), e);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            logger.debug(() -> new ParameterizedMessage("{} failed to parse bulk documents ahead of time", primary.shardId()), e);
+        }
+    }
+}
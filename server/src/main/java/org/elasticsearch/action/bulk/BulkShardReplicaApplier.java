@@ -0,0 +1,134 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import com.carrotsearch.hppc.IntArrayList;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.translog.Translog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies the items of a shard level bulk request on a replica using several threads. Sequence numbers have already been assigned
+ * by the primary and the engine of a replica accepts operations in any order, so the items are split into lanes by their id and the
+ * lanes are applied concurrently. Items on the same id always end up in the same lane and each lane applies its items in the order
+ * of the request, which keeps the outcome of the request identical to applying all items one after the other. The local checkpoint
+ * only advances once all operations below it were processed, no matter in which order that happened.
+ *
+ * The calling thread applies the first lane and then any lane that wasn't picked up by the executor yet, so that the request makes
+ * progress even if the executor is saturated. It waits for all lanes to complete before returning the highest translog location to
+ * sync or throwing the first failure, with the failures of other lanes suppressed.
+ */
+final class BulkShardReplicaApplier {
+
+    private BulkShardReplicaApplier() {}
+
+    static Translog.Location apply(BulkShardRequest request, IndexShard replica, Executor executor, int parallelism) throws Exception {
+        final BulkItemRequest[] items = request.items();
+        final IntArrayList[] itemsPerLane = new IntArrayList[Math.min(parallelism, items.length)];
+        for (int i = 0; i < items.length; i++) {
+            final int lane = Math.floorMod(items[i].request().id().hashCode(), itemsPerLane.length);
+            if (itemsPerLane[lane] == null) {
+                itemsPerLane[lane] = new IntArrayList();
+            }
+            itemsPerLane[lane].add(i);
+        }
+        final List<IntArrayList> nonEmptyLanes = new ArrayList<>(itemsPerLane.length);
+        for (IntArrayList laneItems : itemsPerLane) {
+            if (laneItems != null) {
+                nonEmptyLanes.add(laneItems);
+            }
+        }
+        final CountDownLatch completed = new CountDownLatch(nonEmptyLanes.size());
+        final List<Lane> lanes = new ArrayList<>(nonEmptyLanes.size());
+        for (IntArrayList laneItems : nonEmptyLanes) {
+            lanes.add(new Lane(items, laneItems, replica, completed));
+        }
+        for (int i = 1; i < lanes.size(); i++) {
+            try {
+                executor.execute(lanes.get(i));
+            } catch (EsRejectedExecutionException e) {
+                // the remaining lanes are applied by the calling thread
+                break;
+            }
+        }
+        for (Lane lane : lanes) {
+            lane.run();
+        }
+        completed.await();
+
+        Translog.Location location = null;
+        Exception failure = null;
+        for (Lane lane : lanes) {
+            if (lane.failure != null) {
+                failure = ExceptionsHelper.useOrSuppress(failure, lane.failure);
+            } else if (lane.location != null && (location == null || lane.location.compareTo(location) > 0)) {
+                location = lane.location;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return location;
+    }
+
+    private static final class Lane implements Runnable {
+
+        private final BulkItemRequest[] items;
+        private final IntArrayList laneItems;
+        private final IndexShard replica;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch completed;
+        // only read after the latch was counted down
+        private Translog.Location location;
+        private Exception failure;
+
+        Lane(BulkItemRequest[] items, IntArrayList laneItems, IndexShard replica, CountDownLatch completed) {
+            this.items = items;
+            this.laneItems = laneItems;
+            this.replica = replica;
+            this.completed = completed;
+        }
+
+        @Override
+        public void run() {
+            // each lane is either applied by the executor or by the calling thread, whoever comes first
+            if (started.compareAndSet(false, true) == false) {
+                return;
+            }
+            try {
+                for (int i = 0; i < laneItems.size(); i++) {
+                    final int index = laneItems.get(i);
+                    location = TransportShardBulkAction.performItemOnReplica(items[index], index, replica, location);
+                }
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                completed.countDown();
+            }
+        }
+    }
+}
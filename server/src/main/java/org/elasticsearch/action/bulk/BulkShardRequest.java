@@ -21,17 +21,24 @@ package org.elasticsearch.action.bulk;
 
 import org.elasticsearch.action.support.replication.ReplicatedWriteRequest;
 import org.elasticsearch.action.support.replication.ReplicationRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.RetainingStreamInput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.index.shard.ShardId;
 
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
-public class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequest> {
+public class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequest> implements Releasable {
 
     private BulkItemRequest[] items;
+    // the bytes of the message that the sources of the items share when the request is read from the network
+    @Nullable
+    private Releasable retainedBytes;
 
     public BulkShardRequest() {
     }
@@ -80,14 +87,35 @@ public class BulkShardRequest extends ReplicatedWriteRequest<BulkShardRequest> {
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
-        items = new BulkItemRequest[in.readVInt()];
-        for (int i = 0; i < items.length; i++) {
-            if (in.readBoolean()) {
-                items[i] = BulkItemRequest.readBulkItem(in);
+        // read the sources of the items without copying them, they are released with the request
+        final RetainingStreamInput retainingIn = new RetainingStreamInput(in);
+        boolean success = false;
+        try {
+            items = new BulkItemRequest[retainingIn.readVInt()];
+            for (int i = 0; i < items.length; i++) {
+                if (retainingIn.readBoolean()) {
+                    items[i] = BulkItemRequest.readBulkItem(retainingIn);
+                }
+            }
+            success = true;
+        } finally {
+            retainedBytes = retainingIn.retained();
+            if (success == false) {
+                close();
             }
         }
     }
 
+    /**
+     * Releases the bytes that the items of this request share with the message it was read from, if any. The items must not be
+     * used afterwards.
+     */
+    @Override
+    public void close() {
+        Releasables.close(retainedBytes);
+        retainedBytes = null;
+    }
+
     @Override
     public String toString() {
         // This is included in error messages so we'll try to make it somewhat user friendly.
@@ -46,15 +46,18 @@ import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.CheckedRunnable;
 import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.logging.DeprecationLogger;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
@@ -74,6 +77,8 @@ import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.LongSupplier;
@@ -141,7 +146,8 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             waitingFuture.get();
         };
         return performOnPrimary(request, primary, updateHelper, DocWriteRequest.canUseIfSeqNo(clusterService.state()),
-            threadPool::absoluteTimeInMillis, new ConcreteMappingUpdatePerformer(), waitForMappingUpdate);
+            threadPool::absoluteTimeInMillis, new ConcreteMappingUpdatePerformer(), waitForMappingUpdate,
+            threadPool.executor(ThreadPool.Names.WRITE_PARSE));
     }
 
     public static WritePrimaryResult<BulkShardRequest, BulkShardResponse> performOnPrimary(
@@ -152,16 +158,55 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         LongSupplier nowInMillisSupplier,
         MappingUpdatePerformer mappingUpdater,
         CheckedRunnable<Exception> waitForMappingUpdate) throws Exception {
+        return performOnPrimary(request, primary, updateHelper, canUseIfSeqNo, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate,
+            null);
+    }
+
+    /**
+     * Executes the items of the given request on the primary, in order. If {@link IndexSettings#INDEX_BULK_PARSE_PARALLELISM_SETTING}
+     * is greater than one and an executor is given, the documents of index operations are parsed ahead of time on that executor.
+     */
+    public static WritePrimaryResult<BulkShardRequest, BulkShardResponse> performOnPrimary(
+        BulkShardRequest request,
+        IndexShard primary,
+        UpdateHelper updateHelper,
+        boolean canUseIfSeqNo,
+        LongSupplier nowInMillisSupplier,
+        MappingUpdatePerformer mappingUpdater,
+        CheckedRunnable<Exception> waitForMappingUpdate,
+        @Nullable Executor parseExecutor) throws Exception {
         BulkPrimaryExecutionContext context = new BulkPrimaryExecutionContext(request, primary);
-        return performOnPrimary(context, updateHelper, canUseIfSeqNo, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate);
+        final BulkShardDocumentParser documentParser = parseExecutor == null ? null :
+            BulkShardDocumentParser.start(request, primary, parseExecutor, primary.indexSettings().getBulkParseParallelism());
+        try {
+            return performOnPrimary(context, documentParser, updateHelper, canUseIfSeqNo, nowInMillisSupplier, mappingUpdater,
+                waitForMappingUpdate);
+        } finally {
+            Releasables.close(documentParser);
+        }
     }
 
     private static WritePrimaryResult<BulkShardRequest, BulkShardResponse> performOnPrimary(
-        BulkPrimaryExecutionContext context, UpdateHelper updateHelper, boolean canUseIfSeqNo, LongSupplier nowInMillisSupplier,
-        MappingUpdatePerformer mappingUpdater, CheckedRunnable<Exception> waitForMappingUpdate) throws Exception {
+        BulkPrimaryExecutionContext context, @Nullable BulkShardDocumentParser documentParser, UpdateHelper updateHelper,
+        boolean canUseIfSeqNo, LongSupplier nowInMillisSupplier, MappingUpdatePerformer mappingUpdater,
+        CheckedRunnable<Exception> waitForMappingUpdate) throws Exception {
 
+        final AtomicLong mappingUpdateWaitTime = new AtomicLong();
+        final CheckedRunnable<Exception> timedWaitForMappingUpdate = () -> {
+            final long startTime = System.nanoTime();
+            try {
+                waitForMappingUpdate.run();
+            } finally {
+                mappingUpdateWaitTime.addAndGet(System.nanoTime() - startTime);
+            }
+        };
         while (context.hasMoreOperationsToExecute()) {
-            executeBulkItemRequest(context, updateHelper, canUseIfSeqNo, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate);
+            final String type = context.getCurrent().type();
+            final long startTime = System.nanoTime();
+            mappingUpdateWaitTime.set(0);
+            executeBulkItemRequest(context, documentParser, updateHelper, canUseIfSeqNo, nowInMillisSupplier, mappingUpdater,
+                timedWaitForMappingUpdate);
+            context.getPrimary().bulkItemApplied(type, System.nanoTime() - startTime - mappingUpdateWaitTime.get());
             assert context.isInitial(); // either completed and moved to next or reset
         }
         return new WritePrimaryResult<>(context.getBulkShardRequest(), context.buildShardResponse(), context.getLocationToSync(),
@@ -172,6 +217,13 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
     static void executeBulkItemRequest(BulkPrimaryExecutionContext context, UpdateHelper updateHelper,
                                        boolean canUseIfSeqNo, LongSupplier nowInMillisSupplier, MappingUpdatePerformer mappingUpdater,
                                        CheckedRunnable<Exception> waitForMappingUpdate) throws Exception {
+        executeBulkItemRequest(context, null, updateHelper, canUseIfSeqNo, nowInMillisSupplier, mappingUpdater, waitForMappingUpdate);
+    }
+
+    private static void executeBulkItemRequest(BulkPrimaryExecutionContext context, @Nullable BulkShardDocumentParser documentParser,
+                                               UpdateHelper updateHelper, boolean canUseIfSeqNo, LongSupplier nowInMillisSupplier,
+                                               MappingUpdatePerformer mappingUpdater,
+                                               CheckedRunnable<Exception> waitForMappingUpdate) throws Exception {
         validateDocWriteRequest(context.getCurrent(), canUseIfSeqNo);
         final DocWriteRequest.OpType opType = context.getCurrent().opType();
         final UpdateHelper.Result updateResult;
@@ -217,7 +269,7 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         if (context.getRequestToExecute().opType() == DocWriteRequest.OpType.DELETE) {
             executeDeleteRequestOnPrimary(context, mappingUpdater);
         } else {
-            executeIndexRequestOnPrimary(context, mappingUpdater);
+            executeIndexRequestOnPrimary(context, documentParser, mappingUpdater);
         }
 
         if (context.requiresWaitingForMappingUpdate()) {
@@ -372,39 +424,59 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
 
     @Override
     public WriteReplicaResult<BulkShardRequest> shardOperationOnReplica(BulkShardRequest request, IndexShard replica) throws Exception {
-        final Translog.Location location = performOnReplica(request, replica);
+        final Translog.Location location = performOnReplica(request, replica, threadPool.executor(ThreadPool.Names.WRITE));
         return new WriteReplicaResult<>(request, location, null, replica, logger);
     }
 
     public static Translog.Location performOnReplica(BulkShardRequest request, IndexShard replica) throws Exception {
+        return performOnReplica(request, replica, null);
+    }
+
+    /**
+     * Applies the items of the given request on the replica. If {@link IndexSettings#INDEX_BULK_REPLICA_PARALLELISM_SETTING} is
+     * greater than one and an executor is given, items on distinct ids are applied concurrently, see {@link BulkShardReplicaApplier}.
+     */
+    public static Translog.Location performOnReplica(BulkShardRequest request, IndexShard replica,
+                                                     @Nullable Executor executor) throws Exception {
+        final int parallelism = executor == null ? 1 : replica.indexSettings().getBulkReplicaParallelism();
+        if (parallelism > 1 && request.items().length > 1) {
+            return BulkShardReplicaApplier.apply(request, replica, executor, parallelism);
+        }
         Translog.Location location = null;
         for (int i = 0; i < request.items().length; i++) {
-            BulkItemRequest item = request.items()[i];
-            final Engine.Result operationResult;
-            DocWriteRequest docWriteRequest = item.request();
-            switch (replicaItemExecutionMode(item, i)) {
-                case NORMAL:
-                    final DocWriteResponse primaryResponse = item.getPrimaryResponse().getResponse();
-                    operationResult = performOpOnReplica(primaryResponse, docWriteRequest, replica);
-                    assert operationResult != null : "operation result must never be null when primary response has no failure";
-                    location = syncOperationResultOrThrow(operationResult, location);
-                    break;
-                case NOOP:
-                    break;
-                case FAILURE:
-                    final BulkItemResponse.Failure failure = item.getPrimaryResponse().getFailure();
-                    assert failure.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO : "seq no must be assigned";
-                    operationResult = replica.markSeqNoAsNoop(failure.getSeqNo(), failure.getMessage());
-                    assert operationResult != null : "operation result must never be null when primary response has no failure";
-                    location = syncOperationResultOrThrow(operationResult, location);
-                    break;
-                default:
-                    throw new IllegalStateException("illegal replica item execution mode for: " + docWriteRequest);
-            }
+            location = performItemOnReplica(request.items()[i], i, replica, location);
         }
         return location;
     }
 
+    /**
+     * Applies a single item on the replica.
+     *
+     * @return the translog location to sync after applying the item, the given location if the item wasn't applied
+     */
+    static Translog.Location performItemOnReplica(BulkItemRequest item, int index, IndexShard replica,
+                                                  @Nullable Translog.Location location) throws Exception {
+        final Engine.Result operationResult;
+        DocWriteRequest docWriteRequest = item.request();
+        switch (replicaItemExecutionMode(item, index)) {
+            case NORMAL:
+                final DocWriteResponse primaryResponse = item.getPrimaryResponse().getResponse();
+                operationResult = performOpOnReplica(primaryResponse, docWriteRequest, replica);
+                assert operationResult != null : "operation result must never be null when primary response has no failure";
+                return syncOperationResultOrThrow(operationResult, location);
+            case NOOP:
+                return location;
+            case FAILURE:
+                final BulkItemResponse.Failure failure = item.getPrimaryResponse().getFailure();
+                assert failure.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO : "seq no must be assigned";
+                operationResult = replica.markSeqNoAsNoop(failure.getSeqNo(), failure.getMessage());
+                assert operationResult != null : "operation result must never be null when primary response has no failure";
+                return syncOperationResultOrThrow(operationResult, location);
+            default:
+                throw new IllegalStateException("illegal replica item execution mode for: " + docWriteRequest);
+        }
+    }
+
     private static Engine.Result performOpOnReplica(DocWriteResponse primaryResponse, DocWriteRequest docWriteRequest,
                                                     IndexShard replica) throws Exception {
         final Engine.Result result;
@@ -447,21 +519,28 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
 
     /** Executes index operation on primary shard after updates mapping if dynamic mappings are found */
     private static void executeIndexRequestOnPrimary(BulkPrimaryExecutionContext context,
-                                             MappingUpdatePerformer mappingUpdater) throws Exception {
+                                                     @Nullable BulkShardDocumentParser documentParser,
+                                                     MappingUpdatePerformer mappingUpdater) throws Exception {
         final IndexRequest request = context.getRequestToExecute();
         final IndexShard primary = context.getPrimary();
-        final SourceToParse sourceToParse =
-            SourceToParse.source(request.index(), request.type(), request.id(), request.source(), request.getContentType())
-                .routing(request.routing()).parent(request.parent());
+        final SourceToParse sourceToParse = sourceToParse(request);
+        // translated update requests carry a new source, only documents of plain index requests are parsed ahead of time
+        final IndexShard.PreParsedDocument preParsed = documentParser != null && request == context.getCurrent()
+            ? documentParser.take(context.getCurrentItemIndex()) : null;
         executeOnPrimaryWhileHandlingMappingUpdates(context,
             () ->
                 primary.applyIndexOperationOnPrimary(request.version(), request.versionType(), sourceToParse,
-                    request.ifSeqNo(), request.ifPrimaryTerm(), request.getAutoGeneratedTimestamp(), request.isRetry()),
+                    request.ifSeqNo(), request.ifPrimaryTerm(), request.getAutoGeneratedTimestamp(), request.isRetry(), preParsed),
             e -> primary.getFailedIndexResult(e, request.version()),
             context::markOperationAsExecuted,
             mapping -> mappingUpdater.updateMappings(mapping, primary.shardId(), request.type()));
     }
 
+    static SourceToParse sourceToParse(IndexRequest request) {
+        return SourceToParse.source(request.index(), request.type(), request.id(), request.source(), request.getContentType())
+            .routing(request.routing()).parent(request.parent());
+    }
+
     private static void executeDeleteRequestOnPrimary(BulkPrimaryExecutionContext context,
                                                       MappingUpdatePerformer mappingUpdater) throws Exception {
         final DeleteRequest request = context.getRequestToExecute();
@@ -25,6 +25,7 @@ import org.elasticsearch.action.support.TransportActions;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.search.SearchPhaseResult;
@@ -296,7 +297,7 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
     /**
      * This class acts as a basic result collection that can be extended to do on-the-fly reduction or result processing
      */
-    abstract static class SearchPhaseResults<Result extends SearchPhaseResult> {
+    abstract static class SearchPhaseResults<Result extends SearchPhaseResult> implements Releasable {
         private final int numShards;
 
         SearchPhaseResults(int numShards) {
@@ -337,6 +338,12 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
         SearchPhaseController.ReducedQueryPhase reduce() {
             throw new UnsupportedOperationException("reduce is not supported");
         }
+
+        /**
+         * Releases the resources held for the collected results, called once the search is done
+         */
+        @Override
+        public void close() {}
     }
 
     /**
@@ -32,14 +32,19 @@ import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.grouping.CollapseTopFieldDocs;
 import org.apache.lucene.search.grouping.CollapseTopFieldDocs2;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.elasticsearch.common.collect.HppcMaps;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.SearchPhaseResult;
+import org.elasticsearch.search.aggregations.Aggregation;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
 import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.pipeline.SiblingPipelineAggregator;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.dfs.AggregatedDfs;
 import org.elasticsearch.search.dfs.DfsSearchResult;
@@ -54,12 +59,16 @@ import org.elasticsearch.search.suggest.Suggest.Suggestion.Entry;
 import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 import java.util.function.IntFunction;
 
@@ -68,13 +77,24 @@ public final class SearchPhaseController {
     private static final ScoreDoc[] EMPTY_DOCS = new ScoreDoc[0];
 
     private final Function<Boolean, ReduceContext> reduceContextFunction;
+    private final CircuitBreaker circuitBreaker;
 
     /**
      * Constructor.
      * @param reduceContextFunction A function that builds a context for the reduce of an {@link InternalAggregation}
      */
     public SearchPhaseController(Function<Boolean, ReduceContext> reduceContextFunction) {
+        this(reduceContextFunction, new NoopCircuitBreaker(CircuitBreaker.REQUEST));
+    }
+
+    /**
+     * Constructor.
+     * @param reduceContextFunction A function that builds a context for the reduce of an {@link InternalAggregation}
+     * @param circuitBreaker the breaker that the aggregations of shard results and their reduces are charged to
+     */
+    public SearchPhaseController(Function<Boolean, ReduceContext> reduceContextFunction, CircuitBreaker circuitBreaker) {
         this.reduceContextFunction = reduceContextFunction;
+        this.circuitBreaker = circuitBreaker;
     }
 
     public AggregatedDfs aggregateDfs(Collection<DfsSearchResult> results) {
@@ -441,6 +461,7 @@ public final class SearchPhaseController {
         final boolean hasSuggest = firstResult.suggest() != null;
         final boolean hasProfileResults = firstResult.hasProfileResults();
         final boolean consumeAggs;
+        long aggregationsBytes = 0;
         final List<InternalAggregations> aggregationsList;
         if (bufferedAggs != null) {
             consumeAggs = false;
@@ -486,6 +507,7 @@ public final class SearchPhaseController {
             }
             if (consumeAggs) {
                 aggregationsList.add((InternalAggregations) result.consumeAggs());
+                aggregationsBytes += aggregationsSize(result);
             }
             if (hasProfileResults) {
                 String key = result.getSearchShardTarget().toString();
@@ -494,8 +516,15 @@ public final class SearchPhaseController {
         }
         final Suggest suggest = groupedSuggestions.isEmpty() ? null : new Suggest(Suggest.reduce(groupedSuggestions));
         ReduceContext reduceContext = reduceContextFunction.apply(performFinalReduce);
-        final InternalAggregations aggregations = aggregationsList.isEmpty() ? null :
-            InternalAggregations.reduce(aggregationsList, firstResult.pipelineAggregators(), reduceContext);
+        final InternalAggregations aggregations;
+        if (aggregationsList.isEmpty()) {
+            aggregations = null;
+        } else if (consumeAggs) {
+            aggregations = reduceAggs(aggregationsList, aggregationsBytes, firstResult.pipelineAggregators(), reduceContext);
+        } else {
+            // buffered aggregations are accounted for by the consumer that buffered them
+            aggregations = InternalAggregations.reduce(aggregationsList, firstResult.pipelineAggregators(), reduceContext);
+        }
         final SearchProfileShardResults shardResults = profileResults.isEmpty() ? null : new SearchProfileShardResults(profileResults);
         final SortedTopDocs sortedTopDocs = sortDocs(isScrollRequest, queryResults, bufferedTopDocs, topDocsStats, from, size);
         return new ReducedQueryPhase(topDocsStats.totalHits, topDocsStats.fetchHits, topDocsStats.maxScore,
@@ -503,6 +532,38 @@ public final class SearchPhaseController {
             firstResult.sortValueFormats(), numReducePhases, size, from, false);
     }
 
+    /**
+     * Reduces the aggregations of shard results that weren't accounted for as they arrived. Their size, and half of it on top for
+     * the reduce, is charged to the request circuit breaker while the reduce runs.
+     */
+    private InternalAggregations reduceAggs(List<InternalAggregations> aggregationsList, long bytes,
+                                            List<SiblingPipelineAggregator> pipelineAggregators, ReduceContext reduceContext) {
+        final long reduceBytes = bytes + bytes / 2;
+        circuitBreaker.addEstimateBytesAndMaybeBreak(reduceBytes,
+            "search reduce of aggregations " + aggregationNames(aggregationsList.get(0)));
+        try {
+            return InternalAggregations.reduce(aggregationsList, pipelineAggregators, reduceContext);
+        } finally {
+            circuitBreaker.addWithoutBreaking(-reduceBytes);
+        }
+    }
+
+    private static List<String> aggregationNames(InternalAggregations aggregations) {
+        final List<String> names = new ArrayList<>();
+        for (Aggregation aggregation : aggregations) {
+            names.add(aggregation.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Estimates the memory that is held for the aggregations of a result by the number of bytes they were received with. Results
+     * of shards on this node weren't serialized and aren't accounted for, measuring them would mean serializing them.
+     */
+    private static long aggregationsSize(QuerySearchResult result) {
+        return Math.max(0, result.getAggregationsSize());
+    }
+
     public static final class ReducedQueryPhase {
         // the sum of all hits across all reduces shards
         final long totalHits;
@@ -569,29 +630,46 @@ public final class SearchPhaseController {
     }
 
     /**
-     * A {@link InitialSearchPhase.ArraySearchPhaseResults} implementation
-     * that incrementally reduces aggregation results as shard results are consumed.
-     * This implementation can be configured to batch up a certain amount of results and only reduce them
-     * iff the buffer is exhausted.
+     * A {@link InitialSearchPhase.ArraySearchPhaseResults} implementation that incrementally reduces aggregation results
+     * as shard results are consumed. Shard results are buffered together with a running reduced result, once the buffer
+     * overflows the running result and the oldest shard results, up to the batched reduce size at once, are reduced into
+     * a new running result. Only one thread reduces at a time, the threads that deliver results in the meantime don't
+     * wait for it: the reducing thread reduces the buffer until it doesn't overflow anymore before it lets go.
+     *
+     * The size that the aggregations that are held were received with is charged to the request circuit breaker. The reduced
+     * aggregations are charged the size of their inputs, a reduce doesn't produce more than it consumes. A reduce is charged
+     * half of the size of its inputs on top while it runs. If the breaker trips
+     * the results that arrive afterwards are dropped and the failure is rethrown by {@link #reduce()}. Everything that
+     * is charged is released once the final reduce is done or the consumer is closed.
      */
     static final class QueryPhaseResultConsumer extends InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> {
-        private final InternalAggregations[] aggsBuffer;
-        private final TopDocs[] topDocsBuffer;
+        private final Queue<PendingResult> pendingResults = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock reduceLock = new ReentrantLock();
         private final boolean hasAggs;
         private final boolean hasTopDocs;
         private final int bufferSize;
-        private int index;
         private final SearchPhaseController controller;
-        private int numReducePhases = 0;
         private final TopDocsStats topDocsStats = new TopDocsStats();
         private final boolean performFinalReduce;
+        private final AtomicReference<CircuitBreakingException> failure = new AtomicReference<>();
+        // the number of pending results plus the running reduced result, if any
+        private final AtomicInteger numBuffered = new AtomicInteger();
+        // guarded by reduceLock
+        private InternalAggregations reducedAggs;
+        private long reducedAggsBytes;
+        private TopDocs reducedTopDocs;
+        private int numReduced;
+        private int numReducePhases = 0;
+        // guarded by this
+        private long circuitBreakerBytes;
+        private boolean closed;
 
         /**
          * Creates a new {@link QueryPhaseResultConsumer}
          * @param controller a controller instance to reduce the query response objects
          * @param expectedResultSize the expected number of query results. Corresponds to the number of shards queried
-         * @param bufferSize the size of the reduce buffer. if the buffer size is smaller than the number of expected results
-         *                   the buffer is used to incrementally reduce aggregation results before all shards responded.
+         * @param bufferSize the maximum number of results, including the running reduced result, that are reduced at once.
+         *                   Must be smaller than the number of expected results.
          */
         private QueryPhaseResultConsumer(SearchPhaseController controller, int expectedResultSize, int bufferSize,
                                          boolean hasTopDocs, boolean hasAggs, boolean performFinalReduce) {
@@ -606,9 +684,6 @@ public final class SearchPhaseController {
                 throw new IllegalArgumentException("either aggs or top docs must be present");
             }
             this.controller = controller;
-            // no need to buffer anything if we have less expected results. in this case we don't consume any results ahead of time.
-            this.aggsBuffer = new InternalAggregations[hasAggs ? bufferSize : 0];
-            this.topDocsBuffer = new TopDocs[hasTopDocs ? bufferSize : 0];
             this.hasTopDocs = hasTopDocs;
             this.hasAggs = hasAggs;
             this.bufferSize = bufferSize;
@@ -622,58 +697,228 @@ public final class SearchPhaseController {
             consumeInternal(queryResult);
         }
 
-        private synchronized void consumeInternal(QuerySearchResult querySearchResult) {
-            if (index == bufferSize) {
-                if (hasAggs) {
-                    ReduceContext reduceContext = controller.reduceContextFunction.apply(false);
-                    InternalAggregations reducedAggs = InternalAggregations.reduce(Arrays.asList(aggsBuffer), reduceContext);
-                    Arrays.fill(aggsBuffer, null);
-                    aggsBuffer[0] = reducedAggs;
+        private void consumeInternal(QuerySearchResult querySearchResult) {
+            if (failure.get() != null) {
+                // the search fails anyway, there is no point in holding on to more results
+                return;
+            }
+            final PendingResult pending;
+            if (hasAggs) {
+                final InternalAggregations aggs = (InternalAggregations) querySearchResult.consumeAggs();
+                final long bytes = aggregationsSize(querySearchResult);
+                try {
+                    addEstimateBytesAndMaybeBreak(bytes, "search reduce of aggregations " + aggregationNames(aggs));
+                } catch (CircuitBreakingException e) {
+                    onFailure(e);
+                    return;
                 }
-                if (hasTopDocs) {
-                    TopDocs reducedTopDocs = mergeTopDocs(Arrays.asList(topDocsBuffer),
-                        // we have to merge here in the same way we collect on a shard
-                        querySearchResult.from() + querySearchResult.size(), 0);
-                    Arrays.fill(topDocsBuffer, null);
-                    topDocsBuffer[0] = reducedTopDocs;
+                pending = new PendingResult(querySearchResult, aggs, bytes);
+            } else {
+                pending = new PendingResult(querySearchResult, null, 0);
+            }
+            pendingResults.add(pending);
+            numBuffered.incrementAndGet();
+            // if another thread is reducing it will pick up this result before it releases the lock, the check of the
+            // buffer after the lock was released makes sure that it isn't left overflowing
+            while (numBuffered.get() > bufferSize && failure.get() == null && reduceLock.tryLock()) {
+                try {
+                    reducePending();
+                } catch (CircuitBreakingException e) {
+                    onFailure(e);
+                } finally {
+                    reduceLock.unlock();
                 }
-                numReducePhases++;
-                index = 1;
             }
-            final int i = index++;
+        }
+
+        /**
+         * Reduces the running reduced result and the oldest pending results, {@code bufferSize} results at a time, into a new
+         * running reduced result until the buffer doesn't overflow anymore.
+         */
+        private void reducePending() {
+            assert reduceLock.isHeldByCurrentThread();
+            while (numBuffered.get() > bufferSize) {
+                final int batchSize = numReduced > 0 ? bufferSize - 1 : bufferSize;
+                final List<PendingResult> batch = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    // can't be null, the buffered results are counted once they are queued
+                    batch.add(pendingResults.poll());
+                }
+                reduceBatch(batch);
+            }
+        }
+
+        private void reduceBatch(List<PendingResult> batch) {
+            final int numInputs = batch.size() + (numReduced > 0 ? 1 : 0);
             if (hasAggs) {
-                aggsBuffer[i] = (InternalAggregations) querySearchResult.consumeAggs();
+                final List<InternalAggregations> aggs = new ArrayList<>(batch.size() + 1);
+                long inputBytes = reducedAggsBytes;
+                if (reducedAggs != null) {
+                    aggs.add(reducedAggs);
+                }
+                for (PendingResult result : batch) {
+                    aggs.add(result.aggs);
+                    inputBytes += result.aggsBytes;
+                }
+                // the reduce builds the new tree while the inputs are still referenced
+                final long reduceBytes = inputBytes / 2;
+                addEstimateBytesAndMaybeBreak(reduceBytes, "search reduce of aggregations " + aggregationNames(aggs.get(0)));
+                ReduceContext reduceContext = controller.reduceContextFunction.apply(false);
+                reducedAggs = InternalAggregations.reduce(aggs, reduceContext);
+                // a reduce doesn't produce more than its inputs, so their size is an upper bound of the size of the reduced
+                // aggregations
+                reducedAggsBytes = inputBytes;
+                addWithoutBreaking(-reduceBytes);
             }
             if (hasTopDocs) {
-                final TopDocs topDocs = querySearchResult.consumeTopDocs(); // can't be null
-                topDocsStats.add(topDocs);
-                setShardIndex(topDocs, querySearchResult.getShardIndex());
-                topDocsBuffer[i] = topDocs;
+                final List<TopDocs> topDocs = new ArrayList<>(batch.size() + 1);
+                if (reducedTopDocs != null) {
+                    topDocs.add(reducedTopDocs);
+                }
+                for (PendingResult pending : batch) {
+                    topDocs.add(consumeTopDocs(pending.result));
+                }
+                final QuerySearchResult last = batch.get(batch.size() - 1).result;
+                // we have to merge here in the same way we collect on a shard
+                reducedTopDocs = mergeTopDocs(topDocs, last.from() + last.size(), 0);
+            }
+            numReducePhases++;
+            numReduced += batch.size();
+            numBuffered.addAndGet(1 - numInputs);
+        }
+
+        private TopDocs consumeTopDocs(QuerySearchResult result) {
+            final TopDocs shardTopDocs = result.consumeTopDocs(); // can't be null
+            topDocsStats.add(shardTopDocs);
+            setShardIndex(shardTopDocs, result.getShardIndex());
+            return shardTopDocs;
+        }
+
+        @Override
+        public ReducedQueryPhase reduce() {
+            try {
+                final List<InternalAggregations> remainingAggs;
+                final List<TopDocs> remainingTopDocs;
+                reduceLock.lock();
+                try {
+                    if (failure.get() != null) {
+                        throw failure.get();
+                    }
+                    // the buffer may still overflow if results were consumed while another thread was reducing
+                    reducePending();
+                    // the remaining buffered results are reduced together with the final reduce
+                    final List<PendingResult> pending = new ArrayList<>(pendingResults);
+                    pendingResults.clear();
+                    if (hasAggs) {
+                        remainingAggs = new ArrayList<>(pending.size() + 1);
+                        long bytes = reducedAggsBytes;
+                        if (reducedAggs != null) {
+                            remainingAggs.add(reducedAggs);
+                        }
+                        for (PendingResult result : pending) {
+                            remainingAggs.add(result.aggs);
+                            bytes += result.aggsBytes;
+                        }
+                        if (remainingAggs.isEmpty() == false && performFinalReduce) {
+                            addEstimateBytesAndMaybeBreak(bytes / 2,
+                                "search reduce of aggregations " + aggregationNames(remainingAggs.get(0)));
+                        }
+                    } else {
+                        remainingAggs = null;
+                    }
+                    if (hasTopDocs) {
+                        remainingTopDocs = new ArrayList<>(pending.size() + 1);
+                        if (reducedTopDocs != null) {
+                            remainingTopDocs.add(reducedTopDocs);
+                        }
+                        for (PendingResult result : pending) {
+                            remainingTopDocs.add(consumeTopDocs(result.result));
+                        }
+                    } else {
+                        remainingTopDocs = null;
+                    }
+                } finally {
+                    reduceLock.unlock();
+                }
+                return controller.reducedQueryPhase(results.asList(), remainingAggs, remainingTopDocs, topDocsStats,
+                    numReducePhases, false, performFinalReduce);
+            } finally {
+                close();
             }
         }
 
-        private synchronized List<InternalAggregations> getRemainingAggs() {
-            return hasAggs ? Arrays.asList(aggsBuffer).subList(0, index) : null;
+        private void onFailure(CircuitBreakingException e) {
+            failure.compareAndSet(null, e);
+            // drop the results that we hold on to, the search is going to fail
+            pendingResults.clear();
+            numBuffered.set(0);
+            close();
         }
 
-        private synchronized List<TopDocs> getRemainingTopDocs() {
-            return hasTopDocs ? Arrays.asList(topDocsBuffer).subList(0, index) : null;
+        private synchronized void addEstimateBytesAndMaybeBreak(long bytes, String label) {
+            if (closed) {
+                return;
+            }
+            controller.circuitBreaker.addEstimateBytesAndMaybeBreak(bytes, label);
+            circuitBreakerBytes += bytes;
+        }
+
+        private synchronized void addWithoutBreaking(long bytes) {
+            if (closed) {
+                return;
+            }
+            controller.circuitBreaker.addWithoutBreaking(bytes);
+            circuitBreakerBytes += bytes;
         }
 
+        /**
+         * Releases everything that was charged to the request circuit breaker. Results that are consumed afterwards aren't
+         * accounted for anymore.
+         */
         @Override
-        public ReducedQueryPhase reduce() {
-            return controller.reducedQueryPhase(results.asList(), getRemainingAggs(), getRemainingTopDocs(), topDocsStats,
-                numReducePhases, false, performFinalReduce);
+        public synchronized void close() {
+            if (closed == false) {
+                closed = true;
+                controller.circuitBreaker.addWithoutBreaking(-circuitBreakerBytes);
+                circuitBreakerBytes = 0;
+            }
         }
 
         /**
-         * Returns the number of buffered results
+         * Returns the number of bytes that are currently charged to the request circuit breaker
+         */
+        synchronized long getCircuitBreakerBytes() {
+            return circuitBreakerBytes;
+        }
+
+        /**
+         * Returns the number of buffered results, including the running reduced result
          */
         int getNumBuffered() {
-            return index;
+            return numBuffered.get();
         }
 
-        int getNumReducePhases() { return numReducePhases; }
+        int getNumReducePhases() {
+            reduceLock.lock();
+            try {
+                return numReducePhases;
+            } finally {
+                reduceLock.unlock();
+            }
+        }
+
+        private static final class PendingResult {
+            final QuerySearchResult result;
+            // the aggregations are taken from the result when it is consumed so that their size can be accounted for
+            final InternalAggregations aggs;
+            final long aggsBytes;
+
+            PendingResult(QuerySearchResult result, InternalAggregations aggs, long aggsBytes) {
+                this.result = result;
+                this.aggs = aggs;
+                this.aggsBytes = aggsBytes;
+            }
+        }
     }
 
     /**
@@ -1223,7 +1223,7 @@ public abstract class TransportReplicationAction<
     }
 
     /** a wrapper class to encapsulate a request when being sent to a specific allocation id **/
-    public static class ConcreteShardRequest<R extends TransportRequest> extends TransportRequest {
+    public static class ConcreteShardRequest<R extends TransportRequest> extends TransportRequest implements Releasable {
 
         /** {@link AllocationId#getId()} of the shard this request is sent to **/
         private String targetAllocationID;
@@ -1289,6 +1289,13 @@ public abstract class TransportReplicationAction<
             return request;
         }
 
+        @Override
+        public void close() {
+            if (request instanceof Releasable) {
+                ((Releasable) request).close();
+            }
+        }
+
         public String getTargetAllocationID() {
             return targetAllocationID;
         }
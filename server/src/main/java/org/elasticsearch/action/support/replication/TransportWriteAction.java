@@ -309,7 +309,7 @@ public abstract class TransportWriteAction<
             this.waitUntilRefresh = waitUntilRefresh;
             this.respond = respond;
             this.location = location;
-            if ((sync = indexShard.getTranslogDurability() == Translog.Durability.REQUEST && location != null)) {
+            if ((sync = indexShard.getTranslogDurability() != Translog.Durability.ASYNC && location != null)) {
                 pendingOps.incrementAndGet();
             }
             this.logger = logger;
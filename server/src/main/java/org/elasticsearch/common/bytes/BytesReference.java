@@ -30,6 +30,9 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.ToIntBiFunction;
 
 /**
@@ -170,6 +173,24 @@ public abstract class BytesReference implements Comparable<BytesReference>, ToXC
         return BytesRef.deepCopyOf(bytesRef).bytes;
     }
 
+    /**
+     * Returns an array of byte buffers wrapping the pages of the given BytesReference without copying them.
+     */
+    public static ByteBuffer[] toByteBuffers(BytesReference reference) {
+        final BytesRefIterator iterator = reference.iterator();
+        final List<ByteBuffer> buffers = new ArrayList<>();
+        try {
+            BytesRef ref;
+            while ((ref = iterator.next()) != null) {
+                buffers.add(ByteBuffer.wrap(ref.bytes, ref.offset, ref.length));
+            }
+        } catch (IOException e) {
+            // this is really an error since we don't do IO in our bytesreferences
+            throw new AssertionError("won't happen", e);
+        }
+        return buffers.toArray(new ByteBuffer[0]);
+    }
+
     @Override
     public int compareTo(final BytesReference other) {
         return compareIterators(this, other, (a, b) -> a.compareTo(b));
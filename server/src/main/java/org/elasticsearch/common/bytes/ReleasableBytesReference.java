@@ -0,0 +1,121 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.bytes;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefIterator;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A {@link BytesReference} to bytes that are owned by someone else, such as a buffer of the network layer, and that must be released
+ * once they are no longer used. The bytes are reference counted: every {@link #retain()} must be matched by a {@link #close()}, and
+ * the bytes are released when the last reference is closed. The bytes must not be accessed once they have been released.
+ */
+public final class ReleasableBytesReference extends BytesReference implements Releasable {
+
+    private static final Releasable NO_OP = () -> {};
+
+    private final BytesReference delegate;
+    private final AbstractRefCounted refCounted;
+
+    public ReleasableBytesReference(BytesReference delegate, Releasable releasable) {
+        this.delegate = delegate;
+        this.refCounted = new AbstractRefCounted("bytes-reference") {
+            @Override
+            protected void closeInternal() {
+                Releasables.close(releasable);
+            }
+        };
+    }
+
+    /**
+     * Wraps bytes that don't need to be released, such as a copy on the heap.
+     */
+    public static ReleasableBytesReference wrap(BytesReference reference) {
+        return new ReleasableBytesReference(reference, NO_OP);
+    }
+
+    /**
+     * Adds a reference to the bytes, which must be closed once it is no longer used.
+     */
+    public ReleasableBytesReference retain() {
+        refCounted.incRef();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        refCounted.decRef();
+    }
+
+    @Override
+    public byte get(int index) {
+        return delegate.get(index);
+    }
+
+    @Override
+    public int length() {
+        return delegate.length();
+    }
+
+    /**
+     * Returns a slice of the bytes, which is only valid as long as this reference is retained.
+     */
+    @Override
+    public BytesReference slice(int from, int length) {
+        return delegate.slice(from, length);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return delegate.ramBytesUsed();
+    }
+
+    @Override
+    public StreamInput streamInput() throws IOException {
+        return delegate.streamInput();
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        delegate.writeTo(os);
+    }
+
+    @Override
+    public String utf8ToString() {
+        return delegate.utf8ToString();
+    }
+
+    @Override
+    public BytesRef toBytesRef() {
+        return delegate.toBytesRef();
+    }
+
+    @Override
+    public BytesRefIterator iterator() {
+        return delegate.iterator();
+    }
+}
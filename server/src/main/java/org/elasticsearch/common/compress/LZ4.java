@@ -0,0 +1,207 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.compress;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure Java implementation of the LZ4 block format. Compression only looks for matches through a single hash table of the last
+ * position of every 4-byte sequence, which is what makes LZ4 fast rather than good at compressing. Decompression is a plain copy
+ * of literals and back references.
+ */
+final class LZ4 {
+
+    static final int HASH_LOG = 12;
+    static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_DISTANCE = 1 << 16;
+    // the last literals of a block are never part of a match, and the last match starts at least this far from the end
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    // skip positions faster the longer no match is found, so that incompressible input is compressed fast
+    private static final int SKIP_STRENGTH = 6;
+
+    private LZ4() {}
+
+    /**
+     * The maximum length of the compressed form of the given number of bytes.
+     */
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code src[srcOff:srcOff+srcLen]} into {@code dest}, which must hold at least {@link #maxCompressedLength(int)}
+     * bytes, and returns the length of the compressed bytes.
+     *
+     * @param hashTable a scratch array of {@link #HASH_TABLE_SIZE} elements
+     */
+    static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int[] hashTable) {
+        final int srcEnd = srcOff + srcLen;
+        final int matchLimit = srcEnd - LAST_LITERALS;
+        final int mfLimit = srcEnd - MF_LIMIT;
+        int anchor = srcOff;
+        int dOff = 0;
+        if (srcLen > MF_LIMIT) {
+            Arrays.fill(hashTable, -1);
+            int sOff = srcOff;
+            int attempts = 0;
+            while (sOff < mfLimit) {
+                final int sequence = readInt(src, sOff);
+                final int h = hash(sequence);
+                final int ref = hashTable[h];
+                hashTable[h] = sOff;
+                if (ref < 0 || sOff - ref >= MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    sOff += (attempts++ >>> SKIP_STRENGTH) + 1;
+                    continue;
+                }
+                attempts = 0;
+                // extend the match backwards into the pending literals
+                int start = sOff;
+                int matchRef = ref;
+                while (start > anchor && matchRef > srcOff && src[start - 1] == src[matchRef - 1]) {
+                    start--;
+                    matchRef--;
+                }
+                int matchEnd = sOff + MIN_MATCH;
+                int refEnd = ref + MIN_MATCH;
+                while (matchEnd < matchLimit && src[matchEnd] == src[refEnd]) {
+                    matchEnd++;
+                    refEnd++;
+                }
+                dOff = writeSequence(src, anchor, start - anchor, start - matchRef, matchEnd - start, dest, dOff);
+                sOff = matchEnd;
+                anchor = matchEnd;
+            }
+        }
+        // the remaining bytes are literals
+        final int literalLength = srcEnd - anchor;
+        final int token = dOff++;
+        dest[token] = (byte) (Math.min(literalLength, 0x0F) << 4);
+        if (literalLength >= 0x0F) {
+            dOff = writeLength(literalLength - 0x0F, dest, dOff);
+        }
+        System.arraycopy(src, anchor, dest, dOff, literalLength);
+        return dOff + literalLength;
+    }
+
+    /**
+     * Decompresses {@code src[srcOff:srcOff+srcLen]} into {@code dest}, which must be exactly as long as the decompressed bytes.
+     */
+    static void decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destLen) throws IOException {
+        final int srcEnd = srcOff + srcLen;
+        int sOff = srcOff;
+        int dOff = 0;
+        try {
+            while (true) {
+                final int token = src[sOff++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (literalLength == 0x0F) {
+                    int len;
+                    do {
+                        len = src[sOff++] & 0xFF;
+                        literalLength += len;
+                    } while (len == 0xFF);
+                }
+                if (sOff + literalLength > srcEnd || dOff + literalLength > destLen) {
+                    throw corrupted("literals exceed the block");
+                }
+                System.arraycopy(src, sOff, dest, dOff, literalLength);
+                sOff += literalLength;
+                dOff += literalLength;
+                if (sOff == srcEnd) {
+                    break;
+                }
+                final int offset = (src[sOff++] & 0xFF) | ((src[sOff++] & 0xFF) << 8);
+                if (offset == 0 || offset > dOff) {
+                    throw corrupted("invalid match offset [" + offset + "]");
+                }
+                int matchLength = token & 0x0F;
+                if (matchLength == 0x0F) {
+                    int len;
+                    do {
+                        len = src[sOff++] & 0xFF;
+                        matchLength += len;
+                    } while (len == 0xFF);
+                }
+                matchLength += MIN_MATCH;
+                if (dOff + matchLength > destLen) {
+                    throw corrupted("match exceeds the block");
+                }
+                if (offset >= matchLength) {
+                    System.arraycopy(dest, dOff - offset, dest, dOff, matchLength);
+                    dOff += matchLength;
+                } else {
+                    // the match overlaps the bytes it produces
+                    for (int ref = dOff - offset, end = dOff + matchLength; dOff < end; ) {
+                        dest[dOff++] = dest[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw corrupted("truncated block");
+        }
+        if (dOff != destLen) {
+            throw corrupted("expected [" + destLen + "] bytes but decompressed [" + dOff + "]");
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalOff, int literalLength, int offset, int matchLength,
+                                     byte[] dest, int dOff) {
+        final int matchCode = matchLength - MIN_MATCH;
+        final int token = dOff++;
+        dest[token] = (byte) ((Math.min(literalLength, 0x0F) << 4) | Math.min(matchCode, 0x0F));
+        if (literalLength >= 0x0F) {
+            dOff = writeLength(literalLength - 0x0F, dest, dOff);
+        }
+        System.arraycopy(src, literalOff, dest, dOff, literalLength);
+        dOff += literalLength;
+        dest[dOff++] = (byte) offset;
+        dest[dOff++] = (byte) (offset >>> 8);
+        if (matchCode >= 0x0F) {
+            dOff = writeLength(matchCode - 0x0F, dest, dOff);
+        }
+        return dOff;
+    }
+
+    private static int writeLength(int length, byte[] dest, int dOff) {
+        while (length >= 0xFF) {
+            dest[dOff++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        dest[dOff++] = (byte) length;
+        return dOff;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8) | ((bytes[offset + 2] & 0xFF) << 16)
+            | ((bytes[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static IOException corrupted(String reason) {
+        return new IOException("corrupted LZ4 block: " + reason);
+    }
+}
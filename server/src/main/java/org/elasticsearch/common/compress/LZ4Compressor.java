@@ -0,0 +1,238 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.compress;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * {@link Compressor} implementation based on the LZ4 compression algorithm, which trades compression ratio for speed. The
+ * compressed stream is a sequence of blocks of up to 64kB, each written as its length, its compressed length and the compressed
+ * bytes, and ends with an empty block. Blocks that don't get smaller are written as they are.
+ */
+public class LZ4Compressor implements Compressor {
+
+    // An arbitrary header that we use to identify compressed streams, see DeflateCompressor
+    private static final byte[] HEADER = new byte[]{'L', 'Z', '4', '\0'};
+    static final int BLOCK_SIZE = 1 << 16;
+
+    @Override
+    public boolean isCompressed(BytesReference bytes) {
+        if (bytes.length() < HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < HEADER.length; ++i) {
+            if (bytes.get(i) != HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public StreamInput streamInput(StreamInput in) throws IOException {
+        final byte[] headerBytes = new byte[HEADER.length];
+        int len = 0;
+        while (len < headerBytes.length) {
+            final int read = in.read(headerBytes, len, headerBytes.length - len);
+            if (read == -1) {
+                break;
+            }
+            len += read;
+        }
+        if (len != HEADER.length || Arrays.equals(headerBytes, HEADER) == false) {
+            throw new IllegalArgumentException("Input stream is not compressed with LZ4!");
+        }
+        return new InputStreamStreamInput(new BlockInputStream(in));
+    }
+
+    @Override
+    public StreamOutput streamOutput(StreamOutput out) throws IOException {
+        out.writeBytes(HEADER);
+        return new OutputStreamStreamOutput(new BlockOutputStream(out));
+    }
+
+    private static final class BlockOutputStream extends OutputStream {
+
+        private final StreamOutput out;
+        // grows up to the block size, so that small messages don't need to allocate a whole block
+        private byte[] block = new byte[1024];
+        private int blockLength;
+        private byte[] compressed;
+        private int[] hashTable;
+        private boolean closed;
+
+        BlockOutputStream(StreamOutput out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (blockLength == block.length) {
+                ensureCapacity(blockLength + 1);
+            }
+            block[blockLength++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                ensureCapacity(Math.min(BLOCK_SIZE, blockLength + len));
+                final int toCopy = Math.min(len, block.length - blockLength);
+                System.arraycopy(b, off, block, blockLength, toCopy);
+                blockLength += toCopy;
+                off += toCopy;
+                len -= toCopy;
+            }
+        }
+
+        private void ensureCapacity(int capacity) throws IOException {
+            if (blockLength == BLOCK_SIZE) {
+                writeBlock();
+            } else if (capacity > block.length) {
+                block = Arrays.copyOf(block, Math.min(BLOCK_SIZE, ArrayUtil.oversize(capacity, Byte.BYTES)));
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (blockLength == 0) {
+                return;
+            }
+            if (compressed == null || compressed.length < LZ4.maxCompressedLength(blockLength)) {
+                compressed = new byte[LZ4.maxCompressedLength(block.length)];
+            }
+            if (hashTable == null) {
+                hashTable = new int[LZ4.HASH_TABLE_SIZE];
+            }
+            final int compressedLength = LZ4.compress(block, 0, blockLength, compressed, hashTable);
+            out.writeVInt(blockLength);
+            if (compressedLength < blockLength) {
+                out.writeVInt(compressedLength);
+                out.writeBytes(compressed, 0, compressedLength);
+            } else {
+                out.writeVInt(blockLength);
+                out.writeBytes(block, 0, blockLength);
+            }
+            blockLength = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeBlock();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed == false) {
+                closed = true;
+                writeBlock();
+                // the empty block marks the end of the stream
+                out.writeVInt(0);
+                out.close();
+            }
+        }
+    }
+
+    private static final class BlockInputStream extends InputStream {
+
+        private final StreamInput in;
+        private byte[] block = new byte[0];
+        private byte[] compressed = new byte[0];
+        private int blockLength;
+        private int position;
+        private boolean eos;
+
+        BlockInputStream(StreamInput in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == blockLength && readBlock() == false) {
+                return -1;
+            }
+            return block[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == blockLength && readBlock() == false) {
+                return -1;
+            }
+            final int toCopy = Math.min(len, blockLength - position);
+            System.arraycopy(block, position, b, off, toCopy);
+            position += toCopy;
+            return toCopy;
+        }
+
+        @Override
+        public int available() {
+            return blockLength - position;
+        }
+
+        private boolean readBlock() throws IOException {
+            if (eos) {
+                return false;
+            }
+            final int length = in.readVInt();
+            if (length == 0) {
+                eos = true;
+                return false;
+            }
+            final int compressedLength = in.readVInt();
+            if (length < 0 || length > BLOCK_SIZE || compressedLength <= 0 || compressedLength > length) {
+                throw new IOException("corrupted LZ4 stream: block of length [" + length + "] compressed to [" + compressedLength + "]");
+            }
+            if (block.length < length) {
+                block = new byte[ArrayUtil.oversize(length, Byte.BYTES)];
+            }
+            if (compressedLength == length) {
+                in.readBytes(block, 0, length);
+            } else {
+                if (compressed.length < compressedLength) {
+                    compressed = new byte[ArrayUtil.oversize(compressedLength, Byte.BYTES)];
+                }
+                in.readBytes(compressed, 0, compressedLength);
+                LZ4.decompress(compressed, 0, compressedLength, block, length);
+            }
+            blockLength = length;
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
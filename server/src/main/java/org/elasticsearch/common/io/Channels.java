@@ -25,6 +25,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 @SuppressForbidden(reason = "Channel#read")
@@ -223,4 +224,21 @@ public final class Channels {
             }
         }
     }
+
+    /**
+     * Writes the remaining bytes of all the given {@link java.nio.ByteBuffer}s to a {@link java.nio.channels.GatheringByteChannel},
+     * issuing as few write calls as the channel allows.
+     *
+     * @param byteBuffers source buffers
+     * @param channel     channel to write to
+     */
+    public static void writeToChannel(ByteBuffer[] byteBuffers, GatheringByteChannel channel) throws IOException {
+        int offset = 0;
+        while (offset < byteBuffers.length) {
+            channel.write(byteBuffers, offset, byteBuffers.length - offset);
+            while (offset < byteBuffers.length && byteBuffers[offset].hasRemaining() == false) {
+                offset++;
+            }
+        }
+    }
 }
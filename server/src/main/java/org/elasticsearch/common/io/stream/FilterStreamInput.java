@@ -23,6 +23,7 @@ import org.elasticsearch.Version;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Set;
 
 /**
  * Wraps a {@link StreamInput} and delegates to it. To be used to add functionality to an existing stream by subclassing.
@@ -75,6 +76,16 @@ public abstract class FilterStreamInput extends StreamInput {
         delegate.setVersion(version);
     }
 
+    @Override
+    public boolean hasFeature(String feature) {
+        return delegate.hasFeature(feature);
+    }
+
+    @Override
+    public void setFeatures(Set<String> features) {
+        delegate.setFeatures(features);
+    }
+
     @Override
     protected void ensureCanReadBytes(int length) throws EOFException {
         delegate.ensureCanReadBytes(length);
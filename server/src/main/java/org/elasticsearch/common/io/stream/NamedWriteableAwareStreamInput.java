@@ -19,6 +19,8 @@
 
 package org.elasticsearch.common.io.stream;
 
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+
 import java.io.IOException;
 
 /**
@@ -33,6 +35,11 @@ public class NamedWriteableAwareStreamInput extends FilterStreamInput {
         this.namedWriteableRegistry = namedWriteableRegistry;
     }
 
+    @Override
+    public ReleasableBytesReference readReleasableBytesReference(int length) throws IOException {
+        return delegate.readReleasableBytesReference(length);
+    }
+
     @Override
     public <C extends NamedWriteable> C readNamedWriteable(Class<C> categoryClass) throws IOException {
         String name = readString();
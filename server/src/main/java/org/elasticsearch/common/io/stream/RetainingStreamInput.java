@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.io.stream;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps a {@link StreamInput} so that the bytes references that are read from it share the bytes of the stream rather than copying
+ * them, if the stream supports it, see {@link StreamInput#readReleasableBytesReference(int)}. The bytes references stay valid until
+ * the {@link Releasable} returned by {@link #retained()} is closed, which whoever reads from this stream is responsible for.
+ */
+public final class RetainingStreamInput extends FilterStreamInput {
+
+    private final List<ReleasableBytesReference> retained = new ArrayList<>();
+
+    public RetainingStreamInput(StreamInput delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public BytesReference readBytesReference(int length) throws IOException {
+        if (length == 0) {
+            return BytesArray.EMPTY;
+        }
+        return readReleasableBytesReference(length);
+    }
+
+    @Override
+    public ReleasableBytesReference readReleasableBytesReference(int length) throws IOException {
+        final ReleasableBytesReference reference = delegate.readReleasableBytesReference(length);
+        retained.add(reference);
+        return reference;
+    }
+
+    @Override
+    public <C extends NamedWriteable> C readNamedWriteable(Class<C> categoryClass) throws IOException {
+        return delegate.readNamedWriteable(categoryClass);
+    }
+
+    @Override
+    public <C extends NamedWriteable> C readNamedWriteable(Class<C> categoryClass, String name) throws IOException {
+        return delegate.readNamedWriteable(categoryClass, name);
+    }
+
+    /**
+     * Returns a {@link Releasable} that releases all the bytes references that have been read from this stream so far.
+     */
+    public Releasable retained() {
+        final List<ReleasableBytesReference> references = new ArrayList<>(retained);
+        retained.clear();
+        return () -> Releasables.close(references);
+    }
+}
@@ -34,6 +34,7 @@ import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.unit.TimeValue;
@@ -109,6 +110,7 @@ public abstract class StreamInput extends InputStream {
     }
 
     private Version version = Version.CURRENT;
+    private Set<String> features = Collections.emptySet();
 
     /**
      * The version of the node on the other side of this stream.
@@ -124,6 +126,26 @@ public abstract class StreamInput extends InputStream {
         this.version = version;
     }
 
+    /**
+     * Test if the stream has the specified feature. See {@link StreamOutput#hasFeature(String)}.
+     *
+     * @param feature the feature to test
+     * @return true if the stream has the specified feature
+     */
+    public boolean hasFeature(final String feature) {
+        return this.features.contains(feature);
+    }
+
+    /**
+     * Set the features on the stream. See {@link StreamInput#hasFeature(String)}.
+     *
+     * @param features the features on the stream
+     */
+    public void setFeatures(final Set<String> features) {
+        assert this.features.isEmpty() : this.features;
+        this.features = Collections.unmodifiableSet(new HashSet<>(features));
+    }
+
     /**
      * Reads and returns a single byte.
      */
@@ -174,6 +196,24 @@ public abstract class StreamInput extends InputStream {
         return new BytesArray(bytes, 0, length);
     }
 
+    /**
+     * Reads a bytes reference from this stream that was written with {@link StreamOutput#writeBytesReference(BytesReference)}, see
+     * {@link #readReleasableBytesReference(int)}.
+     */
+    public ReleasableBytesReference readReleasableBytesReference() throws IOException {
+        int length = readArraySize();
+        return readReleasableBytesReference(length);
+    }
+
+    /**
+     * Reads a bytes reference from this stream that may share the underlying bytes of the stream instead of copying them, even if
+     * they are recycled once the stream has been read. The returned reference keeps the bytes from being recycled, and must be
+     * closed once it is no longer used. By default the bytes are copied, and closing the reference is a no-op.
+     */
+    public ReleasableBytesReference readReleasableBytesReference(int length) throws IOException {
+        return ReleasableBytesReference.wrap(readBytesReference(length));
+    }
+
     public BytesRef readBytesRef() throws IOException {
         int length = readArraySize();
         return readBytesRef(length);
@@ -70,6 +70,8 @@ import org.elasticsearch.indices.IndexingMemoryController;
 import org.elasticsearch.indices.IndicesQueryCache;
 import org.elasticsearch.indices.IndicesRequestCache;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.MergeIOGovernor;
+import org.elasticsearch.indices.TranslogGroupCommitService;
 import org.elasticsearch.indices.analysis.HunspellService;
 import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
@@ -220,6 +222,8 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     DestructiveOperations.REQUIRES_NAME_SETTING,
                     DiscoverySettings.PUBLISH_TIMEOUT_SETTING,
                     DiscoverySettings.PUBLISH_DIFF_ENABLE_SETTING,
+                    DiscoverySettings.PUBLISH_DIFF_HISTORY_SIZE_SETTING,
+                    DiscoverySettings.PUBLISH_MAX_CONCURRENT_FULL_STATES_SETTING,
                     DiscoverySettings.COMMIT_TIMEOUT_SETTING,
                     DiscoverySettings.NO_MASTER_BLOCK_SETTING,
                     GatewayService.EXPECTED_DATA_NODES_SETTING,
@@ -316,6 +320,11 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     TransportSettings.PUBLISH_PORT_PROFILE,
                     TransportSettings.OLD_TRANSPORT_COMPRESS,
                     TransportSettings.TRANSPORT_COMPRESS,
+                    TransportSettings.TRANSPORT_COMPRESSION_SCHEME,
+                    TransportSettings.TRANSPORT_COMPRESSED_ACTIONS,
+                    TransportSettings.TRANSPORT_CHUNK_SIZE,
+                    TransportSettings.TRANSPORT_HIGH_PRIORITY_ACTIONS,
+                    TransportSettings.TRANSPORT_LOW_PRIORITY_ACTIONS,
                     TransportSettings.PING_SCHEDULE,
                     TransportSettings.TCP_CONNECT_TIMEOUT,
                     TransportSettings.CONNECT_TIMEOUT,
@@ -448,6 +457,9 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     IndexingMemoryController.MAX_INDEX_BUFFER_SIZE_SETTING,
                     IndexingMemoryController.SHARD_INACTIVE_TIME_SETTING,
                     IndexingMemoryController.SHARD_MEMORY_INTERVAL_TIME_SETTING,
+                    TranslogGroupCommitService.GROUP_COMMIT_MAX_DELAY_SETTING,
+                    MergeIOGovernor.MAX_BYTES_PER_SEC_SETTING,
+                    MergeIOGovernor.REBALANCE_INTERVAL_SETTING,
                     ResourceWatcherService.ENABLED,
                     ResourceWatcherService.RELOAD_INTERVAL_HIGH,
                     ResourceWatcherService.RELOAD_INTERVAL_MEDIUM,
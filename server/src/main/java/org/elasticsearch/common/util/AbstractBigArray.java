@@ -112,6 +112,30 @@ abstract class AbstractBigArray extends AbstractArray {
         return v.v();
       }
 
+    /**
+     * Registers a page of the recycler that was obtained for another array, so that it is released when this array is closed.
+     */
+    protected final byte[] adoptBytePage(Recycler.V<byte[]> v, int page) {
+        assert recycler != null;
+        return registerNewPage(v, page, PageCacheRecycler.BYTE_PAGE_SIZE);
+    }
+
+    /**
+     * Registers a page of the recycler that was obtained for another array, so that it is released when this array is closed.
+     */
+    protected final int[] adoptIntPage(Recycler.V<int[]> v, int page) {
+        assert recycler != null;
+        return registerNewPage(v, page, PageCacheRecycler.INT_PAGE_SIZE);
+    }
+
+    /**
+     * Registers a page of the recycler that was obtained for another array, so that it is released when this array is closed.
+     */
+    protected final long[] adoptLongPage(Recycler.V<long[]> v, int page) {
+        assert recycler != null;
+        return registerNewPage(v, page, PageCacheRecycler.LONG_PAGE_SIZE);
+    }
+
     protected final byte[] newBytePage(int page) {
         if (recycler != null) {
             final Recycler.V<byte[]> v = recycler.bytePage(clearOnResize);
@@ -27,6 +27,7 @@ import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.recycler.Recycler;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 
@@ -80,8 +81,8 @@ public class BigArrays {
 
         static final long SHALLOW_SIZE = RamUsageEstimator.shallowSizeOfInstance(ByteArrayWrapper.class);
 
-        private final Releasable releasable;
-        private final long size;
+        private Releasable releasable;
+        private long size;
 
         AbstractArrayWrapper(BigArrays bigArrays, long size, Releasable releasable, boolean clearOnResize) {
             super(bigArrays, clearOnResize);
@@ -94,6 +95,32 @@ public class BigArrays {
             return size;
         }
 
+        /**
+         * Whether the values of this array are stored in a page of the {@link PageCacheRecycler}.
+         */
+        final boolean isRecycled() {
+            return releasable != null;
+        }
+
+        /**
+         * Changes the size of this array, which must not exceed the length of the array that holds the values.
+         */
+        final void setSize(long size) {
+            this.size = size;
+        }
+
+        /**
+         * Hands the page of the {@link PageCacheRecycler} that stores the values of this array over to the caller,
+         * so that it is not released when this array is closed.
+         */
+        @SuppressWarnings("unchecked")
+        final <T> Recycler.V<T> detachPage() {
+            assert releasable instanceof Recycler.V;
+            final Recycler.V<T> page = (Recycler.V<T>) releasable;
+            releasable = null;
+            return page;
+        }
+
         @Override
         protected final void doClose() {
             Releasables.close(releasable);
@@ -361,6 +388,9 @@ public class BigArrays {
     private final boolean checkBreaker;
     private final BigArrays circuitBreakingInstance;
     private final String breakerName;
+    private final CounterMetric reallocations = new CounterMetric();
+    private final CounterMetric reallocatedBytes = new CounterMetric();
+    private final CounterMetric recycledGrowths = new CounterMetric();
 
     public BigArrays(PageCacheRecycler recycler, @Nullable final CircuitBreakerService breakerService, String breakerName) {
         // Checking the breaker is disabled if not specified
@@ -429,6 +459,33 @@ public class BigArrays {
         return this.circuitBreakingInstance.breakerService;
     }
 
+    /**
+     * The number of times an array of this instance was resized by copying its values into a new array.
+     */
+    public long reallocations() {
+        return reallocations.count();
+    }
+
+    /**
+     * The number of bytes that were copied when arrays of this instance were resized.
+     */
+    public long reallocatedBytes() {
+        return reallocatedBytes.count();
+    }
+
+    /**
+     * The number of times an array of this instance grew without copying its values because they were stored in
+     * a page of the {@link PageCacheRecycler}, either in place or by turning the page into the first page of a paged array.
+     */
+    public long recycledGrowths() {
+        return recycledGrowths.count();
+    }
+
+    private void onReallocation(long numValues, int bytesPerValue) {
+        reallocations.inc();
+        reallocatedBytes.inc(numValues * bytesPerValue);
+    }
+
     private <T extends AbstractBigArray> T resizeInPlace(T array, long newSize) {
         final long oldMemSize = array.ramBytesUsed();
         final long oldSize = array.size();
@@ -485,14 +542,37 @@ public class BigArrays {
     public ByteArray resize(ByteArray array, long size) {
         if (array instanceof BigByteArray) {
             return resizeInPlace((BigByteArray) array, size);
-        } else {
-            AbstractArray arr = (AbstractArray) array;
-            final ByteArray newArray = newByteArray(size, arr.clearOnResize);
-            final byte[] rawArray = ((ByteArrayWrapper) array).array;
-            newArray.set(0, rawArray, 0, (int) Math.min(rawArray.length, newArray.size()));
-            arr.close();
+        }
+        final ByteArrayWrapper wrapper = (ByteArrayWrapper) array;
+        if (wrapper.isRecycled()) {
+            final long oldSize = wrapper.size();
+            if (size <= wrapper.array.length) {
+                // the page has room for the new size
+                wrapper.setSize(size);
+                if (size > oldSize) {
+                    if (wrapper.clearOnResize) {
+                        Arrays.fill(wrapper.array, (int) oldSize, (int) size, (byte) 0);
+                    }
+                    recycledGrowths.inc();
+                }
+                return wrapper;
+            }
+            // the page becomes the first page of a paged array
+            adjustBreaker(BigByteArray.estimateRamBytes(size), false);
+            if (wrapper.clearOnResize) {
+                Arrays.fill(wrapper.array, (int) oldSize, wrapper.array.length, (byte) 0);
+            }
+            final ByteArray newArray = new BigByteArray(size, this, wrapper.clearOnResize, wrapper.detachPage());
+            wrapper.close();
+            recycledGrowths.inc();
             return newArray;
         }
+        final ByteArray newArray = newByteArray(size, wrapper.clearOnResize);
+        final int numValues = (int) Math.min(wrapper.array.length, newArray.size());
+        newArray.set(0, wrapper.array, 0, numValues);
+        onReallocation(numValues, 1);
+        wrapper.close();
+        return newArray;
     }
 
     /** Grow an array to a size that is larger than <code>minSize</code>,
@@ -569,15 +649,39 @@ public class BigArrays {
     public IntArray resize(IntArray array, long size) {
         if (array instanceof BigIntArray) {
             return resizeInPlace((BigIntArray) array, size);
-        } else {
-            AbstractArray arr = (AbstractArray) array;
-            final IntArray newArray = newIntArray(size, arr.clearOnResize);
-            for (long i = 0, end = Math.min(size, array.size()); i < end; ++i) {
-                newArray.set(i, array.get(i));
+        }
+        final IntArrayWrapper wrapper = (IntArrayWrapper) array;
+        if (wrapper.isRecycled()) {
+            final long oldSize = wrapper.size();
+            if (size <= wrapper.array.length) {
+                // the page has room for the new size
+                wrapper.setSize(size);
+                if (size > oldSize) {
+                    if (wrapper.clearOnResize) {
+                        Arrays.fill(wrapper.array, (int) oldSize, (int) size, 0);
+                    }
+                    recycledGrowths.inc();
+                }
+                return wrapper;
             }
-            array.close();
+            // the page becomes the first page of a paged array
+            adjustBreaker(BigIntArray.estimateRamBytes(size), false);
+            if (wrapper.clearOnResize) {
+                Arrays.fill(wrapper.array, (int) oldSize, wrapper.array.length, 0);
+            }
+            final IntArray newArray = new BigIntArray(size, this, wrapper.clearOnResize, wrapper.detachPage());
+            wrapper.close();
+            recycledGrowths.inc();
             return newArray;
         }
+        final IntArray newArray = newIntArray(size, wrapper.clearOnResize);
+        final long numValues = Math.min(size, array.size());
+        for (long i = 0; i < numValues; ++i) {
+            newArray.set(i, array.get(i));
+        }
+        onReallocation(numValues, Integer.BYTES);
+        array.close();
+        return newArray;
     }
 
     /** Grow an array to a size that is larger than <code>minSize</code>,
@@ -621,15 +725,39 @@ public class BigArrays {
     public LongArray resize(LongArray array, long size) {
         if (array instanceof BigLongArray) {
             return resizeInPlace((BigLongArray) array, size);
-        } else {
-            AbstractArray arr = (AbstractArray) array;
-            final LongArray newArray = newLongArray(size, arr.clearOnResize);
-            for (long i = 0, end = Math.min(size, array.size()); i < end; ++i) {
-                newArray.set(i, array.get(i));
+        }
+        final LongArrayWrapper wrapper = (LongArrayWrapper) array;
+        if (wrapper.isRecycled()) {
+            final long oldSize = wrapper.size();
+            if (size <= wrapper.array.length) {
+                // the page has room for the new size
+                wrapper.setSize(size);
+                if (size > oldSize) {
+                    if (wrapper.clearOnResize) {
+                        Arrays.fill(wrapper.array, (int) oldSize, (int) size, 0);
+                    }
+                    recycledGrowths.inc();
+                }
+                return wrapper;
             }
-            array.close();
+            // the page becomes the first page of a paged array
+            adjustBreaker(BigLongArray.estimateRamBytes(size), false);
+            if (wrapper.clearOnResize) {
+                Arrays.fill(wrapper.array, (int) oldSize, wrapper.array.length, 0);
+            }
+            final LongArray newArray = new BigLongArray(size, this, wrapper.clearOnResize, wrapper.detachPage());
+            wrapper.close();
+            recycledGrowths.inc();
             return newArray;
         }
+        final LongArray newArray = newLongArray(size, wrapper.clearOnResize);
+        final long numValues = Math.min(size, array.size());
+        for (long i = 0; i < numValues; ++i) {
+            newArray.set(i, array.get(i));
+        }
+        onReallocation(numValues, Long.BYTES);
+        array.close();
+        return newArray;
     }
 
     /** Grow an array to a size that is larger than <code>minSize</code>,
@@ -670,15 +798,39 @@ public class BigArrays {
     public DoubleArray resize(DoubleArray array, long size) {
         if (array instanceof BigDoubleArray) {
             return resizeInPlace((BigDoubleArray) array, size);
-        } else {
-            AbstractArray arr = (AbstractArray) array;
-            final DoubleArray newArray = newDoubleArray(size, arr.clearOnResize);
-            for (long i = 0, end = Math.min(size, array.size()); i < end; ++i) {
-                newArray.set(i, array.get(i));
+        }
+        final DoubleArrayWrapper wrapper = (DoubleArrayWrapper) array;
+        if (wrapper.isRecycled()) {
+            final long oldSize = wrapper.size();
+            if (size <= wrapper.array.length) {
+                // the page has room for the new size
+                wrapper.setSize(size);
+                if (size > oldSize) {
+                    if (wrapper.clearOnResize) {
+                        Arrays.fill(wrapper.array, (int) oldSize, (int) size, 0);
+                    }
+                    recycledGrowths.inc();
+                }
+                return wrapper;
             }
-            array.close();
+            // the page becomes the first page of a paged array
+            adjustBreaker(BigDoubleArray.estimateRamBytes(size), false);
+            if (wrapper.clearOnResize) {
+                Arrays.fill(wrapper.array, (int) oldSize, wrapper.array.length, 0);
+            }
+            final DoubleArray newArray = new BigDoubleArray(size, this, wrapper.clearOnResize, wrapper.detachPage());
+            wrapper.close();
+            recycledGrowths.inc();
             return newArray;
         }
+        final DoubleArray newArray = newDoubleArray(size, wrapper.clearOnResize);
+        final long numValues = Math.min(size, array.size());
+        for (long i = 0; i < numValues; ++i) {
+            newArray.set(i, array.get(i));
+        }
+        onReallocation(numValues, Double.BYTES);
+        array.close();
+        return newArray;
     }
 
     /** Grow an array to a size that is larger than <code>minSize</code>,
@@ -722,9 +874,11 @@ public class BigArrays {
         } else {
             AbstractArray arr = (AbstractArray) array;
             final FloatArray newArray = newFloatArray(size, arr.clearOnResize);
-            for (long i = 0, end = Math.min(size, array.size()); i < end; ++i) {
+            final long numValues = Math.min(size, array.size());
+            for (long i = 0; i < numValues; ++i) {
                 newArray.set(i, array.get(i));
             }
+            onReallocation(numValues, Float.BYTES);
             arr.close();
             return newArray;
         }
@@ -765,9 +919,11 @@ public class BigArrays {
             return resizeInPlace((BigObjectArray<T>) array, size);
         } else {
             final ObjectArray<T> newArray = newObjectArray(size);
-            for (long i = 0, end = Math.min(size, array.size()); i < end; ++i) {
+            final long numValues = Math.min(size, array.size());
+            for (long i = 0; i < numValues; ++i) {
                 newArray.set(i, array.get(i));
             }
+            onReallocation(numValues, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
             array.close();
             return newArray;
         }
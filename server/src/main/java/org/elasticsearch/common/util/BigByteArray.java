@@ -22,6 +22,7 @@ package org.elasticsearch.common.util;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.recycler.Recycler;
 
 import java.util.Arrays;
 
@@ -47,6 +48,17 @@ final class BigByteArray extends AbstractBigArray implements ByteArray {
         }
     }
 
+    /** Constructor that takes over a page of the recycler, which holds the first values of the array. */
+    BigByteArray(long size, BigArrays bigArrays, boolean clearOnResize, Recycler.V<byte[]> firstPage) {
+        super(BYTE_PAGE_SIZE, bigArrays, clearOnResize);
+        this.size = size;
+        pages = new byte[numPages(size)][];
+        pages[0] = adoptBytePage(firstPage, 0);
+        for (int i = 1; i < pages.length; ++i) {
+            pages[i] = newBytePage(i);
+        }
+    }
+
     @Override
     public byte get(long index) {
         final int pageIndex = pageIndex(index);
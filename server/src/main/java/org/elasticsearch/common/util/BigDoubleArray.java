@@ -21,6 +21,7 @@ package org.elasticsearch.common.util;
 
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.recycler.Recycler;
 
 import java.util.Arrays;
 
@@ -46,6 +47,17 @@ final class BigDoubleArray extends AbstractBigArray implements DoubleArray {
         }
     }
 
+    /** Constructor that takes over a page of the recycler, which holds the first values of the array. */
+    BigDoubleArray(long size, BigArrays bigArrays, boolean clearOnResize, Recycler.V<long[]> firstPage) {
+        super(LONG_PAGE_SIZE, bigArrays, clearOnResize);
+        this.size = size;
+        pages = new long[numPages(size)][];
+        pages[0] = adoptLongPage(firstPage, 0);
+        for (int i = 1; i < pages.length; ++i) {
+            pages[i] = newLongPage(i);
+        }
+    }
+
     @Override
     public double get(long index) {
         final int pageIndex = pageIndex(index);
@@ -21,6 +21,7 @@ package org.elasticsearch.common.util;
 
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.recycler.Recycler;
 
 import java.util.Arrays;
 
@@ -46,6 +47,17 @@ final class BigIntArray extends AbstractBigArray implements IntArray {
         }
     }
 
+    /** Constructor that takes over a page of the recycler, which holds the first values of the array. */
+    BigIntArray(long size, BigArrays bigArrays, boolean clearOnResize, Recycler.V<int[]> firstPage) {
+        super(INT_PAGE_SIZE, bigArrays, clearOnResize);
+        this.size = size;
+        pages = new int[numPages(size)][];
+        pages[0] = adoptIntPage(firstPage, 0);
+        for (int i = 1; i < pages.length; ++i) {
+            pages[i] = newIntPage(i);
+        }
+    }
+
     @Override
     public int get(long index) {
         final int pageIndex = pageIndex(index);
@@ -61,6 +61,18 @@ public class DiscoverySettings {
             Property.Dynamic, Property.NodeScope);
     public static final Setting<Boolean> PUBLISH_DIFF_ENABLE_SETTING =
         Setting.boolSetting("discovery.zen.publish_diff.enable", true, Property.Dynamic, Property.NodeScope);
+    /**
+     * sets how many of the cluster states it recently published the master keeps, to send nodes that lag behind a diff from the
+     * cluster state they last acknowledged rather than a full cluster state
+     */
+    public static final Setting<Integer> PUBLISH_DIFF_HISTORY_SIZE_SETTING =
+        Setting.intSetting("discovery.zen.publish_diff.history_size", 10, 0, Property.Dynamic, Property.NodeScope);
+    /**
+     * sets how many full cluster states the master sends at the same time while publishing, the other nodes that need a full
+     * cluster state get it once one of these sends completes
+     */
+    public static final Setting<Integer> PUBLISH_MAX_CONCURRENT_FULL_STATES_SETTING =
+        Setting.intSetting("discovery.zen.publish.max_concurrent_full_states", 8, 1, Property.Dynamic, Property.NodeScope);
     public static final Setting<TimeValue> INITIAL_STATE_TIMEOUT_SETTING =
         Setting.positiveTimeSetting("discovery.initial_state_timeout", TimeValue.timeValueSeconds(30), Property.NodeScope);
 
@@ -69,16 +81,22 @@ public class DiscoverySettings {
 
     private volatile TimeValue commitTimeout;
     private volatile boolean publishDiff;
+    private volatile int publishDiffHistorySize;
+    private volatile int maxConcurrentFullStates;
 
     public DiscoverySettings(Settings settings, ClusterSettings clusterSettings) {
         clusterSettings.addSettingsUpdateConsumer(NO_MASTER_BLOCK_SETTING, this::setNoMasterBlock);
         clusterSettings.addSettingsUpdateConsumer(PUBLISH_DIFF_ENABLE_SETTING, this::setPublishDiff);
         clusterSettings.addSettingsUpdateConsumer(COMMIT_TIMEOUT_SETTING, this::setCommitTimeout);
         clusterSettings.addSettingsUpdateConsumer(PUBLISH_TIMEOUT_SETTING, this::setPublishTimeout);
+        clusterSettings.addSettingsUpdateConsumer(PUBLISH_DIFF_HISTORY_SIZE_SETTING, this::setPublishDiffHistorySize);
+        clusterSettings.addSettingsUpdateConsumer(PUBLISH_MAX_CONCURRENT_FULL_STATES_SETTING, this::setMaxConcurrentFullStates);
         this.noMasterBlock = NO_MASTER_BLOCK_SETTING.get(settings);
         this.publishTimeout = PUBLISH_TIMEOUT_SETTING.get(settings);
         this.commitTimeout = COMMIT_TIMEOUT_SETTING.get(settings);
         this.publishDiff = PUBLISH_DIFF_ENABLE_SETTING.get(settings);
+        this.publishDiffHistorySize = PUBLISH_DIFF_HISTORY_SIZE_SETTING.get(settings);
+        this.maxConcurrentFullStates = PUBLISH_MAX_CONCURRENT_FULL_STATES_SETTING.get(settings);
     }
 
     /**
@@ -112,8 +130,24 @@ public class DiscoverySettings {
         this.commitTimeout = commitTimeout;
     }
 
+    private void setPublishDiffHistorySize(int publishDiffHistorySize) {
+        this.publishDiffHistorySize = publishDiffHistorySize;
+    }
+
+    private void setMaxConcurrentFullStates(int maxConcurrentFullStates) {
+        this.maxConcurrentFullStates = maxConcurrentFullStates;
+    }
+
     public boolean getPublishDiff() { return publishDiff;}
 
+    public int getPublishDiffHistorySize() {
+        return publishDiffHistorySize;
+    }
+
+    public int getMaxConcurrentFullStates() {
+        return maxConcurrentFullStates;
+    }
+
     private static ClusterBlock parseNoMasterBlock(String value) {
         switch (value) {
             case "all":
@@ -40,6 +40,7 @@ import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.discovery.AckClusterStatePublishResponseHandler;
 import org.elasticsearch.discovery.BlockingClusterStatePublishResponseHandler;
@@ -57,9 +58,14 @@ import org.elasticsearch.transport.TransportResponse;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -101,6 +107,17 @@ public class PublishClusterStateAction {
     private final AtomicLong fullClusterStateReceivedCount = new AtomicLong();
     private final AtomicLong incompatibleClusterStateDiffReceivedCount = new AtomicLong();
     private final AtomicLong compatibleClusterStateDiffReceivedCount = new AtomicLong();
+    private final AtomicLong fullClusterStateSentCount = new AtomicLong();
+    private final AtomicLong clusterStateDiffSentCount = new AtomicLong();
+    private final AtomicLong historyClusterStateDiffSentCount = new AtomicLong();
+    private final AtomicLong delayedFullClusterStateSentCount = new AtomicLong();
+    private final AtomicLong clusterStateSentBytes = new AtomicLong();
+
+    // the cluster states that this node recently published as master by state uuid, from the oldest to the newest. this is only
+    // accessed while preparing a publication, which the master does for one cluster state at a time.
+    private final LinkedHashMap<String, ClusterState> publishedStates = new LinkedHashMap<>();
+    // the cluster states that were sent to each node that this node published to, by ephemeral id of the node
+    private final Map<String, SentClusterStates> sentClusterStates = ConcurrentCollections.newConcurrentMap();
 
     public PublishClusterStateAction(
             TransportService transportService,
@@ -130,9 +147,9 @@ public class PublishClusterStateAction {
         final DiscoveryNodes nodes;
         final SendingController sendingController;
         final Set<DiscoveryNode> nodesToPublishTo;
+        final Map<DiscoveryNode, ClusterState> diffBases;
         final Map<Version, BytesReference> serializedStates;
-        final Map<Version, BytesReference> serializedDiffs;
-        final boolean sendFullVersion;
+        final Map<String, Map<Version, BytesReference>> serializedDiffs;
         try {
             nodes = clusterChangedEvent.state().nodes();
             nodesToPublishTo = new HashSet<>(nodes.getSize());
@@ -143,16 +160,31 @@ public class PublishClusterStateAction {
                     nodesToPublishTo.add(node);
                 }
             }
-            sendFullVersion = !discoverySettings.getPublishDiff() || clusterChangedEvent.previousState() == null;
-            serializedStates = new HashMap<>();
+            final ClusterState previousState = clusterChangedEvent.previousState();
+            if (previousState == null || previousState.nodes().isLocalNodeElectedMaster() == false) {
+                // we were not the master before, so the cluster states that we published earlier may not be what the nodes have now
+                publishedStates.clear();
+                sentClusterStates.clear();
+            }
+            final boolean sendFullVersion = !discoverySettings.getPublishDiff() || previousState == null;
+            diffBases = new HashMap<>();
+            if (sendFullVersion == false) {
+                for (final DiscoveryNode node : nodesToPublishTo) {
+                    final ClusterState diffBase = diffBase(node, previousState);
+                    if (diffBase != null) {
+                        diffBases.put(node, diffBase);
+                    }
+                }
+            }
+            serializedStates = ConcurrentCollections.newConcurrentMap();
             serializedDiffs = new HashMap<>();
 
             // we build these early as a best effort not to commit in the case of error.
             // sadly this is not water tight as it may that a failed diff based publishing to a node
             // will cause a full serialization based on an older version, which may fail after the
             // change has been committed.
-            buildDiffAndSerializeStates(clusterChangedEvent.state(), clusterChangedEvent.previousState(),
-                    nodesToPublishTo, sendFullVersion, serializedStates, serializedDiffs);
+            buildDiffAndSerializeStates(clusterChangedEvent.state(), nodesToPublishTo, diffBases, serializedStates, serializedDiffs);
+            rememberPublishedState(clusterChangedEvent.state());
 
             final BlockingClusterStatePublishResponseHandler publishResponseHandler =
                 new AckClusterStatePublishResponseHandler(nodesToPublishTo, ackListener);
@@ -162,9 +194,11 @@ public class PublishClusterStateAction {
             throw new Discovery.FailedToCommitClusterStateException("unexpected error while preparing to publish", e);
         }
 
+        final FullClusterStateThrottle fullClusterStateThrottle =
+            new FullClusterStateThrottle(discoverySettings.getMaxConcurrentFullStates());
         try {
-            innerPublish(clusterChangedEvent, nodesToPublishTo, sendingController, ackListener, sendFullVersion, serializedStates,
-                serializedDiffs);
+            innerPublish(clusterChangedEvent, nodesToPublishTo, sendingController, ackListener, diffBases, serializedStates,
+                serializedDiffs, fullClusterStateThrottle);
         } catch (Discovery.FailedToCommitClusterStateException t) {
             throw t;
         } catch (Exception e) {
@@ -175,13 +209,18 @@ public class PublishClusterStateAction {
             } else {
                 throw e;
             }
+        } finally {
+            // nodes that don't respond to the full cluster states sent to them must not hold back the delayed ones anymore
+            fullClusterStateThrottle.close();
         }
     }
 
     private void innerPublish(final ClusterChangedEvent clusterChangedEvent, final Set<DiscoveryNode> nodesToPublishTo,
                               final SendingController sendingController, final Discovery.AckListener ackListener,
-                              final boolean sendFullVersion, final Map<Version, BytesReference> serializedStates,
-                              final Map<Version, BytesReference> serializedDiffs) {
+                              final Map<DiscoveryNode, ClusterState> diffBases,
+                              final Map<Version, BytesReference> serializedStates,
+                              final Map<String, Map<Version, BytesReference>> serializedDiffs,
+                              final FullClusterStateThrottle fullClusterStateThrottle) {
 
         final ClusterState clusterState = clusterChangedEvent.state();
         final ClusterState previousState = clusterChangedEvent.previousState();
@@ -189,14 +228,32 @@ public class PublishClusterStateAction {
 
         final long publishingStartInNanos = System.nanoTime();
 
+        // send to the master nodes first, so that committing doesn't wait on full cluster states sent to the other nodes
+        final List<DiscoveryNode> orderedNodes = new ArrayList<>(nodesToPublishTo.size());
         for (final DiscoveryNode node : nodesToPublishTo) {
+            if (node.isMasterNode()) {
+                orderedNodes.add(node);
+            }
+        }
+        for (final DiscoveryNode node : nodesToPublishTo) {
+            if (node.isMasterNode() == false) {
+                orderedNodes.add(node);
+            }
+        }
+
+        for (final DiscoveryNode node : orderedNodes) {
             // try and serialize the cluster state once (or per version), so we don't serialize it
             // per node when we send it over the wire, compress it while we are at it...
-            // we don't send full version if node didn't exist in the previous version of cluster state
-            if (sendFullVersion || !previousState.nodes().nodeExists(node)) {
-                sendFullClusterState(clusterState, serializedStates, node, publishTimeout, sendingController);
+            // we send a full version if we don't know of any cluster state that the node has
+            final ClusterState diffBase = diffBases.get(node);
+            if (diffBase == null) {
+                sendFullClusterState(clusterState, serializedStates, node, publishTimeout, sendingController, fullClusterStateThrottle);
             } else {
-                sendClusterStateDiff(clusterState, serializedDiffs, serializedStates, node, publishTimeout, sendingController);
+                if (diffBase.stateUUID().equals(previousState.stateUUID()) == false) {
+                    historyClusterStateDiffSentCount.incrementAndGet();
+                }
+                sendClusterStateDiff(clusterState, serializedDiffs.get(diffBase.stateUUID()), serializedStates, node, publishTimeout,
+                    sendingController, fullClusterStateThrottle);
             }
         }
 
@@ -230,24 +287,62 @@ public class PublishClusterStateAction {
         }
     }
 
-    private void buildDiffAndSerializeStates(ClusterState clusterState, ClusterState previousState, Set<DiscoveryNode> nodesToPublishTo,
-                                             boolean sendFullVersion, Map<Version, BytesReference> serializedStates,
-                                             Map<Version, BytesReference> serializedDiffs) {
-        Diff<ClusterState> diff = null;
+    /**
+     * Returns the cluster state to send the given node a diff from, which is the last cluster state that we sent to the node if it
+     * didn't fail and we still have it, or the previous cluster state if the node is part of it, or {@code null} if we don't know
+     * of any cluster state that the node has and need to send it the full cluster state.
+     */
+    private ClusterState diffBase(DiscoveryNode node, ClusterState previousState) {
+        final SentClusterStates sentStates = sentClusterStates.get(node.getEphemeralId());
+        if (sentStates != null) {
+            final ClusterState sentState = publishedStates.get(sentStates.sentStateUUID);
+            if (sentState != null) {
+                return sentState;
+            }
+        }
+        return previousState.nodes().nodeExists(node) ? previousState : null;
+    }
+
+    /**
+     * Adds the given cluster state to the recently published ones, evicting the oldest ones beyond the configured history size, and
+     * forgets about the cluster states sent to nodes that can no longer be used to send diffs from.
+     */
+    private void rememberPublishedState(ClusterState clusterState) {
+        final int historySize = discoverySettings.getPublishDiffHistorySize();
+        if (historySize > 0) {
+            publishedStates.put(clusterState.stateUUID(), clusterState);
+        }
+        final Iterator<String> iterator = publishedStates.keySet().iterator();
+        while (publishedStates.size() > historySize) {
+            iterator.next();
+            iterator.remove();
+        }
+        sentClusterStates.values().removeIf(sentStates -> publishedStates.containsKey(sentStates.sentStateUUID) == false);
+    }
+
+    private void buildDiffAndSerializeStates(ClusterState clusterState, Set<DiscoveryNode> nodesToPublishTo,
+                                             Map<DiscoveryNode, ClusterState> diffBases, Map<Version, BytesReference> serializedStates,
+                                             Map<String, Map<Version, BytesReference>> serializedDiffs) {
+        final Map<String, Diff<ClusterState>> diffs = new HashMap<>();
         for (final DiscoveryNode node : nodesToPublishTo) {
             try {
-                if (sendFullVersion || !previousState.nodes().nodeExists(node)) {
+                final ClusterState diffBase = diffBases.get(node);
+                if (diffBase == null) {
                     // will send a full reference
                     if (serializedStates.containsKey(node.getVersion()) == false) {
                         serializedStates.put(node.getVersion(), serializeFullClusterState(clusterState, node.getVersion()));
                     }
                 } else {
-                    // will send a diff
+                    // will send a diff, from the same cluster state as other nodes that have it
+                    Diff<ClusterState> diff = diffs.get(diffBase.stateUUID());
                     if (diff == null) {
-                        diff = clusterState.diff(previousState);
+                        diff = clusterState.diff(diffBase);
+                        diffs.put(diffBase.stateUUID(), diff);
                     }
-                    if (serializedDiffs.containsKey(node.getVersion()) == false) {
-                        serializedDiffs.put(node.getVersion(), serializeDiffClusterState(diff, node.getVersion()));
+                    final Map<Version, BytesReference> serializedDiffsFromBase =
+                        serializedDiffs.computeIfAbsent(diffBase.stateUUID(), uuid -> new HashMap<>());
+                    if (serializedDiffsFromBase.containsKey(node.getVersion()) == false) {
+                        serializedDiffsFromBase.put(node.getVersion(), serializeDiffClusterState(diff, node.getVersion()));
                     }
                 }
             } catch (IOException e) {
@@ -257,36 +352,55 @@ public class PublishClusterStateAction {
     }
 
     private void sendFullClusterState(ClusterState clusterState, Map<Version, BytesReference> serializedStates,
-                                      DiscoveryNode node, TimeValue publishTimeout, SendingController sendingController) {
-        BytesReference bytes = serializedStates.get(node.getVersion());
-        if (bytes == null) {
-            try {
-                bytes = serializeFullClusterState(clusterState, node.getVersion());
-                serializedStates.put(node.getVersion(), bytes);
-            } catch (Exception e) {
-                logger.warn(() -> new ParameterizedMessage("failed to serialize cluster_state before publishing it to node {}", node), e);
-                sendingController.onNodeSendFailed(node, e);
-                return;
+                                      DiscoveryNode node, TimeValue publishTimeout, SendingController sendingController,
+                                      FullClusterStateThrottle fullClusterStateThrottle) {
+        fullClusterStateThrottle.send(node, () -> {
+            BytesReference bytes = serializedStates.get(node.getVersion());
+            if (bytes == null) {
+                try {
+                    bytes = serializeFullClusterState(clusterState, node.getVersion());
+                    serializedStates.put(node.getVersion(), bytes);
+                } catch (Exception e) {
+                    logger.warn(() -> new ParameterizedMessage(
+                        "failed to serialize cluster_state before publishing it to node {}", node), e);
+                    onClusterStateSendFailed(node, clusterState);
+                    fullClusterStateThrottle.onSendCompleted();
+                    sendingController.onNodeSendFailed(node, e);
+                    return;
+                }
             }
-        }
-        sendClusterStateToNode(clusterState, bytes, node, publishTimeout, sendingController, false, serializedStates);
+            fullClusterStateSentCount.incrementAndGet();
+            sendClusterStateToNode(clusterState, bytes, node, publishTimeout, sendingController, false, serializedStates,
+                fullClusterStateThrottle);
+        }, () -> {
+            // the node may have been sent a diff that it couldn't apply
+            onClusterStateSendFailed(node, clusterState);
+            sendingController.onNodeSendFailed(node, new ElasticsearchException(
+                "publishing cluster state [{}] completed before the full cluster state could be sent to node {}",
+                clusterState.version(), node));
+        });
     }
 
     private void sendClusterStateDiff(ClusterState clusterState,
                                       Map<Version, BytesReference> serializedDiffs, Map<Version, BytesReference> serializedStates,
-                                      DiscoveryNode node, TimeValue publishTimeout, SendingController sendingController) {
+                                      DiscoveryNode node, TimeValue publishTimeout, SendingController sendingController,
+                                      FullClusterStateThrottle fullClusterStateThrottle) {
         BytesReference bytes = serializedDiffs.get(node.getVersion());
         assert bytes != null : "failed to find serialized diff for node " + node + " of version [" + node.getVersion() + "]";
-        sendClusterStateToNode(clusterState, bytes, node, publishTimeout, sendingController, true, serializedStates);
+        clusterStateDiffSentCount.incrementAndGet();
+        sendClusterStateToNode(clusterState, bytes, node, publishTimeout, sendingController, true, serializedStates,
+            fullClusterStateThrottle);
     }
 
     private void sendClusterStateToNode(final ClusterState clusterState, BytesReference bytes,
                                         final DiscoveryNode node,
                                         final TimeValue publishTimeout,
                                         final SendingController sendingController,
-                                        final boolean sendDiffs, final Map<Version, BytesReference> serializedStates) {
+                                        final boolean sendDiffs, final Map<Version, BytesReference> serializedStates,
+                                        final FullClusterStateThrottle fullClusterStateThrottle) {
         try {
-
+            onClusterStateSent(node, clusterState);
+            clusterStateSentBytes.addAndGet(bytes.length());
             transportService.sendRequest(node, SEND_ACTION_NAME,
                     new BytesTransportRequest(bytes, node.getVersion()),
                     stateRequestOptions,
@@ -298,6 +412,10 @@ public class PublishClusterStateAction {
                                 logger.debug("node {} responded for cluster state [{}] (took longer than [{}])", node,
                                     clusterState.version(), publishTimeout);
                             }
+                            onClusterStateAcked(node, clusterState);
+                            if (sendDiffs == false) {
+                                fullClusterStateThrottle.onSendCompleted();
+                            }
                             sendingController.onNodeSendAck(node);
                         }
 
@@ -305,19 +423,155 @@ public class PublishClusterStateAction {
                         public void handleException(TransportException exp) {
                             if (sendDiffs && exp.unwrapCause() instanceof IncompatibleClusterStateVersionException) {
                                 logger.debug("resending full cluster state to node {} reason {}", node, exp.getDetailedMessage());
-                                sendFullClusterState(clusterState, serializedStates, node, publishTimeout, sendingController);
+                                sendFullClusterState(clusterState, serializedStates, node, publishTimeout, sendingController,
+                                    fullClusterStateThrottle);
                             } else {
                                 logger.debug(() -> new ParameterizedMessage("failed to send cluster state to {}", node), exp);
+                                onClusterStateSendFailed(node, clusterState);
+                                if (sendDiffs == false) {
+                                    fullClusterStateThrottle.onSendCompleted();
+                                }
                                 sendingController.onNodeSendFailed(node, exp);
                             }
                         }
                     });
         } catch (Exception e) {
             logger.warn(() -> new ParameterizedMessage("error sending cluster state to {}", node), e);
+            onClusterStateSendFailed(node, clusterState);
+            if (sendDiffs == false) {
+                fullClusterStateThrottle.onSendCompleted();
+            }
             sendingController.onNodeSendFailed(node, e);
         }
     }
 
+    private void onClusterStateSent(DiscoveryNode node, ClusterState clusterState) {
+        sentClusterStates.compute(node.getEphemeralId(), (ephemeralId, sentStates) ->
+            new SentClusterStates(sentStates == null ? null : sentStates.ackedStateUUID, clusterState.stateUUID()));
+    }
+
+    private void onClusterStateAcked(DiscoveryNode node, ClusterState clusterState) {
+        sentClusterStates.compute(node.getEphemeralId(), (ephemeralId, sentStates) ->
+            new SentClusterStates(clusterState.stateUUID(), sentStates == null ? clusterState.stateUUID() : sentStates.sentStateUUID));
+    }
+
+    private void onClusterStateSendFailed(DiscoveryNode node, ClusterState clusterState) {
+        // we don't know whether the node has this cluster state, so we assume it still has the one that it acknowledged last
+        sentClusterStates.computeIfPresent(node.getEphemeralId(), (ephemeralId, sentStates) -> {
+            if (clusterState.stateUUID().equals(sentStates.sentStateUUID) == false) {
+                return sentStates;
+            }
+            return sentStates.ackedStateUUID == null ? null : new SentClusterStates(sentStates.ackedStateUUID, sentStates.ackedStateUUID);
+        });
+    }
+
+    /**
+     * The cluster states that the master sent to a node: the last one that the node acknowledged, and the last one that was sent to
+     * the node and didn't fail, which is the one that the node will have when it receives the next cluster state since the node
+     * processes the cluster states it receives in order.
+     */
+    private static final class SentClusterStates {
+
+        final String ackedStateUUID;
+        final String sentStateUUID;
+
+        SentClusterStates(String ackedStateUUID, String sentStateUUID) {
+            this.ackedStateUUID = ackedStateUUID;
+            this.sentStateUUID = sentStateUUID;
+        }
+    }
+
+    /**
+     * Limits how many full cluster states are sent at the same time while publishing a cluster state, so that the master doesn't
+     * buffer a full cluster state for many nodes at once, such as when many nodes join the cluster. The sends beyond the limit are
+     * delayed until earlier ones complete, the ones to master nodes first since they are needed to commit the cluster state.
+     * Since cluster state sends have no timeout, the throttle is closed once publishing completes or times out, which drops the
+     * sends that are still delayed, so that nodes that don't respond can't hold them back forever.
+     */
+    private class FullClusterStateThrottle {
+
+        private final int maxConcurrentSends;
+        private final Deque<DelayedSend> delayedSends = new ArrayDeque<>();
+        private int sendsInFlight;
+        private boolean closed;
+
+        FullClusterStateThrottle(int maxConcurrentSends) {
+            this.maxConcurrentSends = maxConcurrentSends;
+        }
+
+        /**
+         * Runs the given send now if the limit allows it, delays it otherwise, or runs {@code onDropped} if the throttle is closed.
+         */
+        void send(DiscoveryNode node, Runnable send, Runnable onDropped) {
+            final boolean dropped;
+            synchronized (this) {
+                dropped = closed;
+                if (dropped == false) {
+                    if (sendsInFlight >= maxConcurrentSends) {
+                        logger.trace("delaying sending full cluster state to {}, [{}] full cluster states are being sent", node,
+                            sendsInFlight);
+                        delayedFullClusterStateSentCount.incrementAndGet();
+                        final DelayedSend delayedSend = new DelayedSend(node, send, onDropped);
+                        if (node.isMasterNode()) {
+                            delayedSends.addFirst(delayedSend);
+                        } else {
+                            delayedSends.addLast(delayedSend);
+                        }
+                        return;
+                    }
+                    sendsInFlight++;
+                }
+            }
+            if (dropped) {
+                logger.debug("not sending full cluster state to {}, publishing completed", node);
+                onDropped.run();
+            } else {
+                send.run();
+            }
+        }
+
+        void onSendCompleted() {
+            final DelayedSend delayedSend;
+            synchronized (this) {
+                delayedSend = delayedSends.poll();
+                if (delayedSend == null) {
+                    sendsInFlight--;
+                    return;
+                }
+            }
+            delayedSend.send.run();
+        }
+
+        /**
+         * Drops the sends that are still delayed and the ones that come after.
+         */
+        void close() {
+            final List<DelayedSend> droppedSends;
+            synchronized (this) {
+                closed = true;
+                droppedSends = new ArrayList<>(delayedSends);
+                delayedSends.clear();
+            }
+            for (DelayedSend droppedSend : droppedSends) {
+                logger.debug("not sending delayed full cluster state to {}, publishing completed", droppedSend.node);
+                droppedSend.onDropped.run();
+            }
+        }
+    }
+
+    private static final class DelayedSend {
+
+        final DiscoveryNode node;
+        final Runnable send;
+        final Runnable onDropped;
+
+        DelayedSend(DiscoveryNode node, Runnable send, Runnable onDropped) {
+            this.node = node;
+            this.send = send;
+            this.onDropped = onDropped;
+        }
+    }
+
     private void sendCommitToNode(final DiscoveryNode node, final ClusterState clusterState, final SendingController sendingController) {
         try {
             logger.trace("sending commit for cluster state (uuid: [{}], version [{}]) to [{}]",
@@ -656,6 +910,11 @@ public class PublishClusterStateAction {
         return new PublishClusterStateStats(
             fullClusterStateReceivedCount.get(),
             incompatibleClusterStateDiffReceivedCount.get(),
-            compatibleClusterStateDiffReceivedCount.get());
+            compatibleClusterStateDiffReceivedCount.get(),
+            fullClusterStateSentCount.get(),
+            clusterStateDiffSentCount.get(),
+            historyClusterStateDiffSentCount.get(),
+            delayedFullClusterStateSentCount.get(),
+            clusterStateSentBytes.get());
     }
 }
@@ -22,8 +22,10 @@ package org.elasticsearch.discovery.zen;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.ToXContentObject;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 
@@ -35,6 +37,11 @@ public class PublishClusterStateStats implements Writeable, ToXContentObject {
     private final long fullClusterStateReceivedCount;
     private final long incompatibleClusterStateDiffReceivedCount;
     private final long compatibleClusterStateDiffReceivedCount;
+    private final long fullClusterStateSentCount;
+    private final long clusterStateDiffSentCount;
+    private final long historyClusterStateDiffSentCount;
+    private final long delayedFullClusterStateSentCount;
+    private final long clusterStateSentBytes;
 
     /**
      * @param fullClusterStateReceivedCount the number of times this node has received a full copy of the cluster state from the master.
@@ -44,15 +51,57 @@ public class PublishClusterStateStats implements Writeable, ToXContentObject {
     public PublishClusterStateStats(long fullClusterStateReceivedCount,
                                     long incompatibleClusterStateDiffReceivedCount,
                                     long compatibleClusterStateDiffReceivedCount) {
+        this(fullClusterStateReceivedCount, incompatibleClusterStateDiffReceivedCount, compatibleClusterStateDiffReceivedCount,
+            0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param fullClusterStateReceivedCount the number of times this node has received a full copy of the cluster state from the master.
+     * @param incompatibleClusterStateDiffReceivedCount the number of times this node has received a cluster-state diff from the master.
+     * @param compatibleClusterStateDiffReceivedCount the number of times that received cluster-state diffs were compatible with
+     * @param fullClusterStateSentCount the number of times this node has sent a full copy of the cluster state as the master.
+     * @param clusterStateDiffSentCount the number of times this node has sent a cluster-state diff as the master.
+     * @param historyClusterStateDiffSentCount the number of sent cluster-state diffs that were based on a cluster state older than the
+     *                                         previous one, which the receiving node had acknowledged
+     * @param delayedFullClusterStateSentCount the number of full copies of the cluster state whose sending was delayed because too many
+     *                                         other full copies were being sent
+     * @param clusterStateSentBytes the total size of the serialized cluster states and diffs that this node has sent as the master.
+     */
+    public PublishClusterStateStats(long fullClusterStateReceivedCount,
+                                    long incompatibleClusterStateDiffReceivedCount,
+                                    long compatibleClusterStateDiffReceivedCount,
+                                    long fullClusterStateSentCount,
+                                    long clusterStateDiffSentCount,
+                                    long historyClusterStateDiffSentCount,
+                                    long delayedFullClusterStateSentCount,
+                                    long clusterStateSentBytes) {
         this.fullClusterStateReceivedCount = fullClusterStateReceivedCount;
         this.incompatibleClusterStateDiffReceivedCount = incompatibleClusterStateDiffReceivedCount;
         this.compatibleClusterStateDiffReceivedCount = compatibleClusterStateDiffReceivedCount;
+        this.fullClusterStateSentCount = fullClusterStateSentCount;
+        this.clusterStateDiffSentCount = clusterStateDiffSentCount;
+        this.historyClusterStateDiffSentCount = historyClusterStateDiffSentCount;
+        this.delayedFullClusterStateSentCount = delayedFullClusterStateSentCount;
+        this.clusterStateSentBytes = clusterStateSentBytes;
     }
 
     public PublishClusterStateStats(StreamInput in) throws IOException {
         fullClusterStateReceivedCount = in.readVLong();
         incompatibleClusterStateDiffReceivedCount = in.readVLong();
         compatibleClusterStateDiffReceivedCount = in.readVLong();
+        if (in.hasFeature(TransportCapabilities.PUBLISH_DIFF_STATS)) {
+            fullClusterStateSentCount = in.readVLong();
+            clusterStateDiffSentCount = in.readVLong();
+            historyClusterStateDiffSentCount = in.readVLong();
+            delayedFullClusterStateSentCount = in.readVLong();
+            clusterStateSentBytes = in.readVLong();
+        } else {
+            fullClusterStateSentCount = 0;
+            clusterStateDiffSentCount = 0;
+            historyClusterStateDiffSentCount = 0;
+            delayedFullClusterStateSentCount = 0;
+            clusterStateSentBytes = 0;
+        }
     }
 
     @Override
@@ -60,6 +109,13 @@ public class PublishClusterStateStats implements Writeable, ToXContentObject {
         out.writeVLong(fullClusterStateReceivedCount);
         out.writeVLong(incompatibleClusterStateDiffReceivedCount);
         out.writeVLong(compatibleClusterStateDiffReceivedCount);
+        if (out.hasFeature(TransportCapabilities.PUBLISH_DIFF_STATS)) {
+            out.writeVLong(fullClusterStateSentCount);
+            out.writeVLong(clusterStateDiffSentCount);
+            out.writeVLong(historyClusterStateDiffSentCount);
+            out.writeVLong(delayedFullClusterStateSentCount);
+            out.writeVLong(clusterStateSentBytes);
+        }
     }
 
     @Override
@@ -69,6 +125,11 @@ public class PublishClusterStateStats implements Writeable, ToXContentObject {
             builder.field("full_states", fullClusterStateReceivedCount);
             builder.field("incompatible_diffs", incompatibleClusterStateDiffReceivedCount);
             builder.field("compatible_diffs", compatibleClusterStateDiffReceivedCount);
+            builder.field("full_states_sent", fullClusterStateSentCount);
+            builder.field("diffs_sent", clusterStateDiffSentCount);
+            builder.field("history_diffs_sent", historyClusterStateDiffSentCount);
+            builder.field("delayed_full_states_sent", delayedFullClusterStateSentCount);
+            builder.humanReadableField("sent_size_in_bytes", "sent_size", new ByteSizeValue(clusterStateSentBytes));
         }
         builder.endObject();
         return builder;
@@ -80,11 +141,26 @@ public class PublishClusterStateStats implements Writeable, ToXContentObject {
 
     long getCompatibleClusterStateDiffReceivedCount() { return compatibleClusterStateDiffReceivedCount; }
 
+    long getFullClusterStateSentCount() { return fullClusterStateSentCount; }
+
+    long getClusterStateDiffSentCount() { return clusterStateDiffSentCount; }
+
+    long getHistoryClusterStateDiffSentCount() { return historyClusterStateDiffSentCount; }
+
+    long getDelayedFullClusterStateSentCount() { return delayedFullClusterStateSentCount; }
+
+    long getClusterStateSentBytes() { return clusterStateSentBytes; }
+
     @Override
     public String toString() {
         return "PublishClusterStateStats(full=" + fullClusterStateReceivedCount
             + ", incompatible=" + incompatibleClusterStateDiffReceivedCount
             + ", compatible=" + compatibleClusterStateDiffReceivedCount
+            + ", full_sent=" + fullClusterStateSentCount
+            + ", diffs_sent=" + clusterStateDiffSentCount
+            + ", history_diffs_sent=" + historyClusterStateDiffSentCount
+            + ", delayed_full_sent=" + delayedFullClusterStateSentCount
+            + ", sent_bytes=" + clusterStateSentBytes
             + ")";
     }
 }
@@ -48,6 +48,7 @@ import org.elasticsearch.index.analysis.IndexAnalyzers;
 import org.elasticsearch.index.cache.IndexCache;
 import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
 import org.elasticsearch.index.cache.query.QueryCache;
+import org.elasticsearch.index.cache.sketch.SegmentSketchCache;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.EngineFactory;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
@@ -70,6 +71,8 @@ import org.elasticsearch.index.store.DirectoryService;
 import org.elasticsearch.index.store.IndexStore;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.indices.MergeIOGovernor;
+import org.elasticsearch.indices.TranslogGroupCommitService;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService;
 import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
@@ -133,6 +136,8 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
     private final ScriptService scriptService;
     private final Client client;
     private final CircuitBreakerService circuitBreakerService;
+    private final TranslogGroupCommitService translogGroupCommitService;
+    private final MergeIOGovernor mergeIOGovernor;
     private Supplier<Sort> indexSortSupplier;
 
     public IndexService(
@@ -155,13 +160,17 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
             IndicesFieldDataCache indicesFieldDataCache,
             List<SearchOperationListener> searchOperationListeners,
             List<IndexingOperationListener> indexingOperationListeners,
-            NamedWriteableRegistry namedWriteableRegistry) {
+            NamedWriteableRegistry namedWriteableRegistry,
+            TranslogGroupCommitService translogGroupCommitService,
+            MergeIOGovernor mergeIOGovernor) {
         super(indexSettings);
         this.indexSettings = indexSettings;
         this.xContentRegistry = xContentRegistry;
         this.similarityService = similarityService;
         this.namedWriteableRegistry = namedWriteableRegistry;
         this.circuitBreakerService = circuitBreakerService;
+        this.translogGroupCommitService = translogGroupCommitService;
+        this.mergeIOGovernor = mergeIOGovernor;
         this.mapperService = new MapperService(indexSettings, indexAnalyzers, xContentRegistry, similarityService,
             mapperRegistry,
             // we parse all percolator queries as they would be parsed on shard 0
@@ -188,7 +197,8 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
         indexFieldData.setListener(new FieldDataCacheListener(this));
         this.bitsetFilterCache = new BitsetFilterCache(indexSettings, new BitsetCacheListener(this));
         this.warmer = new IndexWarmer(threadPool, indexFieldData, bitsetFilterCache.createListener(threadPool));
-        this.indexCache = new IndexCache(indexSettings, queryCache, bitsetFilterCache);
+        this.indexCache = new IndexCache(indexSettings, queryCache, bitsetFilterCache, new SegmentSketchCache(indexSettings,
+            circuitBreakerService));
         this.engineFactory = Objects.requireNonNull(engineFactory);
         // initialize this last -- otherwise if the wrapper requires any other member to be non-null we fail with an NPE
         this.searcherWrapper = wrapperFactory.newWrapper(this);
@@ -407,7 +417,9 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
                     indexingOperationListeners,
                     () -> globalCheckpointSyncer.accept(shardId),
                     retentionLeaseSyncer,
-                    circuitBreakerService);
+                    circuitBreakerService,
+                    translogGroupCommitService,
+                    mergeIOGovernor);
             eventListener.indexShardStateChanged(indexShard, null, indexShard.state(), "shard created");
             eventListener.afterIndexShardCreated(indexShard);
             shards = newMapBuilder(shards).put(shardId.id(), indexShard).immutableMap();
@@ -461,6 +473,10 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
                 }
                 // call this before we close the store, so we can release resources for it
                 listener.afterIndexShardClosed(sId, indexShard, indexSettings);
+                // don't hold on to the ordinal maps to build the next global ordinals of the shard from
+                indexFieldData.clearShard(sId);
+                // nor to the sketches of its segments that searches may still hold on to
+                indexCache.segmentSketchCache().clearShard(sId);
             }
         } finally {
             try {
@@ -637,6 +653,16 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
                 }
             }
         }
+
+        @Override
+        public void onRemoval(ShardId shardId, String fieldName, boolean wasEvicted, Accountable ramUsage) {
+            if (shardId != null) {
+                final IndexShard shard = indexService.getShardOrNull(shardId.id());
+                if (shard != null) {
+                    shard.fieldData().onRemoval(shardId, fieldName, wasEvicted, ramUsage);
+                }
+            }
+        }
     }
 
     public IndexMetaData getMetaData() {
@@ -674,7 +700,7 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
                             "[{}] failed to notify shard about setting change", shard.shardId().id()), e);
                 }
             }
-            if (refreshTask.getInterval().equals(indexSettings.getRefreshInterval()) == false) {
+            if (refreshTask.getInterval().equals(indexSettings.getScheduledRefreshInterval()) == false) {
                 rescheduleRefreshTasks();
             }
             final Translog.Durability durability = indexSettings.getTranslogDurability();
@@ -690,7 +716,7 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
                 fsyncTask.close();
             }
         } finally {
-            fsyncTask = durability == Translog.Durability.REQUEST ? null : new AsyncTranslogFSync(this);
+            fsyncTask = durability == Translog.Durability.ASYNC ? new AsyncTranslogFSync(this) : null;
         }
     }
 
@@ -741,9 +767,7 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
             for (IndexShard shard : this.shards.values()) {
                 if (shard.isReadAllowed()) {
                     try {
-                        if (shard.isRefreshNeeded()) {
-                            shard.refresh("schedule");
-                        }
+                        shard.scheduledRefresh();
                     } catch (IndexShardClosedException | AlreadyClosedException ex) {
                         // fine - continue;
                     }
@@ -863,7 +887,7 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
     final class AsyncRefreshTask extends BaseAsyncTask {
 
         AsyncRefreshTask(IndexService indexService) {
-            super(indexService, indexService.getIndexSettings().getRefreshInterval());
+            super(indexService, indexService.getIndexSettings().getScheduledRefreshInterval());
         }
 
         @Override
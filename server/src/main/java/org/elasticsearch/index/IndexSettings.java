@@ -189,6 +189,19 @@ public final class IndexSettings {
     public static final Setting<TimeValue> INDEX_REFRESH_INTERVAL_SETTING =
         Setting.timeSetting("index.refresh_interval", DEFAULT_REFRESH_INTERVAL, new TimeValue(-1, TimeUnit.MILLISECONDS),
             Property.Dynamic, Property.IndexScope);
+    /**
+     * If enabled, each shard adapts the interval it is refreshed in to the search demand it observes, within the bounds of
+     * {@link #INDEX_REFRESH_ADAPTIVE_MIN_INTERVAL_SETTING} and {@link #INDEX_REFRESH_ADAPTIVE_MAX_INTERVAL_SETTING}. The
+     * {@link #INDEX_REFRESH_INTERVAL_SETTING refresh interval} is the starting point and {@code -1} still disables scheduled refreshes.
+     */
+    public static final Setting<Boolean> INDEX_REFRESH_ADAPTIVE_SETTING =
+        Setting.boolSetting("index.refresh.adaptive.enabled", false, Property.Dynamic, Property.IndexScope);
+    public static final Setting<TimeValue> INDEX_REFRESH_ADAPTIVE_MIN_INTERVAL_SETTING =
+        Setting.timeSetting("index.refresh.adaptive.min_interval", DEFAULT_REFRESH_INTERVAL, TimeValue.timeValueMillis(1),
+            Property.Dynamic, Property.IndexScope);
+    public static final Setting<TimeValue> INDEX_REFRESH_ADAPTIVE_MAX_INTERVAL_SETTING =
+        Setting.timeSetting("index.refresh.adaptive.max_interval", TimeValue.timeValueSeconds(30), TimeValue.timeValueMillis(1),
+            Property.Dynamic, Property.IndexScope);
     public static final Setting<ByteSizeValue> INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING =
         Setting.byteSizeSetting("index.translog.flush_threshold_size", new ByteSizeValue(512, ByteSizeUnit.MB),
             /*
@@ -286,6 +299,21 @@ public final class IndexSettings {
     public static final Setting<Integer> MAX_REFRESH_LISTENERS_PER_SHARD = Setting.intSetting("index.max_refresh_listeners",
         1000, 0, Property.Dynamic, Property.IndexScope);
 
+    /**
+     * The number of threads that parse the documents of a shard bulk request on the primary. The thread executing the bulk request
+     * takes part in parsing, the others are taken from the {@code write_parse} thread pool, so the default of {@code 1} means that
+     * documents are parsed one after the other as they are indexed.
+     */
+    public static final Setting<Integer> INDEX_BULK_PARSE_PARALLELISM_SETTING = Setting.intSetting("index.bulk.parse_parallelism",
+        1, 1, 32, Property.Dynamic, Property.IndexScope);
+
+    /**
+     * The number of threads that apply the operations of a shard bulk request on a replica. Operations on the same id are always
+     * applied by the same thread, in order. The default of {@code 1} applies all operations one after the other.
+     */
+    public static final Setting<Integer> INDEX_BULK_REPLICA_PARALLELISM_SETTING = Setting.intSetting("index.bulk.replica_parallelism",
+        1, 1, 32, Property.Dynamic, Property.IndexScope);
+
     /**
      * The maximum number of slices allowed in a scroll request
      */
@@ -326,6 +354,13 @@ public final class IndexSettings {
     public static final Setting<Boolean> INDEX_SEARCH_THROTTLED = Setting.boolSetting("index.search.throttled", false,
         Property.IndexScope, Property.PrivateIndex, Property.Dynamic);
 
+    /**
+     * Whether the segments of the shards of an index are split into slices that are searched concurrently on the
+     * {@code search_worker} thread pool.
+     */
+    public static final Setting<Boolean> INDEX_SEARCH_CONCURRENT_SEGMENTS = Setting.boolSetting("index.search.concurrent_segments",
+        false, Property.IndexScope, Property.Dynamic);
+
     private final Index index;
     private final Version version;
     private final Logger logger;
@@ -343,6 +378,9 @@ public final class IndexSettings {
     private volatile Translog.Durability durability;
     private final TimeValue syncInterval;
     private volatile TimeValue refreshInterval;
+    private volatile boolean adaptiveRefresh;
+    private volatile TimeValue adaptiveRefreshMinInterval;
+    private volatile TimeValue adaptiveRefreshMaxInterval;
     private volatile ByteSizeValue flushThresholdSize;
     private volatile TimeValue translogRetentionAge;
     private volatile ByteSizeValue translogRetentionSize;
@@ -383,11 +421,20 @@ public final class IndexSettings {
     private volatile int maxTermsCount;
     private volatile String defaultPipeline;
     private volatile boolean searchThrottled;
+    private volatile boolean searchConcurrentSegments;
 
     /**
      * The maximum number of refresh listeners allows on this shard.
      */
     private volatile int maxRefreshListeners;
+    /**
+     * The number of threads that parse the documents of a shard bulk request on the primary.
+     */
+    private volatile int bulkParseParallelism;
+    /**
+     * The number of threads that apply the operations of a shard bulk request on a replica.
+     */
+    private volatile int bulkReplicaParallelism;
     /**
      * The maximum number of slices allowed in a scroll request.
      */
@@ -472,6 +519,7 @@ public final class IndexSettings {
         numberOfShards = settings.getAsInt(IndexMetaData.SETTING_NUMBER_OF_SHARDS, null);
 
         this.searchThrottled = INDEX_SEARCH_THROTTLED.get(settings);
+        this.searchConcurrentSegments = INDEX_SEARCH_CONCURRENT_SEGMENTS.get(settings);
         this.queryStringLenient = QUERY_STRING_LENIENT_SETTING.get(settings);
         this.queryStringAnalyzeWildcard = QUERY_STRING_ANALYZE_WILDCARD.get(nodeSettings);
         this.queryStringAllowLeadingWildcard = QUERY_STRING_ALLOW_LEADING_WILDCARD.get(nodeSettings);
@@ -480,6 +528,9 @@ public final class IndexSettings {
         defaultFields = scopedSettings.get(DEFAULT_FIELD_SETTING);
         syncInterval = INDEX_TRANSLOG_SYNC_INTERVAL_SETTING.get(settings);
         refreshInterval = scopedSettings.get(INDEX_REFRESH_INTERVAL_SETTING);
+        adaptiveRefresh = scopedSettings.get(INDEX_REFRESH_ADAPTIVE_SETTING);
+        adaptiveRefreshMinInterval = scopedSettings.get(INDEX_REFRESH_ADAPTIVE_MIN_INTERVAL_SETTING);
+        adaptiveRefreshMaxInterval = scopedSettings.get(INDEX_REFRESH_ADAPTIVE_MAX_INTERVAL_SETTING);
         flushThresholdSize = scopedSettings.get(INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING);
         translogRetentionAge = scopedSettings.get(INDEX_TRANSLOG_RETENTION_AGE_SETTING);
         translogRetentionSize = scopedSettings.get(INDEX_TRANSLOG_RETENTION_SIZE_SETTING);
@@ -499,6 +550,8 @@ public final class IndexSettings {
         maxNgramDiff = scopedSettings.get(MAX_NGRAM_DIFF_SETTING);
         maxShingleDiff = scopedSettings.get(MAX_SHINGLE_DIFF_SETTING);
         maxRefreshListeners = scopedSettings.get(MAX_REFRESH_LISTENERS_PER_SHARD);
+        bulkParseParallelism = scopedSettings.get(INDEX_BULK_PARSE_PARALLELISM_SETTING);
+        bulkReplicaParallelism = scopedSettings.get(INDEX_BULK_REPLICA_PARALLELISM_SETTING);
         maxSlicesPerScroll = scopedSettings.get(MAX_SLICES_PER_SCROLL);
         maxAnalyzedOffset = scopedSettings.get(MAX_ANALYZED_OFFSET_SETTING);
         maxTermsCount = scopedSettings.get(MAX_TERMS_COUNT_SETTING);
@@ -549,7 +602,12 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_RETENTION_AGE_SETTING, this::setTranslogRetentionAge);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_RETENTION_SIZE_SETTING, this::setTranslogRetentionSize);
         scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_INTERVAL_SETTING, this::setRefreshInterval);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_ADAPTIVE_SETTING, this::setAdaptiveRefresh);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_ADAPTIVE_MIN_INTERVAL_SETTING, this::setAdaptiveRefreshMinInterval);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_ADAPTIVE_MAX_INTERVAL_SETTING, this::setAdaptiveRefreshMaxInterval);
         scopedSettings.addSettingsUpdateConsumer(MAX_REFRESH_LISTENERS_PER_SHARD, this::setMaxRefreshListeners);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_BULK_PARSE_PARALLELISM_SETTING, this::setBulkParseParallelism);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_BULK_REPLICA_PARALLELISM_SETTING, this::setBulkReplicaParallelism);
         scopedSettings.addSettingsUpdateConsumer(MAX_ANALYZED_OFFSET_SETTING, this::setHighlightMaxAnalyzedOffset);
         scopedSettings.addSettingsUpdateConsumer(MAX_TERMS_COUNT_SETTING, this::setMaxTermsCount);
         scopedSettings.addSettingsUpdateConsumer(MAX_SLICES_PER_SCROLL, this::setMaxSlicesPerScroll);
@@ -558,6 +616,7 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(DEFAULT_PIPELINE, this::setDefaultPipeline);
         scopedSettings.addSettingsUpdateConsumer(INDEX_SOFT_DELETES_RETENTION_OPERATIONS_SETTING, this::setSoftDeleteRetentionOperations);
         scopedSettings.addSettingsUpdateConsumer(INDEX_SEARCH_THROTTLED, this::setSearchThrottled);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_SEARCH_CONCURRENT_SEGMENTS, this::setSearchConcurrentSegments);
         scopedSettings.addSettingsUpdateConsumer(INDEX_SOFT_DELETES_RETENTION_LEASE_PERIOD_SETTING, this::setRetentionLeaseMillis);
     }
 
@@ -585,6 +644,18 @@ public final class IndexSettings {
         this.refreshInterval = timeValue;
     }
 
+    private void setAdaptiveRefresh(boolean adaptiveRefresh) {
+        this.adaptiveRefresh = adaptiveRefresh;
+    }
+
+    private void setAdaptiveRefreshMinInterval(TimeValue timeValue) {
+        this.adaptiveRefreshMinInterval = timeValue;
+    }
+
+    private void setAdaptiveRefreshMaxInterval(TimeValue timeValue) {
+        this.adaptiveRefreshMaxInterval = timeValue;
+    }
+
     /**
      * Returns the settings for this index. These settings contain the node and index level settings where
      * settings that are specified on both index and node level are overwritten by the index settings.
@@ -740,6 +811,38 @@ public final class IndexSettings {
         return refreshInterval;
     }
 
+    /**
+     * Returns <code>true</code> if shards adapt their refresh interval to the search demand they observe.
+     */
+    public boolean isAdaptiveRefreshEnabled() {
+        return adaptiveRefresh;
+    }
+
+    /**
+     * Returns the smallest interval an adaptive refresh schedule narrows down to.
+     */
+    public TimeValue getAdaptiveRefreshMinInterval() {
+        return adaptiveRefreshMinInterval;
+    }
+
+    /**
+     * Returns the largest interval an adaptive refresh schedule widens up to.
+     */
+    public TimeValue getAdaptiveRefreshMaxInterval() {
+        return adaptiveRefreshMaxInterval;
+    }
+
+    /**
+     * Returns the interval in which the scheduled refresh task checks the shards of this index. With adaptive refresh enabled the
+     * task runs in the minimum interval and each shard decides whether it is due. {@code -1} means async refresh is disabled.
+     */
+    public TimeValue getScheduledRefreshInterval() {
+        if (adaptiveRefresh && refreshInterval.millis() > 0) {
+            return adaptiveRefreshMinInterval;
+        }
+        return refreshInterval;
+    }
+
     /**
      * Returns the transaction log threshold size when to forcefully flush the index and clear the transaction log.
      */
@@ -911,6 +1014,28 @@ public final class IndexSettings {
         this.maxRefreshListeners = maxRefreshListeners;
     }
 
+    /**
+     * The number of threads that parse the documents of a shard bulk request on the primary.
+     */
+    public int getBulkParseParallelism() {
+        return bulkParseParallelism;
+    }
+
+    private void setBulkParseParallelism(int bulkParseParallelism) {
+        this.bulkParseParallelism = bulkParseParallelism;
+    }
+
+    /**
+     * The number of threads that apply the operations of a shard bulk request on a replica.
+     */
+    public int getBulkReplicaParallelism() {
+        return bulkReplicaParallelism;
+    }
+
+    private void setBulkReplicaParallelism(int bulkReplicaParallelism) {
+        this.bulkReplicaParallelism = bulkReplicaParallelism;
+    }
+
     /**
      * The maximum number of slices allowed in a scroll request.
      */
@@ -979,4 +1104,16 @@ public final class IndexSettings {
     private void setSearchThrottled(boolean searchThrottled) {
         this.searchThrottled = searchThrottled;
     }
+
+    /**
+     * Returns true if the segments of the shards of this index should be searched concurrently using the
+     * {@link org.elasticsearch.threadpool.ThreadPool.Names#SEARCH_WORKER} thread-pool
+     */
+    public boolean isSearchConcurrentSegments() {
+        return searchConcurrentSegments;
+    }
+
+    private void setSearchConcurrentSegments(boolean searchConcurrentSegments) {
+        this.searchConcurrentSegments = searchConcurrentSegments;
+    }
 }
@@ -89,6 +89,13 @@ import org.elasticsearch.common.unit.ByteSizeValue;
  *     the index. Lower values make the index more space efficient at the
  *     expense of increased CPU and I/O activity. Values must be between <code>20</code> and
  *     <code>50</code>. Default value is <code>33</code>.
+ *
+ * <li><code>index.merge.policy.time_series_field</code>:
+ *
+ *     The numeric or date field holding the timestamp of the documents of a time series index. If set,
+ *     only segments that are adjacent when ordered by their smallest timestamp are merged, which keeps
+ *     the time range of each segment narrow so that range queries on the field can skip whole segments.
+ *     The limits above still apply. Not set by default. This setting is not dynamic.
  * </ul>
  *
  * <p>
@@ -157,6 +164,8 @@ public final class MergePolicyConfig {
     public static final Setting<Double> INDEX_MERGE_POLICY_DELETES_PCT_ALLOWED_SETTING =
         Setting.doubleSetting("index.merge.policy.deletes_pct_allowed", DEFAULT_DELETES_PCT_ALLOWED, 20.0d, 50.0d,
             Property.Dynamic, Property.IndexScope);
+    public static final Setting<String> INDEX_MERGE_POLICY_TIME_SERIES_FIELD_SETTING =
+        Setting.simpleString("index.merge.policy.time_series_field", Property.IndexScope);
     // don't convert to Setting<> and register... we only set this in tests and register via a plugin
     public static final String INDEX_MERGE_ENABLED = "index.merge.enabled";
 
@@ -248,6 +257,19 @@ public final class MergePolicyConfig {
         return mergesEnabled ? mergePolicy : NoMergePolicy.INSTANCE;
     }
 
+    /**
+     * Returns the {@link TieredMergePolicy} that picks the natural merges of the given merge policy, or {@code null} if the
+     * policy doesn't merge tiered.
+     */
+    public static TieredMergePolicy getTieredMergePolicy(MergePolicy mergePolicy) {
+        if (mergePolicy instanceof EsTieredMergePolicy) {
+            return ((EsTieredMergePolicy) mergePolicy).regularMergePolicy;
+        } else if (mergePolicy instanceof TieredMergePolicy) {
+            return (TieredMergePolicy) mergePolicy;
+        }
+        return null;
+    }
+
     private static double parseNoCFSRatio(String noCFSRatio) {
         noCFSRatio = noCFSRatio.trim();
         if (noCFSRatio.equalsIgnoreCase("true")) {
@@ -0,0 +1,238 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.cache.sketch;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Accountable;
+import org.elasticsearch.common.CheckedFunction;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.cache.RemovalListener;
+import org.elasticsearch.common.cache.RemovalNotification;
+import org.elasticsearch.common.lucene.index.ElasticsearchLeafReader;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.AbstractIndexComponent;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache for summaries of the values of a segment, like the hyperloglog sketches of the cardinality aggregation, that let requests
+ * which match all documents of a segment skip collecting them. Entries are keyed on the core of the segment and on a key that
+ * identifies what was summarized, and are dropped when the core of the segment is closed.
+ * <p>
+ * The cache is bounded by {@link #INDEX_CACHE_SEGMENT_SKETCHES_SIZE_SETTING} and evicts the least recently used sketches once it is
+ * full. Cached sketches are charged to the fielddata circuit breaker and reported per shard in the segments stats. It is disabled
+ * unless {@link #INDEX_CACHE_SEGMENT_SKETCHES_SETTING} is set on the index.
+ */
+public final class SegmentSketchCache extends AbstractIndexComponent
+    implements IndexReader.ClosedListener, RemovalListener<SegmentSketchCache.Key, Accountable>, Closeable {
+
+    public static final Setting<Boolean> INDEX_CACHE_SEGMENT_SKETCHES_SETTING =
+        Setting.boolSetting("index.cache.segment_sketches.enable", false, Property.IndexScope, Property.Dynamic);
+
+    public static final Setting<ByteSizeValue> INDEX_CACHE_SEGMENT_SKETCHES_SIZE_SETTING =
+        Setting.byteSizeSetting("index.cache.segment_sketches.size", new ByteSizeValue(10, ByteSizeUnit.MB), Property.IndexScope);
+
+    private final Cache<Key, Accountable> sketches;
+    private final CircuitBreaker breaker;
+    // the memory of the cached sketches per shard, sketches of readers that don't belong to a shard aren't reported
+    private final ConcurrentMap<ShardId, CounterMetric> shardMemory = ConcurrentCollections.newConcurrentMap();
+    // the cores that this cache listens to, so that the listener is only registered once per core
+    private final Set<IndexReader.CacheKey> registeredCoreKeys = ConcurrentCollections.newConcurrentSet();
+    private volatile boolean enabled;
+
+    public SegmentSketchCache(IndexSettings indexSettings, CircuitBreakerService circuitBreakerService) {
+        super(indexSettings);
+        this.sketches = CacheBuilder.<Key, Accountable>builder()
+            .setMaximumWeight(indexSettings.getValue(INDEX_CACHE_SEGMENT_SKETCHES_SIZE_SETTING).getBytes())
+            .weigher((key, sketch) -> sketch.ramBytesUsed())
+            .removalListener(this)
+            .build();
+        this.breaker = circuitBreakerService.getBreaker(CircuitBreaker.FIELDDATA);
+        this.enabled = indexSettings.getValue(INDEX_CACHE_SEGMENT_SKETCHES_SETTING);
+        indexSettings.getScopedSettings().addSettingsUpdateConsumer(INDEX_CACHE_SEGMENT_SKETCHES_SETTING, this::setEnabled);
+    }
+
+    private void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled == false) {
+            clear("disabled");
+        }
+    }
+
+    /**
+     * Whether sketches of segments should be cached for this index.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the sketch of the given segment for the given key, and computes it with the given loader if it isn't cached yet.
+     * The computed sketch is only cached if the fielddata circuit breaker lets it through, and is returned either way.
+     * Returns {@code null} if the segment can't be cached.
+     *
+     * @param key    identifies what the sketch summarizes, the loader must compute the same sketch for equal keys
+     * @param loader computes the sketch of all documents of the segment
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T extends Accountable> T getOrCompute(LeafReaderContext context, Object key,
+                                                  CheckedFunction<LeafReaderContext, T, IOException> loader) throws IOException {
+        final IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+        if (cacheHelper == null) {
+            return null;
+        }
+        final Key cacheKey = new Key(cacheHelper.getKey(), key, shardId(context));
+        final Accountable cached = sketches.get(cacheKey);
+        if (cached != null) {
+            return (T) cached;
+        }
+        final T sketch = loader.apply(context);
+        try {
+            breaker.addEstimateBytesAndMaybeBreak(sketch.ramBytesUsed(), "segment_sketch");
+        } catch (CircuitBreakingException e) {
+            // the sketch is already computed, so use it for this request without caching it
+            logger.trace("not caching the segment sketch of [{}] because the breaker tripped", key);
+            return sketch;
+        }
+        if (registeredCoreKeys.add(cacheKey.coreKey)) {
+            cacheHelper.addClosedListener(this);
+        }
+        if (cacheKey.shardId != null) {
+            shardMemory.computeIfAbsent(cacheKey.shardId, s -> new CounterMetric()).inc(sketch.ramBytesUsed());
+        }
+        // a sketch that was cached concurrently is replaced and released
+        sketches.put(cacheKey, sketch);
+        return sketch;
+    }
+
+    @Nullable
+    private static ShardId shardId(LeafReaderContext context) {
+        final ElasticsearchLeafReader reader = ElasticsearchLeafReader.getElasticsearchLeafReader(context.reader());
+        return reader == null ? null : reader.shardId();
+    }
+
+    @Override
+    public void onRemoval(RemovalNotification<Key, Accountable> notification) {
+        final long ramBytesUsed = notification.getValue().ramBytesUsed();
+        breaker.addWithoutBreaking(-ramBytesUsed);
+        final ShardId shardId = notification.getKey().shardId;
+        if (shardId != null) {
+            final CounterMetric memory = shardMemory.get(shardId);
+            if (memory != null) {
+                memory.dec(ramBytesUsed);
+            }
+        }
+    }
+
+    /**
+     * The memory that the cached sketches take.
+     */
+    public long ramBytesUsed() {
+        return sketches.weight();
+    }
+
+    /**
+     * The memory that the cached sketches of the segments of the given shard take.
+     */
+    public long ramBytesUsed(ShardId shardId) {
+        final CounterMetric memory = shardMemory.get(shardId);
+        return memory == null ? 0 : memory.count();
+    }
+
+    @Override
+    public void onClose(IndexReader.CacheKey ownerCoreCacheKey) {
+        registeredCoreKeys.remove(ownerCoreCacheKey);
+        for (Key key : sketches.keys()) {
+            if (key.coreKey == ownerCoreCacheKey) {
+                sketches.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Releases the sketches of the segments of the specified shard, which is closed, and stops reporting its memory.
+     */
+    public void clearShard(ShardId shardId) {
+        for (Key key : sketches.keys()) {
+            if (shardId.equals(key.shardId)) {
+                sketches.invalidate(key);
+            }
+        }
+        shardMemory.remove(shardId);
+    }
+
+    @Override
+    public void close() {
+        clear("close");
+    }
+
+    public void clear(String reason) {
+        logger.debug("clearing all segment sketches because [{}]", reason);
+        sketches.invalidateAll();
+    }
+
+    static final class Key {
+        private final IndexReader.CacheKey coreKey;
+        private final Object key;
+        // not part of the identity of the entry, only used to report the memory of the shard
+        private final ShardId shardId;
+
+        private Key(IndexReader.CacheKey coreKey, Object key, @Nullable ShardId shardId) {
+            this.coreKey = coreKey;
+            this.key = key;
+            this.shardId = shardId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key other = (Key) o;
+            return coreKey == other.coreKey && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(coreKey, key);
+        }
+    }
+}
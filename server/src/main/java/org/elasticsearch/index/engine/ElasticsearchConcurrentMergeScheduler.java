@@ -25,6 +25,7 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.MergePolicy;
 import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.index.OneMergeHelper;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
@@ -38,15 +39,18 @@ import org.elasticsearch.index.MergeSchedulerConfig;
 import org.elasticsearch.index.merge.MergeStats;
 import org.elasticsearch.index.merge.OnGoingMerge;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.MergeIOGovernor;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An extension to the {@link ConcurrentMergeScheduler} that provides tracking on merge times, total
- * and current merges.
+ * and current merges. If a {@link MergeIOGovernor} is given, the rate of each merge is further limited
+ * to its share of the node wide merge I/O budget.
  */
 class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
 
@@ -66,12 +70,17 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
     private final Set<OnGoingMerge> onGoingMerges = ConcurrentCollections.newConcurrentSet();
     private final Set<OnGoingMerge> readOnlyOnGoingMerges = Collections.unmodifiableSet(onGoingMerges);
     private final MergeSchedulerConfig config;
+    @Nullable
+    private final MergeIOGovernor.Participant governor;
+    private final ConcurrentMap<MergePolicy.OneMerge, MergeIOGovernor.GovernedMerge> governedMerges =
+        ConcurrentCollections.newConcurrentMap();
 
-    ElasticsearchConcurrentMergeScheduler(ShardId shardId, IndexSettings indexSettings) {
+    ElasticsearchConcurrentMergeScheduler(ShardId shardId, IndexSettings indexSettings, @Nullable MergeIOGovernor mergeIOGovernor) {
         this.config = indexSettings.getMergeSchedulerConfig();
         this.shardId = shardId;
         this.indexSettings = indexSettings.getSettings();
         this.logger = Loggers.getLogger(getClass(), shardId);
+        this.governor = mergeIOGovernor == null ? null : mergeIOGovernor.newParticipant(this::updateMergeThreads);
         refreshConfig();
     }
 
@@ -96,12 +105,23 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
                 OneMergeHelper.getSegmentName(merge), merge.segments.size(), totalNumDocs, new ByteSizeValue(totalSizeInBytes),
                 new ByteSizeValue(merge.estimatedMergeBytes));
         }
+        if (governor != null) {
+            governedMerges.put(merge, governor.mergeStarted(merge.estimatedMergeBytes, OneMergeHelper.getSegmentCount(writer)));
+            // the governor announced the share of this merge before we could look it up
+            updateMergeThreads();
+        }
         try {
             beforeMerge(onGoingMerge);
             super.doMerge(writer, merge);
         } finally {
             long tookMS = TimeValue.nsecToMSec(System.nanoTime() - timeNS);
 
+            if (governor != null) {
+                final MergeIOGovernor.GovernedMerge governedMerge = governedMerges.remove(merge);
+                if (governedMerge != null) {
+                    governor.mergeFinished(governedMerge);
+                }
+            }
             onGoingMerges.remove(onGoingMerge);
             afterMerge(onGoingMerge);
 
@@ -167,6 +187,20 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
         return true;
     }
 
+    @Override
+    protected synchronized void updateMergeThreads() {
+        super.updateMergeThreads();
+        if (governor != null) {
+            // the merge threads are written at the lower of the rate picked by the auto throttle and the share of the node budget
+            for (MergeThread thread : mergeThreads) {
+                final MergeIOGovernor.GovernedMerge governedMerge = governedMerges.get(OneMergeHelper.getMerge(thread));
+                if (governedMerge != null && governedMerge.getMBPerSec() < OneMergeHelper.getMbPerSec(thread)) {
+                    OneMergeHelper.setMbPerSec(thread, governedMerge.getMBPerSec());
+                }
+            }
+        }
+    }
+
     @Override
     protected MergeThread getMergeThread(IndexWriter writer, MergePolicy.OneMerge merge) throws IOException {
         MergeThread thread = super.getMergeThread(writer, merge);
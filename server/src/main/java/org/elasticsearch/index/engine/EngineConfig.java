@@ -40,6 +40,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.translog.TranslogConfig;
 import org.elasticsearch.indices.IndexingMemoryController;
+import org.elasticsearch.indices.MergeIOGovernor;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.threadpool.ThreadPool;
 
@@ -94,6 +95,8 @@ public final class EngineConfig {
 
     private final LongSupplier primaryTermSupplier;
     private final TombstoneDocSupplier tombstoneDocSupplier;
+    @Nullable
+    private final MergeIOGovernor mergeIOGovernor;
 
     /**
      * Index setting to change the low level lucene codec used for writing new segments.
@@ -126,6 +129,36 @@ public final class EngineConfig {
     public static final Setting<Boolean> INDEX_OPTIMIZE_AUTO_GENERATED_IDS = Setting.boolSetting("index.optimize_auto_generated_id", true,
         Property.IndexScope, Property.Dynamic, Property.Deprecated);
 
+    /**
+     * The data structures that hold the versions of documents that have been indexed but are not yet visible to the internal reader.
+     */
+    public enum VersionMapType {
+        /** One {@link java.util.concurrent.ConcurrentHashMap} entry per document */
+        CONCURRENT,
+        /** Open addressing hash tables over {@link org.elasticsearch.common.util.BigArrays} pages */
+        PAGED;
+
+        public static VersionMapType fromString(String type) {
+            switch (type) {
+                case "concurrent":
+                    return CONCURRENT;
+                case "paged":
+                    return PAGED;
+                default:
+                    throw new IllegalArgumentException(
+                        "unknown value for [index.version_map.type] must be one of [concurrent, paged] but was: " + type);
+            }
+        }
+    }
+
+    /**
+     * Index setting to select the data structure that keeps track of the versions of un-refreshed documents. <code>paged</code> stores
+     * them in recycled pages rather than in one object per document, which reduces garbage on update heavy indices.
+     * This setting is <b>not</b> realtime updateable.
+     */
+    public static final Setting<VersionMapType> INDEX_VERSION_MAP_TYPE_SETTING = new Setting<>("index.version_map.type", "concurrent",
+        VersionMapType::fromString, Property.IndexScope);
+
     private final TranslogConfig translogConfig;
 
     /**
@@ -143,6 +176,28 @@ public final class EngineConfig {
                         Supplier<RetentionLeases> retentionLeasesSupplier,
                         LongSupplier primaryTermSupplier,
                         TombstoneDocSupplier tombstoneDocSupplier) {
+        this(shardId, allocationId, threadPool, indexSettings, warmer, store, mergePolicy, analyzer, similarity, codecService,
+            eventListener, queryCache, queryCachingPolicy, translogConfig, flushMergesAfter, externalRefreshListener,
+            internalRefreshListener, indexSort, circuitBreakerService, globalCheckpointSupplier, retentionLeasesSupplier,
+            primaryTermSupplier, tombstoneDocSupplier, null);
+    }
+
+    /**
+     * Creates a new {@link org.elasticsearch.index.engine.EngineConfig} whose merges share the node wide budget of the given governor.
+     */
+    public EngineConfig(ShardId shardId, String allocationId, ThreadPool threadPool,
+                        IndexSettings indexSettings, Engine.Warmer warmer, Store store,
+                        MergePolicy mergePolicy, Analyzer analyzer,
+                        Similarity similarity, CodecService codecService, Engine.EventListener eventListener,
+                        QueryCache queryCache, QueryCachingPolicy queryCachingPolicy,
+                        TranslogConfig translogConfig, TimeValue flushMergesAfter,
+                        List<ReferenceManager.RefreshListener> externalRefreshListener,
+                        List<ReferenceManager.RefreshListener> internalRefreshListener, Sort indexSort,
+                        CircuitBreakerService circuitBreakerService, LongSupplier globalCheckpointSupplier,
+                        Supplier<RetentionLeases> retentionLeasesSupplier,
+                        LongSupplier primaryTermSupplier,
+                        TombstoneDocSupplier tombstoneDocSupplier,
+                        @Nullable MergeIOGovernor mergeIOGovernor) {
         this.shardId = shardId;
         this.allocationId = allocationId;
         this.indexSettings = indexSettings;
@@ -181,6 +236,7 @@ public final class EngineConfig {
         this.retentionLeasesSupplier = Objects.requireNonNull(retentionLeasesSupplier);
         this.primaryTermSupplier = primaryTermSupplier;
         this.tombstoneDocSupplier = tombstoneDocSupplier;
+        this.mergeIOGovernor = mergeIOGovernor;
     }
 
     /**
@@ -350,6 +406,13 @@ public final class EngineConfig {
     public List<ReferenceManager.RefreshListener> getInternalRefreshListener() { return internalRefreshListener;}
 
 
+    /**
+     * Returns the data structure the engine uses to keep track of the versions of un-refreshed documents
+     */
+    public VersionMapType getVersionMapType() {
+        return indexSettings.getValue(INDEX_VERSION_MAP_TYPE_SETTING);
+    }
+
     /**
      * returns true if the engine is allowed to optimize indexing operations with an auto-generated ID
      */
@@ -399,4 +462,13 @@ public final class EngineConfig {
     public TombstoneDocSupplier getTombstoneDocSupplier() {
         return tombstoneDocSupplier;
     }
+
+    /**
+     * Returns the governor that shares the node wide merge I/O budget between the shards of the node, or {@code null} if the merges
+     * of this engine are only throttled by its own merge scheduler.
+     */
+    @Nullable
+    public MergeIOGovernor getMergeIOGovernor() {
+        return mergeIOGovernor;
+    }
 }
@@ -23,7 +23,9 @@ import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.KeyedLock;
 
@@ -47,6 +49,9 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
 
         private static final VersionLookup EMPTY = new VersionLookup(Collections.emptyMap());
         private final Map<BytesRef, VersionValue> map;
+        // set instead of the map if the index uses paged version maps, in which case this lookup accounts for its own RAM
+        @Nullable
+        private final PagedVersionMap pagedMap;
 
         // each version map has a notion of safe / unsafe which allows us to apply certain optimization in the auto-generated ID usecase
         // where we know that documents can't have any duplicates so we can skip the version map entirely. This reduces
@@ -66,22 +71,55 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
 
         private VersionLookup(Map<BytesRef, VersionValue> map) {
             this.map = map;
+            this.pagedMap = null;
+        }
+
+        private VersionLookup(PagedVersionMap pagedMap) {
+            this.map = null;
+            this.pagedMap = pagedMap;
         }
 
         VersionValue get(BytesRef key) {
-            return map.get(key);
+            return pagedMap == null ? map.get(key) : pagedMap.get(key);
         }
 
         VersionValue put(BytesRef key, VersionValue value) {
+            assert pagedMap == null : "paged lookups must be updated via putPaged";
             return map.put(key, value);
         }
 
+        void putPaged(BytesRef key, VersionValue value) {
+            pagedMap.put(key, value);
+        }
+
+        boolean isPaged() {
+            return pagedMap != null;
+        }
+
         boolean isEmpty() {
-            return map.isEmpty();
+            return pagedMap == null ? map.isEmpty() : pagedMap.isEmpty();
         }
 
         int size() {
-            return map.size();
+            return pagedMap == null ? map.size() : Math.toIntExact(pagedMap.size());
+        }
+
+        long ramBytesUsed() {
+            return pagedMap == null ? ramBytesUsed.get() : pagedMap.ramBytesUsed();
+        }
+
+        Map<BytesRef, VersionValue> snapshot() {
+            return pagedMap == null ? map : pagedMap.snapshot();
+        }
+
+        /**
+         * Releases the pages held by this lookup, if any. Concurrent readers and writers that still see this lookup will
+         * treat it as empty after this call.
+         */
+        void release() {
+            if (pagedMap != null) {
+                pagedMap.close();
+            }
         }
 
         boolean isUnsafe() {
@@ -92,7 +130,14 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
             unsafe = true;
         }
 
+        /**
+         * Removes the value for the given uid. Paged lookups account for their RAM themselves and don't return the removed value.
+         */
         public VersionValue remove(BytesRef uid) {
+            if (pagedMap != null) {
+                pagedMap.remove(uid);
+                return null;
+            }
             return map.remove(uid);
         }
 
@@ -123,9 +168,8 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
             this.previousMapsNeededSafeAccess = previousMapsNeededSafeAccess;
         }
 
-        Maps() {
-            this(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency()),
-                VersionLookup.EMPTY, false);
+        Maps(VersionLookup current) {
+            this(current, VersionLookup.EMPTY, false);
         }
 
         boolean isSafeAccessMode() {
@@ -142,9 +186,8 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         /**
          * Builds a new map for the refresh transition this should be called in beforeRefresh()
          */
-        Maps buildTransitionMap() {
-            return new Maps(new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(current.size())), current,
-                shouldInheritSafeAccess());
+        Maps buildTransitionMap(VersionLookup newCurrent) {
+            return new Maps(newCurrent, current, shouldInheritSafeAccess());
         }
 
         /**
@@ -155,6 +198,11 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         }
 
         void put(BytesRef uid, VersionValue version) {
+            if (current.isPaged()) {
+                // paged lookups account for the pages they hold
+                current.putPaged(uid, version);
+                return;
+            }
             long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
             long ramAccounting = BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + uidRAMBytesUsed;
             VersionValue previousValue = current.put(uid, version);
@@ -191,10 +239,40 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
     // All deletes also go here, and delete "tombstones" are retained after refresh:
     private final Map<BytesRef, DeleteVersionValue> tombstones = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
 
-    private volatile Maps maps = new Maps();
+    // if non-null the live version lookups are stored in pages allocated from these big arrays, otherwise in concurrent hash maps
+    @Nullable
+    private final BigArrays pagedBigArrays;
+
+    private volatile Maps maps;
     // we maintain a second map that only receives the updates that we skip on the actual map (unsafe ops)
     // this map is only maintained if assertions are enabled
-    private volatile Maps unsafeKeysMap = new Maps();
+    private volatile Maps unsafeKeysMap = new Maps(newConcurrentLookup(0));
+
+    LiveVersionMap() {
+        this(null);
+    }
+
+    /**
+     * Creates a new live version map.
+     *
+     * @param pagedBigArrays if non-null, the live (not yet refreshed) versions are kept in a {@link PagedVersionMap} backed by pages from
+     *                       these big arrays rather than in a concurrent hash map. Tombstones are always kept in a concurrent hash map.
+     */
+    LiveVersionMap(@Nullable BigArrays pagedBigArrays) {
+        this.pagedBigArrays = pagedBigArrays;
+        this.maps = new Maps(newLookup(0));
+    }
+
+    private VersionLookup newLookup(int expectedSize) {
+        if (pagedBigArrays == null) {
+            return newConcurrentLookup(expectedSize);
+        }
+        return new VersionLookup(new PagedVersionMap(pagedBigArrays, expectedSize));
+    }
+
+    private static VersionLookup newConcurrentLookup(int expectedSize) {
+        return new VersionLookup(ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency(expectedSize));
+    }
 
     /**
      * Bytes consumed for each BytesRef UID:
@@ -242,8 +320,8 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         // map.  While reopen is running, any lookup will first
         // try this new map, then fallback to old, then to the
         // current searcher:
-        maps = maps.buildTransitionMap();
-        assert (unsafeKeysMap = unsafeKeysMap.buildTransitionMap()) != null;
+        maps = maps.buildTransitionMap(newLookup(maps.current.size()));
+        assert (unsafeKeysMap = unsafeKeysMap.buildTransitionMap(newConcurrentLookup(unsafeKeysMap.current.size()))) != null;
         // This is not 100% correct, since concurrent indexing ops can change these counters in between our execution of the previous
         // line and this one, but that should be minor, and the error won't accumulate over time:
     }
@@ -257,7 +335,9 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
         // reopen, and so any concurrent indexing requests can still sneak in a few additions to that current map that are in fact
         // reflected in the previous reader.   We don't touch tombstones here: they expire on their own index.gc_deletes timeframe:
 
+        final Maps previousMaps = maps;
         maps = maps.invalidateOldMap();
+        previousMaps.old.release();
         assert (unsafeKeysMap = unsafeKeysMap.invalidateOldMap()) != null;
 
     }
@@ -415,7 +495,11 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * Called when this index is closed.
      */
     synchronized void clear() {
-        maps = new Maps();
+        final Maps previousMaps = maps;
+        // a concurrent lookup doesn't hold on to pages that would need to be released once the index is closed
+        maps = new Maps(newConcurrentLookup(0));
+        previousMaps.current.release();
+        previousMaps.old.release();
         tombstones.clear();
         // NOTE: we can't zero this here, because a refresh thread could be calling InternalEngine.pruneDeletedTombstones at the same time,
         // and this will lead to an assert trip.  Presumably it's fine if our ramBytesUsedTombstones is non-zero after clear since the
@@ -425,7 +509,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
 
     @Override
     public long ramBytesUsed() {
-        return maps.current.ramBytesUsed.get() + ramBytesUsedTombstones.get();
+        return maps.current.ramBytesUsed() + ramBytesUsedTombstones.get();
     }
 
     /**
@@ -433,7 +517,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * don't clear on refresh.
      */
     long ramBytesUsedForRefresh() {
-        return maps.current.ramBytesUsed.get();
+        return maps.current.ramBytesUsed();
     }
 
     /**
@@ -441,7 +525,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * except does not include tombstones because they don't clear on refresh.
      */
     long getRefreshingBytes() {
-        return maps.old.ramBytesUsed.get();
+        return maps.old.ramBytesUsed();
     }
 
     @Override
@@ -454,7 +538,7 @@ final class LiveVersionMap implements ReferenceManager.RefreshListener, Accounta
      * Returns the current internal versions as a point in time snapshot
      */
     Map<BytesRef, VersionValue> getAllCurrent() {
-        return maps.current.map;
+        return maps.current.snapshot();
     }
 
     /** Iterates over all deleted versions, including new ones (not yet exposed via reader) and old ones
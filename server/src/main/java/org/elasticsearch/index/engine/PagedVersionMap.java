@@ -0,0 +1,278 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import com.carrotsearch.hppc.BitMixer;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.index.translog.Translog;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A uid to {@link VersionValue} map that stores its keys and values in pages allocated through {@link BigArrays} instead of
+ * one {@link BytesRef} and one {@link VersionValue} object per entry. Keys are kept in a {@link BytesRefHash} and the version,
+ * seq# and term as well as the translog location are packed into a {@link LongArray} addressed by the key's id. Values are
+ * materialized on lookup, which keeps the long lived part of the map out of the java heap's object graph.
+ *
+ * The map is split into a fixed number of segments that are each guarded by their own monitor so that concurrent indexing
+ * threads working on different ids rarely contend. Entries are never physically removed from a segment, they are only marked as
+ * absent; this is fine since a map only lives until the next refresh after which it is released as a whole.
+ *
+ * Once {@link #close() closed} the map behaves like an empty map and silently ignores writes, which mirrors what happens to writes
+ * that sneak into a {@link java.util.concurrent.ConcurrentHashMap} based map after it has been dropped by a refresh.
+ */
+final class PagedVersionMap implements Releasable {
+
+    private static final long SHALLOW_SIZE = RamUsageEstimator.shallowSizeOfInstance(PagedVersionMap.class);
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int NUM_SEGMENTS = 1 << SEGMENT_BITS;
+    private static final long MIN_SEGMENT_CAPACITY = 16;
+
+    // layout of the longs stored per entry
+    private static final int ENTRY_LONGS = 7;
+    private static final int FLAGS = 0;
+    private static final int VERSION = 1;
+    private static final int SEQ_NO = 2;
+    private static final int TERM = 3;
+    private static final int LOCATION_GENERATION_OR_TIME = 4;
+    private static final int LOCATION_OFFSET = 5;
+    private static final int LOCATION_SIZE = 6;
+
+    private static final long FLAG_PRESENT = 1;
+    private static final long FLAG_DELETE = 1 << 1;
+    private static final long FLAG_HAS_LOCATION = 1 << 2;
+
+    private final Segment[] segments;
+
+    PagedVersionMap(BigArrays bigArrays, long expectedSize) {
+        final long segmentCapacity = Math.max(MIN_SEGMENT_CAPACITY, expectedSize / NUM_SEGMENTS);
+        segments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(bigArrays, segmentCapacity);
+        }
+    }
+
+    private Segment segment(int code) {
+        return segments[BitMixer.mix32(code) >>> (Integer.SIZE - SEGMENT_BITS)];
+    }
+
+    VersionValue get(BytesRef uid) {
+        final int code = uid.hashCode();
+        return segment(code).get(uid, code);
+    }
+
+    void put(BytesRef uid, VersionValue value) {
+        final int code = uid.hashCode();
+        segment(code).put(uid, code, value);
+    }
+
+    void remove(BytesRef uid) {
+        final int code = uid.hashCode();
+        segment(code).remove(uid, code);
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the bytes held by the pages of this map. This is what is freed once the map is closed.
+     */
+    long ramBytesUsed() {
+        long bytes = SHALLOW_SIZE + RamUsageEstimator.shallowSizeOf(segments);
+        for (Segment segment : segments) {
+            bytes += segment.ramBytesUsed();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns a point in time copy of all the entries that are present in this map.
+     */
+    Map<BytesRef, VersionValue> snapshot() {
+        final Map<BytesRef, VersionValue> snapshot = new HashMap<>();
+        for (Segment segment : segments) {
+            segment.copyTo(snapshot);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void close() {
+        Releasables.close(segments);
+    }
+
+    private static final class Segment implements Releasable {
+
+        private final BigArrays bigArrays;
+        private final BytesRefHash uids;
+        private final BytesRef spare = new BytesRef();
+        private LongArray values;
+        private long size;
+        private boolean closed;
+
+        Segment(BigArrays bigArrays, long capacity) {
+            this.bigArrays = bigArrays;
+            boolean success = false;
+            final BytesRefHash uids = new BytesRefHash(capacity, bigArrays);
+            try {
+                this.values = bigArrays.newLongArray(capacity * ENTRY_LONGS, false);
+                success = true;
+            } finally {
+                if (success == false) {
+                    uids.close();
+                }
+            }
+            this.uids = uids;
+        }
+
+        synchronized VersionValue get(BytesRef uid, int code) {
+            if (closed) {
+                return null;
+            }
+            final long id = uids.find(uid, code);
+            if (id < 0) {
+                return null;
+            }
+            return read(id * ENTRY_LONGS);
+        }
+
+        synchronized void put(BytesRef uid, int code, VersionValue value) {
+            if (closed) {
+                return;
+            }
+            long id = uids.add(uid, code);
+            if (id < 0) {
+                id = -1 - id;
+            } else {
+                values = bigArrays.grow(values, (id + 1) * ENTRY_LONGS);
+                values.set(id * ENTRY_LONGS + FLAGS, 0L);
+            }
+            final long base = id * ENTRY_LONGS;
+            if ((values.get(base + FLAGS) & FLAG_PRESENT) == 0) {
+                size++;
+            }
+            long flags = FLAG_PRESENT;
+            values.set(base + VERSION, value.version);
+            values.set(base + SEQ_NO, value.seqNo);
+            values.set(base + TERM, value.term);
+            if (value.isDelete()) {
+                flags |= FLAG_DELETE;
+                values.set(base + LOCATION_GENERATION_OR_TIME, ((DeleteVersionValue) value).time);
+            } else {
+                final Translog.Location location = value.getLocation();
+                if (location != null) {
+                    flags |= FLAG_HAS_LOCATION;
+                    values.set(base + LOCATION_GENERATION_OR_TIME, location.generation);
+                    values.set(base + LOCATION_OFFSET, location.translogLocation);
+                    values.set(base + LOCATION_SIZE, location.size);
+                }
+            }
+            values.set(base + FLAGS, flags);
+        }
+
+        synchronized void remove(BytesRef uid, int code) {
+            if (closed) {
+                return;
+            }
+            final long id = uids.find(uid, code);
+            if (id >= 0) {
+                final long base = id * ENTRY_LONGS;
+                if ((values.get(base + FLAGS) & FLAG_PRESENT) != 0) {
+                    values.set(base + FLAGS, 0L);
+                    size--;
+                }
+            }
+        }
+
+        synchronized long size() {
+            return size;
+        }
+
+        synchronized long ramBytesUsed() {
+            if (closed) {
+                return 0;
+            }
+            return uids.ramBytesUsed() + values.ramBytesUsed();
+        }
+
+        synchronized void copyTo(Map<BytesRef, VersionValue> target) {
+            if (closed) {
+                return;
+            }
+            for (long id = 0; id < uids.size(); id++) {
+                final VersionValue value = read(id * ENTRY_LONGS);
+                if (value != null) {
+                    target.put(BytesRef.deepCopyOf(uids.get(id, spare)), value);
+                }
+            }
+        }
+
+        private VersionValue read(long base) {
+            final long flags = values.get(base + FLAGS);
+            if ((flags & FLAG_PRESENT) == 0) {
+                return null;
+            }
+            final long version = values.get(base + VERSION);
+            final long seqNo = values.get(base + SEQ_NO);
+            final long term = values.get(base + TERM);
+            if ((flags & FLAG_DELETE) != 0) {
+                return new DeleteVersionValue(version, seqNo, term, values.get(base + LOCATION_GENERATION_OR_TIME));
+            }
+            final Translog.Location location;
+            if ((flags & FLAG_HAS_LOCATION) != 0) {
+                location = new Translog.Location(values.get(base + LOCATION_GENERATION_OR_TIME), values.get(base + LOCATION_OFFSET),
+                    (int) values.get(base + LOCATION_SIZE));
+            } else {
+                location = null;
+            }
+            return new IndexVersionValue(location, version, seqNo, term);
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed == false) {
+                closed = true;
+                Releasables.close(uids, values);
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.ToXContent.Params;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 import java.util.Iterator;
@@ -47,6 +48,7 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
     private long versionMapMemoryInBytes;
     private long maxUnsafeAutoIdTimestamp = Long.MIN_VALUE;
     private long bitsetMemoryInBytes;
+    private long segmentSketchMemoryInBytes;
     private ImmutableOpenMap<String, Long> fileSizes = ImmutableOpenMap.of();
 
     /*
@@ -124,6 +126,10 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         this.bitsetMemoryInBytes += bitsetMemoryInBytes;
     }
 
+    public void addSegmentSketchMemoryInBytes(long segmentSketchMemoryInBytes) {
+        this.segmentSketchMemoryInBytes += segmentSketchMemoryInBytes;
+    }
+
     public void addFileSizes(ImmutableOpenMap<String, Long> fileSizes) {
         ImmutableOpenMap.Builder<String, Long> map = ImmutableOpenMap.builder(this.fileSizes);
 
@@ -155,6 +161,7 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         addIndexWriterMemoryInBytes(mergeStats.indexWriterMemoryInBytes);
         addVersionMapMemoryInBytes(mergeStats.versionMapMemoryInBytes);
         addBitsetMemoryInBytes(mergeStats.bitsetMemoryInBytes);
+        addSegmentSketchMemoryInBytes(mergeStats.segmentSketchMemoryInBytes);
         addFileSizes(mergeStats.fileSizes);
     }
 
@@ -275,6 +282,17 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         return new ByteSizeValue(bitsetMemoryInBytes);
     }
 
+    /**
+     * Estimation of how much the cached sketches of segments are taking. (which the cardinality and percentiles aggregations use)
+     */
+    public long getSegmentSketchMemoryInBytes() {
+        return segmentSketchMemoryInBytes;
+    }
+
+    public ByteSizeValue getSegmentSketchMemory() {
+        return new ByteSizeValue(segmentSketchMemoryInBytes);
+    }
+
     public ImmutableOpenMap<String, Long> getFileSizes() {
         return fileSizes;
     }
@@ -301,6 +319,7 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         builder.humanReadableField(Fields.INDEX_WRITER_MEMORY_IN_BYTES, Fields.INDEX_WRITER_MEMORY, getIndexWriterMemory());
         builder.humanReadableField(Fields.VERSION_MAP_MEMORY_IN_BYTES, Fields.VERSION_MAP_MEMORY, getVersionMapMemory());
         builder.humanReadableField(Fields.FIXED_BIT_SET_MEMORY_IN_BYTES, Fields.FIXED_BIT_SET, getBitsetMemory());
+        builder.humanReadableField(Fields.SEGMENT_SKETCH_MEMORY_IN_BYTES, Fields.SEGMENT_SKETCH_MEMORY, getSegmentSketchMemory());
         builder.field(Fields.MAX_UNSAFE_AUTO_ID_TIMESTAMP, maxUnsafeAutoIdTimestamp);
         builder.startObject(Fields.FILE_SIZES);
         for (Iterator<ObjectObjectCursor<String, Long>> it = fileSizes.iterator(); it.hasNext();) {
@@ -339,6 +358,8 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         static final String MAX_UNSAFE_AUTO_ID_TIMESTAMP = "max_unsafe_auto_id_timestamp";
         static final String FIXED_BIT_SET = "fixed_bit_set";
         static final String FIXED_BIT_SET_MEMORY_IN_BYTES = "fixed_bit_set_memory_in_bytes";
+        static final String SEGMENT_SKETCH_MEMORY = "segment_sketch_memory";
+        static final String SEGMENT_SKETCH_MEMORY_IN_BYTES = "segment_sketch_memory_in_bytes";
         static final String FILE_SIZES = "file_sizes";
         static final String SIZE = "size";
         static final String SIZE_IN_BYTES = "size_in_bytes";
@@ -368,6 +389,9 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
             map.put(key, value);
         }
         fileSizes = map.build();
+        if (in.hasFeature(TransportCapabilities.SEGMENT_SKETCH_STATS)) {
+            segmentSketchMemoryInBytes = in.readVLong();
+        }
     }
 
     @Override
@@ -390,5 +414,8 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
             out.writeString(entry.key);
             out.writeLong(entry.value.longValue());
         }
+        if (out.hasFeature(TransportCapabilities.SEGMENT_SKETCH_STATS)) {
+            out.writeVLong(segmentSketchMemoryInBytes);
+        }
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.FilterMergePolicy;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.MergeTrigger;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.core.internal.io.IOUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A merge policy for time series indices that only merges segments that are adjacent in time. The segments are ordered by the
+ * smallest value of a timestamp field and only consecutive runs of segments in that order are merged, using the size based
+ * selection of {@link LogByteSizeMergePolicy}. Merged segments thus never span time ranges that are also covered by segments
+ * they weren't merged with, which keeps the time bounds of segments tight and lets range queries on the timestamp skip whole
+ * segments. The merge limits are derived from the {@link TieredMergePolicy} that picks the natural merges of the wrapped policy, so
+ * that the regular merge settings still apply, and whether merged segments use the compound format is left to the wrapped policy.
+ *
+ * The bounds of a segment are read from the points of the timestamp field once and cached for as long as the segment is around.
+ * Segments without points for the field sort before all others.
+ */
+final class TimeSeriesMergePolicy extends FilterMergePolicy {
+
+    private static final long NO_BOUNDS = Long.MIN_VALUE;
+
+    private final String field;
+    private final TieredMergePolicy tieredMergePolicy;
+    private final LogByteSizeMergePolicy logMergePolicy = new LogByteSizeMergePolicy();
+    // the smallest timestamp per segment, keyed by the unique id of the segment
+    private final Map<String, Long> minTimestamps = new HashMap<>();
+
+    TimeSeriesMergePolicy(String field, TieredMergePolicy in) {
+        this(field, in, in);
+    }
+
+    TimeSeriesMergePolicy(String field, MergePolicy in, TieredMergePolicy tieredMergePolicy) {
+        super(in);
+        this.field = field;
+        this.tieredMergePolicy = tieredMergePolicy;
+    }
+
+    @Override
+    public MergeSpecification findMerges(MergeTrigger mergeTrigger, SegmentInfos segmentInfos, MergeContext mergeContext)
+        throws IOException {
+        return configuredLogMergePolicy().findMerges(mergeTrigger, sortByTime(segmentInfos), mergeContext);
+    }
+
+    @Override
+    public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount,
+                                               Map<SegmentCommitInfo, Boolean> segmentsToMerge, MergeContext mergeContext)
+        throws IOException {
+        return configuredLogMergePolicy().findForcedMerges(sortByTime(segmentInfos), maxSegmentCount, segmentsToMerge, mergeContext);
+    }
+
+    @Override
+    public MergeSpecification findForcedDeletesMerges(SegmentInfos segmentInfos, MergeContext mergeContext) throws IOException {
+        return configuredLogMergePolicy().findForcedDeletesMerges(sortByTime(segmentInfos), mergeContext);
+    }
+
+    private synchronized LogByteSizeMergePolicy configuredLogMergePolicy() {
+        logMergePolicy.setMergeFactor(tieredMergePolicy.getMaxMergeAtOnce());
+        logMergePolicy.setMinMergeMB(tieredMergePolicy.getFloorSegmentMB());
+        logMergePolicy.setMaxMergeMB(maxMergeMB(tieredMergePolicy));
+        return logMergePolicy;
+    }
+
+    /**
+     * The size of the largest segments that take part in natural merges. The max merged segment size of the tiered policy limits
+     * the size of the segments that merges produce, while the max merge size of the log policy limits the size of the segments that
+     * are merged. The tiered policy leaves segments that are at least half of its max merged segment size alone, so the log policy
+     * stops merging segments at the same size.
+     */
+    static double maxMergeMB(TieredMergePolicy tieredMergePolicy) {
+        return tieredMergePolicy.getMaxMergedSegmentMB() / 2;
+    }
+
+    /**
+     * Returns a copy of the given segments ordered by their smallest timestamp.
+     */
+    synchronized SegmentInfos sortByTime(SegmentInfos segmentInfos) throws IOException {
+        final Set<String> liveSegments = new HashSet<>();
+        final List<SegmentCommitInfo> segments = new ArrayList<>(segmentInfos.size());
+        for (SegmentCommitInfo info : segmentInfos) {
+            final String id = StringHelper.idToString(info.info.getId());
+            liveSegments.add(id);
+            if (minTimestamps.containsKey(id) == false) {
+                minTimestamps.put(id, readMinTimestamp(info, field));
+            }
+            segments.add(info);
+        }
+        // forget about segments that were merged away
+        minTimestamps.keySet().retainAll(liveSegments);
+        // stable so that segments without bounds keep their order
+        segments.sort(Comparator.comparingLong(info -> minTimestamps.get(StringHelper.idToString(info.info.getId()))));
+        final SegmentInfos sorted = new SegmentInfos(segmentInfos.getIndexCreatedVersionMajor());
+        sorted.addAll(segments);
+        return sorted;
+    }
+
+    /**
+     * Reads the smallest value of the given field in the given segment from the points of the segment, without opening a reader on
+     * all of its files.
+     */
+    static long readMinTimestamp(SegmentCommitInfo info, String field) throws IOException {
+        final Codec codec = info.info.getCodec();
+        Directory cfs = null;
+        try {
+            Directory dir = info.info.dir;
+            if (info.info.getUseCompoundFile()) {
+                cfs = codec.compoundFormat().getCompoundReader(dir, info.info, IOContext.READONCE);
+                dir = cfs;
+            }
+            final FieldInfos fieldInfos;
+            if (info.hasFieldUpdates()) {
+                // field infos of segments with doc values updates are written next to the segment, see SegmentReader
+                fieldInfos = codec.fieldInfosFormat().read(info.info.dir, info.info,
+                    Long.toString(info.getFieldInfosGen(), Character.MAX_RADIX), IOContext.READONCE);
+            } else {
+                fieldInfos = codec.fieldInfosFormat().read(dir, info.info, "", IOContext.READONCE);
+            }
+            final FieldInfo fieldInfo = fieldInfos.fieldInfo(field);
+            if (fieldInfo == null || fieldInfo.getPointDimensionCount() != 1) {
+                return NO_BOUNDS;
+            }
+            try (PointsReader reader = codec.pointsFormat().fieldsReader(
+                new SegmentReadState(dir, info.info, fieldInfos, IOContext.READONCE))) {
+                final PointValues values = reader.getValues(field);
+                if (values == null || values.size() == 0) {
+                    return NO_BOUNDS;
+                }
+                switch (values.getBytesPerDimension()) {
+                    case Long.BYTES:
+                        return LongPoint.decodeDimension(values.getMinPackedValue(), 0);
+                    case Integer.BYTES:
+                        return IntPoint.decodeDimension(values.getMinPackedValue(), 0);
+                    default:
+                        return NO_BOUNDS;
+                }
+            }
+        } finally {
+            IOUtils.close(cfs);
+        }
+    }
+}
@@ -25,8 +25,10 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -38,24 +40,46 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
     private static final String MEMORY_SIZE_IN_BYTES = "memory_size_in_bytes";
     private static final String EVICTIONS = "evictions";
     private static final String FIELDS = "fields";
+    private static final String GLOBAL_ORDINALS = "global_ordinals";
+    private static final String BUILDS = "builds";
+    private static final String INCREMENTAL_BUILDS = "incremental_builds";
+    private static final String BUILD_TIME = "build_time";
+    private static final String BUILD_TIME_IN_MILLIS = "build_time_in_millis";
     long memorySize;
     long evictions;
     @Nullable
     FieldMemoryStats fields;
+    long globalOrdinalsMemorySize;
+    long globalOrdinalsBuilds;
+    long globalOrdinalsIncrementalBuilds;
+    long globalOrdinalsBuildTimeInMillis;
 
     public FieldDataStats() {
 
     }
 
     public FieldDataStats(long memorySize, long evictions, @Nullable FieldMemoryStats fields) {
+        this(memorySize, evictions, fields, 0, 0, 0, 0);
+    }
+
+    public FieldDataStats(long memorySize, long evictions, @Nullable FieldMemoryStats fields, long globalOrdinalsMemorySize,
+                          long globalOrdinalsBuilds, long globalOrdinalsIncrementalBuilds, long globalOrdinalsBuildTimeInMillis) {
         this.memorySize = memorySize;
         this.evictions = evictions;
         this.fields = fields;
+        this.globalOrdinalsMemorySize = globalOrdinalsMemorySize;
+        this.globalOrdinalsBuilds = globalOrdinalsBuilds;
+        this.globalOrdinalsIncrementalBuilds = globalOrdinalsIncrementalBuilds;
+        this.globalOrdinalsBuildTimeInMillis = globalOrdinalsBuildTimeInMillis;
     }
 
     public void add(FieldDataStats stats) {
         this.memorySize += stats.memorySize;
         this.evictions += stats.evictions;
+        this.globalOrdinalsMemorySize += stats.globalOrdinalsMemorySize;
+        this.globalOrdinalsBuilds += stats.globalOrdinalsBuilds;
+        this.globalOrdinalsIncrementalBuilds += stats.globalOrdinalsIncrementalBuilds;
+        this.globalOrdinalsBuildTimeInMillis += stats.globalOrdinalsBuildTimeInMillis;
         if (stats.fields != null) {
             if (fields == null) {
                 fields = stats.fields.copy();
@@ -82,11 +106,45 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
         return fields;
     }
 
+    /**
+     * The memory used by the global ordinals that are currently loaded, which is included in the memory size.
+     */
+    public ByteSizeValue getGlobalOrdinalsMemorySize() {
+        return new ByteSizeValue(globalOrdinalsMemorySize);
+    }
+
+    /**
+     * The number of times global ordinals were built.
+     */
+    public long getGlobalOrdinalsBuilds() {
+        return globalOrdinalsBuilds;
+    }
+
+    /**
+     * The number of times global ordinals were built from the global ordinals of an older reader.
+     */
+    public long getGlobalOrdinalsIncrementalBuilds() {
+        return globalOrdinalsIncrementalBuilds;
+    }
+
+    /**
+     * The total time spent building global ordinals.
+     */
+    public TimeValue getGlobalOrdinalsBuildTime() {
+        return new TimeValue(globalOrdinalsBuildTimeInMillis);
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         memorySize = in.readVLong();
         evictions = in.readVLong();
         fields = in.readOptionalWriteable(FieldMemoryStats::new);
+        if (in.hasFeature(TransportCapabilities.GLOBAL_ORDINALS_STATS)) {
+            globalOrdinalsMemorySize = in.readVLong();
+            globalOrdinalsBuilds = in.readVLong();
+            globalOrdinalsIncrementalBuilds = in.readVLong();
+            globalOrdinalsBuildTimeInMillis = in.readVLong();
+        }
     }
 
     @Override
@@ -94,6 +152,12 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
         out.writeVLong(memorySize);
         out.writeVLong(evictions);
         out.writeOptionalWriteable(fields);
+        if (out.hasFeature(TransportCapabilities.GLOBAL_ORDINALS_STATS)) {
+            out.writeVLong(globalOrdinalsMemorySize);
+            out.writeVLong(globalOrdinalsBuilds);
+            out.writeVLong(globalOrdinalsIncrementalBuilds);
+            out.writeVLong(globalOrdinalsBuildTimeInMillis);
+        }
     }
 
     @Override
@@ -104,6 +168,12 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
         if (fields != null) {
             fields.toXContent(builder, FIELDS, MEMORY_SIZE_IN_BYTES, MEMORY_SIZE);
         }
+        builder.startObject(GLOBAL_ORDINALS);
+        builder.humanReadableField(MEMORY_SIZE_IN_BYTES, MEMORY_SIZE, getGlobalOrdinalsMemorySize());
+        builder.field(BUILDS, globalOrdinalsBuilds);
+        builder.field(INCREMENTAL_BUILDS, globalOrdinalsIncrementalBuilds);
+        builder.humanReadableField(BUILD_TIME_IN_MILLIS, BUILD_TIME, getGlobalOrdinalsBuildTime());
+        builder.endObject();
         builder.endObject();
         return builder;
     }
@@ -115,11 +185,16 @@ public class FieldDataStats implements Streamable, ToXContentFragment {
         FieldDataStats that = (FieldDataStats) o;
         return memorySize == that.memorySize &&
             evictions == that.evictions &&
-            Objects.equals(fields, that.fields);
+            Objects.equals(fields, that.fields) &&
+            globalOrdinalsMemorySize == that.globalOrdinalsMemorySize &&
+            globalOrdinalsBuilds == that.globalOrdinalsBuilds &&
+            globalOrdinalsIncrementalBuilds == that.globalOrdinalsIncrementalBuilds &&
+            globalOrdinalsBuildTimeInMillis == that.globalOrdinalsBuildTimeInMillis;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(memorySize, evictions, fields);
+        return Objects.hash(memorySize, evictions, fields, globalOrdinalsMemorySize, globalOrdinalsBuilds,
+            globalOrdinalsIncrementalBuilds, globalOrdinalsBuildTimeInMillis);
     }
 }
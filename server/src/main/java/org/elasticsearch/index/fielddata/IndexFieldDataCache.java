@@ -22,6 +22,7 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.util.Accountable;
+import org.elasticsearch.index.fielddata.ordinals.IncrementalOrdinalMap;
 import org.elasticsearch.index.shard.ShardId;
 
 /**
@@ -44,6 +45,20 @@ public interface IndexFieldDataCache {
      */
     void clear(String fieldName);
 
+    /**
+     * Releases what is held on to for the specified shard, which is closed.
+     */
+    default void clear(ShardId shardId) {
+    }
+
+    /**
+     * Returns the ordinal map of the global ordinals that were last loaded through this cache for the shard of the given reader,
+     * which may have been built for an older reader of the shard, or {@code null} if there is none.
+     */
+    default IncrementalOrdinalMap lastGlobalOrdinalMap(DirectoryReader indexReader) {
+        return null;
+    }
+
     interface Listener {
 
         /**
@@ -55,6 +70,13 @@ public interface IndexFieldDataCache {
          * Called after the fielddata is unloaded
          */
         default void onRemoval(ShardId shardId, String fieldName, boolean wasEvicted, long sizeInBytes){}
+
+        /**
+         * Called after the fielddata is unloaded, with the fielddata that was unloaded
+         */
+        default void onRemoval(ShardId shardId, String fieldName, boolean wasEvicted, Accountable ramUsage) {
+            onRemoval(shardId, fieldName, wasEvicted, ramUsage.ramBytesUsed());
+        }
     }
 
     class None implements IndexFieldDataCache {
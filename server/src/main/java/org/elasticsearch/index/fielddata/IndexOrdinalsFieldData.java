@@ -21,7 +21,10 @@ package org.elasticsearch.index.fielddata;
 
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.util.LongValues;
+import org.elasticsearch.common.Nullable;
 
 
 /**
@@ -47,4 +50,14 @@ public interface IndexOrdinalsFieldData extends IndexFieldData.Global<AtomicOrdi
      * or null if global ordinals are not needed (constant value or single segment).
      */
     OrdinalMap getOrdinalMap();
+
+    /**
+     * Returns the mapping from the ordinals of the segment of the given context to global ordinals
+     * or null if the ordinals of the segment are global already.
+     */
+    @Nullable
+    default LongValues getGlobalOrds(LeafReaderContext context) {
+        final OrdinalMap ordinalMap = getOrdinalMap();
+        return ordinalMap == null ? null : ordinalMap.getGlobalOrds(context.ord);
+    }
 }
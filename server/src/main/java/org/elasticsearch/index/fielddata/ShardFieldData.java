@@ -25,6 +25,7 @@ import org.elasticsearch.common.FieldMemoryStats;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
 import org.elasticsearch.index.shard.ShardId;
 
 import java.util.Map;
@@ -35,6 +36,10 @@ public class ShardFieldData implements IndexFieldDataCache.Listener {
     private final CounterMetric evictionsMetric = new CounterMetric();
     private final CounterMetric totalMetric = new CounterMetric();
     private final ConcurrentMap<String, CounterMetric> perFieldTotals = ConcurrentCollections.newConcurrentMap();
+    private final CounterMetric globalOrdinalsMetric = new CounterMetric();
+    private final CounterMetric globalOrdinalsBuildsMetric = new CounterMetric();
+    private final CounterMetric globalOrdinalsIncrementalBuildsMetric = new CounterMetric();
+    private final CounterMetric globalOrdinalsBuildTimeMetric = new CounterMetric();
 
     public FieldDataStats stats(String... fields) {
         ObjectLongHashMap<String> fieldTotals = null;
@@ -47,11 +52,21 @@ public class ShardFieldData implements IndexFieldDataCache.Listener {
             }
         }
         return new FieldDataStats(totalMetric.count(), evictionsMetric.count(), fieldTotals == null ? null :
-            new FieldMemoryStats(fieldTotals));
+            new FieldMemoryStats(fieldTotals), globalOrdinalsMetric.count(), globalOrdinalsBuildsMetric.count(),
+            globalOrdinalsIncrementalBuildsMetric.count(), globalOrdinalsBuildTimeMetric.count());
     }
 
     @Override
     public void onCache(ShardId shardId, String fieldName, Accountable ramUsage) {
+        if (ramUsage instanceof GlobalOrdinalsIndexFieldData) {
+            GlobalOrdinalsIndexFieldData globalOrdinals = (GlobalOrdinalsIndexFieldData) ramUsage;
+            globalOrdinalsMetric.inc(globalOrdinals.ramBytesUsed());
+            globalOrdinalsBuildsMetric.inc();
+            if (globalOrdinals.getIncrementalOrdinalMap().isIncremental()) {
+                globalOrdinalsIncrementalBuildsMetric.inc();
+            }
+            globalOrdinalsBuildTimeMetric.inc(globalOrdinals.getBuildTimeInMillis());
+        }
         totalMetric.inc(ramUsage.ramBytesUsed());
         CounterMetric total = perFieldTotals.get(fieldName);
         if (total != null) {
@@ -66,6 +81,14 @@ public class ShardFieldData implements IndexFieldDataCache.Listener {
         }
     }
 
+    @Override
+    public void onRemoval(ShardId shardId, String fieldName, boolean wasEvicted, Accountable ramUsage) {
+        if (ramUsage instanceof GlobalOrdinalsIndexFieldData) {
+            globalOrdinalsMetric.dec(ramUsage.ramBytesUsed());
+        }
+        onRemoval(shardId, fieldName, wasEvicted, ramUsage.ramBytesUsed());
+    }
+
     @Override
     public void onRemoval(ShardId shardId, String fieldName, boolean wasEvicted, long sizeInBytes) {
         if (wasEvicted) {
@@ -24,7 +24,11 @@ import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.fielddata.AtomicOrdinalsFieldData;
@@ -35,6 +39,8 @@ import org.elasticsearch.index.fielddata.ScriptDocValues;
 import org.elasticsearch.index.fielddata.plain.AbstractAtomicOrdinalsFieldData;
 import org.elasticsearch.search.MultiValueMode;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.function.Function;
@@ -42,28 +48,35 @@ import java.util.function.Function;
 /**
  * {@link IndexFieldData} base class for concrete global ordinals implementations.
  */
-public class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent implements IndexOrdinalsFieldData, Accountable {
+public class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent implements IndexOrdinalsFieldData, Accountable, Releasable {
 
     private final String fieldName;
     private final long memorySizeInBytes;
+    private final long buildTimeInMillis;
 
-    private final OrdinalMap ordinalMap;
+    private final IncrementalOrdinalMap ordinalMap;
     private final Atomic[] atomicReaders;
     private final Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction;
+    private final CircuitBreaker breaker;
 
+    // built on first use if the ordinal map was built incrementally, written under the lock of this
+    private volatile OrdinalMap luceneOrdinalMap;
+    private long luceneOrdinalMapSizeInBytes;
 
     protected GlobalOrdinalsIndexFieldData(IndexSettings indexSettings, String fieldName, AtomicOrdinalsFieldData[] segmentAfd,
-                                           OrdinalMap ordinalMap, long memorySizeInBytes, Function<SortedSetDocValues,
-                                           ScriptDocValues<?>> scriptFunction) {
+                                           IncrementalOrdinalMap ordinalMap, long memorySizeInBytes, long buildTimeInMillis,
+                                           CircuitBreaker breaker, Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) {
         super(indexSettings);
         this.fieldName = fieldName;
         this.memorySizeInBytes = memorySizeInBytes;
+        this.buildTimeInMillis = buildTimeInMillis;
         this.ordinalMap = ordinalMap;
         this.atomicReaders = new Atomic[segmentAfd.length];
         for (int i = 0; i < segmentAfd.length; i++) {
             atomicReaders[i] = new Atomic(segmentAfd[i], ordinalMap, i);
         }
         this.scriptFunction = scriptFunction;
+        this.breaker = breaker;
     }
 
     @Override
@@ -112,18 +125,81 @@ public class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent impleme
         return atomicReaders[context.ord];
     }
 
+    /**
+     * Returns a Lucene {@link OrdinalMap} with the same global ordinals. If the global ordinals were built incrementally it is built
+     * from scratch the first time it is asked for, so consumers should use {@link #getGlobalOrds(LeafReaderContext)} where they can.
+     * Fields that are queried through the Lucene map, such as join fields, build their global ordinals from scratch so that they
+     * never get here.
+     */
     @Override
     public OrdinalMap getOrdinalMap() {
+        if (ordinalMap.getLuceneOrdinalMap() != null) {
+            return ordinalMap.getLuceneOrdinalMap();
+        }
+        final OrdinalMap built = luceneOrdinalMap;
+        if (built != null) {
+            return built;
+        }
+        return buildLuceneOrdinalMap();
+    }
+
+    private synchronized OrdinalMap buildLuceneOrdinalMap() {
+        if (luceneOrdinalMap == null) {
+            final SortedSetDocValues[] subs = new SortedSetDocValues[atomicReaders.length];
+            for (int i = 0; i < subs.length; i++) {
+                subs[i] = atomicReaders[i].afd.getOrdinalsValues();
+            }
+            final OrdinalMap built;
+            try {
+                built = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            luceneOrdinalMapSizeInBytes = built.ramBytesUsed();
+            breaker.addWithoutBreaking(luceneOrdinalMapSizeInBytes);
+            luceneOrdinalMap = built;
+        }
+        return luceneOrdinalMap;
+    }
+
+    @Override
+    public LongValues getGlobalOrds(LeafReaderContext context) {
+        return ordinalMap.getGlobalOrds(context.ord);
+    }
+
+    /**
+     * Returns the mapping of segment ordinals to global ordinals.
+     */
+    public IncrementalOrdinalMap getIncrementalOrdinalMap() {
         return ordinalMap;
     }
 
+    /**
+     * Returns how long it took to build the global ordinals.
+     */
+    public long getBuildTimeInMillis() {
+        return buildTimeInMillis;
+    }
+
+    /**
+     * Releases the Lucene {@link OrdinalMap} if one was built on demand, called once the global ordinals are removed from the cache.
+     */
+    @Override
+    public synchronized void close() {
+        if (luceneOrdinalMap != null) {
+            breaker.addWithoutBreaking(-luceneOrdinalMapSizeInBytes);
+            luceneOrdinalMap = null;
+            luceneOrdinalMapSizeInBytes = 0;
+        }
+    }
+
     private final class Atomic extends AbstractAtomicOrdinalsFieldData {
 
         private final AtomicOrdinalsFieldData afd;
-        private final OrdinalMap ordinalMap;
+        private final IncrementalOrdinalMap ordinalMap;
         private final int segmentIndex;
 
-        private Atomic(AtomicOrdinalsFieldData afd, OrdinalMap ordinalMap, int segmentIndex) {
+        private Atomic(AtomicOrdinalsFieldData afd, IncrementalOrdinalMap ordinalMap, int segmentIndex) {
             super(scriptFunction);
             this.afd = afd;
             this.ordinalMap = ordinalMap;
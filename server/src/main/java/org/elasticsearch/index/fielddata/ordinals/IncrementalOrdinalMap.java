@@ -0,0 +1,487 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+import org.apache.lucene.util.packed.PagedGrowableWriter;
+import org.elasticsearch.common.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the ordinals of the segments of a reader to global ordinals, like Lucene's {@link OrdinalMap}, but can also be built from the
+ * map of an older reader of the same shard. The segments that both readers share then keep their place in the global ordinals and only
+ * the terms of the new segments are merged in, by looking up where each of them falls among the terms of the older map, rather than
+ * merging the term dictionaries of all segments again. The mapping of the shared segments is carried over by remapping their
+ * ordinals, without looking at their terms. Segments of the older reader that are gone, because they were merged away, only cost a
+ * pass over the ordinals of the remaining segments to drop the terms that nothing refers to anymore.
+ *
+ * Maps that are built from scratch wrap a Lucene {@link OrdinalMap}.
+ */
+public abstract class IncrementalOrdinalMap implements Accountable {
+
+    private static final int PAGE_SIZE = 1 << 14;
+
+    // the core cache key of each segment, null if the segment can't be identified across readers
+    private final IndexReader.CacheKey[] segmentKeys;
+
+    private IncrementalOrdinalMap(IndexReader.CacheKey[] segmentKeys) {
+        this.segmentKeys = segmentKeys;
+    }
+
+    /**
+     * Returns the total number of unique terms in the global ordinal space.
+     */
+    public abstract long getValueCount();
+
+    /**
+     * Returns the mapping from the ordinals of the segment at the given index to global ordinals.
+     */
+    public abstract LongValues getGlobalOrds(int segmentIndex);
+
+    /**
+     * Returns the index of a segment that contains the term of the given global ordinal.
+     */
+    public abstract int getFirstSegmentNumber(long globalOrd);
+
+    /**
+     * Returns the ordinal of the term of the given global ordinal in the segment returned by {@link #getFirstSegmentNumber(long)}.
+     */
+    public abstract long getFirstSegmentOrd(long globalOrd);
+
+    /**
+     * Returns the Lucene {@link OrdinalMap} that this map wraps, or {@code null} if this map was built incrementally.
+     */
+    @Nullable
+    public abstract OrdinalMap getLuceneOrdinalMap();
+
+    /**
+     * Returns whether this map was built from the map of an older reader.
+     */
+    public boolean isIncremental() {
+        return getLuceneOrdinalMap() == null;
+    }
+
+    /**
+     * Builds the map for the given reader. If the map of an older reader of the same shard is given and the readers share segments,
+     * the map is built from it unless the new segments have so many terms that merging all term dictionaries is cheaper.
+     *
+     * @param subs the ordinals of each segment of the reader
+     */
+    public static IncrementalOrdinalMap build(IndexReader indexReader, SortedSetDocValues[] subs,
+                                              @Nullable IncrementalOrdinalMap previous) throws IOException {
+        assert indexReader.leaves().size() == subs.length;
+        final IndexReader.CacheKey[] segmentKeys = new IndexReader.CacheKey[subs.length];
+        for (int i = 0; i < subs.length; i++) {
+            final IndexReader.CacheHelper cacheHelper = indexReader.leaves().get(i).reader().getCoreCacheHelper();
+            segmentKeys[i] = cacheHelper == null ? null : cacheHelper.getKey();
+        }
+        if (previous != null) {
+            final IncrementalOrdinalMap map = buildIncrementally(segmentKeys, subs, previous);
+            if (map != null) {
+                return map;
+            }
+        }
+        return new Wrapped(segmentKeys, OrdinalMap.build(null, subs, PackedInts.DEFAULT));
+    }
+
+    private static IncrementalOrdinalMap buildIncrementally(IndexReader.CacheKey[] segmentKeys, SortedSetDocValues[] subs,
+                                                          IncrementalOrdinalMap previous) throws IOException {
+        final Map<IndexReader.CacheKey, Integer> previousSegments = new HashMap<>();
+        for (int i = 0; i < previous.segmentKeys.length; i++) {
+            if (previous.segmentKeys[i] != null) {
+                previousSegments.put(previous.segmentKeys[i], i);
+            }
+        }
+        // the index of each segment in the previous map, -1 for new segments
+        final int[] previousSegment = new int[subs.length];
+        final List<Integer> newSegments = new ArrayList<>();
+        long newTerms = 0;
+        for (int i = 0; i < subs.length; i++) {
+            final Integer index = segmentKeys[i] == null ? null : previousSegments.get(segmentKeys[i]);
+            if (index == null) {
+                previousSegment[i] = -1;
+                newSegments.add(i);
+                newTerms += subs[i].getValueCount();
+            } else {
+                previousSegment[i] = index;
+            }
+        }
+        final int numShared = subs.length - newSegments.size();
+        if (numShared == 0) {
+            return null;
+        }
+        // every term of the new segments costs a binary search among the previous terms
+        final long previousValueCount = previous.getValueCount();
+        final int lookupsPerTerm = 64 - Long.numberOfLeadingZeros(previousValueCount);
+        if (newTerms > 0 && newTerms * lookupsPerTerm >= previousValueCount) {
+            return null;
+        }
+
+        final Survivors survivors = numShared == previous.segmentKeys.length
+            ? Survivors.all(previous, previousSegment)
+            : Survivors.collect(previous, previousSegment, subs);
+        final NewTerms union = NewTerms.build(subs, newSegments);
+
+        // find the place of every new term among the previous terms
+        final PackedLongValues.Builder unionToGlobalBuilder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        final PackedLongValues.Builder insertedBuilder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        final PackedLongValues.Builder insertedPositionsBuilder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        long from = 0;
+        for (long unionOrd = 0; unionOrd < union.valueCount; unionOrd++) {
+            final BytesRef term = BytesRef.deepCopyOf(union.lookupOrd(subs, unionOrd));
+            long low = from;
+            long high = survivors.count - 1;
+            boolean found = false;
+            while (low <= high) {
+                final long mid = (low + high) >>> 1;
+                final int cmp = survivors.lookupOrd(subs, mid).compareTo(term);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    low = mid;
+                    found = true;
+                    break;
+                }
+            }
+            // the terms are sorted, so the next term can't go before this one
+            from = low;
+            unionToGlobalBuilder.add(low + insertedBuilder.size());
+            if (found == false) {
+                insertedBuilder.add(unionOrd);
+                insertedPositionsBuilder.add(low);
+            }
+        }
+        final PackedLongValues unionToGlobal = unionToGlobalBuilder.build();
+        final PackedLongValues inserted = insertedBuilder.build();
+        final PackedLongValues insertedPositions = insertedPositionsBuilder.build();
+        final long valueCount = survivors.count + inserted.size();
+
+        // previous terms move up by the number of new terms that go before them
+        final PackedLongValues.Builder survivorToGlobalBuilder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        long insertedBefore = 0;
+        for (long rank = 0; rank < survivors.count; rank++) {
+            while (insertedBefore < insertedPositions.size() && insertedPositions.get(insertedBefore) <= rank) {
+                insertedBefore++;
+            }
+            survivorToGlobalBuilder.add(rank + insertedBefore);
+        }
+        final PackedLongValues survivorToGlobal = survivorToGlobalBuilder.build();
+
+        final PackedLongValues[] segmentToGlobalOrds = new PackedLongValues[subs.length];
+        for (int i = 0; i < subs.length; i++) {
+            final PackedLongValues.Builder builder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+            final long segmentValueCount = subs[i].getValueCount();
+            if (previousSegment[i] >= 0) {
+                final LongValues previousGlobalOrds = previous.getGlobalOrds(previousSegment[i]);
+                for (long ord = 0; ord < segmentValueCount; ord++) {
+                    builder.add(survivorToGlobal.get(survivors.rank(previousGlobalOrds.get(ord))));
+                }
+            } else {
+                final LongValues unionOrds = union.getUnionOrds(i);
+                for (long ord = 0; ord < segmentValueCount; ord++) {
+                    builder.add(unionToGlobal.get(unionOrds.get(ord)));
+                }
+            }
+            segmentToGlobalOrds[i] = builder.build();
+        }
+
+        final PackedLongValues.Builder firstSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        final PackedLongValues.Builder globalOrdDeltas = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        long rank = 0;
+        long insertedOrd = 0;
+        for (long globalOrd = 0; globalOrd < valueCount; globalOrd++) {
+            if (rank < survivors.count && survivorToGlobal.get(rank) == globalOrd) {
+                firstSegments.add(survivors.firstSegment(rank));
+                globalOrdDeltas.add(globalOrd - survivors.firstSegmentOrd(rank));
+                rank++;
+            } else {
+                final long unionOrd = inserted.get(insertedOrd++);
+                firstSegments.add(union.firstSegment(unionOrd));
+                globalOrdDeltas.add(globalOrd - union.firstSegmentOrd(unionOrd));
+            }
+        }
+        return new Incremental(segmentKeys, valueCount, segmentToGlobalOrds, firstSegments.build(), globalOrdDeltas.build());
+    }
+
+    /**
+     * The terms of the previous map that are still in one of the shared segments, in the order of their previous global ordinals.
+     */
+    private abstract static class Survivors {
+        final long count;
+
+        Survivors(long count) {
+            this.count = count;
+        }
+
+        /** the rank among the surviving terms of the given previous global ordinal, which must be a surviving term */
+        abstract long rank(long previousGlobalOrd);
+
+        /** the index of a segment of the new reader that contains the surviving term with the given rank */
+        abstract int firstSegment(long rank);
+
+        abstract long firstSegmentOrd(long rank);
+
+        final BytesRef lookupOrd(SortedSetDocValues[] subs, long rank) throws IOException {
+            return subs[firstSegment(rank)].lookupOrd(firstSegmentOrd(rank));
+        }
+
+        /**
+         * All segments of the previous map are still there, so are all of its terms.
+         */
+        static Survivors all(IncrementalOrdinalMap previous, int[] previousSegment) {
+            final int[] newSegment = new int[previous.segmentKeys.length];
+            for (int i = 0; i < previousSegment.length; i++) {
+                if (previousSegment[i] >= 0) {
+                    newSegment[previousSegment[i]] = i;
+                }
+            }
+            return new Survivors(previous.getValueCount()) {
+                @Override
+                long rank(long previousGlobalOrd) {
+                    return previousGlobalOrd;
+                }
+
+                @Override
+                int firstSegment(long rank) {
+                    return newSegment[previous.getFirstSegmentNumber(rank)];
+                }
+
+                @Override
+                long firstSegmentOrd(long rank) {
+                    return previous.getFirstSegmentOrd(rank);
+                }
+            };
+        }
+
+        /**
+         * Some segments of the previous map are gone, the terms that the shared segments contain are collected from their ordinals.
+         */
+        static Survivors collect(IncrementalOrdinalMap previous, int[] previousSegment, SortedSetDocValues[] subs) {
+            final long previousValueCount = previous.getValueCount();
+            final LongBitSet seen = new LongBitSet(previousValueCount);
+            final PagedGrowableWriter firstSegments = new PagedGrowableWriter(previousValueCount, PAGE_SIZE, 1, PackedInts.DEFAULT);
+            final PagedGrowableWriter firstSegmentOrds = new PagedGrowableWriter(previousValueCount, PAGE_SIZE, 1, PackedInts.DEFAULT);
+            for (int i = 0; i < previousSegment.length; i++) {
+                if (previousSegment[i] < 0) {
+                    continue;
+                }
+                final LongValues globalOrds = previous.getGlobalOrds(previousSegment[i]);
+                final long segmentValueCount = subs[i].getValueCount();
+                for (long ord = 0; ord < segmentValueCount; ord++) {
+                    final long globalOrd = globalOrds.get(ord);
+                    if (seen.get(globalOrd) == false) {
+                        seen.set(globalOrd);
+                        firstSegments.set(globalOrd, i);
+                        firstSegmentOrds.set(globalOrd, ord);
+                    }
+                }
+            }
+            final PackedLongValues.Builder previousToRank = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+            final PackedLongValues.Builder rankToPrevious = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+            long count = 0;
+            for (long globalOrd = 0; globalOrd < previousValueCount; globalOrd++) {
+                previousToRank.add(count);
+                if (seen.get(globalOrd)) {
+                    rankToPrevious.add(globalOrd);
+                    count++;
+                }
+            }
+            final PackedLongValues ranks = previousToRank.build();
+            final PackedLongValues previousGlobalOrds = rankToPrevious.build();
+            return new Survivors(count) {
+                @Override
+                long rank(long previousGlobalOrd) {
+                    return ranks.get(previousGlobalOrd);
+                }
+
+                @Override
+                int firstSegment(long rank) {
+                    return (int) firstSegments.get(previousGlobalOrds.get(rank));
+                }
+
+                @Override
+                long firstSegmentOrd(long rank) {
+                    return firstSegmentOrds.get(previousGlobalOrds.get(rank));
+                }
+            };
+        }
+    }
+
+    /**
+     * The union of the terms of the new segments.
+     */
+    private static final class NewTerms {
+        final long valueCount;
+        private final int[] segments;
+        // the ordinal map of the new segments, null if there is at most one new segment
+        private final OrdinalMap ordinalMap;
+
+        private NewTerms(long valueCount, int[] segments, OrdinalMap ordinalMap) {
+            this.valueCount = valueCount;
+            this.segments = segments;
+            this.ordinalMap = ordinalMap;
+        }
+
+        static NewTerms build(SortedSetDocValues[] subs, List<Integer> newSegments) throws IOException {
+            final int[] segments = newSegments.stream().mapToInt(Integer::intValue).toArray();
+            if (segments.length == 0) {
+                return new NewTerms(0, segments, null);
+            } else if (segments.length == 1) {
+                return new NewTerms(subs[segments[0]].getValueCount(), segments, null);
+            }
+            final SortedSetDocValues[] newSubs = new SortedSetDocValues[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                newSubs[i] = subs[segments[i]];
+            }
+            final OrdinalMap ordinalMap = OrdinalMap.build(null, newSubs, PackedInts.DEFAULT);
+            return new NewTerms(ordinalMap.getValueCount(), segments, ordinalMap);
+        }
+
+        LongValues getUnionOrds(int segment) {
+            if (ordinalMap == null) {
+                return LongValues.IDENTITY;
+            }
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i] == segment) {
+                    return ordinalMap.getGlobalOrds(i);
+                }
+            }
+            throw new IllegalArgumentException("segment [" + segment + "] is not a new segment");
+        }
+
+        int firstSegment(long unionOrd) {
+            return ordinalMap == null ? segments[0] : segments[ordinalMap.getFirstSegmentNumber(unionOrd)];
+        }
+
+        long firstSegmentOrd(long unionOrd) {
+            return ordinalMap == null ? unionOrd : ordinalMap.getFirstSegmentOrd(unionOrd);
+        }
+
+        BytesRef lookupOrd(SortedSetDocValues[] subs, long unionOrd) throws IOException {
+            return subs[firstSegment(unionOrd)].lookupOrd(firstSegmentOrd(unionOrd));
+        }
+    }
+
+    private static final class Wrapped extends IncrementalOrdinalMap {
+        private final OrdinalMap ordinalMap;
+
+        private Wrapped(IndexReader.CacheKey[] segmentKeys, OrdinalMap ordinalMap) {
+            super(segmentKeys);
+            this.ordinalMap = ordinalMap;
+        }
+
+        @Override
+        public long getValueCount() {
+            return ordinalMap.getValueCount();
+        }
+
+        @Override
+        public LongValues getGlobalOrds(int segmentIndex) {
+            return ordinalMap.getGlobalOrds(segmentIndex);
+        }
+
+        @Override
+        public int getFirstSegmentNumber(long globalOrd) {
+            return ordinalMap.getFirstSegmentNumber(globalOrd);
+        }
+
+        @Override
+        public long getFirstSegmentOrd(long globalOrd) {
+            return ordinalMap.getFirstSegmentOrd(globalOrd);
+        }
+
+        @Override
+        public OrdinalMap getLuceneOrdinalMap() {
+            return ordinalMap;
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return ordinalMap.ramBytesUsed();
+        }
+    }
+
+    private static final class Incremental extends IncrementalOrdinalMap {
+        private final long valueCount;
+        private final PackedLongValues[] segmentToGlobalOrds;
+        private final PackedLongValues firstSegments;
+        private final PackedLongValues globalOrdDeltas;
+
+        private Incremental(IndexReader.CacheKey[] segmentKeys, long valueCount, PackedLongValues[] segmentToGlobalOrds,
+                            PackedLongValues firstSegments, PackedLongValues globalOrdDeltas) {
+            super(segmentKeys);
+            this.valueCount = valueCount;
+            this.segmentToGlobalOrds = segmentToGlobalOrds;
+            this.firstSegments = firstSegments;
+            this.globalOrdDeltas = globalOrdDeltas;
+        }
+
+        @Override
+        public long getValueCount() {
+            return valueCount;
+        }
+
+        @Override
+        public LongValues getGlobalOrds(int segmentIndex) {
+            return segmentToGlobalOrds[segmentIndex];
+        }
+
+        @Override
+        public int getFirstSegmentNumber(long globalOrd) {
+            return (int) firstSegments.get(globalOrd);
+        }
+
+        @Override
+        public long getFirstSegmentOrd(long globalOrd) {
+            return globalOrd - globalOrdDeltas.get(globalOrd);
+        }
+
+        @Override
+        public OrdinalMap getLuceneOrdinalMap() {
+            return null;
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            long size = RamUsageEstimator.shallowSizeOf(this) + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds)
+                + firstSegments.ramBytesUsed() + globalOrdDeltas.ramBytesUsed();
+            for (PackedLongValues values : segmentToGlobalOrds) {
+                size += values.ramBytesUsed();
+            }
+            return size;
+        }
+    }
+}
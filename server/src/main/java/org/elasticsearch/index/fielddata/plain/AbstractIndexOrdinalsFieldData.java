@@ -96,7 +96,7 @@ public abstract class AbstractIndexOrdinalsFieldData extends AbstractIndexFieldD
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception {
         return GlobalOrdinalsBuilder.build(indexReader, this, indexSettings, breakerService, logger,
-                AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION);
+                AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION, cache.lastGlobalOrdinalMap(indexReader));
     }
 
     @Override
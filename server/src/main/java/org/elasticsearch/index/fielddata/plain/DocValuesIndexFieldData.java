@@ -20,12 +20,14 @@
 package org.elasticsearch.index.fielddata.plain;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData.NumericType;
+import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.ScriptDocValues;
 import org.elasticsearch.index.mapper.IdFieldMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
@@ -72,6 +74,7 @@ public abstract class DocValuesIndexFieldData {
 
         private NumericType numericType;
         private Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction = AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION;
+        private boolean incrementalGlobalOrdinals = true;
 
         public Builder numericType(NumericType type) {
             this.numericType = type;
@@ -83,6 +86,15 @@ public abstract class DocValuesIndexFieldData {
             return this;
         }
 
+        /**
+         * Builds the global ordinals of the field from scratch on every refresh so that they wrap a Lucene {@link OrdinalMap}, for fields
+         * whose queries use {@link IndexOrdinalsFieldData#getOrdinalMap()} and would otherwise build one lazily while searching.
+         */
+        public Builder disableIncrementalGlobalOrdinals() {
+            this.incrementalGlobalOrdinals = false;
+            return this;
+        }
+
         @Override
         public IndexFieldData<?> build(IndexSettings indexSettings, MappedFieldType fieldType, IndexFieldDataCache cache,
                                        CircuitBreakerService breakerService, MapperService mapperService) {
@@ -94,7 +106,8 @@ public abstract class DocValuesIndexFieldData {
             } else if (numericType != null) {
                 return new SortedNumericDVIndexFieldData(indexSettings.getIndex(), fieldName, numericType);
             } else {
-                return new SortedSetDVOrdinalsIndexFieldData(indexSettings, cache, fieldName, breakerService, scriptFunction);
+                return new SortedSetDVOrdinalsIndexFieldData(indexSettings, cache, fieldName, breakerService, scriptFunction,
+                    incrementalGlobalOrdinals);
             }
         }
 
@@ -25,7 +25,6 @@ import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
-import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BoostQuery;
 import org.apache.lucene.search.DocValuesFieldExistsQuery;
@@ -350,21 +349,16 @@ public class DateFieldMapper extends FieldMapper {
             // This check needs to be done after fromInclusive and toInclusive
             // are resolved so we can throw an exception if they are invalid
             // even if there are no points in the shard
-            if (PointValues.size(reader, name()) == 0) {
-                // no points, so nothing matches
+            if (fromInclusive > toInclusive) {
                 return Relation.DISJOINT;
             }
-
-            long minValue = LongPoint.decodeDimension(PointValues.getMinPackedValue(reader, name()), 0);
-            long maxValue = LongPoint.decodeDimension(PointValues.getMaxPackedValue(reader, name()), 0);
-
-            if (minValue >= fromInclusive && maxValue <= toInclusive) {
-                return Relation.WITHIN;
-            } else if (maxValue < fromInclusive || minValue > toInclusive) {
-                return Relation.DISJOINT;
-            } else {
-                return Relation.INTERSECTS;
-            }
+            final byte[] lowerPoint = new byte[Long.BYTES];
+            final byte[] upperPoint = new byte[Long.BYTES];
+            LongPoint.encodeDimension(fromInclusive, lowerPoint, 0);
+            LongPoint.encodeDimension(toInclusive, upperPoint, 0);
+            // compare with the bounds of each segment rather than those of the whole shard, so that ranges that fall between
+            // the values of different segments, which is common with time based data, are recognized as disjoint
+            return pointsRelation(reader, name(), lowerPoint, upperPoint);
         }
 
         @Override
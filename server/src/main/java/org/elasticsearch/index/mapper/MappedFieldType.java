@@ -23,6 +23,8 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.PrefixCodedTerms;
 import org.apache.lucene.index.PrefixCodedTerms.TermIterator;
 import org.apache.lucene.index.Term;
@@ -37,6 +39,7 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.spans.SpanMultiTermQueryWrapper;
 import org.apache.lucene.search.spans.SpanQuery;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FutureArrays;
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.geo.ShapeRelation;
@@ -441,6 +444,44 @@ public abstract class MappedFieldType extends FieldType {
         return Relation.INTERSECTS;
     }
 
+    /**
+     * Computes the relation of the one dimensional points of a field with the range {@code [lowerPoint, upperPoint]} from the minimum
+     * and maximum values of each segment. Values are only {@link Relation#WITHIN} the range if they are within the range in every
+     * segment that has values, and {@link Relation#DISJOINT} if no segment has values within the range, even if the range falls in
+     * a gap between the values of different segments.
+     */
+    protected static Relation pointsRelation(IndexReader reader, String field, byte[] lowerPoint, byte[] upperPoint) throws IOException {
+        final int numBytes = lowerPoint.length;
+        boolean within = true;
+        boolean disjoint = true;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            final PointValues values = leaf.reader().getPointValues(field);
+            if (values == null || values.size() == 0) {
+                continue;
+            }
+            final byte[] minPackedValue = values.getMinPackedValue();
+            final byte[] maxPackedValue = values.getMaxPackedValue();
+            if (FutureArrays.compareUnsigned(maxPackedValue, 0, numBytes, lowerPoint, 0, numBytes) < 0
+                || FutureArrays.compareUnsigned(minPackedValue, 0, numBytes, upperPoint, 0, numBytes) > 0) {
+                within = false;
+            } else {
+                disjoint = false;
+                if (FutureArrays.compareUnsigned(minPackedValue, 0, numBytes, lowerPoint, 0, numBytes) < 0
+                    || FutureArrays.compareUnsigned(maxPackedValue, 0, numBytes, upperPoint, 0, numBytes) > 0) {
+                    within = false;
+                }
+            }
+        }
+        if (disjoint) {
+            // also covers readers without any points
+            return Relation.DISJOINT;
+        } else if (within) {
+            return Relation.WITHIN;
+        } else {
+            return Relation.INTERSECTS;
+        }
+    }
+
     /** A term query to use when parsing a query string. Can return {@code null}. */
     @Nullable
     public Query queryStringTermQuery(Term term) {
@@ -28,12 +28,14 @@ import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BoostQuery;
 import org.apache.lucene.search.DocValuesFieldExistsQuery;
 import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.PointRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.util.BytesRef;
@@ -44,12 +46,14 @@ import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.time.DateMathParser;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentParser.Token;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexNumericFieldData.NumericType;
 import org.elasticsearch.index.fielddata.plain.DocValuesIndexFieldData;
+import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.query.QueryShardContext;
 import org.elasticsearch.search.DocValueFormat;
 import org.joda.time.DateTimeZone;
@@ -947,6 +951,25 @@ public class NumberFieldMapper extends FieldMapper {
             return query;
         }
 
+        @Override
+        public Relation isFieldWithinQuery(IndexReader reader, Object from, Object to, boolean includeLower, boolean includeUpper,
+                                           DateTimeZone timeZone, DateMathParser dateParser,
+                                           QueryRewriteContext context) throws IOException {
+            if (indexOptions() == IndexOptions.NONE) {
+                // there are no points to compare with, the range query reports the error
+                return Relation.INTERSECTS;
+            }
+            // the bounds are parsed and rounded exactly like the range query does it
+            final Query query = type.rangeQuery(name(), from, to, includeLower, includeUpper, false);
+            if (query instanceof MatchNoDocsQuery) {
+                return Relation.DISJOINT;
+            } else if (query instanceof PointRangeQuery == false) {
+                return Relation.INTERSECTS;
+            }
+            final PointRangeQuery pointRangeQuery = (PointRangeQuery) query;
+            return pointsRelation(reader, name(), pointRangeQuery.getLowerPoint(), pointRangeQuery.getUpperPoint());
+        }
+
         @Override
         public IndexFieldData.Builder fielddataBuilder(String fullyQualifiedIndexName) {
             failIfNoDocValues();
@@ -212,7 +212,8 @@ public class ParentFieldMapper extends MetadataFieldMapper {
 
         @Override
         public IndexFieldData.Builder fielddataBuilder(String fullyQualifiedIndexName) {
-            return new DocValuesIndexFieldData.Builder();
+            // has_child and has_parent queries join through the Lucene ordinal map of the global ordinals
+            return new DocValuesIndexFieldData.Builder().disableIncrementalGlobalOrdinals();
         }
     }
 
@@ -26,6 +26,7 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent.Params;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -41,14 +42,30 @@ public class RefreshStats implements Streamable, ToXContentFragment {
      */
     private int listeners;
 
+    /**
+     * The largest interval a shard is currently refreshed in by its adaptive refresh policy.
+     */
+    private long adaptiveIntervalInMillis;
+
+    /**
+     * Number of scheduled refreshes that adaptive refresh policies deferred.
+     */
+    private long adaptiveDeferred;
+
     public RefreshStats() {
 
     }
 
     public RefreshStats(long total, long totalTimeInMillis, int listeners) {
+        this(total, totalTimeInMillis, listeners, 0, 0);
+    }
+
+    public RefreshStats(long total, long totalTimeInMillis, int listeners, long adaptiveIntervalInMillis, long adaptiveDeferred) {
         this.total = total;
         this.totalTimeInMillis = totalTimeInMillis;
         this.listeners = listeners;
+        this.adaptiveIntervalInMillis = adaptiveIntervalInMillis;
+        this.adaptiveDeferred = adaptiveDeferred;
     }
 
     public void add(RefreshStats refreshStats) {
@@ -62,6 +79,8 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         this.total += refreshStats.total;
         this.totalTimeInMillis += refreshStats.totalTimeInMillis;
         this.listeners += refreshStats.listeners;
+        this.adaptiveIntervalInMillis = Math.max(this.adaptiveIntervalInMillis, refreshStats.adaptiveIntervalInMillis);
+        this.adaptiveDeferred += refreshStats.adaptiveDeferred;
     }
 
     /**
@@ -92,12 +111,30 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         return listeners;
     }
 
+    /**
+     * The largest interval a shard is currently refreshed in by its adaptive refresh policy, {@code 0} if adaptive refresh is disabled.
+     */
+    public TimeValue getAdaptiveInterval() {
+        return new TimeValue(adaptiveIntervalInMillis);
+    }
+
+    /**
+     * The number of scheduled refreshes that were deferred by adaptive refresh policies.
+     */
+    public long getAdaptiveDeferred() {
+        return adaptiveDeferred;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject("refresh");
         builder.field("total", total);
         builder.humanReadableField("total_time_in_millis", "total_time", getTotalTime());
         builder.field("listeners", listeners);
+        builder.startObject("adaptive");
+        builder.humanReadableField("interval_in_millis", "interval", getAdaptiveInterval());
+        builder.field("deferred", adaptiveDeferred);
+        builder.endObject();
         builder.endObject();
         return builder;
     }
@@ -107,6 +144,10 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         total = in.readVLong();
         totalTimeInMillis = in.readVLong();
         listeners = in.readVInt();
+        if (in.hasFeature(TransportCapabilities.ADAPTIVE_REFRESH_STATS)) {
+            adaptiveIntervalInMillis = in.readVLong();
+            adaptiveDeferred = in.readVLong();
+        }
     }
 
     @Override
@@ -114,6 +155,10 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         out.writeVLong(total);
         out.writeVLong(totalTimeInMillis);
         out.writeVInt(listeners);
+        if (out.hasFeature(TransportCapabilities.ADAPTIVE_REFRESH_STATS)) {
+            out.writeVLong(adaptiveIntervalInMillis);
+            out.writeVLong(adaptiveDeferred);
+        }
     }
 
     @Override
@@ -124,11 +169,13 @@ public class RefreshStats implements Streamable, ToXContentFragment {
         RefreshStats rhs = (RefreshStats) obj;
         return total == rhs.total
                 && totalTimeInMillis == rhs.totalTimeInMillis
-                && listeners == rhs.listeners;
+                && listeners == rhs.listeners
+                && adaptiveIntervalInMillis == rhs.adaptiveIntervalInMillis
+                && adaptiveDeferred == rhs.adaptiveDeferred;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(total, totalTimeInMillis, listeners);
+        return Objects.hash(total, totalTimeInMillis, listeners, adaptiveIntervalInMillis, adaptiveDeferred);
     }
 }
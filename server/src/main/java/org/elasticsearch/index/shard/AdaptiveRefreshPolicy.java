@@ -0,0 +1,105 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.shard;
+
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a scheduled refresh of a shard is due when {@link org.elasticsearch.index.IndexSettings#INDEX_REFRESH_ADAPTIVE_SETTING
+ * adaptive refresh} is enabled. The refresh task checks the shard in the minimum interval and this policy keeps a target interval per
+ * shard that starts at the configured refresh interval and
+ * <ul>
+ *     <li>is halved whenever searches were executed on the shard since the last check, since searches want to see recent changes,</li>
+ *     <li>is doubled after a refresh that no search was executed in front of, which produces fewer and larger segments and thus less
+ *     merge pressure while nobody looks at the shard,</li>
+ *     <li>never drops below ten times the average cost of a refresh, so that refreshing never eats up more than a tenth of the time.</li>
+ * </ul>
+ * The interval is always kept within the configured minimum and maximum. Independent of the interval, a refresh is due right away if
+ * refresh listeners are waiting for one or the indexing buffer is half full, as a refresh then yields a reasonably sized segment anyway.
+ */
+final class AdaptiveRefreshPolicy {
+
+    static final long REFRESH_COST_FACTOR = 10;
+    static final double BUFFER_FILL_THRESHOLD = 0.5;
+
+    private long intervalNanos = -1;
+    private long lastRefreshNanos;
+    private long lastSearchCount;
+    private boolean searchedSinceRefresh;
+    private long deferred;
+
+    /**
+     * Returns whether the shard should be refreshed now. Must only be called if the shard has changes that a refresh would expose.
+     *
+     * @param nowNanos                the current relative time in nanoseconds
+     * @param searchCount             the total number of searches executed on the shard so far
+     * @param refreshListenersWaiting whether refresh listeners are waiting for the next refresh
+     * @param avgRefreshNanos         the average time a refresh of the shard took so far
+     * @param bufferFill              the ratio of the indexing buffer that is used
+     */
+    synchronized boolean shouldRefresh(long nowNanos, long searchCount, boolean refreshListenersWaiting, long avgRefreshNanos,
+                                       double bufferFill, TimeValue refreshInterval, TimeValue minInterval, TimeValue maxInterval) {
+        final long min = minInterval.nanos();
+        final long max = Math.max(min, maxInterval.nanos());
+        final boolean searched = searchCount != lastSearchCount;
+        lastSearchCount = searchCount;
+        // the first check refreshes right away, like the fixed schedule would
+        final boolean firstCheck = intervalNanos < 0;
+        if (firstCheck) {
+            intervalNanos = clamp(refreshInterval.nanos(), min, max);
+        }
+        if (searched) {
+            searchedSinceRefresh = true;
+            intervalNanos = intervalNanos / 2;
+        }
+        intervalNanos = clamp(Math.max(intervalNanos, avgRefreshNanos * REFRESH_COST_FACTOR), min, max);
+
+        if (firstCheck || refreshListenersWaiting || bufferFill >= BUFFER_FILL_THRESHOLD || nowNanos - lastRefreshNanos >= intervalNanos) {
+            if (searchedSinceRefresh == false) {
+                intervalNanos = clamp(intervalNanos * 2, min, max);
+            }
+            searchedSinceRefresh = false;
+            lastRefreshNanos = nowNanos;
+            return true;
+        }
+        deferred++;
+        return false;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.min(max, Math.max(min, value));
+    }
+
+    /**
+     * The interval the shard is currently refreshed in, or {@code 0} if the policy wasn't consulted yet.
+     */
+    synchronized long getIntervalInMillis() {
+        return intervalNanos < 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+    }
+
+    /**
+     * The number of times a scheduled refresh was deferred because the shard wasn't due yet.
+     */
+    synchronized long getDeferred() {
+        return deferred;
+    }
+}
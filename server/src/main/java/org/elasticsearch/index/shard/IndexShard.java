@@ -130,6 +130,8 @@ import org.elasticsearch.index.warmer.ShardIndexWarmerService;
 import org.elasticsearch.index.warmer.WarmerStats;
 import org.elasticsearch.indices.IndexingMemoryController;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.MergeIOGovernor;
+import org.elasticsearch.indices.TranslogGroupCommitService;
 import org.elasticsearch.indices.TypeMissingException;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService;
@@ -168,6 +170,7 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static org.elasticsearch.index.mapper.SourceToParse.source;
@@ -224,6 +227,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
 
     private final RecoveryStats recoveryStats = new RecoveryStats();
     private final MeanMetric refreshMetric = new MeanMetric();
+    private final AdaptiveRefreshPolicy adaptiveRefreshPolicy = new AdaptiveRefreshPolicy();
     private final MeanMetric flushMetric = new MeanMetric();
     private final CounterMetric periodicFlushMetric = new CounterMetric();
 
@@ -274,7 +278,9 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             final List<IndexingOperationListener> listeners,
             final Runnable globalCheckpointSyncer,
             final RetentionLeaseSyncer retentionLeaseSyncer,
-            final CircuitBreakerService circuitBreakerService) throws IOException {
+            final CircuitBreakerService circuitBreakerService,
+            final @Nullable TranslogGroupCommitService translogGroupCommitService,
+            final @Nullable MergeIOGovernor mergeIOGovernor) throws IOException {
         super(shardRouting.shardId(), indexSettings);
         assert shardRouting.initializing();
         this.shardRouting = shardRouting;
@@ -289,6 +295,13 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         this.indexEventListener = indexEventListener;
         this.threadPool = threadPool;
         this.translogSyncProcessor = createTranslogSyncProcessor(logger, threadPool.getThreadContext(), this::getEngine);
+        if (translogGroupCommitService != null) {
+            this.translogGroupCommit = translogGroupCommitService.newParticipant(path.getRootDataPath(),
+                locations -> syncTranslogLocations(logger, this::getEngine, locations));
+        } else {
+            this.translogGroupCommit = null;
+        }
+        this.mergeIOGovernor = mergeIOGovernor;
         this.mapperService = mapperService;
         this.indexCache = indexCache;
         this.internalIndexingStats = new InternalIndexingStats();
@@ -743,21 +756,33 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     public Engine.IndexResult applyIndexOperationOnPrimary(long version, VersionType versionType, SourceToParse sourceToParse,
                                                            long ifSeqNo, long ifPrimaryTerm, long autoGeneratedTimestamp,
                                                            boolean isRetry) throws IOException {
+        return applyIndexOperationOnPrimary(version, versionType, sourceToParse, ifSeqNo, ifPrimaryTerm, autoGeneratedTimestamp, isRetry,
+            null);
+    }
+
+    /**
+     * Same as {@link #applyIndexOperationOnPrimary(long, VersionType, SourceToParse, long, long, long, boolean)} but reuses the given
+     * document that was parsed ahead of time from the same source using {@link #preParseIndexSource(SourceToParse)}, unless the
+     * mapping of its type changed since. A pre-parsed document can only be applied once.
+     */
+    public Engine.IndexResult applyIndexOperationOnPrimary(long version, VersionType versionType, SourceToParse sourceToParse,
+                                                           long ifSeqNo, long ifPrimaryTerm, long autoGeneratedTimestamp,
+                                                           boolean isRetry, @Nullable PreParsedDocument preParsed) throws IOException {
         return applyIndexOperation(getEngine(), SequenceNumbers.UNASSIGNED_SEQ_NO, getOperationPrimaryTerm(), version, versionType,
-            ifSeqNo, ifPrimaryTerm, autoGeneratedTimestamp, isRetry, Engine.Operation.Origin.PRIMARY, sourceToParse);
+            ifSeqNo, ifPrimaryTerm, autoGeneratedTimestamp, isRetry, Engine.Operation.Origin.PRIMARY, sourceToParse, preParsed);
     }
 
     public Engine.IndexResult applyIndexOperationOnReplica(long seqNo, long version, VersionType versionType,
                                                            long autoGeneratedTimeStamp, boolean isRetry, SourceToParse sourceToParse)
         throws IOException {
         return applyIndexOperation(getEngine(), seqNo, getOperationPrimaryTerm(), version, versionType, UNASSIGNED_SEQ_NO, 0,
-            autoGeneratedTimeStamp, isRetry, Engine.Operation.Origin.REPLICA, sourceToParse);
+            autoGeneratedTimeStamp, isRetry, Engine.Operation.Origin.REPLICA, sourceToParse, null);
     }
 
     private Engine.IndexResult applyIndexOperation(Engine engine, long seqNo, long opPrimaryTerm, long version, VersionType versionType,
                                                    long ifSeqNo, long ifPrimaryTerm,
                                                    long autoGeneratedTimeStamp, boolean isRetry, Engine.Operation.Origin origin,
-                                                   SourceToParse sourceToParse) throws IOException {
+                                                   SourceToParse sourceToParse, @Nullable PreParsedDocument preParsed) throws IOException {
         assert opPrimaryTerm <= getOperationPrimaryTerm()
                 : "op term [ " + opPrimaryTerm + " ] > shard term [" + getOperationPrimaryTerm() + "]";
         assert versionType.validateVersionForWrites(version);
@@ -765,18 +790,15 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         Engine.Index operation;
         try {
             final String resolvedType = mapperService.resolveDocumentType(sourceToParse.type());
-            final SourceToParse sourceWithResolvedType;
-            if (resolvedType.equals(sourceToParse.type())) {
-                sourceWithResolvedType = sourceToParse;
+            final DocumentMapperForType docMapper = docMapper(resolvedType);
+            if (preParsed != null && docMapper.getMapping() == null && preParsed.docMapper == docMapper.getDocumentMapper()) {
+                operation = prepareIndex(docMapper, indexSettings.getIndexVersionCreated(), preParsed.doc,
+                    System.nanoTime() - preParsed.parseTimeInNanos, seqNo, opPrimaryTerm, version, versionType, origin,
+                    autoGeneratedTimeStamp, isRetry, ifSeqNo, ifPrimaryTerm);
             } else {
-                sourceWithResolvedType = SourceToParse.source(sourceToParse.index(), resolvedType, sourceToParse.id(),
-                    sourceToParse.source(), sourceToParse.getXContentType())
-                        .routing(sourceToParse.routing())
-                        .parent(sourceToParse.parent());
+                operation = prepareIndex(docMapper, indexSettings.getIndexVersionCreated(), withType(sourceToParse, resolvedType),
+                    seqNo, opPrimaryTerm, version, versionType, origin, autoGeneratedTimeStamp, isRetry, ifSeqNo, ifPrimaryTerm);
             }
-            operation = prepareIndex(docMapper(resolvedType), indexSettings.getIndexVersionCreated(), sourceWithResolvedType, seqNo,
-                opPrimaryTerm, version, versionType, origin, autoGeneratedTimeStamp, isRetry,
-                ifSeqNo, ifPrimaryTerm);
             Mapping update = operation.parsedDoc().dynamicMappingsUpdate();
             if (update != null) {
                 return new Engine.IndexResult(update);
@@ -793,12 +815,57 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return index(engine, operation);
     }
 
+    private static SourceToParse withType(SourceToParse sourceToParse, String resolvedType) {
+        if (resolvedType.equals(sourceToParse.type())) {
+            return sourceToParse;
+        }
+        return SourceToParse.source(sourceToParse.index(), resolvedType, sourceToParse.id(),
+            sourceToParse.source(), sourceToParse.getXContentType())
+                .routing(sourceToParse.routing())
+                .parent(sourceToParse.parent());
+    }
+
+    /**
+     * Parses the given source with the current mapping of its type so that it can later be indexed on the primary with
+     * {@link #applyIndexOperationOnPrimary(long, VersionType, SourceToParse, long, long, long, boolean, PreParsedDocument)}.
+     * This method is safe to call concurrently. It has no side effects: parsing failures and mapping updates are left to be
+     * reported when the operation is applied.
+     *
+     * @return the parsed document or {@code null} if the source can't be parsed ahead of time
+     */
+    @Nullable
+    public PreParsedDocument preParseIndexSource(SourceToParse sourceToParse) {
+        final long startTime = System.nanoTime();
+        final String resolvedType = mapperService.resolveDocumentType(sourceToParse.type());
+        final DocumentMapper docMapper = mapperService.documentMapper(resolvedType);
+        if (docMapper == null) {
+            // the mapping is created on the fly when the operation is applied
+            return null;
+        }
+        final ParsedDocument doc;
+        try {
+            doc = docMapper.parse(withType(sourceToParse, resolvedType));
+        } catch (Exception e) {
+            // parsed again and reported as a document level failure when applied
+            return null;
+        }
+        return new PreParsedDocument(docMapper, doc, System.nanoTime() - startTime);
+    }
+
     public static Engine.Index prepareIndex(DocumentMapperForType docMapper, Version indexCreatedVersion, SourceToParse source, long seqNo,
                                             long primaryTerm, long version, VersionType versionType, Engine.Operation.Origin origin,
                                             long autoGeneratedIdTimestamp, boolean isRetry,
                                             long ifSeqNo, long ifPrimaryTerm) {
         long startTime = System.nanoTime();
         ParsedDocument doc = docMapper.getDocumentMapper().parse(source);
+        return prepareIndex(docMapper, indexCreatedVersion, doc, startTime, seqNo, primaryTerm, version, versionType, origin,
+            autoGeneratedIdTimestamp, isRetry, ifSeqNo, ifPrimaryTerm);
+    }
+
+    private static Engine.Index prepareIndex(DocumentMapperForType docMapper, Version indexCreatedVersion, ParsedDocument doc,
+                                             long startTime, long seqNo, long primaryTerm, long version, VersionType versionType,
+                                             Engine.Operation.Origin origin, long autoGeneratedIdTimestamp, boolean isRetry,
+                                             long ifSeqNo, long ifPrimaryTerm) {
         if (docMapper.getMapping() != null) {
             doc.addDynamicMappingsUpdate(docMapper.getMapping());
         }
@@ -982,7 +1049,9 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
 
     public RefreshStats refreshStats() {
         int listeners = refreshListeners.pendingCount();
-        return new RefreshStats(refreshMetric.count(), TimeUnit.NANOSECONDS.toMillis(refreshMetric.sum()), listeners);
+        return new RefreshStats(refreshMetric.count(), TimeUnit.NANOSECONDS.toMillis(refreshMetric.sum()), listeners,
+            indexSettings.isAdaptiveRefreshEnabled() ? adaptiveRefreshPolicy.getIntervalInMillis() : 0,
+            adaptiveRefreshPolicy.getDeferred());
     }
 
     public FlushStats flushStats() {
@@ -1052,6 +1121,9 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     public SegmentsStats segmentStats(boolean includeSegmentFileSizes) {
         SegmentsStats segmentsStats = getEngine().segmentsStats(includeSegmentFileSizes);
         segmentsStats.addBitsetMemoryInBytes(shardBitsetFilterCache.getMemorySizeInBytes());
+        if (indexCache.segmentSketchCache() != null) {
+            segmentsStats.addSegmentSketchMemoryInBytes(indexCache.segmentSketchCache().ramBytesUsed(shardId));
+        }
         return segmentsStats;
     }
 
@@ -1064,7 +1136,12 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     }
 
     public TranslogStats translogStats() {
-        return getEngine().getTranslogStats();
+        final TranslogStats translogStats = getEngine().getTranslogStats();
+        if (translogGroupCommit != null) {
+            translogStats.setGroupCommitStats(translogGroupCommit.getSyncCount(), translogGroupCommit.getSyncOperations(),
+                translogGroupCommit.getSyncTimeInMillis());
+        }
+        return translogStats;
     }
 
     public CompletionStats completionStats(String... fields) {
@@ -1377,7 +1454,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                 result = applyIndexOperation(engine, index.seqNo(), index.primaryTerm(), index.version(),
                     index.versionType().versionTypeForReplicationAndRecovery(), UNASSIGNED_SEQ_NO, 0, index.getAutoGeneratedIdTimestamp(),
                     true, origin, source(shardId.getIndexName(), index.type(), index.id(), index.source(),
-                        XContentHelper.xContentType(index.source())).routing(index.routing()).parent(index.parent()));
+                        XContentHelper.xContentType(index.source())).routing(index.routing()).parent(index.parent()), null);
                 break;
             case DELETE:
                 final Translog.Delete delete = (Translog.Delete) operation;
@@ -2285,6 +2362,26 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         internalIndexingStats.noopUpdate(type);
     }
 
+    /**
+     * Should be called for each document of a bulk request that was parsed ahead of being executed on the primary.
+     *
+     * @param type        the doc type of the document
+     * @param tookInNanos the time it took to parse the document
+     */
+    public void bulkItemParsed(String type, long tookInNanos) {
+        internalIndexingStats.bulkItemParsed(type, tookInNanos);
+    }
+
+    /**
+     * Should be called for each item of a bulk request once it was executed on the primary.
+     *
+     * @param type        the doc type of the item
+     * @param tookInNanos the time it took to execute the item, excluding any time spent waiting for mapping updates
+     */
+    public void bulkItemApplied(String type, long tookInNanos) {
+        internalIndexingStats.bulkItemApplied(type, tookInNanos);
+    }
+
     void checkIndex() throws IOException {
         if (store.tryIncRef()) {
             try {
@@ -2544,7 +2641,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                 Collections.singletonList(refreshListeners),
                 Collections.singletonList(new RefreshMetricUpdater(refreshMetric)),
                 indexSort, circuitBreakerService, replicationTracker, replicationTracker::getRetentionLeases,
-                () -> getOperationPrimaryTerm(), tombstoneDocSupplier());
+                () -> getOperationPrimaryTerm(), tombstoneDocSupplier(), mergeIOGovernor);
     }
 
     /**
@@ -2846,25 +2943,36 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     }
 
     private final AsyncIOProcessor<Translog.Location> translogSyncProcessor;
+    // only set if the node coalesces translog syncs, used instead of the sync processor if durability is set to GROUP
+    @Nullable
+    private final TranslogGroupCommitService.Participant translogGroupCommit;
+    // shares the node wide merge I/O budget between the merges of all shards on the node
+    @Nullable
+    private final MergeIOGovernor mergeIOGovernor;
 
     private static AsyncIOProcessor<Translog.Location> createTranslogSyncProcessor(Logger logger, ThreadContext threadContext,
                                                                                    Supplier<Engine> engineSupplier) {
         return new AsyncIOProcessor<Translog.Location>(logger, 1024, threadContext) {
             @Override
             protected void write(List<Tuple<Translog.Location, Consumer<Exception>>> candidates) throws IOException {
-                try {
-                    engineSupplier.get().ensureTranslogSynced(candidates.stream().map(Tuple::v1));
-                } catch (AlreadyClosedException ex) {
-                    // that's fine since we already synced everything on engine close - this also is conform with the methods
-                    // documentation
-                } catch (IOException ex) { // if this fails we are in deep shit - fail the request
-                    logger.debug("failed to sync translog", ex);
-                    throw ex;
-                }
+                syncTranslogLocations(logger, engineSupplier, candidates.stream().map(Tuple::v1));
             }
         };
     };
 
+    private static void syncTranslogLocations(Logger logger, Supplier<Engine> engineSupplier,
+                                              Stream<Translog.Location> locations) throws IOException {
+        try {
+            engineSupplier.get().ensureTranslogSynced(locations);
+        } catch (AlreadyClosedException ex) {
+            // that's fine since we already synced everything on engine close - this also is conform with the methods
+            // documentation
+        } catch (IOException ex) { // if this fails we are in deep shit - fail the request
+            logger.debug("failed to sync translog", ex);
+            throw ex;
+        }
+    }
+
     /**
      * Syncs the given location with the underlying storage unless already synced. This method might return immediately without
      * actually fsyncing the location until the sync listener is called. Yet, unless there is already another thread fsyncing
@@ -2876,7 +2984,11 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
      */
     public final void sync(Translog.Location location, Consumer<Exception> syncListener) {
         verifyNotClosed();
-        translogSyncProcessor.put(location, syncListener);
+        if (translogGroupCommit != null && getTranslogDurability() == Translog.Durability.GROUP) {
+            translogGroupCommit.sync(location, syncListener);
+        } else {
+            translogSyncProcessor.put(location, syncListener);
+        }
     }
 
     public void sync() throws IOException {
@@ -2979,6 +3091,28 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             logger, threadPool.getThreadContext());
     }
 
+    /**
+     * A document that was parsed ahead of being indexed on the primary, see {@link #preParseIndexSource(SourceToParse)}.
+     */
+    public static final class PreParsedDocument {
+        private final DocumentMapper docMapper;
+        private final ParsedDocument doc;
+        private final long parseTimeInNanos;
+
+        private PreParsedDocument(DocumentMapper docMapper, ParsedDocument doc, long parseTimeInNanos) {
+            this.docMapper = docMapper;
+            this.doc = doc;
+            this.parseTimeInNanos = parseTimeInNanos;
+        }
+
+        /**
+         * The time it took to parse the document.
+         */
+        public long getParseTimeInNanos() {
+            return parseTimeInNanos;
+        }
+    }
+
     /**
      * Simple struct encapsulating a shard failure
      *
@@ -3017,6 +3151,35 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return getEngine().refreshNeeded() || (refreshListeners != null && refreshListeners.refreshNeeded());
     }
 
+    /**
+     * Executes a scheduled refresh if one is needed. If {@link IndexSettings#INDEX_REFRESH_ADAPTIVE_SETTING adaptive refresh} is
+     * enabled, the refresh is deferred until the shard is due according to its {@link AdaptiveRefreshPolicy}.
+     *
+     * @return <code>true</code> if the shard was refreshed
+     * @throws AlreadyClosedException if the engine or internal indexwriter in the engine is already closed
+     */
+    public boolean scheduledRefresh() {
+        final Engine engine = getEngine();
+        final boolean listenersWaiting = refreshListeners != null && refreshListeners.refreshNeeded();
+        if (engine.refreshNeeded() == false && listenersWaiting == false) {
+            return false;
+        }
+        if (indexSettings.isAdaptiveRefreshEnabled()) {
+            final long refreshCount = refreshMetric.count();
+            final long avgRefreshNanos = refreshCount == 0 ? 0 : refreshMetric.sum() / refreshCount;
+            final long indexingBufferSize = engine.config().getIndexingBufferSize().getBytes();
+            final double bufferFill = indexingBufferSize <= 0 ? 0 : (double) getIndexBufferRAMBytesUsed() / indexingBufferSize;
+            final long searchCount = searchStats.stats().getTotal().getQueryCount();
+            if (adaptiveRefreshPolicy.shouldRefresh(System.nanoTime(), searchCount, listenersWaiting, avgRefreshNanos, bufferFill,
+                    indexSettings.getRefreshInterval(), indexSettings.getAdaptiveRefreshMinInterval(),
+                    indexSettings.getAdaptiveRefreshMaxInterval()) == false) {
+                return false;
+            }
+        }
+        refresh("schedule");
+        return true;
+    }
+
     /**
      * Add a listener for refreshes.
      *
@@ -27,6 +27,7 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -46,6 +47,8 @@ public class IndexingStats implements Streamable, ToXContentFragment {
         private long noopUpdateCount;
         private long throttleTimeInMillis;
         private boolean isThrottled;
+        private long bulkParseTimeInMillis;
+        private long bulkApplyTimeInMillis;
 
         Stats() {}
 
@@ -63,6 +66,15 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             this.throttleTimeInMillis = throttleTimeInMillis;
         }
 
+        public Stats(long indexCount, long indexTimeInMillis, long indexCurrent, long indexFailedCount, long deleteCount,
+                     long deleteTimeInMillis, long deleteCurrent, long noopUpdateCount, boolean isThrottled, long throttleTimeInMillis,
+                     long bulkParseTimeInMillis, long bulkApplyTimeInMillis) {
+            this(indexCount, indexTimeInMillis, indexCurrent, indexFailedCount, deleteCount, deleteTimeInMillis, deleteCurrent,
+                noopUpdateCount, isThrottled, throttleTimeInMillis);
+            this.bulkParseTimeInMillis = bulkParseTimeInMillis;
+            this.bulkApplyTimeInMillis = bulkApplyTimeInMillis;
+        }
+
         public void add(Stats stats) {
             indexCount += stats.indexCount;
             indexTimeInMillis += stats.indexTimeInMillis;
@@ -78,6 +90,9 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             if (isThrottled != stats.isThrottled) {
                 isThrottled = true; //When combining if one is throttled set result to throttled.
             }
+
+            bulkParseTimeInMillis += stats.bulkParseTimeInMillis;
+            bulkApplyTimeInMillis += stats.bulkApplyTimeInMillis;
         }
 
         /**
@@ -135,6 +150,21 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             return noopUpdateCount;
         }
 
+        /**
+         * The total amount of time spent on parsing documents of bulk requests ahead of executing them on the primary. Documents that
+         * are parsed while being executed are not accounted for here but in {@link #getIndexTime()}.
+         */
+        public TimeValue getBulkParseTime() {
+            return new TimeValue(bulkParseTimeInMillis);
+        }
+
+        /**
+         * The total amount of time spent on executing the items of bulk requests on the primary, in order.
+         */
+        public TimeValue getBulkApplyTime() {
+            return new TimeValue(bulkApplyTimeInMillis);
+        }
+
         public static Stats readStats(StreamInput in) throws IOException {
             Stats stats = new Stats();
             stats.readFrom(in);
@@ -153,6 +183,10 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             noopUpdateCount = in.readVLong();
             isThrottled = in.readBoolean();
             throttleTimeInMillis = in.readLong();
+            if (in.hasFeature(TransportCapabilities.BULK_PARSE_STATS)) {
+                bulkParseTimeInMillis = in.readVLong();
+                bulkApplyTimeInMillis = in.readVLong();
+            }
         }
 
         @Override
@@ -167,7 +201,10 @@ public class IndexingStats implements Streamable, ToXContentFragment {
             out.writeVLong(noopUpdateCount);
             out.writeBoolean(isThrottled);
             out.writeLong(throttleTimeInMillis);
-
+            if (out.hasFeature(TransportCapabilities.BULK_PARSE_STATS)) {
+                out.writeVLong(bulkParseTimeInMillis);
+                out.writeVLong(bulkApplyTimeInMillis);
+            }
         }
 
         @Override
@@ -185,6 +222,9 @@ public class IndexingStats implements Streamable, ToXContentFragment {
 
             builder.field(Fields.IS_THROTTLED, isThrottled);
             builder.humanReadableField(Fields.THROTTLED_TIME_IN_MILLIS, Fields.THROTTLED_TIME, getThrottleTime());
+
+            builder.humanReadableField(Fields.BULK_PARSE_TIME_IN_MILLIS, Fields.BULK_PARSE_TIME, getBulkParseTime());
+            builder.humanReadableField(Fields.BULK_APPLY_TIME_IN_MILLIS, Fields.BULK_APPLY_TIME, getBulkApplyTime());
             return builder;
         }
     }
@@ -276,6 +316,10 @@ public class IndexingStats implements Streamable, ToXContentFragment {
         static final String IS_THROTTLED = "is_throttled";
         static final String THROTTLED_TIME_IN_MILLIS = "throttle_time_in_millis";
         static final String THROTTLED_TIME = "throttle_time";
+        static final String BULK_PARSE_TIME_IN_MILLIS = "bulk_parse_time_in_millis";
+        static final String BULK_PARSE_TIME = "bulk_parse_time";
+        static final String BULK_APPLY_TIME_IN_MILLIS = "bulk_apply_time_in_millis";
+        static final String BULK_APPLY_TIME = "bulk_apply_time";
     }
 
     @Override
@@ -148,6 +148,16 @@ final class InternalIndexingStats implements IndexingOperationListener {
         typeStats(type).noopUpdates.inc();
     }
 
+    void bulkItemParsed(String type, long tookInNanos) {
+        totalStats.bulkParseTime.inc(tookInNanos);
+        typeStats(type).bulkParseTime.inc(tookInNanos);
+    }
+
+    void bulkItemApplied(String type, long tookInNanos) {
+        totalStats.bulkApplyTime.inc(tookInNanos);
+        typeStats(type).bulkApplyTime.inc(tookInNanos);
+    }
+
     private StatsHolder typeStats(String type) {
         StatsHolder stats = typesStats.get(type);
         if (stats == null) {
@@ -169,12 +179,15 @@ final class InternalIndexingStats implements IndexingOperationListener {
         private final CounterMetric indexFailed = new CounterMetric();
         private final CounterMetric deleteCurrent = new CounterMetric();
         private final CounterMetric noopUpdates = new CounterMetric();
+        private final CounterMetric bulkParseTime = new CounterMetric();
+        private final CounterMetric bulkApplyTime = new CounterMetric();
 
         IndexingStats.Stats stats(boolean isThrottled, long currentThrottleMillis) {
             return new IndexingStats.Stats(
                 indexMetric.count(), TimeUnit.NANOSECONDS.toMillis(indexMetric.sum()), indexCurrent.count(), indexFailed.count(),
                 deleteMetric.count(), TimeUnit.NANOSECONDS.toMillis(deleteMetric.sum()), deleteCurrent.count(),
-                noopUpdates.count(), isThrottled, TimeUnit.MILLISECONDS.toMillis(currentThrottleMillis));
+                noopUpdates.count(), isThrottled, TimeUnit.MILLISECONDS.toMillis(currentThrottleMillis),
+                TimeUnit.NANOSECONDS.toMillis(bulkParseTime.count()), TimeUnit.NANOSECONDS.toMillis(bulkApplyTime.count()));
         }
 
         void clear() {
@@ -1578,7 +1578,12 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         /**
          * Request durability - translogs are synced for each high level request (bulk, index, delete)
          */
-        REQUEST
+        REQUEST,
+        /**
+         * Group durability - translogs are synced for each high level request (bulk, index, delete) but the syncs of all shards whose
+         * translogs reside on the same data path are coalesced into shared sync windows by the node
+         */
+        GROUP
 
     }
 
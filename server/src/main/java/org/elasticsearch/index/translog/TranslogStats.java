@@ -24,8 +24,10 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 
@@ -36,6 +38,9 @@ public class TranslogStats implements Streamable, ToXContentFragment {
     private long uncommittedSizeInBytes;
     private int  uncommittedOperations;
     private long earliestLastModifiedAge;
+    private long groupCommitSyncs;
+    private long groupCommitOperations;
+    private long groupCommitTimeInMillis;
 
     public TranslogStats() {
     }
@@ -75,6 +80,19 @@ public class TranslogStats implements Streamable, ToXContentFragment {
         this.uncommittedSizeInBytes += translogStats.uncommittedSizeInBytes;
         this.earliestLastModifiedAge =
             Math.min(this.earliestLastModifiedAge, translogStats.earliestLastModifiedAge);
+        this.groupCommitSyncs += translogStats.groupCommitSyncs;
+        this.groupCommitOperations += translogStats.groupCommitOperations;
+        this.groupCommitTimeInMillis += translogStats.groupCommitTimeInMillis;
+    }
+
+    /**
+     * Sets the statistics of the node level group commits the translog took part in, see
+     * {@link org.elasticsearch.indices.TranslogGroupCommitService}.
+     */
+    public void setGroupCommitStats(long syncs, long operations, long timeInMillis) {
+        this.groupCommitSyncs = syncs;
+        this.groupCommitOperations = operations;
+        this.groupCommitTimeInMillis = timeInMillis;
     }
 
     public long getTranslogSizeInBytes() {
@@ -97,6 +115,21 @@ public class TranslogStats implements Streamable, ToXContentFragment {
 
     public long getEarliestLastModifiedAge() { return earliestLastModifiedAge; }
 
+    /** the number of group commit sync windows the translog took part in */
+    public long getGroupCommitSyncs() {
+        return groupCommitSyncs;
+    }
+
+    /** the number of sync requests that were coalesced into group commit sync windows */
+    public long getGroupCommitOperations() {
+        return groupCommitOperations;
+    }
+
+    /** the total time spent syncing the translog in group commit sync windows */
+    public long getGroupCommitTimeInMillis() {
+        return groupCommitTimeInMillis;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject("translog");
@@ -105,6 +138,11 @@ public class TranslogStats implements Streamable, ToXContentFragment {
         builder.field("uncommitted_operations", uncommittedOperations);
         builder.humanReadableField("uncommitted_size_in_bytes", "uncommitted_size", new ByteSizeValue(uncommittedSizeInBytes));
         builder.field("earliest_last_modified_age", earliestLastModifiedAge);
+        builder.startObject("group_commit");
+        builder.field("syncs", groupCommitSyncs);
+        builder.field("operations", groupCommitOperations);
+        builder.humanReadableField("total_time_in_millis", "total_time", new TimeValue(groupCommitTimeInMillis));
+        builder.endObject();
         builder.endObject();
         return builder;
     }
@@ -128,6 +166,11 @@ public class TranslogStats implements Streamable, ToXContentFragment {
         if (in.getVersion().onOrAfter(Version.V_6_3_0)) {
             earliestLastModifiedAge = in.readVLong();
         }
+        if (in.hasFeature(TransportCapabilities.TRANSLOG_GROUP_COMMIT_STATS)) {
+            groupCommitSyncs = in.readVLong();
+            groupCommitOperations = in.readVLong();
+            groupCommitTimeInMillis = in.readVLong();
+        }
     }
 
     @Override
@@ -141,5 +184,10 @@ public class TranslogStats implements Streamable, ToXContentFragment {
         if (out.getVersion().onOrAfter(Version.V_6_3_0)) {
             out.writeVLong(earliestLastModifiedAge);
         }
+        if (out.hasFeature(TransportCapabilities.TRANSLOG_GROUP_COMMIT_STATS)) {
+            out.writeVLong(groupCommitSyncs);
+            out.writeVLong(groupCommitOperations);
+            out.writeVLong(groupCommitTimeInMillis);
+        }
     }
 }
@@ -55,6 +55,8 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
     private final TragicExceptionHolder tragedy;
     /* A buffered outputstream what writes to the writers channel */
     private final OutputStream outputStream;
+    /* operations of at least this size bypass the output stream's buffer and are written to the channel directly */
+    private final int directWriteThreshold;
     /* the total offset of this file including the bytes written to the file as well as into the buffer */
     private volatile long totalOffset;
 
@@ -89,6 +91,7 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
         this.channelFactory = channelFactory;
         this.minTranslogGenerationSupplier = minTranslogGenerationSupplier;
         this.outputStream = new BufferedChannelOutputStream(java.nio.channels.Channels.newOutputStream(channel), bufferSize.bytesAsInt());
+        this.directWriteThreshold = bufferSize.bytesAsInt();
         this.lastSyncedCheckpoint = initialCheckpoint;
         this.totalOffset = initialCheckpoint.offset;
         assert initialCheckpoint.minSeqNo == SequenceNumbers.NO_OPS_PERFORMED : initialCheckpoint.minSeqNo;
@@ -160,7 +163,14 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
         ensureOpen();
         final long offset = totalOffset;
         try {
-            data.writeTo(outputStream);
+            if (data.length() >= directWriteThreshold) {
+                // copying a large operation into the buffer would only cause one write per page of the operation after the buffer
+                // has been filled - instead we flush what's buffered and hand all pages of the operation to a single gathering write
+                outputStream.flush();
+                Channels.writeToChannel(BytesReference.toByteBuffers(data), channel);
+            } else {
+                data.writeTo(outputStream);
+            }
         } catch (final Exception ex) {
             closeWithTragicEvent(ex);
             throw ex;
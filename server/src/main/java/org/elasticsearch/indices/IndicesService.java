@@ -54,6 +54,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.logging.DeprecationLogger;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.IndexScopedSettings;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
@@ -201,6 +202,8 @@ public class IndicesService extends AbstractLifecycleComponent
     private final MapperRegistry mapperRegistry;
     private final NamedWriteableRegistry namedWriteableRegistry;
     private final IndexingMemoryController indexingMemoryController;
+    private final TranslogGroupCommitService translogGroupCommitService;
+    private final MergeIOGovernor mergeIOGovernor;
     private final TimeValue cleanInterval;
     private final IndicesRequestCache indicesRequestCache;
     private final IndicesQueryCache indicesQueryCache;
@@ -217,7 +220,8 @@ public class IndicesService extends AbstractLifecycleComponent
     public IndicesService(Settings settings, PluginsService pluginsService, NodeEnvironment nodeEnv, NamedXContentRegistry xContentRegistry,
                           AnalysisRegistry analysisRegistry, IndexNameExpressionResolver indexNameExpressionResolver,
                           MapperRegistry mapperRegistry, NamedWriteableRegistry namedWriteableRegistry, ThreadPool threadPool,
-                          IndexScopedSettings indexScopedSettings, CircuitBreakerService circuitBreakerService, BigArrays bigArrays,
+                          IndexScopedSettings indexScopedSettings, ClusterSettings clusterSettings,
+                          CircuitBreakerService circuitBreakerService, BigArrays bigArrays,
                           ScriptService scriptService, Client client, MetaStateService metaStateService,
                           Collection<Function<IndexSettings, Optional<EngineFactory>>> engineFactoryProviders,
                           Map<String, Function<IndexSettings, IndexStore>> indexStoreFactories) {
@@ -236,6 +240,8 @@ public class IndicesService extends AbstractLifecycleComponent
         indexingMemoryController = new IndexingMemoryController(settings, threadPool,
                                                                 // ensure we pull an iter with new shards - flatten makes a copy
                                                                 () -> Iterables.flatten(this).iterator());
+        translogGroupCommitService = new TranslogGroupCommitService(settings, threadPool);
+        mergeIOGovernor = new MergeIOGovernor(settings, clusterSettings, threadPool, this::hasOngoingRecoveries);
         this.indexScopedSettings = indexScopedSettings;
         this.circuitBreakerService = circuitBreakerService;
         this.bigArrays = bigArrays;
@@ -297,6 +303,7 @@ public class IndicesService extends AbstractLifecycleComponent
         IOUtils.closeWhileHandlingException(
             analysisRegistry,
             indexingMemoryController,
+            mergeIOGovernor,
             indicesFieldDataCache,
             cacheCleaner,
             indicesRequestCache,
@@ -344,7 +351,21 @@ public class IndicesService extends AbstractLifecycleComponent
             }
         }
 
-        return new NodeIndicesStats(oldStats, statsByShard(this, flags));
+        return new NodeIndicesStats(oldStats, statsByShard(this, flags), flags.isSet(Flag.Merge) ? mergeIOGovernor.stats() : null,
+            // searches allocate their arrays from the circuit breaking instance
+            flags.isSet(Flag.Search) ? SearchAggsStats.of(bigArrays.withCircuitBreaking()) : null);
+    }
+
+    private boolean hasOngoingRecoveries() {
+        for (IndexService indexService : this) {
+            for (IndexShard indexShard : indexService) {
+                final RecoveryStats recoveryStats = indexShard.recoveryStats();
+                if (recoveryStats.currentAsSource() > 0 || recoveryStats.currentAsTarget() > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     Map<Index, List<IndexShardStats>> statsByShard(final IndicesService indicesService, final CommonStatsFlags flags) {
@@ -534,7 +555,9 @@ public class IndicesService extends AbstractLifecycleComponent
                 indicesQueryCache,
                 mapperRegistry,
                 indicesFieldDataCache,
-                namedWriteableRegistry
+                namedWriteableRegistry,
+                translogGroupCommitService,
+                mergeIOGovernor
         );
     }
 
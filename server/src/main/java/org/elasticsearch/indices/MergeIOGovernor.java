@@ -0,0 +1,285 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.indices.recovery.RecoverySettings;
+import org.elasticsearch.threadpool.Scheduler.Cancellable;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Shares a node wide budget of bytes per second between the merges of all shards on the node, so that a node with many shards that
+ * merge at the same time doesn't saturate its disks at the expense of searches and recoveries. Each running merge gets a share of the
+ * budget that grows with the number of segments of its shard and shrinks logarithmically with the size of the merge: small merges
+ * finish quickly and reduce the segment count the most per byte written, and shards with many segments suffer the most from merges
+ * that fall behind. Every merge is allowed at least {@link #MIN_MERGE_BYTES_PER_SEC} so that no merge stalls completely, even if that
+ * means exceeding the budget when a great many merges run at once.
+ *
+ * While shards on the node recover, the budget is reduced by the recovery rate limit ({@code indices.recovery.max_bytes_per_sec}), but
+ * never to less than {@link #MIN_MERGE_SHARE} of the budget. The shares are recomputed whenever a merge starts or finishes, and
+ * periodically on the generic thread pool to pick up recoveries. The periodic rebalance only runs while the node has a budget.
+ *
+ * The budget complements the per shard auto throttling of {@link org.apache.lucene.index.ConcurrentMergeScheduler}: a merge is written
+ * at the lower of the two rates.
+ */
+public class MergeIOGovernor implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(MergeIOGovernor.class);
+
+    /** The bytes per second all merges on the node may write in total, {@code 0} disables the node wide budget. */
+    public static final Setting<ByteSizeValue> MAX_BYTES_PER_SEC_SETTING = Setting.byteSizeSetting(
+        "indices.merge.io.max_bytes_per_sec",
+        new ByteSizeValue(0),
+        Property.Dynamic, Property.NodeScope);
+
+    /** How often the shares are recomputed in the absence of merges starting or finishing. */
+    public static final Setting<TimeValue> REBALANCE_INTERVAL_SETTING = Setting.positiveTimeSetting(
+        "indices.merge.io.rebalance_interval",
+        TimeValue.timeValueSeconds(1),
+        Property.NodeScope);
+
+    static final double MIN_MERGE_SHARE = 0.25;
+    static final long MIN_MERGE_BYTES_PER_SEC = new ByteSizeValue(1, ByteSizeUnit.MB).getBytes();
+    private static final double MB = 1024 * 1024;
+
+    private final BooleanSupplier recoveriesActive;
+    private final Set<GovernedMerge> merges = new HashSet<>();
+    private final CounterMetric rebalances = new CounterMetric();
+    private final ThreadPool threadPool;
+    private final TimeValue rebalanceInterval;
+    private volatile long maxBytesPerSec;
+    private volatile long recoveryMaxBytesPerSec;
+    // whether shards on the node recovered at the last periodic rebalance
+    private volatile boolean recovering;
+    // guarded by this
+    private long availableBytesPerSec;
+    private long recoveryReservedBytesPerSec;
+    // null while the node doesn't have a budget
+    private Cancellable scheduler;
+    private boolean closed;
+
+    public MergeIOGovernor(Settings settings, ClusterSettings clusterSettings, ThreadPool threadPool, BooleanSupplier recoveriesActive) {
+        this.recoveriesActive = recoveriesActive;
+        this.threadPool = threadPool;
+        this.rebalanceInterval = REBALANCE_INTERVAL_SETTING.get(settings);
+        this.maxBytesPerSec = MAX_BYTES_PER_SEC_SETTING.get(settings).getBytes();
+        this.recoveryMaxBytesPerSec = RecoverySettings.INDICES_RECOVERY_MAX_BYTES_PER_SEC_SETTING.get(settings).getBytes();
+        clusterSettings.addSettingsUpdateConsumer(MAX_BYTES_PER_SEC_SETTING, this::setMaxBytesPerSec);
+        clusterSettings.addSettingsUpdateConsumer(RecoverySettings.INDICES_RECOVERY_MAX_BYTES_PER_SEC_SETTING,
+            this::setRecoveryMaxBytesPerSec);
+        updateRebalanceSchedule();
+        reallocate();
+    }
+
+    private void setMaxBytesPerSec(ByteSizeValue maxBytesPerSec) {
+        this.maxBytesPerSec = maxBytesPerSec.getBytes();
+        updateRebalanceSchedule();
+        reallocate();
+    }
+
+    /**
+     * Starts the periodic rebalance when the node gets a budget and stops it when the budget is disabled, without a budget there are
+     * no shares to recompute and looking for recoveries would go through all shards of the node for nothing.
+     */
+    private synchronized void updateRebalanceSchedule() {
+        if (maxBytesPerSec > 0) {
+            if (scheduler == null && closed == false) {
+                // not on the scheduler thread, looking for recoveries goes through all shards of the node and notifying the
+                // participants waits for the locks of their merge schedulers
+                scheduler = threadPool.scheduleWithFixedDelay(this::rebalance, rebalanceInterval, ThreadPool.Names.GENERIC);
+            }
+        } else if (scheduler != null) {
+            scheduler.cancel();
+            scheduler = null;
+            // recoveries are checked again by the first rebalance once the budget is enabled
+            recovering = false;
+        }
+    }
+
+    synchronized boolean isRebalanceScheduled() {
+        return scheduler != null;
+    }
+
+    private void setRecoveryMaxBytesPerSec(ByteSizeValue recoveryMaxBytesPerSec) {
+        this.recoveryMaxBytesPerSec = recoveryMaxBytesPerSec.getBytes();
+        reallocate();
+    }
+
+    /**
+     * Registers the merge scheduler of a shard with this governor.
+     *
+     * @param onRateChange invoked whenever the rate of one of the merges of the participant changed, must not block
+     */
+    public Participant newParticipant(Runnable onRateChange) {
+        return new Participant(onRateChange);
+    }
+
+    /**
+     * The merge scheduler of a single shard.
+     */
+    public final class Participant {
+
+        private final Runnable onRateChange;
+
+        private Participant(Runnable onRateChange) {
+            this.onRateChange = onRateChange;
+        }
+
+        /**
+         * Adds a merge that starts running to the merges that share the budget.
+         *
+         * @param estimatedMergeBytes the estimated number of bytes the merge will write
+         * @param segmentCount        the number of segments of the shard at the time the merge starts
+         */
+        public GovernedMerge mergeStarted(long estimatedMergeBytes, int segmentCount) {
+            final GovernedMerge merge = new GovernedMerge(this, estimatedMergeBytes, segmentCount);
+            synchronized (MergeIOGovernor.this) {
+                merges.add(merge);
+            }
+            reallocate();
+            return merge;
+        }
+
+        /**
+         * Removes a merge that stopped running, handing its share to the other merges.
+         */
+        public void mergeFinished(GovernedMerge merge) {
+            final boolean removed;
+            synchronized (MergeIOGovernor.this) {
+                removed = merges.remove(merge);
+            }
+            if (removed) {
+                reallocate();
+            }
+        }
+    }
+
+    /**
+     * A running merge and the share of the budget it is allowed to write at.
+     */
+    public static final class GovernedMerge {
+
+        private final Participant participant;
+        private final double weight;
+        private volatile double mbPerSec = Double.POSITIVE_INFINITY;
+
+        private GovernedMerge(Participant participant, long estimatedMergeBytes, int segmentCount) {
+            this.participant = participant;
+            this.weight = weight(estimatedMergeBytes, segmentCount);
+        }
+
+        /**
+         * The rate this merge may write at in MB per second, {@link Double#POSITIVE_INFINITY} if the node doesn't have a budget.
+         */
+        public double getMBPerSec() {
+            return mbPerSec;
+        }
+    }
+
+    static double weight(long estimatedMergeBytes, int segmentCount) {
+        return Math.max(1, segmentCount) / Math.log(Math.E + Math.max(0, estimatedMergeBytes) / MB);
+    }
+
+    /**
+     * Checks whether shards on the node recover and recomputes the shares of the running merges accordingly.
+     */
+    void rebalance() {
+        // outside of the lock, this goes through all shards of the node
+        recovering = recoveriesActive.getAsBoolean();
+        reallocate();
+    }
+
+    /**
+     * Recomputes the share of each running merge and notifies the participants whose merges got a different share.
+     */
+    private void reallocate() {
+        final Set<Participant> changed = new LinkedHashSet<>();
+        synchronized (this) {
+            rebalances.inc();
+            final long budget = maxBytesPerSec;
+            if (budget <= 0) {
+                availableBytesPerSec = -1;
+                recoveryReservedBytesPerSec = 0;
+            } else {
+                long reserved = 0;
+                if (merges.isEmpty() == false && recovering) {
+                    final long maxReserved = (long) (budget * (1 - MIN_MERGE_SHARE));
+                    // an unlimited recovery rate takes as much as the merges can give up
+                    reserved = recoveryMaxBytesPerSec <= 0 ? maxReserved : Math.min(recoveryMaxBytesPerSec, maxReserved);
+                }
+                recoveryReservedBytesPerSec = reserved;
+                availableBytesPerSec = budget - reserved;
+            }
+            double totalWeight = 0;
+            for (GovernedMerge merge : merges) {
+                totalWeight += merge.weight;
+            }
+            for (GovernedMerge merge : merges) {
+                final double mbPerSec;
+                if (availableBytesPerSec < 0) {
+                    mbPerSec = Double.POSITIVE_INFINITY;
+                } else {
+                    mbPerSec = Math.max(MIN_MERGE_BYTES_PER_SEC, availableBytesPerSec * merge.weight / totalWeight) / MB;
+                }
+                if (mbPerSec != merge.mbPerSec) {
+                    merge.mbPerSec = mbPerSec;
+                    changed.add(merge.participant);
+                }
+            }
+        }
+        // notify outside of the lock, participants acquire the lock of their merge scheduler
+        for (Participant participant : changed) {
+            try {
+                participant.onRateChange.run();
+            } catch (Exception e) {
+                logger.warn("failed to apply merge rate change", e);
+            }
+        }
+    }
+
+    public synchronized MergeIOGovernorStats stats() {
+        return new MergeIOGovernorStats(maxBytesPerSec, Math.max(availableBytesPerSec, 0), recoveryReservedBytesPerSec, merges.size(),
+            rebalances.count());
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.cancel();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * The state of the node wide {@link MergeIOGovernor merge I/O budget}.
+ */
+public class MergeIOGovernorStats implements Writeable, ToXContentFragment {
+
+    private final long maxBytesPerSec;
+    private final long availableBytesPerSec;
+    private final long recoveryReservedBytesPerSec;
+    private final long currentMerges;
+    private final long rebalances;
+
+    public MergeIOGovernorStats(long maxBytesPerSec, long availableBytesPerSec, long recoveryReservedBytesPerSec, long currentMerges,
+                                long rebalances) {
+        this.maxBytesPerSec = maxBytesPerSec;
+        this.availableBytesPerSec = availableBytesPerSec;
+        this.recoveryReservedBytesPerSec = recoveryReservedBytesPerSec;
+        this.currentMerges = currentMerges;
+        this.rebalances = rebalances;
+    }
+
+    public MergeIOGovernorStats(StreamInput in) throws IOException {
+        maxBytesPerSec = in.readVLong();
+        availableBytesPerSec = in.readVLong();
+        recoveryReservedBytesPerSec = in.readVLong();
+        currentMerges = in.readVLong();
+        rebalances = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(maxBytesPerSec);
+        out.writeVLong(availableBytesPerSec);
+        out.writeVLong(recoveryReservedBytesPerSec);
+        out.writeVLong(currentMerges);
+        out.writeVLong(rebalances);
+    }
+
+    /**
+     * The configured budget of the node, {@code 0} if merges aren't limited by a node wide budget.
+     */
+    public ByteSizeValue getMaxBytesPerSec() {
+        return new ByteSizeValue(maxBytesPerSec);
+    }
+
+    /**
+     * The part of the budget that is currently shared by the running merges.
+     */
+    public ByteSizeValue getAvailableBytesPerSec() {
+        return new ByteSizeValue(availableBytesPerSec);
+    }
+
+    /**
+     * The part of the budget that is currently held back for recoveries.
+     */
+    public ByteSizeValue getRecoveryReservedBytesPerSec() {
+        return new ByteSizeValue(recoveryReservedBytesPerSec);
+    }
+
+    public long getCurrentMerges() {
+        return currentMerges;
+    }
+
+    /**
+     * The number of times the budget was redistributed among the running merges.
+     */
+    public long getRebalances() {
+        return rebalances;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.MERGE_IO_GOVERNOR);
+        builder.humanReadableField(Fields.MAX_BYTES_PER_SEC_IN_BYTES, Fields.MAX_BYTES_PER_SEC, getMaxBytesPerSec());
+        builder.humanReadableField(Fields.AVAILABLE_BYTES_PER_SEC_IN_BYTES, Fields.AVAILABLE_BYTES_PER_SEC, getAvailableBytesPerSec());
+        builder.humanReadableField(Fields.RECOVERY_RESERVED_BYTES_PER_SEC_IN_BYTES, Fields.RECOVERY_RESERVED_BYTES_PER_SEC,
+            getRecoveryReservedBytesPerSec());
+        builder.field(Fields.CURRENT_MERGES, currentMerges);
+        builder.field(Fields.REBALANCES, rebalances);
+        builder.endObject();
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MergeIOGovernorStats that = (MergeIOGovernorStats) o;
+        return maxBytesPerSec == that.maxBytesPerSec
+            && availableBytesPerSec == that.availableBytesPerSec
+            && recoveryReservedBytesPerSec == that.recoveryReservedBytesPerSec
+            && currentMerges == that.currentMerges
+            && rebalances == that.rebalances;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxBytesPerSec, availableBytesPerSec, recoveryReservedBytesPerSec, currentMerges, rebalances);
+    }
+
+    static final class Fields {
+        static final String MERGE_IO_GOVERNOR = "merge_io_governor";
+        static final String MAX_BYTES_PER_SEC = "max_bytes_per_sec";
+        static final String MAX_BYTES_PER_SEC_IN_BYTES = "max_bytes_per_sec_in_bytes";
+        static final String AVAILABLE_BYTES_PER_SEC = "available_bytes_per_sec";
+        static final String AVAILABLE_BYTES_PER_SEC_IN_BYTES = "available_bytes_per_sec_in_bytes";
+        static final String RECOVERY_RESERVED_BYTES_PER_SEC = "recovery_reserved_bytes_per_sec";
+        static final String RECOVERY_RESERVED_BYTES_PER_SEC_IN_BYTES = "recovery_reserved_bytes_per_sec_in_bytes";
+        static final String CURRENT_MERGES = "current_merges";
+        static final String REBALANCES = "rebalances";
+    }
+}
@@ -45,6 +45,7 @@ import org.elasticsearch.index.store.StoreStats;
 import org.elasticsearch.index.translog.TranslogStats;
 import org.elasticsearch.index.warmer.WarmerStats;
 import org.elasticsearch.search.suggest.completion.CompletionStats;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -59,13 +60,24 @@ public class NodeIndicesStats implements Streamable, ToXContentFragment {
 
     private CommonStats stats;
     private Map<Index, List<IndexShardStats>> statsByShard;
+    @Nullable
+    private MergeIOGovernorStats mergeIOGovernor;
+    @Nullable
+    private SearchAggsStats searchAggs;
 
     NodeIndicesStats() {
     }
 
     public NodeIndicesStats(CommonStats oldStats, Map<Index, List<IndexShardStats>> statsByShard) {
+        this(oldStats, statsByShard, null, null);
+    }
+
+    public NodeIndicesStats(CommonStats oldStats, Map<Index, List<IndexShardStats>> statsByShard,
+                            @Nullable MergeIOGovernorStats mergeIOGovernor, @Nullable SearchAggsStats searchAggs) {
         //this.stats = stats;
         this.statsByShard = statsByShard;
+        this.mergeIOGovernor = mergeIOGovernor;
+        this.searchAggs = searchAggs;
 
         // make a total common stats from old ones and current ones
         this.stats = oldStats;
@@ -158,6 +170,16 @@ public class NodeIndicesStats implements Streamable, ToXContentFragment {
         return stats.getRecoveryStats();
     }
 
+    @Nullable
+    public MergeIOGovernorStats getMergeIOGovernor() {
+        return mergeIOGovernor;
+    }
+
+    @Nullable
+    public SearchAggsStats getSearchAggs() {
+        return searchAggs;
+    }
+
     public static NodeIndicesStats readIndicesStats(StreamInput in) throws IOException {
         NodeIndicesStats stats = new NodeIndicesStats();
         stats.readFrom(in);
@@ -180,6 +202,12 @@ public class NodeIndicesStats implements Streamable, ToXContentFragment {
                 statsByShard.put(index, indexShardStats);
             }
         }
+        if (in.hasFeature(TransportCapabilities.MERGE_IO_GOVERNOR_STATS)) {
+            mergeIOGovernor = in.readOptionalWriteable(MergeIOGovernorStats::new);
+        }
+        if (in.hasFeature(TransportCapabilities.SEARCH_AGGS_STATS)) {
+            searchAggs = in.readOptionalWriteable(SearchAggsStats::new);
+        }
     }
 
     @Override
@@ -196,6 +224,12 @@ public class NodeIndicesStats implements Streamable, ToXContentFragment {
                 }
             }
         }
+        if (out.hasFeature(TransportCapabilities.MERGE_IO_GOVERNOR_STATS)) {
+            out.writeOptionalWriteable(mergeIOGovernor);
+        }
+        if (out.hasFeature(TransportCapabilities.SEARCH_AGGS_STATS)) {
+            out.writeOptionalWriteable(searchAggs);
+        }
     }
 
     @Override
@@ -210,6 +244,12 @@ public class NodeIndicesStats implements Streamable, ToXContentFragment {
         // "node" level
         builder.startObject(Fields.INDICES);
         stats.toXContent(builder, params);
+        if (mergeIOGovernor != null) {
+            mergeIOGovernor.toXContent(builder, params);
+        }
+        if (searchAggs != null) {
+            searchAggs.toXContent(builder, params);
+        }
 
         if ("indices".equals(level)) {
             Map<Index, CommonStats> indexStats = createStatsByIndex();
@@ -0,0 +1,122 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * How the arrays that searches allocate from the circuit breaking {@link BigArrays} of the node, which hold the
+ * per-bucket state of aggregations, were resized.
+ */
+public class SearchAggsStats implements Writeable, ToXContentFragment {
+
+    private final long reallocations;
+    private final long reallocatedBytes;
+    private final long recycledGrowths;
+
+    public SearchAggsStats(long reallocations, long reallocatedBytes, long recycledGrowths) {
+        this.reallocations = reallocations;
+        this.reallocatedBytes = reallocatedBytes;
+        this.recycledGrowths = recycledGrowths;
+    }
+
+    public SearchAggsStats(StreamInput in) throws IOException {
+        reallocations = in.readVLong();
+        reallocatedBytes = in.readVLong();
+        recycledGrowths = in.readVLong();
+    }
+
+    static SearchAggsStats of(BigArrays bigArrays) {
+        return new SearchAggsStats(bigArrays.reallocations(), bigArrays.reallocatedBytes(), bigArrays.recycledGrowths());
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(reallocations);
+        out.writeVLong(reallocatedBytes);
+        out.writeVLong(recycledGrowths);
+    }
+
+    /**
+     * The number of times an array was resized by copying its values into a new array.
+     */
+    public long getReallocations() {
+        return reallocations;
+    }
+
+    /**
+     * The number of bytes that were copied when arrays were resized.
+     */
+    public ByteSizeValue getReallocated() {
+        return new ByteSizeValue(reallocatedBytes);
+    }
+
+    /**
+     * The number of times an array grew without copying its values, because they were stored in a recycled page.
+     */
+    public long getRecycledGrowths() {
+        return recycledGrowths;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.SEARCH_AGGS);
+        builder.field(Fields.REALLOCATIONS, reallocations);
+        builder.humanReadableField(Fields.REALLOCATED_IN_BYTES, Fields.REALLOCATED, getReallocated());
+        builder.field(Fields.RECYCLED_GROWTHS, recycledGrowths);
+        builder.endObject();
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchAggsStats that = (SearchAggsStats) o;
+        return reallocations == that.reallocations
+            && reallocatedBytes == that.reallocatedBytes
+            && recycledGrowths == that.recycledGrowths;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(reallocations, reallocatedBytes, recycledGrowths);
+    }
+
+    static final class Fields {
+        static final String SEARCH_AGGS = "search_aggs";
+        static final String REALLOCATIONS = "reallocations";
+        static final String REALLOCATED = "reallocated";
+        static final String REALLOCATED_IN_BYTES = "reallocated_in_bytes";
+        static final String RECYCLED_GROWTHS = "recycled_growths";
+    }
+}
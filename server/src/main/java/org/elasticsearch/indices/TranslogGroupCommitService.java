@@ -0,0 +1,235 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Coalesces the translog fsyncs of all shards that use {@link Translog.Durability#GROUP} durability and whose translogs live on the
+ * same data path. The first sync request on an idle data path opens a sync window of at most
+ * {@link #GROUP_COMMIT_MAX_DELAY_SETTING}; all requests that arrive in the meantime are collected and a single thread then fsyncs
+ * each participating translog once, up to the highest requested location, before notifying all listeners. Requests that arrive while
+ * a window is being synced are picked up by the next window right after, so there is at most one sync in flight per data path.
+ */
+public class TranslogGroupCommitService {
+
+    private static final Logger logger = LogManager.getLogger(TranslogGroupCommitService.class);
+
+    /** The maximum time a translog sync request waits for other requests on the same data path to join its sync window. */
+    public static final Setting<TimeValue> GROUP_COMMIT_MAX_DELAY_SETTING = Setting.timeSetting(
+        "indices.translog.group_commit.max_delay",
+        TimeValue.timeValueMillis(5),
+        TimeValue.ZERO,
+        Property.NodeScope);
+
+    private final ThreadPool threadPool;
+    private final TimeValue maxDelay;
+    private final ConcurrentMap<Path, DataPathGroup> groups = ConcurrentCollections.newConcurrentMap();
+
+    public TranslogGroupCommitService(Settings settings, ThreadPool threadPool) {
+        this.threadPool = threadPool;
+        this.maxDelay = GROUP_COMMIT_MAX_DELAY_SETTING.get(settings);
+    }
+
+    /**
+     * Registers a shard's translog with this service.
+     *
+     * @param dataPath the data path the translog resides on, all participants on the same path share sync windows
+     * @param syncer   ensures that the given locations are synced to disk
+     */
+    public Participant newParticipant(Path dataPath, CheckedConsumer<Stream<Translog.Location>, IOException> syncer) {
+        return new Participant(groups.computeIfAbsent(dataPath, DataPathGroup::new), syncer);
+    }
+
+    /**
+     * The translog of a single shard taking part in group commits.
+     */
+    public static final class Participant {
+
+        private final DataPathGroup group;
+        private final CheckedConsumer<Stream<Translog.Location>, IOException> syncer;
+        private final CounterMetric syncs = new CounterMetric();
+        private final CounterMetric operations = new CounterMetric();
+        private final CounterMetric syncTimeInNanos = new CounterMetric();
+
+        private Participant(DataPathGroup group, CheckedConsumer<Stream<Translog.Location>, IOException> syncer) {
+            this.group = group;
+            this.syncer = syncer;
+        }
+
+        /**
+         * Syncs the given location as part of the next sync window of this participant's data path. The listener is notified once
+         * the location is durable or the sync failed.
+         */
+        public void sync(Translog.Location location, Consumer<Exception> listener) {
+            group.add(this, location, listener);
+        }
+
+        /** The number of sync windows this translog took part in. */
+        public long getSyncCount() {
+            return syncs.count();
+        }
+
+        /** The number of sync requests that were coalesced into those windows. */
+        public long getSyncOperations() {
+            return operations.count();
+        }
+
+        /** The total time spent syncing this translog in sync windows. */
+        public long getSyncTimeInMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(syncTimeInNanos.count());
+        }
+    }
+
+    private final class DataPathGroup {
+
+        private final Path dataPath;
+        private Map<Participant, List<Tuple<Translog.Location, Consumer<Exception>>>> pending = new LinkedHashMap<>();
+        // true from the moment a window is opened until there is nothing left to sync
+        private boolean active;
+
+        DataPathGroup(Path dataPath) {
+            this.dataPath = dataPath;
+        }
+
+        void add(Participant participant, Translog.Location location, Consumer<Exception> listener) {
+            final boolean openWindow;
+            final Consumer<Exception> contextPreservingListener = preserveContext(listener);
+            synchronized (this) {
+                pending.computeIfAbsent(participant, p -> new ArrayList<>()).add(new Tuple<>(location, contextPreservingListener));
+                openWindow = active == false;
+                active = true;
+            }
+            if (openWindow) {
+                final SyncWindow window = new SyncWindow();
+                try {
+                    if (maxDelay.nanos() == 0) {
+                        threadPool.generic().execute(window);
+                    } else {
+                        threadPool.schedule(window, maxDelay, ThreadPool.Names.GENERIC);
+                    }
+                } catch (EsRejectedExecutionException e) {
+                    window.onRejection(e);
+                }
+            }
+        }
+
+        private void syncPending() {
+            while (true) {
+                final Map<Participant, List<Tuple<Translog.Location, Consumer<Exception>>>> batch;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        active = false;
+                        return;
+                    }
+                    batch = pending;
+                    pending = new LinkedHashMap<>();
+                }
+                for (Map.Entry<Participant, List<Tuple<Translog.Location, Consumer<Exception>>>> entry : batch.entrySet()) {
+                    syncParticipant(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        private void syncParticipant(Participant participant, List<Tuple<Translog.Location, Consumer<Exception>>> candidates) {
+            final long startTime = System.nanoTime();
+            Exception exception = null;
+            try {
+                participant.syncer.accept(candidates.stream().map(Tuple::v1));
+            } catch (Exception e) {
+                logger.debug(() -> new ParameterizedMessage("failed to sync translog on data path [{}]", dataPath), e);
+                exception = e;
+            }
+            participant.syncs.inc();
+            participant.operations.inc(candidates.size());
+            participant.syncTimeInNanos.inc(System.nanoTime() - startTime);
+            notifyListeners(candidates, exception);
+        }
+
+        private void notifyListeners(List<Tuple<Translog.Location, Consumer<Exception>>> candidates, Exception exception) {
+            for (Tuple<Translog.Location, Consumer<Exception>> candidate : candidates) {
+                try {
+                    candidate.v2().accept(exception);
+                } catch (Exception e) {
+                    logger.warn("failed to notify translog sync listener", e);
+                }
+            }
+        }
+
+        // listeners are notified on the thread that syncs the window, in the thread context of the request they belong to
+        private Consumer<Exception> preserveContext(Consumer<Exception> consumer) {
+            Supplier<ThreadContext.StoredContext> restorableContext = threadPool.getThreadContext().newRestorableContext(false);
+            return e -> {
+                try (ThreadContext.StoredContext ignore = restorableContext.get()) {
+                    consumer.accept(e);
+                }
+            };
+        }
+
+        private final class SyncWindow extends AbstractRunnable {
+
+            @Override
+            protected void doRun() {
+                syncPending();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                logger.warn(() -> new ParameterizedMessage("failed to run translog group commit on data path [{}]", dataPath), e);
+                final Map<Participant, List<Tuple<Translog.Location, Consumer<Exception>>>> failed;
+                synchronized (DataPathGroup.this) {
+                    failed = pending;
+                    pending = new LinkedHashMap<>();
+                    active = false;
+                }
+                for (List<Tuple<Translog.Location, Consumer<Exception>>> candidates : failed.values()) {
+                    notifyListeners(candidates, e);
+                }
+            }
+        }
+    }
+}
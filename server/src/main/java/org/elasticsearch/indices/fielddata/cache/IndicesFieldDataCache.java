@@ -39,16 +39,20 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.fielddata.AtomicFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
+import org.elasticsearch.index.fielddata.ordinals.IncrementalOrdinalMap;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.ShardUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.ToLongBiFunction;
 
 public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCache.Key, Accountable>, Releasable{
@@ -90,17 +94,24 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
         assert key != null && key.listeners != null;
         IndexFieldCache indexCache = key.indexCache;
         final Accountable value = notification.getValue();
+        final boolean evicted = notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED;
         for (IndexFieldDataCache.Listener listener : key.listeners) {
             try {
-                listener.onRemoval(
-                    key.shardId, indexCache.fieldName,
-                    notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED, value.ramBytesUsed()
-                );
+                listener.onRemoval(key.shardId, indexCache.fieldName, evicted, value);
             } catch (Exception e) {
                 // load anyway since listeners should not throw exceptions
                 logger.error("Failed to call listener on field data cache unloading", e);
             }
         }
+        if (value instanceof GlobalOrdinalsIndexFieldData) {
+            final GlobalOrdinalsIndexFieldData globalOrdinals = (GlobalOrdinalsIndexFieldData) value;
+            if (key.shardId != null) {
+                // whatever the removal cause, don't hold on to the ordinal map of global ordinals that are gone. Maps of global ordinals
+                // that were built for a newer reader of the shard before the old reader was closed are kept.
+                indexCache.lastOrdinalMaps.remove(key.shardId, globalOrdinals.getIncrementalOrdinalMap());
+            }
+            globalOrdinals.close();
+        }
     }
 
     public static class FieldDataWeigher implements ToLongBiFunction<Key, Accountable> {
@@ -120,6 +131,8 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
         final String fieldName;
         private final Cache<Key, Accountable> cache;
         private final Listener[] listeners;
+        // the ordinal map of the global ordinals that were built last for each shard, which are built incrementally from it
+        final ConcurrentMap<ShardId, IncrementalOrdinalMap> lastOrdinalMaps = ConcurrentCollections.newConcurrentMap();
 
         IndexFieldCache(Logger logger,final Cache<Key, Accountable> cache, Index index, String fieldName, Listener... listeners) {
             this.logger = logger;
@@ -178,6 +191,9 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
                         logger.error("Failed to call listener on global ordinals loading", e);
                     }
                 }
+                if (ifd instanceof GlobalOrdinalsIndexFieldData && shardId != null) {
+                    lastOrdinalMaps.put(shardId, ((GlobalOrdinalsIndexFieldData) ifd).getIncrementalOrdinalMap());
+                }
                 return ifd;
             });
             return (IFD) accountable;
@@ -189,8 +205,20 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
             // don't call cache.cleanUp here as it would have bad performance implications
         }
 
+        @Override
+        public IncrementalOrdinalMap lastGlobalOrdinalMap(DirectoryReader indexReader) {
+            final ShardId shardId = ShardUtils.extractShardId(indexReader);
+            return shardId == null ? null : lastOrdinalMaps.get(shardId);
+        }
+
+        @Override
+        public void clear(ShardId shardId) {
+            lastOrdinalMaps.remove(shardId);
+        }
+
         @Override
         public void clear() {
+            lastOrdinalMaps.clear();
             for (Key key : cache.keys()) {
                 if (key.indexCache.index.equals(index)) {
                     cache.invalidate(key);
@@ -202,6 +230,9 @@ public class IndicesFieldDataCache implements RemovalListener<IndicesFieldDataCa
 
         @Override
         public void clear(String fieldName) {
+            if (this.fieldName.equals(fieldName)) {
+                lastOrdinalMaps.clear();
+            }
             for (Key key : cache.keys()) {
                 if (key.indexCache.index.equals(index)) {
                     if (key.indexCache.fieldName.equals(fieldName)) {
@@ -26,7 +26,9 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefIterator;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
@@ -138,6 +140,7 @@ public class MultiFileWriter implements Releasable {
 
     @Override
     public void close() {
+        fileChunkWriters.values().forEach(FileChunkWriter::close);
         fileChunkWriters.clear();
         // clean open index outputs
         Iterator<Map.Entry<String, IndexOutput>> iterator = openIndexOutputs.entrySet().iterator();
@@ -166,17 +169,25 @@ public class MultiFileWriter implements Releasable {
         store.renameTempFilesSafe(tempFileNames);
     }
 
-    static final class FileChunk {
+    static final class FileChunk implements Releasable {
         final StoreFileMetaData md;
         final BytesReference content;
         final long position;
         final boolean lastChunk;
         FileChunk(StoreFileMetaData md, BytesReference content, long position, boolean lastChunk) {
             this.md = md;
-            this.content = content;
+            // the chunk might be buffered after the request it belongs to has been released
+            this.content = content instanceof ReleasableBytesReference ? ((ReleasableBytesReference) content).retain() : content;
             this.position = position;
             this.lastChunk = lastChunk;
         }
+
+        @Override
+        public void close() {
+            if (content instanceof ReleasableBytesReference) {
+                ((ReleasableBytesReference) content).close();
+            }
+        }
     }
 
     private final class FileChunkWriter {
@@ -197,7 +208,9 @@ public class MultiFileWriter implements Releasable {
                     }
                     pendingChunks.remove();
                 }
-                innerWriteFileChunk(chunk.md, chunk.position, chunk.content, chunk.lastChunk);
+                try (FileChunk ignored = chunk) {
+                    innerWriteFileChunk(chunk.md, chunk.position, chunk.content, chunk.lastChunk);
+                }
                 synchronized (this) {
                     assert lastPosition == chunk.position : "last_position " + lastPosition + " != chunk_position " + chunk.position;
                     lastPosition += chunk.content.length();
@@ -209,5 +222,10 @@ public class MultiFileWriter implements Releasable {
                 }
             }
         }
+
+        synchronized void close() {
+            Releasables.close(pendingChunks);
+            pendingChunks.clear();
+        }
     }
 }
@@ -21,8 +21,10 @@ package org.elasticsearch.indices.recovery;
 
 import org.apache.lucene.util.Version;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.store.StoreFileMetaData;
@@ -30,7 +32,7 @@ import org.elasticsearch.transport.TransportRequest;
 
 import java.io.IOException;
 
-public final class RecoveryFileChunkRequest extends TransportRequest {
+public final class RecoveryFileChunkRequest extends TransportRequest implements Releasable {
     private boolean lastChunk;
     private long recoveryId;
     private ShardId shardId;
@@ -101,13 +103,34 @@ public final class RecoveryFileChunkRequest extends TransportRequest {
         position = in.readVLong();
         long length = in.readVLong();
         String checksum = in.readString();
-        content = in.readBytesReference();
-        Version writtenBy = Lucene.parseVersionLenient(in.readString(), null);
-        assert writtenBy != null;
-        metaData = new StoreFileMetaData(name, length, checksum, writtenBy);
-        lastChunk = in.readBoolean();
-        totalTranslogOps = in.readVInt();
-        sourceThrottleTimeInNanos = in.readLong();
+        // the content shares the bytes of the message it is read from, and is released with the request
+        final ReleasableBytesReference releasableContent = in.readReleasableBytesReference();
+        content = releasableContent;
+        boolean success = false;
+        try {
+            Version writtenBy = Lucene.parseVersionLenient(in.readString(), null);
+            assert writtenBy != null;
+            metaData = new StoreFileMetaData(name, length, checksum, writtenBy);
+            lastChunk = in.readBoolean();
+            totalTranslogOps = in.readVInt();
+            sourceThrottleTimeInNanos = in.readLong();
+            success = true;
+        } finally {
+            if (success == false) {
+                releasableContent.close();
+            }
+        }
+    }
+
+    /**
+     * Releases the content if it shares the bytes of the message that this request was read from. The content must be retained by
+     * whoever uses it afterwards, see {@link ReleasableBytesReference#retain()}.
+     */
+    @Override
+    public void close() {
+        if (content instanceof ReleasableBytesReference) {
+            ((ReleasableBytesReference) content).close();
+        }
     }
 
     @Override
@@ -39,6 +39,7 @@ import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
+import org.elasticsearch.index.cache.sketch.SegmentSketchCache;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.mapper.MappedFieldType;
@@ -73,6 +74,7 @@ import org.elasticsearch.search.rescore.RescoreContext;
 import org.elasticsearch.search.slice.SliceBuilder;
 import org.elasticsearch.search.sort.SortAndFormats;
 import org.elasticsearch.search.suggest.SuggestionSearchContext;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -175,7 +177,7 @@ final class DefaultSearchContext extends SearchContext {
         this.indexShard = indexShard;
         this.indexService = indexService;
         this.clusterService = clusterService;
-        this.searcher = new ContextIndexSearcher(engineSearcher, indexService.cache().query(), indexShard.getQueryCachingPolicy());
+        this.searcher = newContextIndexSearcher(engineSearcher, indexService, indexShard);
         this.timeEstimateCounter = timeEstimateCounter;
         this.timeout = timeout;
         this.minNodeVersion = minNodeVersion;
@@ -185,6 +187,18 @@ final class DefaultSearchContext extends SearchContext {
         queryBoost = request.indexBoost();
     }
 
+    private static ContextIndexSearcher newContextIndexSearcher(Engine.Searcher engineSearcher, IndexService indexService,
+                                                                IndexShard indexShard) {
+        if (indexService.getIndexSettings().isSearchConcurrentSegments()) {
+            final ThreadPool threadPool = indexShard.getThreadPool();
+            // one slice per worker thread, the calling thread searches one of them
+            final int maxSlices = threadPool.info(ThreadPool.Names.SEARCH_WORKER).getMax();
+            return new ContextIndexSearcher(engineSearcher, indexService.cache().query(), indexShard.getQueryCachingPolicy(),
+                threadPool.executor(ThreadPool.Names.SEARCH_WORKER), maxSlices, ContextIndexSearcher.MIN_DOCS_PER_SLICE);
+        }
+        return new ContextIndexSearcher(engineSearcher, indexService.cache().query(), indexShard.getQueryCachingPolicy());
+    }
+
     @Override
     public void doClose() {
         // clear and scope phase we have
@@ -501,6 +515,11 @@ final class DefaultSearchContext extends SearchContext {
         return indexService.cache().bitsetFilterCache();
     }
 
+    @Override
+    public SegmentSketchCache segmentSketchCache() {
+        return indexService.cache().segmentSketchCache();
+    }
+
     @Override
     public <IFD extends IndexFieldData<?>> IFD getForField(MappedFieldType fieldType) {
         return queryShardContext.getForField(fieldType);
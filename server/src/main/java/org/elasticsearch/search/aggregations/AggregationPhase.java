@@ -132,7 +132,11 @@ public class AggregationPhase implements SearchPhase {
                 throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
             }
         }
-        context.queryResult().aggregations(new InternalAggregations(aggregations));
+        InternalAggregations internalAggregations = new InternalAggregations(aggregations);
+        if (context.aggregations().sliceAggregators().isEmpty() == false) {
+            internalAggregations = reduceSlices(context, internalAggregations);
+        }
+        context.queryResult().aggregations(internalAggregations);
         try {
             List<PipelineAggregator> pipelineAggregators = context.aggregations().factories().createPipelineAggregators();
             List<SiblingPipelineAggregator> siblingPipelineAggregators = new ArrayList<>(pipelineAggregators.size());
@@ -155,4 +159,30 @@ public class AggregationPhase implements SearchPhase {
         context.queryCollectors().remove(AggregationPhase.class);
     }
 
+    /**
+     * Builds the aggregations of the slices of the segments that were collected concurrently to the main aggregators and reduces
+     * them with the aggregations of the main aggregators into the aggregations of the shard.
+     */
+    private static InternalAggregations reduceSlices(SearchContext context, InternalAggregations aggregations) {
+        List<InternalAggregations> slices = new ArrayList<>();
+        slices.add(aggregations);
+        for (List<Aggregator> sliceAggregators : context.aggregations().sliceAggregators()) {
+            List<InternalAggregation> sliceAggregations = new ArrayList<>(sliceAggregators.size());
+            context.aggregations().resetBucketMultiConsumer();
+            for (Aggregator aggregator : sliceAggregators) {
+                try {
+                    aggregator.postCollection();
+                    sliceAggregations.add(aggregator.buildAggregation(0));
+                } catch (IOException e) {
+                    throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
+                }
+            }
+            slices.add(new InternalAggregations(sliceAggregations));
+        }
+        // a partial reduce, the final reduce happens on the coordinating node
+        InternalAggregation.ReduceContext reduceContext = new InternalAggregation.ReduceContext(context.bigArrays(),
+            context.getQueryShardContext().getScriptService(), false);
+        return InternalAggregations.reduce(slices, reduceContext);
+    }
+
 }
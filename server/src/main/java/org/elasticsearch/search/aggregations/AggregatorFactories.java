@@ -224,6 +224,19 @@ public class AggregatorFactories {
         return aggregators;
     }
 
+    /**
+     * Whether these factories and all of their sub-aggregation factories support collecting slices of the segments of a shard
+     * concurrently, see {@link AggregatorFactory#supportsConcurrentCollection()}.
+     */
+    public boolean supportsConcurrentCollection() {
+        for (AggregatorFactory<?> factory : factories) {
+            if (factory.supportsConcurrentCollection() == false || factory.factories.supportsConcurrentCollection() == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @return the number of sub-aggregator factories not including pipeline
      *         aggregator factories
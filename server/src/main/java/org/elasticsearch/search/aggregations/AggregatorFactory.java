@@ -220,6 +220,15 @@ public abstract class AggregatorFactory<AF extends AggregatorFactory<AF>> {
         return parent;
     }
 
+    /**
+     * Whether the aggregators of this factory can collect slices of the segments of a shard concurrently. Each slice is collected by
+     * its own aggregator and the aggregations they build are reduced into the aggregation of the shard, so this requires that the
+     * aggregators don't share mutable state.
+     */
+    public boolean supportsConcurrentCollection() {
+        return false;
+    }
+
     /**
      * Utility method. Given an {@link AggregatorFactory} that creates
      * {@link Aggregator}s that only know how to collect bucket {@code 0}, this
@@ -18,6 +18,11 @@
  */
 package org.elasticsearch.search.aggregations;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
 
 /**
@@ -28,6 +33,7 @@ public class SearchContextAggregations {
     private final AggregatorFactories factories;
     private final MultiBucketConsumer multiBucketConsumer;
     private Aggregator[] aggregators;
+    private final List<List<Aggregator>> sliceAggregators = new ArrayList<>();
 
     /**
      * Creates a new aggregation context with the parsed aggregator factories
@@ -54,6 +60,26 @@ public class SearchContextAggregations {
         this.aggregators = aggregators;
     }
 
+    /**
+     * Creates the aggregators that collect a slice of the segments of a shard concurrently to the other slices and returns their
+     * collector. The main {@link #aggregators()} collect the first slice.
+     */
+    public BucketCollector newSliceCollector() throws IOException {
+        assert factories.supportsConcurrentCollection();
+        final List<Aggregator> collectors = Arrays.asList(factories.createTopLevelAggregators());
+        sliceAggregators.add(collectors);
+        final BucketCollector collector = MultiBucketCollector.wrap(collectors);
+        collector.preCollection();
+        return collector;
+    }
+
+    /**
+     * The aggregators of the slices created with {@link #newSliceCollector()}, one list of top level aggregators per slice.
+     */
+    List<List<Aggregator>> sliceAggregators() {
+        return sliceAggregators;
+    }
+
     /**
      * Returns a consumer for multi bucket aggregation that checks the total number of buckets
      * created in the response
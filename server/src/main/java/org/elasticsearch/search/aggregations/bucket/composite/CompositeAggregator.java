@@ -22,11 +22,14 @@ package org.elasticsearch.search.aggregations.bucket.composite;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.RoaringDocIdSet;
 import org.elasticsearch.common.lease.Releasables;
@@ -59,6 +62,7 @@ import static org.elasticsearch.search.aggregations.MultiBucketConsumerService.M
 final class CompositeAggregator extends BucketsAggregator {
     private final int size;
     private final SortedDocsProducer sortedDocsProducer;
+    private final Query afterValueQuery;
     private final List<String> sourceNames;
     private final int[] reverseMuls;
     private final List<DocValueFormat> formats;
@@ -70,6 +74,7 @@ final class CompositeAggregator extends BucketsAggregator {
     private LeafReaderContext currentLeaf;
     private RoaringDocIdSet.Builder docIdSetBuilder;
     private BucketCollector deferredCollectors;
+    private Weight afterValueWeight;
 
     CompositeAggregator(String name, AggregatorFactories factories, SearchContext context, Aggregator parent,
                         List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData,
@@ -95,6 +100,11 @@ final class CompositeAggregator extends BucketsAggregator {
         }
         this.queue = new CompositeValuesCollectorQueue(context.bigArrays(), sources, size, rawAfterKey);
         this.sortedDocsProducer = sources[0].createSortedDocsProducerOrNull(context.searcher().getIndexReader(), context.query());
+        if (sortedDocsProducer == null && context.minimumScore() == null) {
+            this.afterValueQuery = sources[0].createAfterValueQueryOrNull();
+        } else {
+            this.afterValueQuery = null;
+        }
     }
 
     @Override
@@ -178,6 +188,15 @@ final class CompositeAggregator extends BucketsAggregator {
               see {@link org.apache.lucene.search.MultiCollector} for more details on how we handle early termination in aggregations.
              */
             throw new CollectionTerminatedException();
+        } else if (afterValueQuery != null) {
+            /*
+              The documents whose leading source value is before the after key cannot produce a competitive
+              composite bucket, so we only visit the documents that match both the query and the range of
+              the leading source that starts at the after key. This avoids to re-collect all the documents
+              that were visited by the previous pages.
+             */
+            collectAfterValue(ctx, fillDocIdSet);
+            throw new CollectionTerminatedException();
         } else {
             if (fillDocIdSet) {
                 currentLeaf = ctx;
@@ -194,6 +213,43 @@ final class CompositeAggregator extends BucketsAggregator {
         }
     }
 
+    /**
+     * Fills the queue with the composite buckets of the documents in <code>ctx</code> that match the query
+     * and the {@link #afterValueQuery}.
+     */
+    private void collectAfterValue(LeafReaderContext ctx, boolean fillDocIdSet) throws IOException {
+        if (afterValueWeight == null) {
+            final Query query;
+            if (context.query() == null) {
+                query = afterValueQuery;
+            } else {
+                query = new BooleanQuery.Builder()
+                    .add(context.query(), BooleanClause.Occur.FILTER)
+                    .add(afterValueQuery, BooleanClause.Occur.FILTER)
+                    .build();
+            }
+            afterValueWeight = context.searcher().createNormalizedWeight(query, false);
+        }
+        if (fillDocIdSet) {
+            currentLeaf = ctx;
+            docIdSetBuilder = new RoaringDocIdSet.Builder(ctx.reader().maxDoc());
+        }
+        final LeafBucketCollector collector = queue.getLeafCollector(ctx, getFirstPassCollector(docIdSetBuilder));
+        // searched through the searcher of the request so that its cancellation and timeout are checked while collecting
+        context.searcher().search(ctx, afterValueWeight, new SimpleCollector() {
+            @Override
+            public void collect(int doc) throws IOException {
+                collector.collect(doc);
+            }
+
+            @Override
+            public boolean needsScores() {
+                return false;
+            }
+        });
+        finishLeaf();
+    }
+
     /**
      * The first pass selects the top composite buckets from all matching documents.
      */
@@ -19,11 +19,14 @@
 
 package org.elasticsearch.search.aggregations.bucket.composite;
 
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.CheckedFunction;
 import org.elasticsearch.common.lease.Releasables;
@@ -190,6 +193,20 @@ class GlobalOrdinalValuesSource extends SingleDimensionValuesSource<BytesRef> {
         return new TermsSortedDocsProducer(fieldType.name());
     }
 
+    @Override
+    Query createAfterValueQueryOrNull() {
+        if (checkIfAfterValueQueryIsApplicable(fieldType) == false ||
+                fieldType instanceof StringFieldType == false) {
+            return null;
+        }
+        final Query indexQuery = new TermRangeQuery(fieldType.name(), afterValue, null, true, false);
+        if (fieldType.hasDocValues()) {
+            return new IndexOrDocValuesQuery(indexQuery,
+                SortedSetDocValuesField.newSlowRangeQuery(fieldType.name(), afterValue, null, true, false));
+        }
+        return indexQuery;
+    }
+
     @Override
     public void close() {
         Releasables.close(values);
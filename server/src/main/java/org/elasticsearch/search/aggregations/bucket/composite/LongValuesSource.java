@@ -21,6 +21,7 @@ package org.elasticsearch.search.aggregations.bucket.composite;
 
 import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
@@ -29,6 +30,7 @@ import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.DocValuesFieldExistsQuery;
 import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.PointRangeQuery;
 import org.apache.lucene.search.Query;
 import org.elasticsearch.common.CheckedFunction;
@@ -258,7 +260,7 @@ class LongValuesSource extends SingleDimensionValuesSource<Long> {
                     toBucketFunction = (value) -> rounding.applyAsLong(LongPoint.decodeDimension(value, 0));
                     break;
 
-                case "int":
+                case "integer":
                 case "short":
                 case "byte":
                     toBucketFunction = (value) -> rounding.applyAsLong(IntPoint.decodeDimension(value, 0));
@@ -276,6 +278,46 @@ class LongValuesSource extends SingleDimensionValuesSource<Long> {
         }
     }
 
+    @Override
+    Query createAfterValueQueryOrNull() {
+        if (checkIfAfterValueQueryIsApplicable(fieldType) == false) {
+            return null;
+        }
+        // the rounding returns the start of the interval so documents that are in or after the
+        // bucket of the after value cannot have a value that is lower than the after value
+        final long lowerValue = afterValue;
+        final Query indexQuery;
+        if (fieldType instanceof NumberFieldMapper.NumberFieldType) {
+            switch (fieldType.typeName()) {
+                case "long":
+                    indexQuery = LongPoint.newRangeQuery(fieldType.name(), lowerValue, Long.MAX_VALUE);
+                    break;
+
+                case "integer":
+                case "short":
+                case "byte":
+                    if (lowerValue > Integer.MAX_VALUE) {
+                        return new MatchNoDocsQuery("after value is greater than the maximum value of [" + fieldType.name() + "]");
+                    }
+                    indexQuery = IntPoint.newRangeQuery(fieldType.name(), (int) Math.max(Integer.MIN_VALUE, lowerValue),
+                        Integer.MAX_VALUE);
+                    break;
+
+                default:
+                    return null;
+            }
+        } else if (fieldType instanceof DateFieldMapper.DateFieldType) {
+            indexQuery = LongPoint.newRangeQuery(fieldType.name(), lowerValue, Long.MAX_VALUE);
+        } else {
+            return null;
+        }
+        if (fieldType.hasDocValues()) {
+            return new IndexOrDocValuesQuery(indexQuery,
+                SortedNumericDocValuesField.newSlowRangeQuery(fieldType.name(), lowerValue, Long.MAX_VALUE));
+        }
+        return indexQuery;
+    }
+
     @Override
     public void close() {
         Releasables.close(values, bits);
@@ -152,6 +152,29 @@ abstract class SingleDimensionValuesSource<T extends Comparable<T>> implements R
      */
     abstract SortedDocsProducer createSortedDocsProducerOrNull(IndexReader reader, Query query);
 
+    /**
+     * Returns a query that matches all documents that may have a value greater than or equal to the after value of this source,
+     * or null if the after value cannot be used to skip documents. When this source leads the composite definition, the query
+     * allows to skip the documents that can only produce composite buckets before the after key.
+     */
+    Query createAfterValueQueryOrNull() {
+        return null;
+    }
+
+    /**
+     * Returns true if the query returned by {@link #createAfterValueQueryOrNull()} can be built from the after value
+     * and the indexed values of <code>fieldType</code>.
+     */
+    protected boolean checkIfAfterValueQueryIsApplicable(MappedFieldType fieldType) {
+        return fieldType != null &&
+            afterValue != null &&
+            // documents without value can be in any bucket
+            missing == null &&
+            fieldType.indexOptions() != IndexOptions.NONE &&
+            // inverse of the natural order
+            reverseMul == 1;
+    }
+
     /**
      * Returns true if a {@link SortedDocsProducer} should be used to optimize the execution.
      */
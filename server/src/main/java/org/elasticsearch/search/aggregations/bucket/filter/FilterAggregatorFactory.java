@@ -51,10 +51,10 @@ public class FilterAggregatorFactory extends AggregatorFactory<FilterAggregatorF
      * if the aggregation collects documents reducing the overhead of the
      * aggregation in the case where no documents are collected.
      * 
-     * Note that as aggregations are initialsed and executed in a serial manner,
-     * no concurrency considerations are necessary here.
+     * Aggregators of slices of the segments that are collected concurrently
+     * share the weight, so creating it is synchronized.
      */
-    public Weight getWeight() {
+    public synchronized Weight getWeight() {
         if (weight == null) {
             IndexSearcher contextSearcher = context.searcher();
             try {
@@ -72,4 +72,8 @@ public class FilterAggregatorFactory extends AggregatorFactory<FilterAggregatorF
         return new FilterAggregator(name, () -> this.getWeight(), factories, context, parent, pipelineAggregators, metaData);
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        return true;
+    }
 }
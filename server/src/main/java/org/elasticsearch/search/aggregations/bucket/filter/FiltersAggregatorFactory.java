@@ -65,10 +65,10 @@ public class FiltersAggregatorFactory extends AggregatorFactory<FiltersAggregato
      * created if the aggregation collects documents reducing the overhead of
      * the aggregation in the case where no documents are collected.
      * 
-     * Note that as aggregations are initialsed and executed in a serial manner,
-     * no concurrency considerations are necessary here.
+     * Aggregators of slices of the segments that are collected concurrently
+     * share the weight, so creating it is synchronized.
      */
-    public Weight[] getWeights() {
+    public synchronized Weight[] getWeights() {
         if (weights == null) {
             try {
                 IndexSearcher contextSearcher = context.searcher();
@@ -90,5 +90,8 @@ public class FiltersAggregatorFactory extends AggregatorFactory<FiltersAggregato
                 pipelineAggregators, metaData);
     }
 
-
+    @Override
+    public boolean supportsConcurrentCollection() {
+        return true;
+    }
 }
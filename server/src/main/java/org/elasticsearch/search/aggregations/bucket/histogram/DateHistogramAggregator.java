@@ -18,8 +18,14 @@
  */
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.CollectionUtil;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasables;
@@ -48,6 +54,12 @@ import java.util.Map;
  * An aggregator for date values. Every date is rounded down using a configured
  * {@link Rounding}.
  *
+ * If the documents of a segment are sorted by the aggregated field (see {@code index.sort.field}) and every document has at most
+ * one value, the documents of each bucket form a contiguous range of doc ids. The end of that range is then searched in the doc
+ * values once per bucket, and the documents up to it are collected without reading and rounding their values. If all documents
+ * are collected into buckets without sub-aggregations, the doc counts of the buckets are computed from the ranges directly and
+ * the documents aren't collected at all.
+ *
  * @see Rounding
  */
 class DateHistogramAggregator extends BucketsAggregator {
@@ -65,10 +77,16 @@ class DateHistogramAggregator extends BucketsAggregator {
     private final LongHash bucketOrds;
     private long offset;
 
+    // the field the values are read from, null if they are not the values of a field as they are stored in the index
+    @Nullable
+    private final String indexSortField;
+    // whether buckets may be counted without collecting their documents
+    private final boolean countOnly;
+
     DateHistogramAggregator(String name, AggregatorFactories factories, Rounding rounding, Rounding shardRounding,
             long offset, BucketOrder order, boolean keyed,
             long minDocCount, @Nullable ExtendedBounds extendedBounds, @Nullable ValuesSource.Numeric valuesSource,
-            DocValueFormat formatter, SearchContext aggregationContext,
+            @Nullable String indexSortField, DocValueFormat formatter, SearchContext aggregationContext,
             Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
 
         super(name, factories, aggregationContext, parent, pipelineAggregators, metaData);
@@ -81,6 +99,13 @@ class DateHistogramAggregator extends BucketsAggregator {
         this.extendedBounds = extendedBounds;
         this.valuesSource = valuesSource;
         this.formatter = formatter;
+        this.indexSortField = indexSortField;
+        this.countOnly = parent == null
+            && subAggregators.length == 0
+            && aggregationContext.query() != null
+            && aggregationContext.query().getClass() == MatchAllDocsQuery.class
+            && aggregationContext.minimumScore() == null
+            && aggregationContext.terminateAfter() == SearchContext.DEFAULT_TERMINATE_AFTER;
 
         bucketOrds = new LongHash(1, aggregationContext.bigArrays());
     }
@@ -97,6 +122,38 @@ class DateHistogramAggregator extends BucketsAggregator {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
         final SortedNumericDocValues values = valuesSource.longValues(ctx);
+        if (isSortedByField(ctx, values)) {
+            final BucketRuns runs = new BucketRuns(ctx);
+            if (countOnly && ctx.reader().hasDeletions() == false) {
+                countRuns(values, runs);
+                // all documents of the segment are counted
+                throw new CollectionTerminatedException();
+            }
+            return new LeafBucketCollectorBase(sub, values) {
+                // docs up to runEnd (exclusive) fall into the bucket with ordinal runOrd
+                int runEnd = -1;
+                long runOrd;
+
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    assert bucket == 0;
+                    if (doc < runEnd) {
+                        collectExistingBucket(sub, doc, runOrd);
+                    } else if (values.advanceExact(doc)) {
+                        final long rounded = round(values.nextValue());
+                        long bucketOrd = bucketOrds.add(rounded);
+                        if (bucketOrd < 0) { // already seen
+                            bucketOrd = -1 - bucketOrd;
+                            collectExistingBucket(sub, doc, bucketOrd);
+                        } else {
+                            collectBucket(sub, doc, bucketOrd);
+                        }
+                        runOrd = bucketOrd;
+                        runEnd = runs.runEnd(doc, rounded);
+                    }
+                }
+            };
+        }
         return new LeafBucketCollectorBase(sub, values) {
             @Override
             public void collect(int doc, long bucket) throws IOException {
@@ -107,9 +164,7 @@ class DateHistogramAggregator extends BucketsAggregator {
                     long previousRounded = Long.MIN_VALUE;
                     for (int i = 0; i < valuesCount; ++i) {
                         long value = values.nextValue();
-                        // We can use shardRounding here, which is sometimes more efficient
-                        // if daylight saving times are involved.
-                        long rounded = shardRounding.round(value - offset) + offset;
+                        long rounded = round(value);
                         assert rounded >= previousRounded;
                         if (rounded == previousRounded) {
                             continue;
@@ -128,6 +183,107 @@ class DateHistogramAggregator extends BucketsAggregator {
         };
     }
 
+    private long round(long value) {
+        // We can use shardRounding here, which is sometimes more efficient
+        // if daylight saving times are involved.
+        return shardRounding.round(value - offset) + offset;
+    }
+
+    /**
+     * Returns whether the documents of the segment are sorted by the aggregated field and have at most one value each, so that
+     * the documents of every bucket have contiguous doc ids.
+     */
+    private boolean isSortedByField(LeafReaderContext ctx, SortedNumericDocValues values) {
+        if (indexSortField == null || DocValues.unwrapSingleton(values) == null) {
+            return false;
+        }
+        final Sort indexSort = ctx.reader().getMetaData().getSort();
+        if (indexSort == null) {
+            return false;
+        }
+        // ascending and descending sorts both work, and documents without a value are sorted first or last
+        final SortField primarySort = indexSort.getSort()[0];
+        return indexSortField.equals(primarySort.getField());
+    }
+
+    /**
+     * Counts all documents of the segment into their buckets, one range of documents at a time.
+     */
+    private void countRuns(SortedNumericDocValues values, BucketRuns runs) throws IOException {
+        int doc = values.nextDoc();
+        while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+            final long rounded = round(values.nextValue());
+            final int runEnd = runs.runEnd(doc, rounded);
+            long bucketOrd = bucketOrds.add(rounded);
+            if (bucketOrd < 0) { // already seen
+                bucketOrd = -1 - bucketOrd;
+            }
+            incrementBucketDocCount(bucketOrd, runEnd - doc);
+            doc = runEnd < runs.maxDoc ? values.advance(runEnd) : DocIdSetIterator.NO_MORE_DOCS;
+        }
+    }
+
+    /**
+     * Finds the end of the range of documents that fall into the same bucket in a segment that is sorted by the aggregated field.
+     */
+    private final class BucketRuns {
+
+        private final LeafReaderContext ctx;
+        private final int maxDoc;
+        private SortedNumericDocValues probe;
+        private int lastProbedDoc = -1;
+
+        BucketRuns(LeafReaderContext ctx) {
+            this.ctx = ctx;
+            this.maxDoc = ctx.reader().maxDoc();
+        }
+
+        /**
+         * Returns the first document after {@code doc} that doesn't fall into the bucket {@code rounded}, which {@code doc} falls
+         * into, or the number of documents in the segment if there is none. Gallops ahead of {@code doc} and then searches
+         * binary, so that short ranges need only a few lookups.
+         */
+        int runEnd(int doc, long rounded) throws IOException {
+            // low is in the bucket, high is either the end of the segment or not in the bucket
+            int low = doc;
+            int high;
+            int step = 1;
+            while (true) {
+                if (maxDoc - low <= step) {
+                    high = maxDoc;
+                    break;
+                }
+                high = low + step;
+                if (isInBucket(high, rounded) == false) {
+                    break;
+                }
+                low = high;
+                step <<= 1;
+            }
+            while (high - low > 1) {
+                final int mid = (low + high) >>> 1;
+                if (isInBucket(mid, rounded)) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+            return high;
+        }
+
+        private boolean isInBucket(int doc, long rounded) throws IOException {
+            if (doc <= lastProbedDoc) {
+                // doc values can only move forward
+                probe = null;
+            }
+            if (probe == null) {
+                probe = valuesSource.longValues(ctx);
+            }
+            lastProbedDoc = doc;
+            return probe.advanceExact(doc) && round(probe.nextValue()) == rounded;
+        }
+    }
+
     @Override
     public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
         assert owningBucketOrdinal == 0;
@@ -76,8 +76,10 @@ public final class DateHistogramAggregatorFactory
 
     private Aggregator createAggregator(ValuesSource.Numeric valuesSource, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
+        // the index sort can only be used if the values are read from the field as they are, without scripts or missing values
+        final String indexSortField = valuesSource instanceof ValuesSource.Numeric.FieldData ? config.fieldContext().field() : null;
         return new DateHistogramAggregator(name, factories, rounding, shardRounding, offset, order, keyed, minDocCount, extendedBounds,
-                valuesSource, config.format(), context, parent, pipelineAggregators, metaData);
+                valuesSource, indexSortField, config.format(), context, parent, pipelineAggregators, metaData);
     }
 
     @Override
@@ -85,4 +87,9 @@ public final class DateHistogramAggregatorFactory
             throws IOException {
         return createAggregator(null, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    public boolean supportsConcurrentCollection() {
+        return config.script() == null;
+    }
 }
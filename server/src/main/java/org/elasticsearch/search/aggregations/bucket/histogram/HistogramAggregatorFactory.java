@@ -81,4 +81,9 @@ public final class HistogramAggregatorFactory extends ValuesSourceAggregatorFact
             throws IOException {
         return createAggregator(null, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    public boolean supportsConcurrentCollection() {
+        return config.script() == null;
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalOrder;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An aggregator of string values that counts the terms of a shard in a {@link SpaceSavingSketch} instead of keeping a bucket
+ * per term, so that its memory usage depends on the shard size but not on the cardinality of the field.
+ *
+ * The doc count of a bucket is the number of times the term occurred at least, and its doc count error is by how much more
+ * the term may have occurred. The doc count error of the aggregation is how often a term that wasn't returned may have
+ * occurred. These are the same bounds that the regular terms aggregation reports, which lets {@link InternalTerms} reduce the
+ * results of the shards without knowing how they were computed.
+ */
+class ApproximateStringTermsAggregator extends AbstractStringTermsAggregator {
+
+    /**
+     * The number of terms the sketch tracks per term that is returned. The counts are exact as long as the shard has fewer distinct
+     * terms than that, and otherwise overestimate a term by at most the number of values divided by the number of tracked terms.
+     */
+    static final int SKETCH_SIZE_MULTIPLIER = 10;
+
+    private final ValuesSource valuesSource;
+    private final IncludeExclude.StringFilter includeExclude;
+    private final SpaceSavingSketch sketch;
+
+    ApproximateStringTermsAggregator(String name, AggregatorFactories factories, ValuesSource valuesSource,
+            BucketOrder order, DocValueFormat format, BucketCountThresholds bucketCountThresholds,
+            IncludeExclude.StringFilter includeExclude, SearchContext context, Aggregator parent, boolean showTermDocCountError,
+            List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
+        // the error bound of the whole aggregation is always sent to the coordinating node, the errors of the buckets
+        // are only needed there if they are shown
+        super(name, factories, context, parent, order, format, bucketCountThresholds, SubAggCollectionMode.DEPTH_FIRST,
+                showTermDocCountError, pipelineAggregators, metaData);
+        assert factories.countAggregators() == 0;
+        assert InternalOrder.isCountDesc(order);
+        this.valuesSource = valuesSource;
+        this.includeExclude = includeExclude;
+        final int capacity = (int) Math.min(ArrayUtil.MAX_ARRAY_LENGTH,
+            (long) bucketCountThresholds.getShardSize() * SKETCH_SIZE_MULTIPLIER);
+        addRequestCircuitBreakerBytes(capacity * SpaceSavingSketch.SLOT_BYTES);
+        this.sketch = new SpaceSavingSketch(capacity, this::addRequestCircuitBreakerBytes);
+    }
+
+    @Override
+    public boolean needsScores() {
+        return (valuesSource != null && valuesSource.needsScores()) || super.needsScores();
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, final LeafBucketCollector sub) throws IOException {
+        final SortedBinaryDocValues values = valuesSource.bytesValues(ctx);
+        return new LeafBucketCollectorBase(sub, values) {
+            final BytesRefBuilder previous = new BytesRefBuilder();
+
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                assert bucket == 0;
+                if (values.advanceExact(doc)) {
+                    final int valuesCount = values.docValueCount();
+
+                    // SortedBinaryDocValues don't guarantee uniqueness so we
+                    // need to take care of dups
+                    previous.clear();
+                    for (int i = 0; i < valuesCount; ++i) {
+                        final BytesRef bytes = values.nextValue();
+                        if (includeExclude != null && !includeExclude.accept(bytes)) {
+                            continue;
+                        }
+                        if (i > 0 && previous.get().equals(bytes)) {
+                            continue;
+                        }
+                        sketch.add(bytes);
+                        previous.copyBytes(bytes);
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
+        assert owningBucketOrdinal == 0;
+        final int size = Math.min(sketch.size(), bucketCountThresholds.getShardSize());
+        BucketPriorityQueue<StringTerms.Bucket> ordered = new BucketPriorityQueue<>(size, order.comparator(this));
+        // terms that aren't returned may have occurred as often as the smallest count of the sketch, or as their own count
+        long docCountError = sketch.minCount();
+        StringTerms.Bucket spare = null;
+        for (int slot = 0; slot < sketch.size(); slot++) {
+            if (spare == null) {
+                spare = new StringTerms.Bucket(new BytesRef(), 0, null, showTermDocCountError, 0, format);
+            }
+            spare.termBytes = sketch.term(slot);
+            spare.docCount = sketch.count(slot) - sketch.error(slot);
+            spare.docCountError = sketch.error(slot);
+            if (bucketCountThresholds.getShardMinDocCount() <= spare.docCount) {
+                spare = ordered.insertWithOverflow(spare);
+                if (spare == null) {
+                    consumeBucketsAndMaybeBreak(1);
+                } else {
+                    docCountError = Math.max(docCountError, spare.docCount + spare.docCountError);
+                }
+            } else {
+                docCountError = Math.max(docCountError, spare.docCount + spare.docCountError);
+            }
+        }
+
+        long otherDocCount = sketch.totalCount();
+        final StringTerms.Bucket[] list = new StringTerms.Bucket[ordered.size()];
+        for (int i = ordered.size() - 1; i >= 0; --i) {
+            final StringTerms.Bucket bucket = ordered.pop();
+            bucket.termBytes = BytesRef.deepCopyOf(bucket.termBytes);
+            bucket.aggregations = bucketEmptyAggregations();
+            list[i] = bucket;
+            otherDocCount -= bucket.docCount;
+        }
+
+        return new StringTerms(name, order, bucketCountThresholds.getRequiredSize(), bucketCountThresholds.getMinDocCount(),
+                pipelineAggregators(), metaData(), format, bucketCountThresholds.getShardSize(), showTermDocCountError, otherDocCount,
+                Arrays.asList(list), docCountError);
+    }
+}
@@ -29,7 +29,6 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongBitSet;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasables;
-import org.elasticsearch.common.util.IntArray;
 import org.elasticsearch.common.util.LongHash;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.index.fielddata.AbstractSortedSetDocValues;
@@ -49,6 +48,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongConsumer;
 import java.util.function.LongUnaryOperator;
 
 import static org.apache.lucene.index.SortedSetDocValues.NO_MORE_ORDS;
@@ -300,11 +300,14 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
      * Variant of {@link GlobalOrdinalsStringTermsAggregator} that resolves global ordinals post segment collection
      * instead of on the fly for each match.This is beneficial for low cardinality fields, because it can reduce
      * the amount of look-ups significantly.
+     *
+     * Matches are counted into a plain array indexed by segment ordinal, which is mapped to the global ordinals once the
+     * segment is collected. Single valued fields buffer the matching documents and read their ordinals in batches, so that
+     * counting is a tight loop over an array of ordinals rather than interleaved with the doc values reads.
      */
     static class LowCardinality extends GlobalOrdinalsStringTermsAggregator {
 
-        private LongUnaryOperator mapping;
-        private IntArray segmentDocCounts;
+        private final SegmentOrdinalsCounter counter;
 
         LowCardinality(String name,
                        AggregatorFactories factories,
@@ -322,39 +325,84 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
             super(name, factories, valuesSource, order, format, bucketCountThresholds, null,
                 context, parent, forceDenseMode, collectionMode, showTermDocCountError, pipelineAggregators, metaData);
             assert factories == null || factories.countAggregators() == 0;
-            this.segmentDocCounts = context.bigArrays().newIntArray(1, true);
+            this.counter = new SegmentOrdinalsCounter(this::addRequestCircuitBreakerBytes, (globalOrd, inc) -> {
+                long bucketOrd = bucketOrds == null ? globalOrd : bucketOrds.find(globalOrd);
+                incrementBucketDocCount(bucketOrd, inc);
+            });
         }
 
         @Override
         public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
                                                     final LeafBucketCollector sub) throws IOException {
-            if (mapping != null) {
-                mapSegmentCountsToGlobalCounts(mapping);
-            }
-            final SortedSetDocValues segmentOrds = valuesSource.ordinalsValues(ctx);
-            segmentDocCounts = context.bigArrays().grow(segmentDocCounts, 1 + segmentOrds.getValueCount());
             assert sub == LeafBucketCollector.NO_OP_COLLECTOR;
+            return counter.getLeafCollector(valuesSource.ordinalsValues(ctx), valuesSource.globalOrdinalsMapping(ctx), sub);
+        }
+
+        @Override
+        protected void doPostCollection() throws IOException {
+            counter.flush();
+        }
+    }
+
+    /**
+     * Counts the segment ordinals of the matching documents in a plain array and maps the counts of a segment to global ordinals
+     * once the segment is collected, on behalf of the low cardinality variant of the aggregator. Public so that it can be benchmarked.
+     */
+    public static final class SegmentOrdinalsCounter {
+
+        static final int DOC_BUFFER_SIZE = 256;
+
+        /**
+         * Receives the counts of the global ordinals.
+         */
+        @FunctionalInterface
+        public interface GlobalCounts {
+            void increment(long globalOrd, int count);
+        }
+
+        private final LongConsumer addCircuitBreakerBytes;
+        private final GlobalCounts globalCounts;
+        private LongUnaryOperator mapping;
+        private int[] segmentDocCounts = new int[0];
+        private int segmentValueCount;
+        private SingleValuedSegmentCollector singleValuedCollector;
+
+        /**
+         * @param addCircuitBreakerBytes charges the memory of the counts as they grow
+         * @param globalCounts           receives the counts of each segment once it is collected
+         */
+        public SegmentOrdinalsCounter(LongConsumer addCircuitBreakerBytes, GlobalCounts globalCounts) {
+            this.addCircuitBreakerBytes = addCircuitBreakerBytes;
+            this.globalCounts = globalCounts;
+        }
+
+        /**
+         * Returns the collector of a segment. The counts of the previous segment are mapped to global ordinals first.
+         */
+        public LeafBucketCollector getLeafCollector(SortedSetDocValues segmentOrds, LongUnaryOperator mapping,
+                                                    LeafBucketCollector sub) throws IOException {
+            flush();
+            segmentValueCount = Math.toIntExact(segmentOrds.getValueCount());
+            if (segmentDocCounts.length < segmentValueCount) {
+                // the counts are all zero after they were mapped to the global counts, so there is nothing to copy
+                final int newSize = ArrayUtil.oversize(segmentValueCount, Integer.BYTES);
+                addCircuitBreakerBytes.accept((long) (newSize - segmentDocCounts.length) * Integer.BYTES);
+                segmentDocCounts = new int[newSize];
+            }
+            this.mapping = mapping;
             final SortedDocValues singleValues = DocValues.unwrapSingleton(segmentOrds);
-            mapping = valuesSource.globalOrdinalsMapping(ctx);
             if (singleValues != null) {
-                return new LeafBucketCollectorBase(sub, segmentOrds) {
-                    @Override
-                    public void collect(int doc, long bucket) throws IOException {
-                        assert bucket == 0;
-                        if (singleValues.advanceExact(doc)) {
-                            final int ord = singleValues.ordValue();
-                            segmentDocCounts.increment(ord + 1, 1);
-                        }
-                    }
-                };
+                singleValuedCollector = new SingleValuedSegmentCollector(sub, singleValues);
+                return singleValuedCollector;
             } else {
+                final int[] counts = segmentDocCounts;
                 return new LeafBucketCollectorBase(sub, segmentOrds) {
                     @Override
                     public void collect(int doc, long bucket) throws IOException {
                         assert bucket == 0;
                         if (segmentOrds.advanceExact(doc)) {
                             for (long segmentOrd = segmentOrds.nextOrd(); segmentOrd != NO_MORE_ORDS; segmentOrd = segmentOrds.nextOrd()) {
-                                segmentDocCounts.increment(segmentOrd + 1, 1);
+                                counts[(int) segmentOrd]++;
                             }
                         }
                     }
@@ -362,31 +410,67 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
             }
         }
 
-        @Override
-        protected void doPostCollection() throws IOException {
-            if (mapping != null) {
-                mapSegmentCountsToGlobalCounts(mapping);
-                mapping = null;
+        /**
+         * Maps the counts of the segment that was collected last to global ordinals.
+         */
+        public void flush() throws IOException {
+            if (mapping == null) {
+                return;
             }
+            if (singleValuedCollector != null) {
+                singleValuedCollector.flush();
+                singleValuedCollector = null;
+            }
+            final int[] counts = segmentDocCounts;
+            for (int ord = 0; ord < segmentValueCount; ord++) {
+                final int inc = counts[ord];
+                if (inc == 0) {
+                    continue;
+                }
+                // the counts get reused over the segments and would otherwise be too high
+                counts[ord] = 0;
+                globalCounts.increment(mapping.applyAsLong(ord), inc);
+            }
+            mapping = null;
         }
 
-        @Override
-        protected void doClose() {
-            Releasables.close(segmentDocCounts);
-        }
+        /**
+         * Collects a single valued field by buffering the matching documents. The ordinals of a full buffer are read in one
+         * go and then counted, the remaining documents are counted when the segment is mapped to the global counts.
+         */
+        private final class SingleValuedSegmentCollector extends LeafBucketCollectorBase {
+
+            private final SortedDocValues values;
+            private final int[] counts = segmentDocCounts;
+            private final int[] docs = new int[DOC_BUFFER_SIZE];
+            private final int[] ords = new int[DOC_BUFFER_SIZE];
+            private int bufferedDocs;
+
+            SingleValuedSegmentCollector(LeafBucketCollector sub, SortedDocValues values) {
+                super(sub, values);
+                this.values = values;
+            }
 
-        private void mapSegmentCountsToGlobalCounts(LongUnaryOperator mapping) throws IOException {
-            for (long i = 1; i < segmentDocCounts.size(); i++) {
-                // We use set(...) here, because we need to reset the slow to 0.
-                // segmentDocCounts get reused over the segments and otherwise counts would be too high.
-                final int inc = segmentDocCounts.set(i, 0);
-                if (inc == 0) {
-                    continue;
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                assert bucket == 0;
+                docs[bufferedDocs++] = doc;
+                if (bufferedDocs == DOC_BUFFER_SIZE) {
+                    flush();
+                }
+            }
+
+            void flush() throws IOException {
+                int numOrds = 0;
+                for (int i = 0; i < bufferedDocs; i++) {
+                    if (values.advanceExact(docs[i])) {
+                        ords[numOrds++] = values.ordValue();
+                    }
+                }
+                bufferedDocs = 0;
+                for (int i = 0; i < numOrds; i++) {
+                    counts[ords[i]]++;
                 }
-                final long ord = i - 1; // remember we do +1 when counting
-                final long globalOrd = mapping.applyAsLong(ord);
-                long bucketOrd = bucketOrds == null ? globalOrd : bucketOrds.find(globalOrd);
-                incrementBucketDocCount(bucketOrd, inc);
             }
         }
     }
@@ -0,0 +1,184 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import com.carrotsearch.hppc.ObjectIntHashMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A heavy hitters sketch that counts at most a fixed number of terms, following the space saving algorithm of Metwally et al.
+ * A term that isn't tracked yet replaces the term with the smallest count once the sketch is full, and starts from the count of
+ * the term it replaces. The count of a tracked term is thus never lower than the true count of the term, and it is at most the
+ * {@link #error(int) error} of the term higher. Terms that aren't tracked occurred at most {@link #minCount()} times.
+ *
+ * The terms are kept in slots that are ordered by their count in a min-heap, so that the term to replace is found in constant
+ * time and an increment costs a logarithmic number of swaps in the worst case.
+ */
+final class SpaceSavingSketch {
+
+    /** An estimate of the memory a slot takes, not counting the bytes of its term. */
+    static final long SLOT_BYTES = 2 * Long.BYTES + 2 * Integer.BYTES
+        + RamUsageEstimator.shallowSizeOfInstance(BytesRefBuilder.class) + RamUsageEstimator.shallowSizeOfInstance(BytesRef.class)
+        // the entry in the hash table, which is sized for twice as many entries as it holds
+        + 2 * (RamUsageEstimator.NUM_BYTES_OBJECT_REF + Integer.BYTES);
+
+    private final int capacity;
+    private final LongConsumer termBytesConsumer;
+    private final BytesRefBuilder[] terms;
+    private final long[] counts;
+    private final long[] errors;
+    // slots ordered by their count, smallest first
+    private final int[] heap;
+    // the position of each slot in the heap
+    private final int[] heapIndex;
+    private final ObjectIntHashMap<BytesRef> slots;
+    private int size;
+    private long totalCount;
+
+    /**
+     * @param capacity          the maximum number of terms to track
+     * @param termBytesConsumer called with the number of bytes that the slots take additionally when they need to grow in
+     *                          order to hold a longer term
+     */
+    SpaceSavingSketch(int capacity, LongConsumer termBytesConsumer) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1 but was [" + capacity + "]");
+        }
+        this.capacity = capacity;
+        this.termBytesConsumer = termBytesConsumer;
+        this.terms = new BytesRefBuilder[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapIndex = new int[capacity];
+        this.slots = new ObjectIntHashMap<>(capacity);
+    }
+
+    /**
+     * Counts an occurrence of the given term.
+     */
+    void add(BytesRef term) {
+        totalCount++;
+        final int existing = slots.getOrDefault(term, -1);
+        if (existing >= 0) {
+            counts[existing]++;
+            siftDown(heapIndex[existing]);
+        } else if (size < capacity) {
+            final int slot = size++;
+            terms[slot] = new BytesRefBuilder();
+            setTerm(slot, term);
+            counts[slot] = 1;
+            heap[slot] = slot;
+            heapIndex[slot] = slot;
+            siftUp(slot);
+        } else {
+            // replace the term with the smallest count, which the new term may have occurred as often as
+            final int slot = heap[0];
+            slots.remove(terms[slot].get());
+            setTerm(slot, term);
+            errors[slot] = counts[slot];
+            counts[slot]++;
+            siftDown(0);
+        }
+    }
+
+    private void setTerm(int slot, BytesRef term) {
+        final BytesRefBuilder builder = terms[slot];
+        final int previousLength = builder.bytes().length;
+        builder.copyBytes(term);
+        if (builder.bytes().length != previousLength) {
+            termBytesConsumer.accept(builder.bytes().length - previousLength);
+        }
+        slots.put(builder.get(), slot);
+    }
+
+    /** The number of terms the sketch tracks. */
+    int size() {
+        return size;
+    }
+
+    /** The number of terms that were counted. */
+    long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * The maximum number of times a term that isn't tracked occurred, which is {@code 0} until the sketch is full.
+     */
+    long minCount() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /** The term of the given slot. */
+    BytesRef term(int slot) {
+        return terms[slot].get();
+    }
+
+    /** The count of the term of the given slot, which is never lower than the number of times the term occurred. */
+    long count(int slot) {
+        return counts[slot];
+    }
+
+    /** By how much the count of the term of the given slot may exceed the number of times the term occurred. */
+    long error(int slot) {
+        return errors[slot];
+    }
+
+    private void siftUp(int i) {
+        final int slot = heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            moveTo(heap[parent], i);
+            i = parent;
+        }
+        moveTo(slot, i);
+    }
+
+    private void siftDown(int i) {
+        final int slot = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            moveTo(heap[child], i);
+            i = child;
+        }
+        moveTo(slot, i);
+    }
+
+    private void moveTo(int slot, int i) {
+        heap[i] = slot;
+        heapIndex[slot] = i;
+    }
+}
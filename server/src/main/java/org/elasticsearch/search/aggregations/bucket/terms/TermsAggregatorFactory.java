@@ -129,8 +129,14 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
             if (executionHint != null) {
                 execution = ExecutionMode.fromString(executionHint, DEPRECATION_LOGGER);
             }
+            if (execution == ExecutionMode.APPROXIMATE
+                    && (factories != AggregatorFactories.EMPTY || InternalOrder.isCountDesc(order) == false)) {
+                // The approximate counts can only rank terms by doc count, and sub-aggregations would have to be collected
+                // before it is known which terms are returned: fall back to exact counts
+                execution = null;
+            }
             // In some cases, using ordinals is just not supported: override it
-            if (valuesSource instanceof ValuesSource.Bytes.WithOrdinals == false) {
+            if (valuesSource instanceof ValuesSource.Bytes.WithOrdinals == false && execution != ExecutionMode.APPROXIMATE) {
                 execution = ExecutionMode.MAP;
             }
             final long maxOrd = execution == ExecutionMode.GLOBAL_ORDINALS ? getMaxOrd(valuesSource, context.searcher()) : -1;
@@ -302,6 +308,28 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                         format, bucketCountThresholds, filter, context, parent, remapGlobalOrds, subAggCollectMode, showTermDocCountError,
                         pipelineAggregators, metaData);
             }
+        },
+        APPROXIMATE(new ParseField("approximate")) {
+
+            @Override
+            Aggregator create(String name,
+                              AggregatorFactories factories,
+                              ValuesSource valuesSource,
+                              BucketOrder order,
+                              DocValueFormat format,
+                              TermsAggregator.BucketCountThresholds bucketCountThresholds,
+                              IncludeExclude includeExclude,
+                              SearchContext context,
+                              Aggregator parent,
+                              SubAggCollectionMode subAggCollectMode,
+                              boolean showTermDocCountError,
+                              List<PipelineAggregator> pipelineAggregators,
+                              Map<String, Object> metaData) throws IOException {
+                assert factories == AggregatorFactories.EMPTY && InternalOrder.isCountDesc(order);
+                final IncludeExclude.StringFilter filter = includeExclude == null ? null : includeExclude.convertToStringFilter(format);
+                return new ApproximateStringTermsAggregator(name, factories, valuesSource, order, format, bucketCountThresholds, filter,
+                        context, parent, showTermDocCountError, pipelineAggregators, metaData);
+            }
         };
 
         public static ExecutionMode fromString(String value, final DeprecationLogger deprecationLogger) {
@@ -316,8 +344,11 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                     return GLOBAL_ORDINALS;
                 case "map":
                     return MAP;
+                case "approximate":
+                    return APPROXIMATE;
                 default:
-                    throw new IllegalArgumentException("Unknown `execution_hint`: [" + value + "], expected any of [map, global_ordinals]");
+                    throw new IllegalArgumentException("Unknown `execution_hint`: [" + value + "], "
+                        + "expected any of [map, global_ordinals, approximate]");
             }
         }
 
@@ -347,4 +378,8 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
         }
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        return config.script() == null;
+    }
 }
@@ -24,16 +24,20 @@ import com.carrotsearch.hppc.BitMixer;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.hash.MurmurHash3;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.LongArray;
 import org.elasticsearch.common.util.ObjectArray;
+import org.elasticsearch.index.cache.sketch.SegmentSketchCache;
 import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 import org.elasticsearch.search.aggregations.Aggregator;
@@ -62,12 +66,31 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
     private Collector collector;
 
+    // Caches the sketches of segments whose documents all match, null if the request doesn't match all documents
+    @Nullable
+    private final SegmentSketchCache segmentSketchCache;
+    private final Object segmentSketchKey;
+
     public CardinalityAggregator(String name, ValuesSource valuesSource, int precision,
             SearchContext context, Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
+        this(name, valuesSource, precision, null, null, context, parent, pipelineAggregators, metaData);
+    }
+
+    /**
+     * @param segmentSketchCache the cache to take the sketches of segments without deleted documents from, or {@code null} if
+     *                           the aggregation doesn't collect all documents
+     * @param segmentSketchKey   identifies the values of the sketches in the cache
+     */
+    CardinalityAggregator(String name, ValuesSource valuesSource, int precision,
+            @Nullable SegmentSketchCache segmentSketchCache, Object segmentSketchKey, SearchContext context, Aggregator parent,
+            List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         super(name, context, parent, pipelineAggregators, metaData);
+        assert segmentSketchCache == null || parent == null;
         this.valuesSource = valuesSource;
         this.precision = precision;
         this.counts = valuesSource == null ? null : new HyperLogLogPlusPlus(precision, context.bigArrays(), 1);
+        this.segmentSketchCache = valuesSource == null ? null : segmentSketchCache;
+        this.segmentSketchKey = segmentSketchKey;
     }
 
     @Override
@@ -110,10 +133,56 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
             final LeafBucketCollector sub) throws IOException {
         postCollectLastCollector();
 
+        if (segmentSketchCache != null && ctx.reader().getLiveDocs() == null) {
+            final SegmentSketch sketch = segmentSketchCache.getOrCompute(ctx, segmentSketchKey, this::buildSegmentSketch);
+            if (sketch != null) {
+                // all documents of the segment match, so the sketch of the segment is what collecting them would result in
+                sketch.mergeInto(counts);
+                throw new CollectionTerminatedException();
+            }
+        }
+
         collector = pickCollector(ctx);
         return collector;
     }
 
+    /**
+     * Builds the sketch of the values of all documents of the given segment, with the same hashes as the collectors.
+     */
+    private SegmentSketch buildSegmentSketch(LeafReaderContext ctx) throws IOException {
+        final HyperLogLogPlusPlus sketch = new HyperLogLogPlusPlus(precision, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        if (valuesSource instanceof ValuesSource.Bytes.WithOrdinals) {
+            // every term of the segment belongs to a document, since the segment has no deleted documents
+            final SortedSetDocValues ordinalValues = ((ValuesSource.Bytes.WithOrdinals) valuesSource).ordinalsValues(ctx);
+            final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+            for (long ord = 0; ord < ordinalValues.getValueCount(); ord++) {
+                final BytesRef value = ordinalValues.lookupOrd(ord);
+                MurmurHash3.hash128(value.bytes, value.offset, value.length, 0, hash);
+                sketch.collect(0, hash.h1);
+            }
+        } else {
+            final MurmurHash3Values hashes;
+            if (valuesSource instanceof ValuesSource.Numeric) {
+                ValuesSource.Numeric source = (ValuesSource.Numeric) valuesSource;
+                hashes = source.isFloatingPoint()
+                    ? MurmurHash3Values.hash(source.doubleValues(ctx))
+                    : MurmurHash3Values.hash(source.longValues(ctx));
+            } else {
+                hashes = MurmurHash3Values.hash(valuesSource.bytesValues(ctx));
+            }
+            final int maxDoc = ctx.reader().maxDoc();
+            for (int doc = 0; doc < maxDoc; doc++) {
+                if (hashes.advanceExact(doc)) {
+                    final int valueCount = hashes.count();
+                    for (int i = 0; i < valueCount; ++i) {
+                        sketch.collect(0, hashes.nextValue());
+                    }
+                }
+            }
+        }
+        return new SegmentSketch(sketch);
+    }
+
     private void postCollectLastCollector() throws IOException {
         if (collector != null) {
             try {
@@ -157,6 +226,31 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
         Releasables.close(counts, collector);
     }
 
+    /**
+     * The sketch of the values of all documents of a segment, as cached in the {@link SegmentSketchCache}.
+     */
+    static final class SegmentSketch implements Accountable {
+
+        private final HyperLogLogPlusPlus counts;
+
+        SegmentSketch(HyperLogLogPlusPlus counts) {
+            this.counts = counts;
+        }
+
+        /**
+         * Merges the sketch into the first bucket of the given counts. Reading a sketch isn't thread-safe, but cached sketches
+         * are shared by concurrent requests.
+         */
+        synchronized void mergeInto(HyperLogLogPlusPlus into) {
+            into.merge(0, counts, 0);
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return HyperLogLogPlusPlus.memoryUsage(counts.precision());
+        }
+    }
+
     private abstract static class Collector extends LeafBucketCollector implements Releasable {
 
         public abstract void postCollect() throws IOException;
@@ -267,11 +361,11 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
                 }
             }
 
-            final org.elasticsearch.common.hash.MurmurHash3.Hash128 hash = new org.elasticsearch.common.hash.MurmurHash3.Hash128();
+            final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
             try (LongArray hashes = bigArrays.newLongArray(maxOrd, false)) {
                 for (int ord = allVisitedOrds.nextSetBit(0); ord < DocIdSetIterator.NO_MORE_DOCS; ord = ord + 1 < maxOrd ? allVisitedOrds.nextSetBit(ord + 1) : DocIdSetIterator.NO_MORE_DOCS) {
                     final BytesRef value = values.lookupOrd(ord);
-                    org.elasticsearch.common.hash.MurmurHash3.hash128(value.bytes, value.offset, value.length, 0, hash);
+                    MurmurHash3.hash128(value.bytes, value.offset, value.length, 0, hash);
                     hashes.set(ord, hash.h1);
                 }
 
@@ -375,7 +469,7 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
         private static class Bytes extends MurmurHash3Values {
 
-            private final org.elasticsearch.common.hash.MurmurHash3.Hash128 hash = new org.elasticsearch.common.hash.MurmurHash3.Hash128();
+            private final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
 
             private final SortedBinaryDocValues values;
 
@@ -396,7 +490,7 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
             @Override
             public long nextValue() throws IOException {
                 final BytesRef bytes = values.nextValue();
-                org.elasticsearch.common.hash.MurmurHash3.hash128(bytes.bytes, bytes.offset, bytes.length, 0, hash);
+                MurmurHash3.hash128(bytes.bytes, bytes.offset, bytes.length, 0, hash);
                 return hash.h1;
             }
         }
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.aggregations.metrics.cardinality;
 
+import org.elasticsearch.index.cache.sketch.SegmentSketchCache;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
@@ -31,6 +32,7 @@ import org.elasticsearch.search.internal.SearchContext;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 public class CardinalityAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSource, CardinalityAggregatorFactory> {
 
@@ -52,8 +54,11 @@ public class CardinalityAggregatorFactory extends ValuesSourceAggregatorFactory<
     @Override
     protected Aggregator doCreateInternal(ValuesSource valuesSource, Aggregator parent, boolean collectsFromSingleBucket,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
-        return new CardinalityAggregator(name, valuesSource, precision(), context, parent, pipelineAggregators,
-                metaData);
+        final int precision = precision();
+        final SegmentSketchCache segmentSketchCache = segmentSketchCache(parent);
+        final Object segmentSketchKey = segmentSketchCache == null ? null : new SegmentSketchKey(config.fieldContext().field(), precision);
+        return new CardinalityAggregator(name, valuesSource, precision, segmentSketchCache, segmentSketchKey, context, parent,
+                pipelineAggregators, metaData);
     }
 
     private int precision() {
@@ -61,4 +66,32 @@ public class CardinalityAggregatorFactory extends ValuesSourceAggregatorFactory<
                 ? HyperLogLogPlusPlus.DEFAULT_PRECISION
                 : HyperLogLogPlusPlus.precisionFromThreshold(precisionThreshold);
     }
+
+    private static final class SegmentSketchKey {
+
+        private final String field;
+        private final int precision;
+
+        SegmentSketchKey(String field, int precision) {
+            this.field = field;
+            this.precision = precision;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SegmentSketchKey that = (SegmentSketchKey) o;
+            return precision == that.precision && field.equals(that.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(field, precision);
+        }
+    }
 }
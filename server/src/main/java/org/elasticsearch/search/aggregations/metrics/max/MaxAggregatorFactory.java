@@ -52,4 +52,9 @@ public class MaxAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSo
                     throws IOException {
         return new MaxAggregator(name, config, valuesSource, context, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    public boolean supportsConcurrentCollection() {
+        return config.script() == null;
+    }
 }
@@ -51,4 +51,9 @@ public class MinAggregatorFactory extends ValuesSourceAggregatorFactory<ValuesSo
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         return new MinAggregator(name, config, valuesSource, context, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    public boolean supportsConcurrentCollection() {
+        return config.script() == null;
+    }
 }
@@ -28,6 +28,8 @@ import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregatorFactories.Builder;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.metrics.percentiles.ddsketch.DDSketchPercentilesAggregatorFactory;
+import org.elasticsearch.search.aggregations.metrics.percentiles.ddsketch.DDSketchState;
 import org.elasticsearch.search.aggregations.metrics.percentiles.hdr.HDRPercentilesAggregatorFactory;
 import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestPercentilesAggregatorFactory;
 import org.elasticsearch.search.aggregations.support.ValueType;
@@ -39,6 +41,7 @@ import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
 import org.elasticsearch.search.aggregations.support.ValuesSourceParserHelper;
 import org.elasticsearch.search.aggregations.support.ValuesSourceType;
 import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -55,6 +58,7 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
     public static final ParseField METHOD_FIELD = new ParseField("method");
     public static final ParseField COMPRESSION_FIELD = new ParseField("compression");
     public static final ParseField NUMBER_SIGNIFICANT_DIGITS_FIELD = new ParseField("number_of_significant_value_digits");
+    public static final ParseField RELATIVE_ACCURACY_FIELD = new ParseField("relative_accuracy");
 
     private static class TDigestOptions {
         Double compression;
@@ -78,6 +82,17 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
                 NUMBER_SIGNIFICANT_DIGITS_FIELD);
     }
 
+    private static class DDSketchOptions {
+        Double relativeAccuracy;
+    }
+
+    private static final ObjectParser<DDSketchOptions, Void> DDSKETCH_OPTIONS_PARSER =
+            new ObjectParser<>(PercentilesMethod.DDSKETCH.getParseField().getPreferredName(), DDSketchOptions::new);
+    static {
+        DDSKETCH_OPTIONS_PARSER.declareDouble((opts, relativeAccuracy) -> opts.relativeAccuracy = relativeAccuracy,
+                RELATIVE_ACCURACY_FIELD);
+    }
+
     private static final ObjectParser<InternalBuilder, Void> PARSER;
     static {
         PARSER = new ObjectParser<>(PercentilesAggregationBuilder.NAME);
@@ -102,6 +117,13 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
                 b.numberOfSignificantValueDigits(v.numberOfSigDigits);
             }
         }, HDR_OPTIONS_PARSER::parse, PercentilesMethod.HDR.getParseField(), ObjectParser.ValueType.OBJECT);
+
+        PARSER.declareField((b, v) -> {
+            b.method(PercentilesMethod.DDSKETCH);
+            if (v.relativeAccuracy != null) {
+                b.relativeAccuracy(v.relativeAccuracy);
+            }
+        }, DDSKETCH_OPTIONS_PARSER::parse, PercentilesMethod.DDSKETCH.getParseField(), ObjectParser.ValueType.OBJECT);
     }
 
     public static AggregationBuilder parse(String aggregationName, XContentParser parser) throws IOException {
@@ -118,6 +140,7 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         returnedAgg.keyed(internal.keyed());
         returnedAgg.compression(internal.compression());
         returnedAgg.numberOfSignificantValueDigits(internal.numberOfSignificantValueDigits());
+        returnedAgg.relativeAccuracy(internal.relativeAccuracy());
         return returnedAgg;
     }
 
@@ -131,6 +154,7 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
     private PercentilesMethod method = PercentilesMethod.TDIGEST;
     private int numberOfSignificantValueDigits = 3;
     private double compression = 100.0;
+    private double relativeAccuracy = DDSketchState.DEFAULT_RELATIVE_ACCURACY;
     private boolean keyed = true;
 
     public PercentilesAggregationBuilder(String name) {
@@ -144,6 +168,7 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         this.method = clone.method;
         this.numberOfSignificantValueDigits = clone.numberOfSignificantValueDigits;
         this.compression = clone.compression;
+        this.relativeAccuracy = clone.relativeAccuracy;
         this.keyed = clone.keyed;
     }
 
@@ -162,6 +187,9 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         numberOfSignificantValueDigits = in.readVInt();
         compression = in.readDouble();
         method = PercentilesMethod.readFromStream(in);
+        if (in.hasFeature(TransportCapabilities.DDSKETCH_PERCENTILES)) {
+            relativeAccuracy = in.readDouble();
+        }
     }
 
     @Override
@@ -170,7 +198,14 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         out.writeBoolean(keyed);
         out.writeVInt(numberOfSignificantValueDigits);
         out.writeDouble(compression);
+        if (method == PercentilesMethod.DDSKETCH && out.hasFeature(TransportCapabilities.DDSKETCH_PERCENTILES) == false) {
+            throw new IllegalArgumentException("[" + PercentilesMethod.DDSKETCH + "] percentiles are not supported by the node the request"
+                    + " is sent to in [" + name + "]");
+        }
         method.writeTo(out);
+        if (out.hasFeature(TransportCapabilities.DDSKETCH_PERCENTILES)) {
+            out.writeDouble(relativeAccuracy);
+        }
     }
 
     /**
@@ -252,6 +287,28 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         return compression;
     }
 
+    /**
+     * Expert: set the relative accuracy, the maximum relative distance of a
+     * percentile to the actual value. Only relevant when using
+     * {@link PercentilesMethod#DDSKETCH}.
+     */
+    public PercentilesAggregationBuilder relativeAccuracy(double relativeAccuracy) {
+        if ((relativeAccuracy > 0.0 && relativeAccuracy < 1.0) == false) {
+            throw new IllegalArgumentException(
+                    "[relative_accuracy] must be greater than 0 and less than 1. Found [" + relativeAccuracy + "] in [" + name + "]");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        return this;
+    }
+
+    /**
+     * Expert: get the relative accuracy. Only relevant when using
+     * {@link PercentilesMethod#DDSKETCH}.
+     */
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
     public PercentilesAggregationBuilder method(PercentilesMethod method) {
         if (method == null) {
             throw new IllegalArgumentException("[method] must not be null: [" + name + "]");
@@ -274,6 +331,9 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         case HDR:
             return new HDRPercentilesAggregatorFactory(name, config, percents, numberOfSignificantValueDigits, keyed, context, parent,
                     subFactoriesBuilder, metaData);
+        case DDSKETCH:
+            return new DDSketchPercentilesAggregatorFactory(name, config, percents, relativeAccuracy, keyed, context, parent,
+                    subFactoriesBuilder, metaData);
         default:
             throw new IllegalStateException("Illegal method [" + method + "]");
         }
@@ -286,6 +346,8 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         builder.startObject(method.toString());
         if (method == PercentilesMethod.TDIGEST) {
             builder.field(COMPRESSION_FIELD.getPreferredName(), compression);
+        } else if (method == PercentilesMethod.DDSKETCH) {
+            builder.field(RELATIVE_ACCURACY_FIELD.getPreferredName(), relativeAccuracy);
         } else {
             builder.field(NUMBER_SIGNIFICANT_DIGITS_FIELD.getPreferredName(), numberOfSignificantValueDigits);
         }
@@ -307,6 +369,9 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         case TDIGEST:
             equalSettings = Objects.equals(compression, other.compression);
             break;
+        case DDSKETCH:
+            equalSettings = Objects.equals(relativeAccuracy, other.relativeAccuracy);
+            break;
         default:
             throw new IllegalStateException("Illegal method [" + method.toString() + "]");
         }
@@ -323,6 +388,8 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
             return Objects.hash(Arrays.hashCode(percents), keyed, numberOfSignificantValueDigits, method);
         case TDIGEST:
             return Objects.hash(Arrays.hashCode(percents), keyed, compression, method);
+        case DDSKETCH:
+            return Objects.hash(Arrays.hashCode(percents), keyed, relativeAccuracy, method);
         default:
             throw new IllegalStateException("Illegal method [" + method.toString() + "]");
         }
@@ -37,7 +37,11 @@ public enum PercentilesMethod implements Writeable {
     /**
      * The HDRHistogram method of calculating percentiles
      */
-    HDR("hdr", "HDR");
+    HDR("hdr", "HDR"),
+    /**
+     * The DDSketch method of calculating percentiles, with a relative error guarantee and a bounded size
+     */
+    DDSKETCH("ddsketch");
 
     private final ParseField parseField;
 
@@ -0,0 +1,206 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics.percentiles.ddsketch;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.ArrayUtils;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.ObjectArray;
+import org.elasticsearch.index.cache.sketch.SegmentSketchCache;
+import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public class DDSketchPercentilesAggregator extends NumericMetricsAggregator.MultiValue {
+
+    private static int indexOfKey(double[] keys, double key) {
+        return ArrayUtils.binarySearch(keys, key, 0.001);
+    }
+
+    private final double[] keys;
+    private final ValuesSource.Numeric valuesSource;
+    private final DocValueFormat formatter;
+    private final double relativeAccuracy;
+    private final boolean keyed;
+    private ObjectArray<DDSketchState> states;
+
+    // Caches the sketches of segments whose documents all match, null if the request doesn't match all documents
+    @Nullable
+    private final SegmentSketchCache segmentSketchCache;
+    private final Object segmentSketchKey;
+
+    /**
+     * @param segmentSketchCache the cache to take the sketches of segments without deleted documents from, or {@code null} if
+     *                           the aggregation doesn't collect all documents
+     * @param segmentSketchKey   identifies the values of the sketches in the cache
+     */
+    public DDSketchPercentilesAggregator(String name, ValuesSource.Numeric valuesSource, SearchContext context, Aggregator parent,
+            double[] keys, double relativeAccuracy, boolean keyed, DocValueFormat formatter,
+            @Nullable SegmentSketchCache segmentSketchCache, Object segmentSketchKey,
+            List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
+        super(name, context, parent, pipelineAggregators, metaData);
+        assert segmentSketchCache == null || parent == null;
+        this.valuesSource = valuesSource;
+        this.keyed = keyed;
+        this.formatter = formatter;
+        this.states = context.bigArrays().newObjectArray(1);
+        this.keys = keys;
+        this.relativeAccuracy = relativeAccuracy;
+        this.segmentSketchCache = valuesSource == null ? null : segmentSketchCache;
+        this.segmentSketchKey = segmentSketchKey;
+    }
+
+    @Override
+    public boolean needsScores() {
+        return valuesSource != null && valuesSource.needsScores();
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
+            final LeafBucketCollector sub) throws IOException {
+        if (valuesSource == null) {
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
+        if (segmentSketchCache != null && ctx.reader().getLiveDocs() == null) {
+            final DDSketchState sketch = segmentSketchCache.getOrCompute(ctx, segmentSketchKey, this::buildSegmentSketch);
+            if (sketch != null) {
+                // all documents of the segment match, so the sketch of the segment is what collecting them would result in
+                final DDSketchState state = getOrCreateState(0);
+                final long ramBytesUsed = state.ramBytesUsed();
+                state.add(sketch);
+                accountGrowth(state, ramBytesUsed);
+                throw new CollectionTerminatedException();
+            }
+        }
+        final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
+        return new LeafBucketCollectorBase(sub, values) {
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                final DDSketchState state = getOrCreateState(bucket);
+                if (values.advanceExact(doc)) {
+                    final long ramBytesUsed = state.ramBytesUsed();
+                    final int valueCount = values.docValueCount();
+                    for (int i = 0; i < valueCount; i++) {
+                        state.add(values.nextValue());
+                    }
+                    accountGrowth(state, ramBytesUsed);
+                }
+            }
+        };
+    }
+
+    private DDSketchState getOrCreateState(long bucket) {
+        final BigArrays bigArrays = context.bigArrays();
+        states = bigArrays.grow(states, bucket + 1);
+        DDSketchState state = states.get(bucket);
+        if (state == null) {
+            state = new DDSketchState(relativeAccuracy, DDSketchState.DEFAULT_MAX_BUCKETS);
+            addRequestCircuitBreakerBytes(state.ramBytesUsed());
+            states.set(bucket, state);
+        }
+        return state;
+    }
+
+    /**
+     * Charges the request circuit breaker with the memory the counts of the given state grew by. The counts only grow when
+     * the values span a range of buckets they don't cover yet, so this rarely calls the breaker.
+     */
+    private void accountGrowth(DDSketchState state, long previousRamBytesUsed) {
+        final long growth = state.ramBytesUsed() - previousRamBytesUsed;
+        if (growth != 0) {
+            addRequestCircuitBreakerBytes(growth);
+        }
+    }
+
+    /**
+     * Builds the sketch of the values of all documents of the given segment. Cached sketches are shared by concurrent requests,
+     * which only read them.
+     */
+    private DDSketchState buildSegmentSketch(LeafReaderContext ctx) throws IOException {
+        final DDSketchState sketch = new DDSketchState(relativeAccuracy, DDSketchState.DEFAULT_MAX_BUCKETS);
+        final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
+        final int maxDoc = ctx.reader().maxDoc();
+        for (int doc = 0; doc < maxDoc; doc++) {
+            if (values.advanceExact(doc)) {
+                final int valueCount = values.docValueCount();
+                for (int i = 0; i < valueCount; i++) {
+                    sketch.add(values.nextValue());
+                }
+            }
+        }
+        return sketch;
+    }
+
+    @Override
+    public boolean hasMetric(String name) {
+        return indexOfKey(keys, Double.parseDouble(name)) >= 0;
+    }
+
+    private DDSketchState getState(long bucketOrd) {
+        if (bucketOrd >= states.size()) {
+            return null;
+        }
+        return states.get(bucketOrd);
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) {
+        DDSketchState state = getState(owningBucketOrdinal);
+        if (state == null) {
+            return buildEmptyAggregation();
+        } else {
+            return new InternalDDSketchPercentiles(name, keys, state, keyed, formatter, pipelineAggregators(), metaData());
+        }
+    }
+
+    @Override
+    public double metric(String name, long bucketOrd) {
+        DDSketchState state = getState(bucketOrd);
+        if (state == null) {
+            return Double.NaN;
+        } else {
+            return state.quantile(Double.parseDouble(name) / 100);
+        }
+    }
+
+    @Override
+    public InternalAggregation buildEmptyAggregation() {
+        return new InternalDDSketchPercentiles(name, keys, new DDSketchState(relativeAccuracy, DDSketchState.DEFAULT_MAX_BUCKETS),
+                keyed, formatter, pipelineAggregators(), metaData());
+    }
+
+    @Override
+    protected void doClose() {
+        Releasables.close(states);
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles.ddsketch;
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * A quantile sketch with a relative error guarantee, following the DDSketch algorithm of Masson et al. Values are counted in
+ * buckets whose bounds grow exponentially, so that every value of a bucket is within the relative accuracy of the value that
+ * represents the bucket. The number of buckets is bounded: once a sketch would need more buckets, the buckets of the values
+ * closest to zero are collapsed, which only affects the accuracy of the lowest quantiles.
+ *
+ * Unlike a t-digest, the sketch doesn't depend on the order in which values are added or sketches are merged, and it is written
+ * to the wire as the counts of its non-empty buckets.
+ */
+public final class DDSketchState implements Accountable {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(DDSketchState.class)
+        + 2 * RamUsageEstimator.shallowSizeOfInstance(Store.class);
+
+    private final double relativeAccuracy;
+    private final int maxBuckets;
+    private final double logGamma;
+    // values whose magnitude is below this are counted as zero, so that their bucket index doesn't underflow
+    private final double minIndexableValue;
+    private final Store positive;
+    private final Store negative;
+    private long zeroCount;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public DDSketchState(double relativeAccuracy, int maxBuckets) {
+        if ((relativeAccuracy > 0 && relativeAccuracy < 1) == false) {
+            throw new IllegalArgumentException("[relative_accuracy] must be greater than 0 and less than 1 but was ["
+                + relativeAccuracy + "]");
+        }
+        if (maxBuckets < 1) {
+            throw new IllegalArgumentException("[max_buckets] must be at least 1 but was [" + maxBuckets + "]");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBuckets = maxBuckets;
+        this.logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+        this.minIndexableValue = Double.MIN_NORMAL * Math.exp(logGamma);
+        this.positive = new Store(maxBuckets);
+        this.negative = new Store(maxBuckets);
+    }
+
+    public double relativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public int maxBuckets() {
+        return maxBuckets;
+    }
+
+    /**
+     * The number of values that were added.
+     */
+    public long size() {
+        return zeroCount + positive.total + negative.total;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("Cannot add NaN to a quantile sketch");
+        }
+        if (value >= minIndexableValue) {
+            positive.add(index(value), 1);
+        } else if (value <= -minIndexableValue) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values of the given sketch, which must have the same relative accuracy.
+     */
+    public void add(DDSketchState other) {
+        if (relativeAccuracy != other.relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge quantile sketches with different relative accuracies ["
+                + relativeAccuracy + "] and [" + other.relativeAccuracy + "]");
+        }
+        positive.add(other.positive);
+        negative.add(other.negative);
+        zeroCount += other.zeroCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the value at the given quantile, between {@code 0} and {@code 1}, or {@link Double#NaN} if the sketch is empty.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q should be in [0,1], got " + q);
+        }
+        final long size = size();
+        if (size == 0) {
+            return Double.NaN;
+        }
+        final long rank = (long) (q * (size - 1));
+        // the extremes are tracked exactly
+        if (rank == 0) {
+            return min;
+        } else if (rank == size - 1) {
+            return max;
+        }
+        final double value;
+        if (rank < negative.total) {
+            // the largest negative bucket index holds the lowest values
+            value = -value(negative.indexOfRank(negative.total - 1 - rank));
+        } else if (rank < negative.total + zeroCount) {
+            value = 0;
+        } else {
+            value = value(positive.indexOfRank(rank - negative.total - zeroCount));
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    private long index(double value) {
+        if (value > Double.MAX_VALUE) {
+            value = Double.MAX_VALUE;
+        }
+        return (long) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * The value that represents the bucket with the given index, whose relative distance to the bounds of the bucket is the relative
+     * accuracy of the sketch.
+     */
+    private double value(long index) {
+        return 2 * Math.exp(index * logGamma) / (1 + Math.exp(logGamma));
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(positive.counts) + RamUsageEstimator.sizeOf(negative.counts);
+    }
+
+    public static void write(DDSketchState state, StreamOutput out) throws IOException {
+        out.writeDouble(state.relativeAccuracy);
+        out.writeVInt(state.maxBuckets);
+        out.writeVLong(state.zeroCount);
+        out.writeDouble(state.min);
+        out.writeDouble(state.max);
+        state.positive.writeTo(out);
+        state.negative.writeTo(out);
+    }
+
+    public static DDSketchState read(StreamInput in) throws IOException {
+        final DDSketchState state = new DDSketchState(in.readDouble(), in.readVInt());
+        state.zeroCount = in.readVLong();
+        state.min = in.readDouble();
+        state.max = in.readDouble();
+        state.positive.readFrom(in);
+        state.negative.readFrom(in);
+        return state;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        DDSketchState that = (DDSketchState) obj;
+        return relativeAccuracy == that.relativeAccuracy
+            && maxBuckets == that.maxBuckets
+            && zeroCount == that.zeroCount
+            && Double.compare(min, that.min) == 0
+            && Double.compare(max, that.max) == 0
+            && positive.equals(that.positive)
+            && negative.equals(that.negative);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = getClass().hashCode();
+        h = 31 * h + Double.hashCode(relativeAccuracy);
+        h = 31 * h + maxBuckets;
+        h = 31 * h + Long.hashCode(zeroCount);
+        h = 31 * h + positive.hashCode();
+        h = 31 * h + negative.hashCode();
+        return h;
+    }
+
+    /**
+     * The counts of the buckets of the values of one sign, in an array that covers the range of bucket indices that have values.
+     * When the range would exceed the maximum number of buckets, the lowest buckets are collapsed into the lowest bucket that is
+     * kept.
+     */
+    private static final class Store {
+
+        private final int maxBuckets;
+        private long[] counts = new long[0];
+        // the bucket index of the first element of the counts
+        private long offset;
+        private long minIndex;
+        private long maxIndex;
+        private long total;
+
+        Store(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        void add(long index, long count) {
+            assert count > 0;
+            long newMin = total == 0 ? index : Math.min(minIndex, index);
+            final long newMax = total == 0 ? index : Math.max(maxIndex, index);
+            if (newMax - newMin >= maxBuckets) {
+                newMin = newMax - maxBuckets + 1;
+                index = Math.max(index, newMin);
+            }
+            long collapsed = 0;
+            if (total > 0 && newMin > minIndex) {
+                for (long i = minIndex; i <= maxIndex && i < newMin; i++) {
+                    collapsed += counts[(int) (i - offset)];
+                    counts[(int) (i - offset)] = 0;
+                }
+            }
+            ensureCapacity(newMin, newMax);
+            counts[(int) (newMin - offset)] += collapsed;
+            counts[(int) (index - offset)] += count;
+            minIndex = newMin;
+            maxIndex = newMax;
+            total += count;
+        }
+
+        void add(Store other) {
+            for (long i = other.minIndex; other.total > 0 && i <= other.maxIndex; i++) {
+                final long count = other.counts[(int) (i - other.offset)];
+                if (count > 0) {
+                    add(i, count);
+                }
+            }
+        }
+
+        /**
+         * Makes sure that the counts cover the given range of bucket indices, which isn't wider than the maximum number of buckets.
+         */
+        private void ensureCapacity(long newMin, long newMax) {
+            if (newMin >= offset && newMax < offset + counts.length) {
+                return;
+            }
+            final int length = Math.min(maxBuckets, ArrayUtil.oversize((int) (newMax - newMin + 1), Long.BYTES));
+            // leave the room for more buckets on the side the range grows to
+            final long newOffset = newMax >= offset + counts.length ? newMin : newMax - length + 1;
+            final long[] newCounts = new long[length];
+            if (total > 0) {
+                for (long i = Math.max(minIndex, newOffset); i <= maxIndex; i++) {
+                    newCounts[(int) (i - newOffset)] = counts[(int) (i - offset)];
+                }
+            }
+            counts = newCounts;
+            offset = newOffset;
+        }
+
+        /**
+         * The index of the bucket that holds the value with the given rank, {@code 0} being the lowest value of the store.
+         */
+        long indexOfRank(long rank) {
+            assert rank < total;
+            long seen = 0;
+            for (long i = minIndex; i < maxIndex; i++) {
+                seen += counts[(int) (i - offset)];
+                if (seen > rank) {
+                    return i;
+                }
+            }
+            return maxIndex;
+        }
+
+        void writeTo(StreamOutput out) throws IOException {
+            int nonEmpty = 0;
+            for (long i = minIndex; total > 0 && i <= maxIndex; i++) {
+                if (counts[(int) (i - offset)] > 0) {
+                    nonEmpty++;
+                }
+            }
+            out.writeVInt(nonEmpty);
+            if (nonEmpty == 0) {
+                return;
+            }
+            // the first index is absolute, the others are the (positive) distance to the previous non-empty bucket
+            out.writeZLong(minIndex);
+            long previous = minIndex;
+            for (long i = minIndex; i <= maxIndex; i++) {
+                final long count = counts[(int) (i - offset)];
+                if (count > 0) {
+                    out.writeVLong(i - previous);
+                    out.writeVLong(count);
+                    previous = i;
+                }
+            }
+        }
+
+        void readFrom(StreamInput in) throws IOException {
+            final int nonEmpty = in.readVInt();
+            long index = nonEmpty == 0 ? 0 : in.readZLong();
+            for (int i = 0; i < nonEmpty; i++) {
+                index += in.readVLong();
+                add(index, in.readVLong());
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            Store that = (Store) obj;
+            if (total != that.total) {
+                return false;
+            }
+            if (total == 0) {
+                return true;
+            }
+            if (minIndex != that.minIndex || maxIndex != that.maxIndex) {
+                return false;
+            }
+            for (long i = minIndex; i <= maxIndex; i++) {
+                if (counts[(int) (i - offset)] != that.counts[(int) (i - that.offset)]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Long.hashCode(total);
+            for (long i = minIndex; total > 0 && i <= maxIndex; i++) {
+                h = 31 * h + Long.hashCode(counts[(int) (i - offset)]);
+            }
+            return h;
+        }
+    }
+}
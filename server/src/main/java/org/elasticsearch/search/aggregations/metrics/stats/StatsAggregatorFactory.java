@@ -51,4 +51,9 @@ public class StatsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         return new StatsAggregator(name, valuesSource, config.format(), context, parent, pipelineAggregators, metaData);
     }
+
+    @Override
+    public boolean supportsConcurrentCollection() {
+        return config.script() == null;
+    }
 }
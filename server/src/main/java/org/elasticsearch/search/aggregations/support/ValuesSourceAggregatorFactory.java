@@ -19,6 +19,9 @@
 
 package org.elasticsearch.search.aggregations.support;
 
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.cache.sketch.SegmentSketchCache;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
@@ -66,4 +69,25 @@ public abstract class ValuesSourceAggregatorFactory<VS extends ValuesSource, AF
             boolean collectsFromSingleBucket, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData)
             throws IOException;
 
+    /**
+     * Returns the cache of segment sketches if the aggregation sees all documents of the shard and the values of the field as they
+     * are indexed, so that the sketches of the segments can be merged instead of collecting their documents.
+     */
+    @Nullable
+    protected SegmentSketchCache segmentSketchCache(Aggregator parent) {
+        final SegmentSketchCache cache = context.segmentSketchCache();
+        if (cache == null || cache.isEnabled() == false) {
+            return null;
+        }
+        if (parent != null || config.fieldContext() == null || config.script() != null || config.missing() != null) {
+            return null;
+        }
+        if (context.query() instanceof MatchAllDocsQuery == false
+                || context.minimumScore() != null
+                || context.scrollContext() != null
+                || context.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return null;
+        }
+        return cache;
+    }
 }
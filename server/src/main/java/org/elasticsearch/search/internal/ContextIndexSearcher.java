@@ -25,7 +25,9 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermContext;
 import org.apache.lucene.search.BulkScorer;
 import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
@@ -34,7 +36,9 @@ import org.apache.lucene.search.QueryCachingPolicy;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.Weight;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.search.dfs.AggregatedDfs;
 import org.elasticsearch.search.profile.Timer;
@@ -44,11 +48,21 @@ import org.elasticsearch.search.profile.query.QueryProfiler;
 import org.elasticsearch.search.profile.query.QueryTimingType;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Context-aware extension of {@link IndexSearcher}.
+ *
+ * If it is given an executor, searches with a {@link CollectorManager} split the segments into contiguous slices that are searched
+ * concurrently, each with its own collector. The calling thread searches the first slice and any slice that the executor didn't
+ * pick up by the time it is done, so a busy or rejecting executor only costs concurrency.
  */
 public class ContextIndexSearcher extends IndexSearcher implements Releasable {
 
@@ -66,14 +80,75 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
 
     private Runnable checkCancelled;
 
+    /** Slices are never smaller than this many documents, smaller slices aren't worth the coordination. */
+    public static final int MIN_DOCS_PER_SLICE = 250_000;
+
+    @Nullable
+    private final Executor executor;
+
+    private final List<List<LeafReaderContext>> slices;
+
     public ContextIndexSearcher(Engine.Searcher searcher,
             QueryCache queryCache, QueryCachingPolicy queryCachingPolicy) {
+        this(searcher, queryCache, queryCachingPolicy, null, 1, MIN_DOCS_PER_SLICE);
+    }
+
+    /**
+     * @param executor        the executor that searches slices of the segments concurrently, {@code null} to search the segments one
+     *                        after the other
+     * @param maxSlices       the maximum number of slices the segments are split into
+     * @param minDocsPerSlice the minimum number of documents of a slice
+     */
+    public ContextIndexSearcher(Engine.Searcher searcher, QueryCache queryCache, QueryCachingPolicy queryCachingPolicy,
+                                @Nullable Executor executor, int maxSlices, int minDocsPerSlice) {
+        // the executor isn't passed to super on purpose, we compute our own slices and keep the rest of the searches sequential
         super(searcher.reader());
         in = searcher.searcher();
         engineSearcher = searcher;
         setSimilarity(searcher.searcher().getSimilarity(true));
         setQueryCache(queryCache);
         setQueryCachingPolicy(queryCachingPolicy);
+        this.executor = executor;
+        if (executor == null) {
+            this.slices = Collections.singletonList(leafContexts);
+        } else {
+            this.slices = computeSlices(leafContexts, maxSlices, minDocsPerSlice);
+        }
+    }
+
+    /**
+     * Splits the given segments into at most {@code maxSlices} slices of consecutive segments that have roughly the same number of
+     * documents. A segment is never split across slices.
+     */
+    static List<List<LeafReaderContext>> computeSlices(List<LeafReaderContext> leaves, int maxSlices, int minDocsPerSlice) {
+        long totalDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            totalDocs += leaf.reader().maxDoc();
+        }
+        final long docsPerSlice = Math.max(Math.max(1, minDocsPerSlice), (totalDocs + maxSlices - 1) / Math.max(1, maxSlices));
+        final List<List<LeafReaderContext>> slices = new ArrayList<>();
+        List<LeafReaderContext> slice = new ArrayList<>();
+        long sliceDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            slice.add(leaf);
+            sliceDocs += leaf.reader().maxDoc();
+            if (sliceDocs >= docsPerSlice) {
+                slices.add(slice);
+                slice = new ArrayList<>();
+                sliceDocs = 0;
+            }
+        }
+        if (slice.isEmpty() == false || slices.isEmpty()) {
+            slices.add(slice);
+        }
+        return Collections.unmodifiableList(slices);
+    }
+
+    /**
+     * Whether searches with a {@link CollectorManager} are split into several slices that are searched concurrently.
+     */
+    public boolean isSearchingConcurrently() {
+        return executor != null && slices.size() > 1;
     }
 
     @Override
@@ -149,8 +224,108 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
         }
     }
 
+    @Override
+    public <C extends Collector, T> T search(Query query, CollectorManager<C, T> collectorManager) throws IOException {
+        if (isSearchingConcurrently() == false) {
+            return super.search(query, collectorManager);
+        }
+        // collectors are created up-front on the calling thread, they may rely on state that isn't thread-safe
+        final List<C> collectors = new ArrayList<>(slices.size());
+        boolean needsScores = false;
+        for (int i = 0; i < slices.size(); i++) {
+            final C collector = collectorManager.newCollector();
+            needsScores |= collector.needsScores();
+            collectors.add(collector);
+        }
+        final Weight weight = createNormalizedWeight(query, needsScores);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final List<FutureTask<Void>> tasks = new ArrayList<>(slices.size() - 1);
+        for (int i = 1; i < slices.size(); i++) {
+            final List<LeafReaderContext> slice = slices.get(i);
+            final C collector = collectors.get(i);
+            final FutureTask<Void> task = new FutureTask<>(() -> searchSlice(slice, weight, collector, failure), null);
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (EsRejectedExecutionException e) {
+                // the calling thread searches the slice below
+            }
+        }
+        searchSlice(slices.get(0), weight, collectors.get(0), failure);
+        Error error = null;
+        boolean interrupted = false;
+        for (FutureTask<Void> task : tasks) {
+            // searches the slice on the calling thread unless a worker picked it up already, in which case this is a no-op
+            task.run();
+            while (true) {
+                try {
+                    task.get();
+                    break;
+                } catch (ExecutionException e) {
+                    // exceptions are recorded by searchSlice, only errors make it here
+                    if (error == null && e.getCause() instanceof Error) {
+                        error = (Error) e.getCause();
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    // the slice may still use the reader, so we need to wait for it regardless
+                    interrupted = true;
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+        final Exception e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e != null) {
+            throw new IllegalStateException("failed to search a slice of the segments", e);
+        }
+        return collectorManager.reduce(collectors);
+    }
+
+    /**
+     * Searches a slice of the segments and records the first failure of any slice, slices stop collecting once another slice failed.
+     */
+    private void searchSlice(List<LeafReaderContext> slice, Weight weight, Collector collector, AtomicReference<Exception> failure) {
+        final Runnable checkCancelled = this.checkCancelled;
+        final Runnable checkSlice = () -> {
+            if (failure.get() != null) {
+                // skips the remaining documents of the segment, and the remaining segments of the slice check again straight away
+                throw new CollectionTerminatedException();
+            }
+            if (checkCancelled != null) {
+                checkCancelled.run();
+            }
+        };
+        try {
+            search(slice, weight, collector, checkSlice);
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Searches a single leaf with the given weight, running the {@link #setCheckCancelled(Runnable) cancellation check} while
+     * collecting like the search of the query does.
+     */
+    public void search(LeafReaderContext leaf, Weight weight, Collector collector) throws IOException {
+        search(Collections.singletonList(leaf), weight, collector);
+    }
+
     @Override
     protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
+        search(leaves, weight, collector, checkCancelled);
+    }
+
+    private void search(List<LeafReaderContext> leaves, Weight weight, Collector collector, Runnable checkCancelled) throws IOException {
         final Weight cancellableWeight;
         if (checkCancelled != null) {
             cancellableWeight = new Weight(weight.getQuery()) {
@@ -34,6 +34,7 @@ import org.elasticsearch.index.query.Rewriteable;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 import java.util.Optional;
@@ -278,6 +279,8 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
     @Override
     public BytesReference cacheKey() throws IOException {
         BytesStreamOutput out = new BytesStreamOutput();
+        // write the fields that are only sent to nodes with the matching capabilities too, so that they are part of the key
+        out.setFeatures(TransportCapabilities.CURRENT);
         this.innerWriteTo(out, true);
         // copy it over, most requests are small, we might as well copy to make sure we are not sliced...
         // we could potentially keep it without copying, but then pay the price of extra unused bytes up to a page
@@ -62,4 +62,13 @@ public abstract class AbstractProfileBreakdown<T extends Enum<T>> {
         }
         return Collections.unmodifiableMap(map);
     }
+
+    /** The time spent in this node, the sum of all timings but none of the counts of the {@link #toTimingMap() timing map}. */
+    public long toNodeTime() {
+        long total = 0;
+        for (T timingType : timingTypes) {
+            total += timings[timingType.ordinal()].getApproximateTiming();
+        }
+        return total;
+    }
 }
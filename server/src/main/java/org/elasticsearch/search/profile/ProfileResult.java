@@ -64,11 +64,18 @@ public final class ProfileResult implements Writeable, ToXContentObject {
     private final List<ProfileResult> children;
 
     public ProfileResult(String type, String description, Map<String, Long> timings, List<ProfileResult> children) {
+        this(type, description, timings, getTotalTime(timings), children);
+    }
+
+    /**
+     * @param nodeTime the time spent in this node, for breakdowns that hold more than timings, like the number of calls
+     */
+    public ProfileResult(String type, String description, Map<String, Long> timings, long nodeTime, List<ProfileResult> children) {
         this.type = type;
         this.description = description;
         this.timings = Objects.requireNonNull(timings, "required timings argument missing");
         this.children = children;
-        this.nodeTime = getTotalTime(timings);
+        this.nodeTime = nodeTime;
     }
 
     /**
@@ -174,6 +181,7 @@ public final class ProfileResult implements Writeable, ToXContentObject {
         ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser::getTokenLocation);
         String currentFieldName = null;
         String type = null, description = null;
+        Long nodeTime = null;
         Map<String, Long> timings =  new HashMap<>();
         List<ProfileResult> children = new ArrayList<>();
         while((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
@@ -185,11 +193,11 @@ public final class ProfileResult implements Writeable, ToXContentObject {
                 } else if (DESCRIPTION.match(currentFieldName, parser.getDeprecationHandler())) {
                     description = parser.text();
                 } else if (NODE_TIME.match(currentFieldName, parser.getDeprecationHandler())) {
-                    // skip, total time is calculate by adding up 'timings' values in ProfileResult ctor
+                    // skip, the raw total time is parsed instead
                     parser.text();
                 } else if (NODE_TIME_RAW.match(currentFieldName, parser.getDeprecationHandler())) {
-                    // skip, total time is calculate by adding up 'timings' values in ProfileResult ctor
-                    parser.longValue();
+                    // not the sum of the 'timings' values, the breakdown also holds counts
+                    nodeTime = parser.longValue();
                 } else {
                     parser.skipChildren();
                 }
@@ -215,7 +223,10 @@ public final class ProfileResult implements Writeable, ToXContentObject {
                 }
             }
         }
-        return new ProfileResult(type, description, timings, children);
+        if (nodeTime == null) {
+            return new ProfileResult(type, description, timings, children);
+        }
+        return new ProfileResult(type, description, timings, nodeTime, children);
     }
 
     /**
@@ -68,6 +68,7 @@ public final class ProfileWeight extends Weight {
             timer.stop();
         }
         if (subQueryScorerSupplier == null) {
+            profile.segmentPruned();
             return null;
         }
 
@@ -19,8 +19,13 @@
 
 package org.elasticsearch.search.profile.query;
 
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.search.profile.AbstractProfileBreakdown;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * A record of timings for the various operations that may happen during query execution.
  * A node's time may be composed of several internal attributes (rewriting, weighting,
@@ -28,8 +33,30 @@ import org.elasticsearch.search.profile.AbstractProfileBreakdown;
  */
 public final class QueryProfileBreakdown extends AbstractProfileBreakdown<QueryTimingType> {
 
+    static final String PRUNED_SEGMENTS_COUNT = "pruned_segments_count";
+
+    private final CounterMetric prunedSegments = new CounterMetric();
+
     /** Sole constructor. */
     public QueryProfileBreakdown() {
         super(QueryTimingType.class);
     }
+
+    /**
+     * Records that a segment was skipped because the query could tell that it has no matches in it without building a scorer, for
+     * instance because the values of the segment are all outside of the bounds of a range query.
+     */
+    public void segmentPruned() {
+        prunedSegments.inc();
+    }
+
+    /**
+     * Adds the number of pruned segments to the timings, it doesn't count towards the {@link #toNodeTime() time of the node}.
+     */
+    @Override
+    public Map<String, Long> toTimingMap() {
+        Map<String, Long> map = new HashMap<>(super.toTimingMap());
+        map.put(PRUNED_SEGMENTS_COUNT, prunedSegments.count());
+        return Collections.unmodifiableMap(map);
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.elasticsearch.search.query.QueryCollectorContext.createCancellableCollectorContext;
+import static org.elasticsearch.search.query.QueryCollectorContext.createFilteredCollectorContext;
+import static org.elasticsearch.search.query.QueryCollectorContext.createMinScoreCollectorContext;
+import static org.elasticsearch.search.query.QueryCollectorContext.createMultiCollectorContext;
+import static org.elasticsearch.search.query.TopDocsCollectorContext.createTopDocsCollectorContext;
+
+/**
+ * Creates the collectors of the slices of the segments of a shard that a {@link ContextIndexSearcher} searches concurrently. The first
+ * slice is collected by the regular collector chain of the query phase, every other slice gets its own chain with its own top docs
+ * collector and, if the request has aggregations, its own aggregators. The top docs of the other slices are merged into the top docs of
+ * the first slice with {@link #mergeTopDocs(QuerySearchResult)} once the regular chain is post-processed, and the aggregations are
+ * reduced by the {@link AggregationPhase}.
+ */
+final class ConcurrentQueryCollectorManager implements CollectorManager<Collector, Void> {
+
+    private final SearchContext searchContext;
+    private final IndexSearcher searcher;
+    private final Collector firstCollector;
+    private final int numHits;
+    private final List<TopDocsCollectorContext> sliceTopDocs = new ArrayList<>();
+    private boolean firstCollectorUsed = false;
+
+    /**
+     * @param firstCollector the regular collector chain of the query phase, which collects the first slice
+     * @param numHits        the number of hits the top docs collector of the regular chain retrieves
+     */
+    ConcurrentQueryCollectorManager(SearchContext searchContext, IndexSearcher searcher, Collector firstCollector, int numHits) {
+        this.searchContext = searchContext;
+        this.searcher = searcher;
+        this.firstCollector = firstCollector;
+        this.numHits = numHits;
+    }
+
+    /**
+     * Whether the query of the given search context can be searched concurrently by the given searcher. Only the top docs, the post
+     * filter, the aggregations, the minimum score and the cancellation can be split into slices, profiled requests are searched one
+     * segment after the other so that the timings stay meaningful.
+     */
+    static boolean canSearchConcurrently(SearchContext searchContext, IndexSearcher searcher) {
+        if (searcher instanceof ContextIndexSearcher == false || ((ContextIndexSearcher) searcher).isSearchingConcurrently() == false) {
+            return false;
+        }
+        if (searchContext.getProfilers() != null
+                || searchContext.scrollContext() != null
+                || searchContext.collapse() != null
+                || searchContext.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return false;
+        }
+        for (Class<?> queryCollector : searchContext.queryCollectors().keySet()) {
+            if (queryCollector != AggregationPhase.class) {
+                return false;
+            }
+        }
+        return searchContext.aggregations() == null || searchContext.aggregations().factories().supportsConcurrentCollection();
+    }
+
+    @Override
+    public Collector newCollector() throws IOException {
+        if (firstCollectorUsed == false) {
+            firstCollectorUsed = true;
+            return firstCollector;
+        }
+        final IndexReader reader = searcher.getIndexReader();
+        final List<QueryCollectorContext> collectors = new ArrayList<>();
+        // the total hit count can't be taken from the statistics of the reader, it is the sum of the hits of the slices
+        final TopDocsCollectorContext topDocs = createTopDocsCollectorContext(searchContext, reader, true);
+        collectors.add(topDocs);
+        if (searchContext.parsedPostFilter() != null) {
+            collectors.add(createFilteredCollectorContext(searcher, searchContext.parsedPostFilter().query()));
+        }
+        if (searchContext.queryCollectors().containsKey(AggregationPhase.class)) {
+            collectors.add(createMultiCollectorContext(Collections.singletonList(searchContext.aggregations().newSliceCollector())));
+        }
+        if (searchContext.minimumScore() != null) {
+            collectors.add(createMinScoreCollectorContext(searchContext.minimumScore()));
+        }
+        collectors.add(createCancellableCollectorContext(searchContext.getTask()::isCancelled));
+        sliceTopDocs.add(topDocs);
+        return QueryCollectorContext.createQueryCollector(collectors);
+    }
+
+    @Override
+    public Void reduce(Collection<Collector> collectors) {
+        // the results of the slices are merged once the regular collector chain was post-processed
+        return null;
+    }
+
+    /**
+     * Merges the top docs of the other slices into the top docs of the first slice, which are already set on the given result.
+     */
+    void mergeTopDocs(QuerySearchResult result) throws IOException {
+        final List<TopDocs> topDocsList = new ArrayList<>(sliceTopDocs.size() + 1);
+        topDocsList.add(result.topDocs());
+        for (TopDocsCollectorContext topDocs : sliceTopDocs) {
+            final QuerySearchResult sliceResult = new QuerySearchResult();
+            topDocs.postProcess(sliceResult);
+            topDocsList.add(sliceResult.topDocs());
+        }
+        final TopDocs first = result.topDocs();
+        final TopDocs merged;
+        if (numHits == 0) {
+            long totalHits = 0;
+            float maxScore = Float.NaN;
+            for (TopDocs topDocs : topDocsList) {
+                totalHits += topDocs.totalHits;
+                // slices that don't track scores or didn't match report NaN
+                if (Float.isNaN(maxScore) || topDocs.getMaxScore() > maxScore) {
+                    maxScore = topDocs.getMaxScore();
+                }
+            }
+            merged = new TopDocs(totalHits, Lucene.EMPTY_SCORE_DOCS, maxScore);
+        } else if (first instanceof TopFieldDocs) {
+            // slices are ordered by doc id, so tie-breaking on the slice index keeps the order of a sequential search
+            final TopFieldDocs[] shardHits = topDocsList.toArray(new TopFieldDocs[0]);
+            merged = TopDocs.merge(searchContext.sort().sort, 0, numHits, shardHits, true);
+        } else {
+            merged = TopDocs.merge(0, numHits, topDocsList.toArray(new TopDocs[0]), true);
+        }
+        for (ScoreDoc scoreDoc : merged.scoreDocs) {
+            scoreDoc.shardIndex = -1;
+        }
+        result.topDocs(merged, result.sortValueFormats());
+    }
+}
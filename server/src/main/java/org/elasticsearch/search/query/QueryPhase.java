@@ -258,8 +258,11 @@ public class QueryPhase implements SearchPhase {
             collectors.add(createCancellableCollectorContext(searchContext.getTask()::isCancelled));
 
             final boolean doProfile = searchContext.getProfilers() != null;
+            final boolean concurrent = ConcurrentQueryCollectorManager.canSearchConcurrently(searchContext, searcher);
             // create the top docs collector last when the other collectors are known
-            final TopDocsCollectorContext topDocsFactory = createTopDocsCollectorContext(searchContext, reader, hasFilterCollector);
+            // the total hit count of a slice can't be taken from the statistics of the reader
+            final TopDocsCollectorContext topDocsFactory = createTopDocsCollectorContext(searchContext, reader,
+                hasFilterCollector || concurrent);
             // add the top docs collector, the first collector context in the chain
             collectors.addFirst(topDocsFactory);
 
@@ -272,8 +275,19 @@ public class QueryPhase implements SearchPhase {
                queryCollector = QueryCollectorContext.createQueryCollector(collectors);
             }
 
+            final ConcurrentQueryCollectorManager collectorManager;
+            if (concurrent) {
+                collectorManager = new ConcurrentQueryCollectorManager(searchContext, searcher, queryCollector, topDocsFactory.numHits());
+            } else {
+                collectorManager = null;
+            }
+
             try {
-                searcher.search(query, queryCollector);
+                if (collectorManager != null) {
+                    searcher.search(query, collectorManager);
+                } else {
+                    searcher.search(query, queryCollector);
+                }
             } catch (EarlyTerminatingCollector.EarlyTerminationException e) {
                 queryResult.terminatedEarly(true);
             } catch (TimeExceededException e) {
@@ -292,6 +306,9 @@ public class QueryPhase implements SearchPhase {
             for (QueryCollectorContext ctx : collectors) {
                 ctx.postProcess(result);
             }
+            if (collectorManager != null) {
+                collectorManager.mergeTopDocs(result);
+            }
             EsThreadPoolExecutor executor = (EsThreadPoolExecutor)
                     searchContext.indexShard().getThreadPool().executor(ThreadPool.Names.SEARCH);
             if (executor instanceof QueueResizingEsThreadPoolExecutor) {
@@ -22,6 +22,7 @@ package org.elasticsearch.search.query;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.TopDocs;
 import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.search.DocValueFormat;
@@ -33,6 +34,7 @@ import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.SiblingPipelineAggregator;
 import org.elasticsearch.search.profile.ProfileShardResult;
 import org.elasticsearch.search.suggest.Suggest;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -51,6 +53,7 @@ public final class QuerySearchResult extends SearchPhaseResult {
     private DocValueFormat[] sortValueFormats;
     private InternalAggregations aggregations;
     private boolean hasAggs;
+    private long aggregationsSize = -1;
     private List<SiblingPipelineAggregator> pipelineAggregators = Collections.emptyList();
     private Suggest suggest;
     private boolean searchTimedOut;
@@ -169,6 +172,15 @@ public final class QuerySearchResult extends SearchPhaseResult {
     public void aggregations(InternalAggregations aggregations) {
         this.aggregations = aggregations;
         hasAggs = aggregations != null;
+        aggregationsSize = -1;
+    }
+
+    /**
+     * Returns the number of bytes the aggregations of this result were received with, or {@code -1} if this result wasn't received
+     * from another node or that node didn't send the size.
+     */
+    public long getAggregationsSize() {
+        return aggregationsSize;
     }
 
     /**
@@ -292,6 +304,9 @@ public final class QuerySearchResult extends SearchPhaseResult {
         }
         setTopDocs(readTopDocs(in));
         if (hasAggs = in.readBoolean()) {
+            if (in.hasFeature(TransportCapabilities.SEARCH_AGGS_SIZE)) {
+                aggregationsSize = in.readVInt();
+            }
             aggregations = InternalAggregations.readAggregations(in);
         }
         pipelineAggregators = in.readNamedWriteableList(PipelineAggregator.class).stream().map(a -> (SiblingPipelineAggregator) a)
@@ -335,7 +350,17 @@ public final class QuerySearchResult extends SearchPhaseResult {
             out.writeBoolean(false);
         } else {
             out.writeBoolean(true);
-            aggregations.writeTo(out);
+            if (out.hasFeature(TransportCapabilities.SEARCH_AGGS_SIZE)) {
+                // prefixed with their size so that the coordinating node can account for them without measuring them
+                try (BytesStreamOutput aggsOut = new BytesStreamOutput()) {
+                    aggsOut.setVersion(out.getVersion());
+                    aggsOut.setFeatures(TransportCapabilities.CURRENT.stream().filter(out::hasFeature).collect(Collectors.toSet()));
+                    aggregations.writeTo(aggsOut);
+                    out.writeBytesReference(aggsOut.bytes());
+                }
+            } else {
+                aggregations.writeTo(out);
+            }
         }
         out.writeNamedWriteableList(pipelineAggregators);
         if (suggest == null) {
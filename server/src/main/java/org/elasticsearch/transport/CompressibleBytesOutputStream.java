@@ -19,9 +19,10 @@
 
 package org.elasticsearch.transport;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.compress.Compressor;
 import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.stream.BytesStream;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -41,18 +42,25 @@ import java.util.zip.DeflaterOutputStream;
  *
  * {@link CompressibleBytesOutputStream#close()} will NOT close the underlying stream. The byte stream passed
  * in the constructor must be closed individually.
+ *
+ * {@link CompressibleBytesOutputStream#getUncompressedLength()} returns the number of bytes that were written
+ * to this stream before compression.
  */
 final class CompressibleBytesOutputStream extends StreamOutput {
 
     private final StreamOutput stream;
     private final BytesStream bytesStreamOutput;
     private final boolean shouldCompress;
+    private long uncompressedLength;
 
-    CompressibleBytesOutputStream(BytesStream bytesStreamOutput, boolean shouldCompress) throws IOException {
+    /**
+     * @param compressor the compressor to compress the bytes with, or {@code null} if they should not be compressed
+     */
+    CompressibleBytesOutputStream(BytesStream bytesStreamOutput, @Nullable Compressor compressor) throws IOException {
         this.bytesStreamOutput = bytesStreamOutput;
-        this.shouldCompress = shouldCompress;
+        this.shouldCompress = compressor != null;
         if (shouldCompress) {
-            this.stream = CompressorFactory.COMPRESSOR.streamOutput(Streams.flushOnCloseStream(bytesStreamOutput));
+            this.stream = compressor.streamOutput(Streams.flushOnCloseStream(bytesStreamOutput));
         } else {
             this.stream = bytesStreamOutput;
         }
@@ -75,14 +83,20 @@ final class CompressibleBytesOutputStream extends StreamOutput {
         return bytesStreamOutput.bytes();
     }
 
+    long getUncompressedLength() {
+        return uncompressedLength;
+    }
+
     @Override
     public void writeByte(byte b) throws IOException {
         stream.write(b);
+        uncompressedLength++;
     }
 
     @Override
     public void writeBytes(byte[] b, int offset, int length) throws IOException {
         stream.writeBytes(b, offset, length);
+        uncompressedLength += length;
     }
 
     @Override
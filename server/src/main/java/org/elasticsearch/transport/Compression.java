@@ -0,0 +1,91 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.Compressor;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.compress.LZ4Compressor;
+
+import java.util.Locale;
+import java.util.Set;
+
+public final class Compression {
+
+    private Compression() {}
+
+    /**
+     * The schemes that transport messages can be compressed with. The scheme of a compressed message is identified by the header
+     * of its compressed bytes, so a node can read messages of any scheme it knows, whatever scheme it compresses with itself.
+     */
+    public enum Scheme {
+        DEFLATE(CompressorFactory.COMPRESSOR, null),
+        LZ4(new LZ4Compressor(), TransportCapabilities.LZ4_COMPRESSION);
+
+        private final Compressor compressor;
+        @Nullable
+        private final String capability;
+
+        Scheme(Compressor compressor, @Nullable String capability) {
+            this.compressor = compressor;
+            this.capability = capability;
+        }
+
+        public Compressor compressor() {
+            return compressor;
+        }
+
+        /**
+         * Returns this scheme if a node with the given {@link TransportCapabilities}, as agreed on by the transport handshake, can read
+         * messages that are compressed with it, and {@link #DEFLATE} otherwise. Every node can read deflate.
+         */
+        public Scheme forCapabilities(Set<String> capabilities) {
+            return capability == null || capabilities.contains(capability) ? this : DEFLATE;
+        }
+
+        public static Scheme parse(String scheme) {
+            try {
+                return valueOf(scheme.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown transport compression scheme [" + scheme + "]");
+            }
+        }
+
+        /**
+         * Returns the scheme the given compressed bytes were compressed with, or {@code null} if they don't start with the header of
+         * any scheme.
+         */
+        @Nullable
+        static Scheme of(BytesReference compressed) {
+            for (Scheme scheme : values()) {
+                if (scheme.compressor.isCompressed(compressed)) {
+                    return scheme;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.transport;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Priority;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasablePagedBytesReference;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.BigArrays;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reassembles the messages that were split into chunks by the {@link OutboundQueue} of the other end of a {@link TcpChannel}. The
+ * chunks of a request, or of a response, are appended to a buffer of recycled pages until the last one arrives, and the buffer then
+ * holds the message as if it had been received in one frame.
+ * <p>
+ * The buffers are accounted for in the in-flight requests circuit breaker. The buffers of requests may trip it, in which case the
+ * rest of the chunks of the request are dropped and the request is rejected. The buffers of responses are accounted for without
+ * tripping the breaker, like responses that are received in one frame. The other end interleaves at most
+ * {@link OutboundQueue#MAX_INTERLEAVED_MESSAGES} messages per priority, so more partial messages than that per direction are
+ * considered a protocol violation.
+ */
+final class InboundChunkAggregator implements Releasable {
+
+    static final int MAX_PARTIAL_MESSAGES = OutboundQueue.MAX_INTERLEAVED_MESSAGES * Priority.values().length;
+
+    private static final int CHUNK_PREFIX_SIZE = TcpHeader.REQUEST_ID_SIZE + TcpHeader.STATUS_SIZE + TcpHeader.VERSION_ID_SIZE;
+
+    private final BigArrays bigArrays;
+    private final BigArrays circuitBreakingBigArrays;
+    private final long maxMessageSize;
+    // requests and responses are keyed by their request id, which is only unique per direction
+    private final Map<Long, ReleasableBytesStreamOutput> requests = new HashMap<>();
+    private final Map<Long, ReleasableBytesStreamOutput> responses = new HashMap<>();
+    // the requests that were rejected, whose chunks are dropped until the last one arrives
+    private final Set<Long> rejectedRequests = new HashSet<>();
+    private boolean closed;
+
+    /**
+     * @param bigArrays      the big arrays that account for the in-flight requests circuit breaker
+     * @param maxMessageSize the maximum size of a reassembled message
+     */
+    InboundChunkAggregator(BigArrays bigArrays, long maxMessageSize) {
+        this.bigArrays = bigArrays;
+        this.circuitBreakingBigArrays = bigArrays.withCircuitBreaking();
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Returns whether the given frame, without the marker bytes and the message length, is a chunk of a message.
+     */
+    static boolean isChunk(BytesReference frame) {
+        return frame.length() > CHUNK_PREFIX_SIZE && TransportStatus.isChunk(frame.get(TcpHeader.REQUEST_ID_SIZE));
+    }
+
+    /**
+     * Adds the given chunk, without the marker bytes and the message length, to its message.
+     *
+     * @return the message without the marker bytes and the message length if the chunk was its last chunk, which the caller must
+     *         release, or {@code null} if more chunks are expected
+     * @throws RejectedRequestException if the chunk belongs to a request that can't be reassembled because the circuit breaker tripped
+     */
+    @Nullable
+    synchronized ReleasablePagedBytesReference aggregate(BytesReference chunk) throws IOException, RejectedRequestException {
+        if (closed) {
+            return null;
+        }
+        final long requestId;
+        final byte status;
+        final int versionId;
+        final boolean lastChunk;
+        try (StreamInput in = chunk.streamInput()) {
+            requestId = in.readLong();
+            status = in.readByte();
+            versionId = in.readInt();
+            lastChunk = in.readBoolean();
+        }
+        final boolean isRequest = TransportStatus.isRequest(status);
+        if (isRequest && rejectedRequests.contains(requestId)) {
+            if (lastChunk) {
+                rejectedRequests.remove(requestId);
+            }
+            return null;
+        }
+        final Map<Long, ReleasableBytesStreamOutput> messages = isRequest ? requests : responses;
+        ReleasableBytesStreamOutput message = messages.get(requestId);
+        boolean success = false;
+        try {
+            if (message == null) {
+                final int partialMessages = isRequest ? requests.size() + rejectedRequests.size() : responses.size();
+                if (partialMessages >= MAX_PARTIAL_MESSAGES) {
+                    throw new IllegalStateException("received a chunk of a new message [" + requestId + "] while [" + partialMessages
+                        + "] messages are partially received, the limit is [" + MAX_PARTIAL_MESSAGES + "]");
+                }
+                message = new ReleasableBytesStreamOutput(isRequest ? circuitBreakingBigArrays : bigArrays);
+                messages.put(requestId, message);
+                message.writeLong(requestId);
+                message.writeByte(TransportStatus.clearChunk(status));
+                message.writeInt(versionId);
+            }
+            final int payloadOffset = CHUNK_PREFIX_SIZE + 1;
+            if (message.size() + chunk.length() - payloadOffset > maxMessageSize) {
+                throw new IllegalArgumentException("transport content length received [" + new ByteSizeValue(message.size())
+                    + "] in chunks of message [" + requestId + "] exceeded [" + new ByteSizeValue(maxMessageSize) + "]");
+            }
+            chunk.slice(payloadOffset, chunk.length() - payloadOffset).writeTo(message);
+            success = true;
+        } catch (CircuitBreakingException e) {
+            assert isRequest : "responses don't trip the circuit breaker";
+            if (lastChunk == false) {
+                rejectedRequests.add(requestId);
+            }
+            throw new RejectedRequestException(requestId, Version.fromId(versionId), e);
+        } finally {
+            if (success == false) {
+                messages.remove(requestId);
+                if (message != null) {
+                    message.close();
+                }
+            }
+        }
+        if (lastChunk) {
+            messages.remove(requestId);
+            return message.bytes();
+        }
+        return null;
+    }
+
+    /**
+     * Releases the messages whose last chunk hasn't arrived yet.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        final List<Releasable> pending = new ArrayList<>(requests.values());
+        pending.addAll(responses.values());
+        requests.clear();
+        responses.clear();
+        rejectedRequests.clear();
+        Releasables.close(pending);
+    }
+
+    /**
+     * Thrown when a chunk of a request can't be added to the request because the in-flight requests circuit breaker tripped. The
+     * cause should be sent back as the response to the request.
+     */
+    static final class RejectedRequestException extends Exception {
+
+        private final long requestId;
+        private final Version version;
+
+        RejectedRequestException(long requestId, Version version, CircuitBreakingException cause) {
+            super("chunked request [" + requestId + "] rejected", cause);
+            this.requestId = requestId;
+            this.version = version;
+        }
+
+        long getRequestId() {
+            return requestId;
+        }
+
+        Version getVersion() {
+            return version;
+        }
+
+        @Override
+        public synchronized CircuitBreakingException getCause() {
+            return (CircuitBreakingException) super.getCause();
+        }
+    }
+}
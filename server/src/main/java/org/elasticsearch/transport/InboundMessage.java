@@ -19,10 +19,9 @@
 package org.elasticsearch.transport;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.compress.Compressor;
-import org.elasticsearch.common.compress.CompressorFactory;
-import org.elasticsearch.common.compress.NotCompressedException;
+import org.elasticsearch.common.io.stream.FilterStreamInput;
 import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -39,16 +38,35 @@ import java.util.TreeSet;
 public abstract class InboundMessage extends NetworkMessage implements Closeable {
 
     private final StreamInput streamInput;
+    @Nullable
+    private final DecompressedStreamInput decompressed;
 
-    InboundMessage(ThreadContext threadContext, Version version, byte status, long requestId, StreamInput streamInput) {
+    InboundMessage(ThreadContext threadContext, Version version, byte status, long requestId, StreamInput streamInput,
+                   @Nullable DecompressedStreamInput decompressed) {
         super(threadContext, version, status, requestId);
         this.streamInput = streamInput;
+        this.decompressed = decompressed;
     }
 
     StreamInput getStreamInput() {
         return streamInput;
     }
 
+    /**
+     * The scheme the message was compressed with, or {@code null} if it isn't compressed.
+     */
+    @Nullable
+    Compression.Scheme getCompressionScheme() {
+        return decompressed == null ? null : decompressed.scheme;
+    }
+
+    /**
+     * The number of bytes that were read from the message after decompressing it, or {@code 0} if it isn't compressed.
+     */
+    long getDecompressedBytesRead() {
+        return decompressed == null ? 0 : decompressed.bytesRead;
+    }
+
     static class Reader {
 
         private final Version version;
@@ -67,6 +85,7 @@ public abstract class InboundMessage extends NetworkMessage implements Closeable
             // we have additional bytes to read, outside of the header
             boolean hasMessageBytesToRead = (totalMessageSize - TcpHeader.HEADER_SIZE) > 0;
             StreamInput streamInput = reference.streamInput();
+            DecompressedStreamInput decompressed = null;
             boolean success = false;
             try (ThreadContext.StoredContext existing = threadContext.stashContext()) {
                 long requestId = streamInput.readLong();
@@ -75,11 +94,10 @@ public abstract class InboundMessage extends NetworkMessage implements Closeable
                 final boolean isHandshake = TransportStatus.isHandshake(status);
                 ensureVersionCompatibility(remoteVersion, version, isHandshake);
                 if (TransportStatus.isCompress(status) && hasMessageBytesToRead && streamInput.available() > 0) {
-                    Compressor compressor;
-                    try {
-                        final int bytesConsumed = TcpHeader.REQUEST_ID_SIZE + TcpHeader.STATUS_SIZE + TcpHeader.VERSION_ID_SIZE;
-                        compressor = CompressorFactory.compressor(reference.slice(bytesConsumed, reference.length() - bytesConsumed));
-                    } catch (NotCompressedException ex) {
+                    final int bytesConsumed = TcpHeader.REQUEST_ID_SIZE + TcpHeader.STATUS_SIZE + TcpHeader.VERSION_ID_SIZE;
+                    final Compression.Scheme scheme = Compression.Scheme.of(
+                        reference.slice(bytesConsumed, reference.length() - bytesConsumed));
+                    if (scheme == null) {
                         int maxToRead = Math.min(reference.length(), 10);
                         StringBuilder sb = new StringBuilder("stream marked as compressed, but no compressor found, first [")
                             .append(maxToRead).append("] content bytes out of [").append(reference.length())
@@ -90,7 +108,8 @@ public abstract class InboundMessage extends NetworkMessage implements Closeable
                         sb.append("]");
                         throw new IllegalStateException(sb.toString());
                     }
-                    streamInput = compressor.streamInput(streamInput);
+                    decompressed = new DecompressedStreamInput(scheme.compressor().streamInput(streamInput), scheme);
+                    streamInput = decompressed;
                 }
                 streamInput = new NamedWriteableAwareStreamInput(streamInput, namedWriteableRegistry);
                 streamInput.setVersion(remoteVersion);
@@ -106,9 +125,12 @@ public abstract class InboundMessage extends NetworkMessage implements Closeable
                         features = Collections.emptySet();
                     }
                     final String action = streamInput.readString();
-                    message = new RequestMessage(threadContext, remoteVersion, status, requestId, action, features, streamInput);
+                    // the request is written with the capabilities that the other node agreed on with us in the handshake
+                    streamInput.setFeatures(TransportCapabilities.supported(features));
+                    message = new RequestMessage(threadContext, remoteVersion, status, requestId, action, features, streamInput,
+                        decompressed);
                 } else {
-                    message = new ResponseMessage(threadContext, remoteVersion, status, requestId, streamInput);
+                    message = new ResponseMessage(threadContext, remoteVersion, status, requestId, streamInput, decompressed);
                 }
                 success = true;
                 return message;
@@ -144,8 +166,8 @@ public abstract class InboundMessage extends NetworkMessage implements Closeable
         private final Set<String> features;
 
         RequestMessage(ThreadContext threadContext, Version version, byte status, long requestId, String actionName, Set<String> features,
-                       StreamInput streamInput) {
-            super(threadContext, version, status, requestId, streamInput);
+                       StreamInput streamInput, @Nullable DecompressedStreamInput decompressed) {
+            super(threadContext, version, status, requestId, streamInput, decompressed);
             this.actionName = actionName;
             this.features = features;
         }
@@ -161,8 +183,45 @@ public abstract class InboundMessage extends NetworkMessage implements Closeable
 
     public static class ResponseMessage extends InboundMessage {
 
-        ResponseMessage(ThreadContext threadContext, Version version, byte status, long requestId, StreamInput streamInput) {
-            super(threadContext, version, status, requestId, streamInput);
+        ResponseMessage(ThreadContext threadContext, Version version, byte status, long requestId, StreamInput streamInput,
+                        @Nullable DecompressedStreamInput decompressed) {
+            super(threadContext, version, status, requestId, streamInput, decompressed);
+        }
+    }
+
+    /**
+     * The decompressed content of a compressed message, which counts the bytes that are read from it.
+     */
+    static final class DecompressedStreamInput extends FilterStreamInput {
+
+        private final Compression.Scheme scheme;
+        private long bytesRead;
+
+        DecompressedStreamInput(StreamInput delegate, Compression.Scheme scheme) {
+            super(delegate);
+            this.scheme = scheme;
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            final byte b = super.readByte();
+            bytesRead++;
+            return b;
+        }
+
+        @Override
+        public void readBytes(byte[] b, int offset, int len) throws IOException {
+            super.readBytes(b, offset, len);
+            bytesRead += len;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                bytesRead++;
+            }
+            return b;
         }
     }
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.PageCacheRecycler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Predicts the size that an outbound message serializes to from the sizes of previous messages of the same type, so that the buffer
+ * it is serialized into can be allocated upfront from pages of the {@link PageCacheRecycler} rather than grown page by page while
+ * the message is written, see {@link BigArrays#newByteArray(long, boolean)}. The prediction follows messages that get larger right
+ * away and decays slowly towards messages that get smaller, so that a single large message doesn't hold on to large buffers for
+ * long.
+ */
+final class MessageSizePredictor {
+
+    // buffers smaller than a page are not recycled, so predictions never go below a page
+    static final int MIN_PREDICTION = PageCacheRecycler.BYTE_PAGE_SIZE;
+    // larger messages still get a buffer of this size upfront, and grow it as they are written
+    static final int MAX_PREDICTION = 64 * PageCacheRecycler.BYTE_PAGE_SIZE;
+
+    private final ConcurrentMap<Class<?>, AtomicInteger> predictions = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the expected serialized size of the next message of the given type.
+     */
+    int predict(Class<?> messageType) {
+        final AtomicInteger prediction = predictions.get(messageType);
+        return prediction == null ? MIN_PREDICTION : prediction.get();
+    }
+
+    /**
+     * Records the size that a message of the given type serialized to.
+     */
+    void record(Class<?> messageType, int size) {
+        final int bounded = Math.max(MIN_PREDICTION, Math.min(MAX_PREDICTION, size));
+        final AtomicInteger prediction = predictions.computeIfAbsent(messageType, k -> new AtomicInteger(MIN_PREDICTION));
+        prediction.updateAndGet(previous -> bounded >= previous ? bounded : previous - ((previous - bounded + 7) >>> 3));
+    }
+}
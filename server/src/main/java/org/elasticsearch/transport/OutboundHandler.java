@@ -25,10 +25,13 @@ import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.NotifyOnceListener;
 import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Priority;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.network.CloseableChannel;
 import org.elasticsearch.common.util.BigArrays;
@@ -36,48 +39,72 @@ import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
+import java.util.Map;
+
+import static org.elasticsearch.common.util.concurrent.ConcurrentCollections.newConcurrentMap;
 
 final class OutboundHandler {
 
     private static final Logger logger = LogManager.getLogger(OutboundHandler.class);
 
     private final MeanMetric transmittedBytesMetric = new MeanMetric();
+    private final CounterMetric transmittedCompressedBytesMetric = new CounterMetric();
+    private final CounterMetric transmittedUncompressedBytesMetric = new CounterMetric();
+    private final MessageSizePredictor sizePredictor = new MessageSizePredictor();
     private final ThreadPool threadPool;
     private final BigArrays bigArrays;
     private final TransportLogger transportLogger;
+    private final int chunkSize;
+    private final Map<TcpChannel, OutboundQueue> queues = newConcurrentMap();
 
-    OutboundHandler(ThreadPool threadPool, BigArrays bigArrays, TransportLogger transportLogger) {
+    /**
+     * @param chunkSize the size of the chunks that large messages are split into, or {@code 0} to write messages to channels right
+     *                  away and in one piece
+     */
+    OutboundHandler(ThreadPool threadPool, BigArrays bigArrays, TransportLogger transportLogger, int chunkSize) {
         this.threadPool = threadPool;
         this.bigArrays = bigArrays;
         this.transportLogger = transportLogger;
+        this.chunkSize = chunkSize;
     }
 
     void sendBytes(TcpChannel channel, BytesReference bytes, ActionListener<Void> listener) {
         channel.getChannelStats().markAccessed(threadPool.relativeTimeInMillis());
         SendContext sendContext = new SendContext(channel, () -> bytes, listener);
         try {
-            internalSendMessage(channel, sendContext);
+            // raw bytes are pings and errors that precede closing the channel
+            internalSendMessage(channel, sendContext, null, Priority.IMMEDIATE);
         } catch (IOException e) {
             // This should not happen as the bytes are already serialized
             throw new AssertionError(e);
         }
     }
 
-    void sendMessage(TcpChannel channel, OutboundMessage networkMessage, ActionListener<Void> listener) throws IOException {
+    void sendMessage(TcpChannel channel, OutboundMessage networkMessage, Priority priority,
+                     ActionListener<Void> listener) throws IOException {
         channel.getChannelStats().markAccessed(threadPool.relativeTimeInMillis());
-        MessageSerializer serializer = new MessageSerializer(networkMessage, bigArrays);
+        MessageSerializer serializer = new MessageSerializer(networkMessage);
         SendContext sendContext = new SendContext(channel, serializer, listener, serializer);
-        internalSendMessage(channel, sendContext);
+        // only nodes that advertised it in the handshake can reassemble chunks
+        final boolean chunkable = networkMessage.isHandshake() == false
+            && networkMessage.hasCapability(TransportCapabilities.CHUNKED_MESSAGES);
+        internalSendMessage(channel, sendContext, chunkable ? networkMessage : null, priority);
     }
 
     /**
-     * sends a message to the given channel, using the given callbacks.
+     * sends a message to the given channel, using the given callbacks. Messages that are larger than the chunk size go through the
+     * {@link OutboundQueue} of the channel if they may be split into chunks, the others are written right away.
      */
-    private void internalSendMessage(TcpChannel channel,  SendContext sendContext) throws IOException {
+    private void internalSendMessage(TcpChannel channel, SendContext sendContext, @Nullable NetworkMessage chunkableMessage,
+                                     Priority priority) throws IOException {
         channel.getChannelStats().markAccessed(threadPool.relativeTimeInMillis());
         BytesReference reference = sendContext.get();
         try {
-            channel.sendMessage(reference, sendContext);
+            if (chunkableMessage != null && OutboundQueue.isChunked(reference.length(), chunkSize)) {
+                getQueue(channel).send(reference, chunkableMessage, priority, sendContext);
+            } else {
+                channel.sendMessage(reference, sendContext);
+            }
         } catch (RuntimeException ex) {
             sendContext.onFailure(ex);
             CloseableChannel.closeChannel(channel);
@@ -86,25 +113,60 @@ final class OutboundHandler {
 
     }
 
+    private OutboundQueue getQueue(TcpChannel channel) {
+        OutboundQueue queue = queues.get(channel);
+        if (queue == null) {
+            final OutboundQueue newQueue = new OutboundQueue(channel, chunkSize);
+            queue = queues.putIfAbsent(channel, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+                // registered once the queue is in the map, as the listener is called right away if the channel is closed already
+                channel.addCloseListener(ActionListener.wrap(() -> {
+                    queues.remove(channel, newQueue);
+                    newQueue.close();
+                }));
+            }
+        }
+        return queue;
+    }
+
     MeanMetric getTransmittedBytes() {
         return transmittedBytesMetric;
     }
 
-    private static class MessageSerializer implements CheckedSupplier<BytesReference, IOException>, Releasable {
+    /**
+     * The number of bytes that compressed messages were compressed to.
+     */
+    CounterMetric getTransmittedCompressedBytes() {
+        return transmittedCompressedBytesMetric;
+    }
+
+    /**
+     * The number of bytes that compressed messages had before they were compressed.
+     */
+    CounterMetric getTransmittedUncompressedBytes() {
+        return transmittedUncompressedBytesMetric;
+    }
+
+    private class MessageSerializer implements CheckedSupplier<BytesReference, IOException>, Releasable {
 
         private final OutboundMessage message;
-        private final BigArrays bigArrays;
         private volatile ReleasableBytesStreamOutput bytesStreamOutput;
 
-        private MessageSerializer(OutboundMessage message, BigArrays bigArrays) {
+        private MessageSerializer(OutboundMessage message) {
             this.message = message;
-            this.bigArrays = bigArrays;
         }
 
         @Override
         public BytesReference get() throws IOException {
-            bytesStreamOutput = new ReleasableBytesStreamOutput(bigArrays);
-            return message.serialize(bytesStreamOutput);
+            bytesStreamOutput = new ReleasableBytesStreamOutput(sizePredictor.predict(message.getMessageType()), bigArrays);
+            final BytesReference reference = message.serialize(bytesStreamOutput);
+            sizePredictor.record(message.getMessageType(), reference.length());
+            if (message.getCompressionScheme() != null) {
+                transmittedCompressedBytesMetric.inc(message.getCompressedLength());
+                transmittedUncompressedBytesMetric.inc(message.getUncompressedLength());
+            }
+            return reference;
         }
 
         @Override
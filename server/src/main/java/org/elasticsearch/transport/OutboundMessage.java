@@ -19,24 +19,69 @@
 package org.elasticsearch.transport;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.compress.Compressor;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Set;
 
 abstract class OutboundMessage extends NetworkMessage implements Writeable {
 
     private final Writeable message;
+    @Nullable
+    private final Compression.Scheme compressionScheme;
+    private long compressedLength = -1;
+    private long uncompressedLength = -1;
 
-    OutboundMessage(ThreadContext threadContext, Version version, byte status, long requestId, Writeable message) {
+    OutboundMessage(ThreadContext threadContext, Version version, byte status, long requestId, Writeable message,
+                    @Nullable Compression.Scheme compressionScheme) {
         super(threadContext, version, status, requestId);
         this.message = message;
+        this.compressionScheme = TransportStatus.isCompress(status) ? compressionScheme : null;
+    }
+
+    /**
+     * The scheme the message is compressed with, or {@code null} if it isn't compressed.
+     */
+    @Nullable
+    Compression.Scheme getCompressionScheme() {
+        return compressionScheme;
+    }
+
+    /**
+     * Returns whether the node on the other end of the connection that this message is sent on agreed on the given
+     * {@link TransportCapabilities capability} in the handshake.
+     */
+    abstract boolean hasCapability(String capability);
+
+    /**
+     * The type of the request or response that this message carries.
+     */
+    Class<?> getMessageType() {
+        return message.getClass();
+    }
+
+    /**
+     * The length of the compressed part of the message once it is serialized, or {@code -1} if it isn't compressed.
+     */
+    long getCompressedLength() {
+        return compressedLength;
+    }
+
+    /**
+     * The length that the compressed part of the message had before compression once it is serialized, or {@code -1} if it isn't
+     * compressed.
+     */
+    long getUncompressedLength() {
+        return uncompressedLength;
     }
 
     BytesReference serialize(BytesStreamOutput bytesStream) throws IOException {
@@ -46,11 +91,17 @@ abstract class OutboundMessage extends NetworkMessage implements Writeable {
 
         // The compressible bytes stream will not close the underlying bytes stream
         BytesReference reference;
-        try (CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bytesStream, TransportStatus.isCompress(status))) {
+        final Compressor compressor = compressionScheme == null ? null : compressionScheme.compressor();
+        try (CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bytesStream, compressor)) {
             stream.setVersion(version);
             threadContext.writeTo(stream);
             writeTo(stream);
             reference = writeMessage(stream);
+            if (compressor != null) {
+                // messages that can't be compressed are never marked as compressed, so the whole message is compressed
+                compressedLength = reference.length() - TcpHeader.HEADER_SIZE;
+                uncompressedLength = stream.getUncompressedLength();
+            }
         }
         bytesStream.seek(0);
         TcpHeader.writeHeader(bytesStream, requestId, status, version, reference.length() - TcpHeader.HEADER_SIZE);
@@ -89,8 +140,9 @@ abstract class OutboundMessage extends NetworkMessage implements Writeable {
         private final String action;
 
         Request(ThreadContext threadContext, String[] features, Writeable message, Version version, String action, long requestId,
-                boolean isHandshake, boolean compress) {
-            super(threadContext, version, setStatus(compress, isHandshake, message), requestId, message);
+                boolean isHandshake, @Nullable Compression.Scheme compressionScheme) {
+            super(threadContext, version, setStatus(compressionScheme != null, isHandshake, message), requestId, message,
+                compressionScheme);
             this.features = features;
             this.action = action;
         }
@@ -101,6 +153,13 @@ abstract class OutboundMessage extends NetworkMessage implements Writeable {
                 out.writeStringArray(features);
             }
             out.writeString(action);
+            // the capabilities that were agreed on in the handshake are sent along with the features of the request
+            out.setFeatures(TransportCapabilities.supported(Arrays.asList(features)));
+        }
+
+        @Override
+        boolean hasCapability(String capability) {
+            return Arrays.asList(features).contains(capability);
         }
 
         private static byte setStatus(boolean compress, boolean isHandshake, Writeable message) {
@@ -122,8 +181,9 @@ abstract class OutboundMessage extends NetworkMessage implements Writeable {
         private final Set<String> features;
 
         Response(ThreadContext threadContext, Set<String> features, Writeable message, Version version, long requestId,
-                 boolean isHandshake, boolean compress) {
-            super(threadContext, version, setStatus(compress, isHandshake, message), requestId, message);
+                 boolean isHandshake, @Nullable Compression.Scheme compressionScheme) {
+            super(threadContext, version, setStatus(compressionScheme != null, isHandshake, message), requestId, message,
+                compressionScheme);
             this.features = features;
         }
 
@@ -132,6 +192,11 @@ abstract class OutboundMessage extends NetworkMessage implements Writeable {
             out.setFeatures(features);
         }
 
+        @Override
+        boolean hasCapability(String capability) {
+            return features.contains(capability);
+        }
+
         private static byte setStatus(boolean compress, boolean isHandshake, Writeable message) {
             byte status = 0;
             status = TransportStatus.setResponse(status);
@@ -0,0 +1,251 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.transport;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Priority;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.network.CloseableChannel;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the messages that are larger than the chunk size to a {@link TcpChannel} in chunks, one chunk at a time, highest
+ * {@link Priority} first. The messages of the same priority take turns at writing their next chunk, so a large message waits for at
+ * most a chunk of each large message of the same or a higher priority rather than for the whole messages. At most
+ * {@link #MAX_INTERLEAVED_MESSAGES} messages of a priority are interleaved, the others wait for their turn to start. Smaller messages
+ * don't go through the queue but are written to the channel right away, in between the chunks.
+ * <p>
+ * A chunk is a frame with the header of its message, with the chunk bit of the status set, followed by a byte that tells whether it
+ * is the last chunk of the message and by the next part of the message that follows the header. The other end reassembles the
+ * chunks with an {@link InboundChunkAggregator}.
+ */
+final class OutboundQueue {
+
+    static final int CHUNK_HEADER_SIZE = TcpHeader.HEADER_SIZE + 1;
+    static final int MAX_INTERLEAVED_MESSAGES = 16;
+
+    private final TcpChannel channel;
+    private final int chunkSize;
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+    // counts the calls to drain() so that only one thread writes at a time and that writes that complete on the writing thread
+    // don't recurse
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private boolean writing;
+    private boolean closed;
+
+    OutboundQueue(TcpChannel channel, int chunkSize) {
+        assert chunkSize > 0 : "chunk size must be positive but was " + chunkSize;
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        for (Priority priority : Priority.values()) {
+            lanes.put(priority, new Lane());
+        }
+    }
+
+    /**
+     * Returns whether a serialized message of the given length is split into chunks by this queue.
+     */
+    static boolean isChunked(int messageLength, int chunkSize) {
+        return chunkSize > 0 && messageLength > CHUNK_HEADER_SIZE + chunkSize;
+    }
+
+    /**
+     * Queues a serialized message for writing in chunks.
+     *
+     * @param message  the serialized message, starting with its {@link TcpHeader}, which must be larger than the chunk size
+     * @param header   the message
+     * @param priority the priority of the message
+     * @param listener notified once the message has been written, or failed to be written
+     */
+    void send(BytesReference message, NetworkMessage header, Priority priority, ActionListener<Void> listener) {
+        assert isChunked(message.length(), chunkSize) : "message of [" + message.length() + "] bytes doesn't need to be chunked";
+        final PendingMessage pendingMessage =
+            new PendingMessage(message, header.getRequestId(), header.status, header.getVersion(), priority, listener);
+        final boolean rejected;
+        synchronized (this) {
+            rejected = closed;
+            if (closed == false) {
+                lanes.get(priority).waiting.addLast(pendingMessage);
+            }
+        }
+        if (rejected) {
+            listener.onFailure(new ClosedChannelException());
+        } else {
+            drain();
+        }
+    }
+
+    /**
+     * Fails the messages that have not been fully written yet, and those that are sent from now on.
+     */
+    void close() {
+        final List<PendingMessage> failed = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Lane lane : lanes.values()) {
+                failed.addAll(lane.started);
+                failed.addAll(lane.waiting);
+                lane.started.clear();
+                lane.waiting.clear();
+            }
+        }
+        for (PendingMessage message : failed) {
+            message.listener.onFailure(new ClosedChannelException());
+        }
+    }
+
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            // another call is writing, it will write again on our behalf
+            return;
+        }
+        do {
+            writeNextFrame();
+        } while (drainRequests.decrementAndGet() != 0);
+    }
+
+    private void writeNextFrame() {
+        final PendingMessage message;
+        final BytesReference frame;
+        final boolean lastFrame;
+        synchronized (this) {
+            if (writing || closed) {
+                return;
+            }
+            message = nextMessage();
+            if (message == null) {
+                return;
+            }
+            frame = message.nextFrame(chunkSize);
+            lastFrame = message.fullyWritten();
+            if (lastFrame == false) {
+                // let the other messages of the same priority write their next chunk first
+                lanes.get(message.priority).started.addLast(message);
+            }
+            writing = true;
+        }
+        try {
+            channel.sendMessage(frame, ActionListener.wrap(v -> onFrameWritten(message, lastFrame), e -> onFrameFailed(message, e)));
+        } catch (RuntimeException e) {
+            onFrameFailed(message, e);
+        }
+    }
+
+    @Nullable
+    private PendingMessage nextMessage() {
+        assert Thread.holdsLock(this);
+        for (Lane lane : lanes.values()) {
+            final PendingMessage message = lane.next();
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private void onFrameWritten(PendingMessage message, boolean lastFrame) {
+        synchronized (this) {
+            writing = false;
+        }
+        if (lastFrame) {
+            message.listener.onResponse(null);
+        }
+        drain();
+    }
+
+    private void onFrameFailed(PendingMessage message, Exception e) {
+        synchronized (this) {
+            writing = false;
+            lanes.get(message.priority).started.remove(message);
+        }
+        message.listener.onFailure(e);
+        // the other end can't make sense of the rest of the chunks of the message, nor of the messages after a partial frame
+        CloseableChannel.closeChannel(channel);
+    }
+
+    /**
+     * The messages of a priority, split into those that have started to be written and those that wait for their turn to start.
+     */
+    private static final class Lane {
+
+        private final ArrayDeque<PendingMessage> started = new ArrayDeque<>();
+        private final ArrayDeque<PendingMessage> waiting = new ArrayDeque<>();
+
+        @Nullable
+        PendingMessage next() {
+            if (waiting.isEmpty() == false && started.size() < MAX_INTERLEAVED_MESSAGES) {
+                return waiting.pollFirst();
+            }
+            return started.pollFirst();
+        }
+    }
+
+    private static final class PendingMessage {
+
+        private final BytesReference message;
+        private final long requestId;
+        private final byte status;
+        private final Version version;
+        private final Priority priority;
+        private final ActionListener<Void> listener;
+        // the number of bytes that follow the header of the message and have been written so far
+        private int written;
+
+        PendingMessage(BytesReference message, long requestId, byte status, Version version, Priority priority,
+                       ActionListener<Void> listener) {
+            this.message = message;
+            this.requestId = requestId;
+            this.status = status;
+            this.version = version;
+            this.priority = priority;
+            this.listener = listener;
+        }
+
+        boolean fullyWritten() {
+            return TcpHeader.HEADER_SIZE + written == message.length();
+        }
+
+        BytesReference nextFrame(int chunkSize) {
+            final int remaining = message.length() - TcpHeader.HEADER_SIZE - written;
+            final int length = Math.min(chunkSize, remaining);
+            final BytesStreamOutput header = new BytesStreamOutput(CHUNK_HEADER_SIZE);
+            try {
+                TcpHeader.writeHeader(header, requestId, TransportStatus.setChunk(status), version, 1 + length);
+                header.writeBoolean(length == remaining);
+            } catch (IOException e) {
+                throw new AssertionError("no IO happens here", e);
+            }
+            final BytesReference chunk = message.slice(TcpHeader.HEADER_SIZE + written, length);
+            written += length;
+            return new CompositeBytesReference(header.bytes(), chunk);
+        }
+    }
+}
@@ -28,21 +28,27 @@ import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.Booleans;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Priority;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasablePagedBytesReference;
 import org.elasticsearch.common.collect.MapBuilder;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.component.Lifecycle;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.network.CloseableChannel;
 import org.elasticsearch.common.network.NetworkAddress;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.network.NetworkUtils;
+import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.BoundTransportAddress;
@@ -109,6 +115,9 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     private static final BytesReference EMPTY_BYTES_REFERENCE = new BytesArray(new byte[0]);
 
     private final String[] features;
+    private final String[] compressedActions;
+    private final String[] highPriorityActions;
+    private final String[] lowPriorityActions;
 
     protected final Settings settings;
     private final CircuitBreakerService circuitBreakerService;
@@ -124,6 +133,9 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     private final ConcurrentMap<String, BoundTransportAddress> profileBoundAddresses = newConcurrentMap();
     private final Map<String, List<TcpServerChannel>> serverChannels = newConcurrentMap();
     private final Set<TcpChannel> acceptedChannels = ConcurrentCollections.newConcurrentSet();
+    private final Map<TcpChannel, InboundChunkAggregator> chunkAggregators = newConcurrentMap();
+    // the capabilities agreed on in the handshake of the connections that the outbound channels belong to
+    private final Map<TcpChannel, Set<String>> outboundCapabilities = newConcurrentMap();
 
     // this lock is here to make sure we close this transport and disconnect all the client nodes
     // connections while no connect operations is going on
@@ -132,6 +144,8 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     private final String transportName;
 
     private final MeanMetric readBytesMetric = new MeanMetric();
+    private final CounterMetric readCompressedBytesMetric = new CounterMetric();
+    private final CounterMetric readUncompressedBytesMetric = new CounterMetric();
     private volatile Map<String, RequestHandlerRegistry<? extends TransportRequest>> requestHandlers = Collections.emptyMap();
     private final ResponseHandlers responseHandlers = new ResponseHandlers();
     private final TransportLogger transportLogger;
@@ -154,17 +168,8 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         this.networkService = networkService;
         this.transportName = transportName;
         this.transportLogger = new TransportLogger();
-        this.outboundHandler = new OutboundHandler(threadPool, bigArrays, transportLogger);
-        this.handshaker = new TransportHandshaker(version, threadPool,
-            (node, channel, requestId, v) -> sendRequestToChannel(node, channel, requestId,
-                TransportHandshaker.HANDSHAKE_ACTION_NAME, new TransportHandshaker.HandshakeRequest(version),
-                TransportRequestOptions.EMPTY, v, false, true),
-            (v, features, channel, response, requestId) -> sendResponse(v, features, channel, response, requestId,
-                TransportHandshaker.HANDSHAKE_ACTION_NAME, false, true));
-        this.keepAlive = new TransportKeepAlive(threadPool, this.outboundHandler::sendBytes);
-        this.reader = new InboundMessage.Reader(version, namedWriteableRegistry, threadPool.getThreadContext());
-        this.nodeName = Node.NODE_NAME_SETTING.get(settings);
 
+        // the features are sent with the handshake requests too
         final Settings defaultFeatures = TransportSettings.DEFAULT_FEATURES_SETTING.get(settings);
         if (defaultFeatures == null) {
             this.features = new String[0];
@@ -177,6 +182,21 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
             // use a sorted set to present the features in a consistent order
             this.features = new TreeSet<>(defaultFeatures.names()).toArray(new String[defaultFeatures.names().size()]);
         }
+
+        this.outboundHandler = new OutboundHandler(threadPool, bigArrays, transportLogger,
+            Math.toIntExact(TransportSettings.TRANSPORT_CHUNK_SIZE.get(settings).getBytes()));
+        this.handshaker = new TransportHandshaker(version, TransportCapabilities.CURRENT, threadPool,
+            (node, channel, requestId, v) -> sendRequestToChannel(node, channel, requestId,
+                TransportHandshaker.HANDSHAKE_ACTION_NAME, new TransportHandshaker.HandshakeRequest(version, TransportCapabilities.CURRENT),
+                TransportRequestOptions.EMPTY, v, features, null, true),
+            (v, features, channel, response, requestId) -> sendResponse(v, features, channel, response, requestId,
+                TransportHandshaker.HANDSHAKE_ACTION_NAME, null, true));
+        this.keepAlive = new TransportKeepAlive(threadPool, this.outboundHandler::sendBytes);
+        this.reader = new InboundMessage.Reader(version, namedWriteableRegistry, threadPool.getThreadContext());
+        this.nodeName = Node.NODE_NAME_SETTING.get(settings);
+        this.compressedActions = TransportSettings.TRANSPORT_COMPRESSED_ACTIONS.get(settings).toArray(Strings.EMPTY_ARRAY);
+        this.highPriorityActions = TransportSettings.TRANSPORT_HIGH_PRIORITY_ACTIONS.get(settings).toArray(Strings.EMPTY_ARRAY);
+        this.lowPriorityActions = TransportSettings.TRANSPORT_LOW_PRIORITY_ACTIONS.get(settings).toArray(Strings.EMPTY_ARRAY);
     }
 
     @Override
@@ -210,10 +230,14 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         private final List<TcpChannel> channels;
         private final DiscoveryNode node;
         private final Version version;
+        private final Set<String> capabilities;
+        private final String[] requestFeatures;
         private final boolean compress;
+        private final Compression.Scheme compressionScheme;
         private final AtomicBoolean isClosing = new AtomicBoolean(false);
 
-        NodeChannels(DiscoveryNode node, List<TcpChannel> channels, ConnectionProfile connectionProfile, Version handshakeVersion) {
+        NodeChannels(DiscoveryNode node, List<TcpChannel> channels, ConnectionProfile connectionProfile, Version handshakeVersion,
+                     Set<String> handshakeCapabilities) {
             this.node = node;
             this.channels = Collections.unmodifiableList(channels);
             assert channels.size() == connectionProfile.getNumConnections() : "expected channels size to be == "
@@ -224,7 +248,22 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
                     typeMapping.put(type, handle);
             }
             version = handshakeVersion;
+            capabilities = Collections.unmodifiableSet(handshakeCapabilities);
+            if (capabilities.isEmpty()) {
+                requestFeatures = features;
+            } else {
+                final Set<String> allFeatures = new TreeSet<>(Arrays.asList(features));
+                allFeatures.addAll(capabilities);
+                requestFeatures = allFeatures.toArray(Strings.EMPTY_ARRAY);
+            }
             compress = connectionProfile.getCompressionEnabled();
+            // fall back to a scheme that the other node can read if it doesn't know the configured one
+            final Compression.Scheme scheme = connectionProfile.getCompressionScheme();
+            compressionScheme = scheme == null ? Compression.Scheme.DEFLATE : scheme.forCapabilities(capabilities);
+            for (TcpChannel channel : channels) {
+                outboundCapabilities.put(channel, capabilities);
+                channel.addCloseListener(ActionListener.wrap(() -> outboundCapabilities.remove(channel)));
+            }
         }
 
         @Override
@@ -232,6 +271,20 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
             return version;
         }
 
+        /**
+         * Returns the {@link TransportCapabilities} that both nodes of this connection have.
+         */
+        public Set<String> getCapabilities() {
+            return capabilities;
+        }
+
+        /**
+         * Returns the scheme that requests are compressed with on this connection, if they are compressed.
+         */
+        Compression.Scheme getCompressionScheme() {
+            return compressionScheme;
+        }
+
         public List<TcpChannel> getChannels() {
             return channels;
         }
@@ -269,7 +322,9 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
                 throw new NodeNotConnectedException(node, "connection already closed");
             }
             TcpChannel channel = channel(options.type());
-            sendRequestToChannel(this.node, channel, requestId, action, request, options, getVersion(), compress);
+            final boolean compressRequest = compress || Regex.simpleMatch(compressedActions, action);
+            sendRequestToChannel(this.node, channel, requestId, action, request, options, getVersion(), requestFeatures,
+                compressRequest ? compressionScheme : null);
         }
     }
 
@@ -675,19 +730,22 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
 
     private void sendRequestToChannel(final DiscoveryNode node, final TcpChannel channel, final long requestId, final String action,
                                       final TransportRequest request, TransportRequestOptions options, Version channelVersion,
-                                      boolean compressRequest) throws IOException, TransportException {
-        sendRequestToChannel(node, channel, requestId, action, request, options, channelVersion, compressRequest, false);
+                                      String[] requestFeatures, @Nullable Compression.Scheme compressionScheme)
+        throws IOException, TransportException {
+        sendRequestToChannel(node, channel, requestId, action, request, options, channelVersion, requestFeatures, compressionScheme,
+            false);
     }
 
     private void sendRequestToChannel(final DiscoveryNode node, final TcpChannel channel, final long requestId, final String action,
                                       final TransportRequest request, TransportRequestOptions options, Version channelVersion,
-                                      boolean compressRequest, boolean isHandshake) throws IOException, TransportException {
+                                      String[] requestFeatures, @Nullable Compression.Scheme compressionScheme, boolean isHandshake)
+        throws IOException, TransportException {
         Version version = Version.min(this.version, channelVersion);
-        OutboundMessage.Request message = new OutboundMessage.Request(threadPool.getThreadContext(), features, request, version, action,
-            requestId, isHandshake, compressRequest);
+        OutboundMessage.Request message = new OutboundMessage.Request(threadPool.getThreadContext(), requestFeatures, request, version,
+            action, requestId, isHandshake, compressionScheme);
         ActionListener<Void> listener = ActionListener.wrap(() ->
             messageListener.onRequestSent(node, requestId, action, request, options));
-        outboundHandler.sendMessage(channel, message, listener);
+        outboundHandler.sendMessage(channel, message, priority(action, isHandshake), listener);
     }
 
     /**
@@ -711,13 +769,14 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         TransportAddress address = new TransportAddress(channel.getLocalAddress());
         RemoteTransportException tx = new RemoteTransportException(nodeName, address, action, error);
         OutboundMessage.Response message = new OutboundMessage.Response(threadPool.getThreadContext(), features, tx, version, requestId,
-            false, false);
+            false, null);
         ActionListener<Void> listener = ActionListener.wrap(() -> messageListener.onResponseSent(requestId, action, error));
-        outboundHandler.sendMessage(channel, message, listener);
+        outboundHandler.sendMessage(channel, message, priority(action, false), listener);
     }
 
     /**
      * Sends the response to the given channel. This method should be used to send {@link TransportResponse} objects back to the caller.
+     * The response is compressed with the given scheme, unless it is {@code null}.
      *
      * @see #sendErrorResponse(Version, Set, TcpChannel, Exception, long, String) for sending back errors to the caller
      */
@@ -728,8 +787,8 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         final TransportResponse response,
         final long requestId,
         final String action,
-        final boolean compress) throws IOException {
-        sendResponse(nodeVersion, features, channel, response, requestId, action, compress, false);
+        @Nullable final Compression.Scheme compressionScheme) throws IOException {
+        sendResponse(nodeVersion, features, channel, response, requestId, action, compressionScheme, false);
     }
 
     private void sendResponse(
@@ -739,13 +798,28 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         final TransportResponse response,
         final long requestId,
         final String action,
-        boolean compress,
+        @Nullable Compression.Scheme compressionScheme,
         boolean isHandshake) throws IOException {
         Version version = Version.min(this.version, nodeVersion);
         OutboundMessage.Response message = new OutboundMessage.Response(threadPool.getThreadContext(), features, response, version,
-            requestId, isHandshake, compress);
+            requestId, isHandshake, compressionScheme);
         ActionListener<Void> listener = ActionListener.wrap(() -> messageListener.onResponseSent(requestId, action, response));
-        outboundHandler.sendMessage(channel, message, listener);
+        outboundHandler.sendMessage(channel, message, priority(action, isHandshake), listener);
+    }
+
+    /**
+     * Returns the priority that the requests and responses of the given action are written to channels with.
+     */
+    private Priority priority(String action, boolean isHandshake) {
+        if (isHandshake) {
+            return Priority.IMMEDIATE;
+        } else if (Regex.simpleMatch(highPriorityActions, action)) {
+            return Priority.HIGH;
+        } else if (Regex.simpleMatch(lowPriorityActions, action)) {
+            return Priority.LOW;
+        } else {
+            return Priority.NORMAL;
+        }
     }
 
     /**
@@ -757,18 +831,53 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     public void inboundMessage(TcpChannel channel, BytesReference message) {
         try {
             channel.getChannelStats().markAccessed(threadPool.relativeTimeInMillis());
-            transportLogger.logInboundMessage(channel, message);
             // Message length of 0 is a ping
-            if (message.length() != 0) {
-                messageReceived(message, channel);
-            } else {
+            if (message.length() == 0) {
+                transportLogger.logInboundMessage(channel, message);
                 keepAlive.receiveKeepAlive(channel);
+            } else if (InboundChunkAggregator.isChunk(message)) {
+                final ReleasablePagedBytesReference aggregated = getChunkAggregator(channel).aggregate(message);
+                if (aggregated != null) {
+                    try (Releasable ignored = aggregated) {
+                        transportLogger.logInboundMessage(channel, aggregated);
+                        messageReceived(aggregated, channel);
+                    }
+                }
+            } else {
+                transportLogger.logInboundMessage(channel, message);
+                messageReceived(message, channel);
+            }
+        } catch (InboundChunkAggregator.RejectedRequestException e) {
+            // the action of the request is only known once the request is reassembled
+            try {
+                sendErrorResponse(e.getVersion(), Collections.emptySet(), channel, e.getCause(), e.getRequestId(), "<chunked_request>");
+            } catch (Exception inner) {
+                inner.addSuppressed(e.getCause());
+                logger.warn(() -> new ParameterizedMessage(
+                    "Failed to send error message back to client for chunked request [{}]", e.getRequestId()), inner);
             }
         } catch (Exception e) {
             onException(channel, e);
         }
     }
 
+    private InboundChunkAggregator getChunkAggregator(TcpChannel channel) {
+        InboundChunkAggregator aggregator = chunkAggregators.get(channel);
+        if (aggregator == null) {
+            final InboundChunkAggregator newAggregator = new InboundChunkAggregator(bigArrays, NINETY_PER_HEAP_SIZE);
+            aggregator = chunkAggregators.putIfAbsent(channel, newAggregator);
+            if (aggregator == null) {
+                aggregator = newAggregator;
+                // registered once the aggregator is in the map, as the listener is called right away if the channel is closed already
+                channel.addCloseListener(ActionListener.wrap(() -> {
+                    chunkAggregators.remove(channel, newAggregator);
+                    newAggregator.close();
+                }));
+            }
+        }
+        return aggregator;
+    }
+
     /**
      * Consumes bytes that are available from network reads. This method returns the number of bytes consumed
      * in this call.
@@ -946,6 +1055,10 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
                 }
                 // ignore if its null, the service logs it
                 if (handler != null) {
+                    if (message.isHandshake() == false) {
+                        // the response is written with the capabilities that the request was sent with
+                        message.getStreamInput().setFeatures(outboundCapabilities.getOrDefault(channel, Collections.emptySet()));
+                    }
                     if (message.isError()) {
                         handlerResponseError(message.getStreamInput(), handler);
                     } else {
@@ -960,6 +1073,12 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
                     }
                 }
             }
+            if (message.getCompressionScheme() != null) {
+                // the message has been fully read by now, requests are deserialized before they are handed over to their executor
+                readCompressedBytesMetric.inc(reference.length() + TcpHeader.MARKER_BYTES_SIZE + TcpHeader.MESSAGE_LENGTH_SIZE
+                    - TcpHeader.HEADER_SIZE);
+                readUncompressedBytesMetric.inc(message.getDecompressedBytesRead());
+            }
         }
     }
 
@@ -1037,9 +1156,14 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
                 } else {
                     getInFlightRequestBreaker().addWithoutBreaking(messageLengthBytes);
                 }
-                transportChannel = new TcpTransportChannel(this, channel, transportName, action, requestId, version, features, profileName,
-                    messageLengthBytes, message.isCompress());
+                final TcpTransportChannel tcpTransportChannel = new TcpTransportChannel(this, channel, transportName, action, requestId,
+                    version, features, profileName, messageLengthBytes, message.getCompressionScheme());
+                transportChannel = tcpTransportChannel;
                 final TransportRequest request = reg.newRequest(stream);
+                if (request instanceof Releasable) {
+                    // the request may share the bytes of the message, which must be kept until the request has been handled
+                    tcpTransportChannel.releaseOnResponse((Releasable) request);
+                }
                 request.remoteAddress(new TransportAddress(channel.getRemoteAddress()));
                 // in case we throw an exception, i.e. when the limit is hit, we don't want to verify
                 validateRequest(stream, requestId, action);
@@ -1049,7 +1173,7 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
             // the circuit breaker tripped
             if (transportChannel == null) {
                 transportChannel = new TcpTransportChannel(this, channel, transportName, action, requestId, version, features,
-                    profileName, 0, message.isCompress());
+                    profileName, 0, message.getCompressionScheme());
             }
             try {
                 transportChannel.sendResponse(e);
@@ -1107,7 +1231,12 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
         }
     }
 
-    public void executeHandshake(DiscoveryNode node, TcpChannel channel, ConnectionProfile profile, ActionListener<Version> listener) {
+    /**
+     * Executes the handshake of a new connection on the given channel. The listener is called with the version of the node and the
+     * {@link TransportCapabilities} that both nodes have.
+     */
+    public void executeHandshake(DiscoveryNode node, TcpChannel channel, ConnectionProfile profile,
+                                 ActionListener<Tuple<Version, Set<String>>> listener) {
         handshaker.sendHandshake(responseHandlers.newRequestId(), node, channel, profile.getHandshakeTimeout(), listener);
     }
 
@@ -1138,7 +1267,8 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
     public final TransportStats getStats() {
         MeanMetric transmittedBytes = outboundHandler.getTransmittedBytes();
         return new TransportStats(acceptedChannels.size(), readBytesMetric.count(), readBytesMetric.sum(), transmittedBytes.count(),
-            transmittedBytes.sum());
+            transmittedBytes.sum(), readCompressedBytesMetric.count(), readUncompressedBytesMetric.count(),
+            outboundHandler.getTransmittedCompressedBytes().count(), outboundHandler.getTransmittedUncompressedBytes().count());
     }
 
     /**
@@ -1270,10 +1400,10 @@ public abstract class TcpTransport extends AbstractLifecycleComponent implements
             if (countDown.countDown()) {
                 final TcpChannel handshakeChannel = channels.get(0);
                 try {
-                    executeHandshake(node, handshakeChannel, connectionProfile, new ActionListener<Version>() {
+                    executeHandshake(node, handshakeChannel, connectionProfile, new ActionListener<Tuple<Version, Set<String>>>() {
                         @Override
-                        public void onResponse(Version version) {
-                            NodeChannels nodeChannels = new NodeChannels(node, channels, connectionProfile, version);
+                        public void onResponse(Tuple<Version, Set<String>> handshake) {
+                            NodeChannels nodeChannels = new NodeChannels(node, channels, connectionProfile, handshake.v1(), handshake.v2());
                             long relativeMillisTime = threadPool.relativeTimeInMillis();
                             nodeChannels.channels.forEach(ch -> {
                                 // Mark the channel init time
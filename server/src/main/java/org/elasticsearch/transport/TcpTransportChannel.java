@@ -20,6 +20,9 @@
 package org.elasticsearch.transport;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 
 import java.io.IOException;
 import java.util.Set;
@@ -37,10 +40,13 @@ public final class TcpTransportChannel implements TransportChannel {
     private final long reservedBytes;
     private final String channelType;
     private final TcpChannel channel;
-    private final boolean compressResponse;
+    @Nullable
+    private final Compression.Scheme compressionScheme;
+    private volatile Releasable releaseOnResponse;
 
     TcpTransportChannel(TcpTransport transport, TcpChannel channel, String channelType, String action, long requestId, Version version,
-                        Set<String> features, String profileName, long reservedBytes, boolean compressResponse) {
+                        Set<String> features, String profileName, long reservedBytes,
+                        @Nullable Compression.Scheme compressionScheme) {
         this.version = version;
         this.features = features;
         this.channel = channel;
@@ -50,7 +56,16 @@ public final class TcpTransportChannel implements TransportChannel {
         this.profileName = profileName;
         this.reservedBytes = reservedBytes;
         this.channelType = channelType;
-        this.compressResponse = compressResponse;
+        this.compressionScheme = compressionScheme;
+    }
+
+    /**
+     * Registers a {@link Releasable} to close once the response has been sent, such as a request that shares the bytes of the message
+     * it was read from.
+     */
+    void releaseOnResponse(Releasable releasable) {
+        assert releaseOnResponse == null : "already registered [" + releaseOnResponse + "]";
+        releaseOnResponse = releasable;
     }
 
     @Override
@@ -61,7 +76,7 @@ public final class TcpTransportChannel implements TransportChannel {
     @Override
     public void sendResponse(TransportResponse response) throws IOException {
         try {
-            transport.sendResponse(version, features, channel, response, requestId, action, compressResponse);
+            transport.sendResponse(version, features, channel, response, requestId, action, compressionScheme);
         } finally {
             release(false);
         }
@@ -81,7 +96,11 @@ public final class TcpTransportChannel implements TransportChannel {
     private void release(boolean isExceptionResponse) {
         if (released.compareAndSet(false, true)) {
             assert (releaseBy = new Exception()) != null; // easier to debug if it's already closed
-            transport.getInFlightRequestBreaker().addWithoutBreaking(-reservedBytes);
+            try {
+                transport.getInFlightRequestBreaker().addWithoutBreaking(-reservedBytes);
+            } finally {
+                Releasables.close(releaseOnResponse);
+            }
         } else if (isExceptionResponse == false) {
             // only fail if we are not sending an error - we might send the error triggered by the previous
             // sendResponse call
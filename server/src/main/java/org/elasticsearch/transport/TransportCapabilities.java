@@ -0,0 +1,132 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.util.set.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Optional parts of the transport protocol that nodes advertise to each other in the transport handshake. Nodes of the same version
+ * don't necessarily support the same capabilities, so anything that depends on one of them, be it a kind of message or a wire field,
+ * is only used on connections whose both ends advertised it.
+ *
+ * The capabilities that both ends of a connection agreed on are sent along with the features of its requests and are set as features
+ * on the streams that its requests and responses are read from and written to, so that serialization code can check them with
+ * {@link org.elasticsearch.common.io.stream.StreamOutput#hasFeature(String)} and
+ * {@link org.elasticsearch.common.io.stream.StreamInput#hasFeature(String)}.
+ */
+public final class TransportCapabilities {
+
+    /**
+     * Messages may be compressed with {@link Compression.Scheme#LZ4}.
+     */
+    public static final String LZ4_COMPRESSION = "lz4_compression";
+
+    /**
+     * {@link TransportStats} report the compressed and uncompressed sizes of compressed messages.
+     */
+    public static final String COMPRESSION_STATS = "compression_stats";
+
+    /**
+     * Messages that are larger than {@code transport.chunk_size} may be split into chunks that are interleaved with other messages,
+     * see {@link OutboundQueue} and {@link InboundChunkAggregator}.
+     */
+    public static final String CHUNKED_MESSAGES = "chunked_messages";
+
+    /**
+     * {@link org.elasticsearch.index.translog.TranslogStats} report the group commit syncs of the translog.
+     */
+    public static final String TRANSLOG_GROUP_COMMIT_STATS = "translog_group_commit_stats";
+
+    /**
+     * {@link org.elasticsearch.index.shard.IndexingStats} report the time spent parsing bulk documents ahead of time and applying them.
+     */
+    public static final String BULK_PARSE_STATS = "bulk_parse_stats";
+
+    /**
+     * {@link org.elasticsearch.index.refresh.RefreshStats} report the adaptive refresh interval and the deferred scheduled refreshes.
+     */
+    public static final String ADAPTIVE_REFRESH_STATS = "adaptive_refresh_stats";
+
+    /**
+     * {@link org.elasticsearch.indices.NodeIndicesStats} report the node wide merge I/O budget.
+     */
+    public static final String MERGE_IO_GOVERNOR_STATS = "merge_io_governor_stats";
+
+    /**
+     * {@link org.elasticsearch.index.fielddata.FieldDataStats} report the memory, builds and build time of global ordinals.
+     */
+    public static final String GLOBAL_ORDINALS_STATS = "global_ordinals_stats";
+
+    /**
+     * {@link org.elasticsearch.index.engine.SegmentsStats} report the memory of the cached sketches of segments.
+     */
+    public static final String SEGMENT_SKETCH_STATS = "segment_sketch_stats";
+
+    /**
+     * {@link org.elasticsearch.indices.NodeIndicesStats} report how the arrays of aggregations grew.
+     */
+    public static final String SEARCH_AGGS_STATS = "search_aggs_stats";
+
+    /**
+     * {@link org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesAggregationBuilder} support the ddsketch method.
+     */
+    public static final String DDSKETCH_PERCENTILES = "ddsketch_percentiles";
+
+    /**
+     * {@link org.elasticsearch.discovery.zen.PublishClusterStateStats} report the full states and diffs that were sent.
+     */
+    public static final String PUBLISH_DIFF_STATS = "publish_diff_stats";
+
+    /**
+     * {@link org.elasticsearch.search.query.QuerySearchResult} carry the serialized size of their aggregations.
+     */
+    public static final String SEARCH_AGGS_SIZE = "search_aggs_size";
+
+    /**
+     * The capabilities of this node.
+     */
+    public static final Set<String> CURRENT = Collections.unmodifiableSet(Sets.newHashSet(
+        LZ4_COMPRESSION,
+        COMPRESSION_STATS,
+        CHUNKED_MESSAGES,
+        TRANSLOG_GROUP_COMMIT_STATS,
+        BULK_PARSE_STATS,
+        ADAPTIVE_REFRESH_STATS,
+        MERGE_IO_GOVERNOR_STATS,
+        GLOBAL_ORDINALS_STATS,
+        SEGMENT_SKETCH_STATS,
+        SEARCH_AGGS_STATS,
+        DDSKETCH_PERCENTILES,
+        PUBLISH_DIFF_STATS,
+        SEARCH_AGGS_SIZE));
+
+    private TransportCapabilities() {}
+
+    /**
+     * Returns the capabilities of this node that are in the given features or capabilities of another node.
+     */
+    static Set<String> supported(Collection<String> features) {
+        return features.stream().filter(CURRENT::contains).collect(Collectors.toSet());
+    }
+}
@@ -21,16 +21,20 @@ package org.elasticsearch.transport;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -39,6 +43,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * Sends and receives transport-level connection handshakes. This class will send the initial handshake,
  * manage state/timeouts while the handshake is in transit, and handle the eventual response.
+ *
+ * Besides the versions, the handshake exchanges the {@link TransportCapabilities} of the nodes. The capabilities are appended to the
+ * request, which nodes read past, and are only appended to the response if the request had them, so nodes that don't know about
+ * capabilities can still take part in the handshake and end up without any capabilities agreed on.
  */
 final class TransportHandshaker {
 
@@ -47,21 +55,28 @@ final class TransportHandshaker {
     private final CounterMetric numHandshakes = new CounterMetric();
 
     private final Version version;
+    private final Set<String> capabilities;
     private final ThreadPool threadPool;
     private final HandshakeRequestSender handshakeRequestSender;
     private final HandshakeResponseSender handshakeResponseSender;
 
-    TransportHandshaker(Version version, ThreadPool threadPool, HandshakeRequestSender handshakeRequestSender,
+    TransportHandshaker(Version version, Set<String> capabilities, ThreadPool threadPool, HandshakeRequestSender handshakeRequestSender,
                         HandshakeResponseSender handshakeResponseSender) {
         this.version = version;
+        this.capabilities = capabilities;
         this.threadPool = threadPool;
         this.handshakeRequestSender = handshakeRequestSender;
         this.handshakeResponseSender = handshakeResponseSender;
     }
 
-    void sendHandshake(long requestId, DiscoveryNode node, TcpChannel channel, TimeValue timeout, ActionListener<Version> listener) {
+    /**
+     * Sends a handshake to the given node. The listener is called with the version of the node and the capabilities that both nodes
+     * have.
+     */
+    void sendHandshake(long requestId, DiscoveryNode node, TcpChannel channel, TimeValue timeout,
+                       ActionListener<Tuple<Version, Set<String>>> listener) {
         numHandshakes.inc();
-        final HandshakeResponseHandler handler = new HandshakeResponseHandler(requestId, version, listener);
+        final HandshakeResponseHandler handler = new HandshakeResponseHandler(requestId, version, capabilities, listener);
         pendingHandshakes.put(requestId, handler);
         channel.addCloseListener(ActionListener.wrap(
             () -> handler.handleLocalException(new TransportException("handshake failed because connection reset"))));
@@ -96,7 +111,8 @@ final class TransportHandshaker {
             throw new IllegalStateException("Handshake request not fully read for requestId [" + requestId + "], action ["
                 + TransportHandshaker.HANDSHAKE_ACTION_NAME + "], available [" + stream.available() + "]; resetting");
         }
-        HandshakeResponse response = new HandshakeResponse(this.version);
+        // only nodes that advertised their capabilities expect ours in the response
+        HandshakeResponse response = new HandshakeResponse(this.version, handshakeRequest.capabilities == null ? null : capabilities);
         handshakeResponseSender.sendResponse(version, features, channel, response, requestId);
     }
 
@@ -116,12 +132,15 @@ final class TransportHandshaker {
 
         private final long requestId;
         private final Version currentVersion;
-        private final ActionListener<Version> listener;
+        private final Set<String> currentCapabilities;
+        private final ActionListener<Tuple<Version, Set<String>>> listener;
         private final AtomicBoolean isDone = new AtomicBoolean(false);
 
-        private HandshakeResponseHandler(long requestId, Version currentVersion, ActionListener<Version> listener) {
+        private HandshakeResponseHandler(long requestId, Version currentVersion, Set<String> currentCapabilities,
+                                         ActionListener<Tuple<Version, Set<String>>> listener) {
             this.requestId = requestId;
             this.currentVersion = currentVersion;
+            this.currentCapabilities = currentCapabilities;
             this.listener = listener;
         }
 
@@ -138,7 +157,9 @@ final class TransportHandshaker {
                     listener.onFailure(new IllegalStateException("Received message from unsupported version: [" + version
                         + "] minimal compatible version is: [" + currentVersion.minimumCompatibilityVersion() + "]"));
                 } else {
-                    listener.onResponse(version);
+                    final Set<String> capabilities = response.capabilities == null
+                        ? Collections.emptySet() : Sets.intersection(currentCapabilities, response.capabilities);
+                    listener.onResponse(Tuple.tuple(version, capabilities));
                 }
             }
         }
@@ -165,9 +186,12 @@ final class TransportHandshaker {
     static final class HandshakeRequest extends TransportRequest {
 
         private final Version version;
+        @Nullable
+        private final Set<String> capabilities;
 
-        HandshakeRequest(Version version) {
+        HandshakeRequest(Version version, Set<String> capabilities) {
             this.version = version;
+            this.capabilities = capabilities;
         }
 
         HandshakeRequest(StreamInput streamInput) throws IOException {
@@ -180,9 +204,11 @@ final class TransportHandshaker {
             }
             if (remainingMessage == null) {
                 version = null;
+                capabilities = null;
             } else {
                 try (StreamInput messageStreamInput = remainingMessage.streamInput()) {
                     this.version = Version.readVersion(messageStreamInput);
+                    this.capabilities = readCapabilities(messageStreamInput);
                 }
             }
         }
@@ -196,8 +222,10 @@ final class TransportHandshaker {
         public void writeTo(StreamOutput streamOutput) throws IOException {
             super.writeTo(streamOutput);
             assert version != null;
+            assert capabilities != null;
             try (BytesStreamOutput messageStreamOutput = new BytesStreamOutput(4)) {
                 Version.writeVersion(version, messageStreamOutput);
+                messageStreamOutput.writeStringCollection(capabilities);
                 BytesReference reference = messageStreamOutput.bytes();
                 streamOutput.writeBytesReference(reference);
             }
@@ -207,14 +235,18 @@ final class TransportHandshaker {
     static final class HandshakeResponse extends TransportResponse {
 
         private final Version responseVersion;
+        @Nullable
+        private final Set<String> capabilities;
 
-        HandshakeResponse(Version responseVersion) {
+        HandshakeResponse(Version responseVersion, @Nullable Set<String> capabilities) {
             this.responseVersion = responseVersion;
+            this.capabilities = capabilities;
         }
 
         private HandshakeResponse(StreamInput in) throws IOException {
             super.readFrom(in);
             responseVersion = Version.readVersion(in);
+            capabilities = readCapabilities(in);
         }
 
         @Override
@@ -227,11 +259,32 @@ final class TransportHandshaker {
             super.writeTo(out);
             assert responseVersion != null;
             Version.writeVersion(responseVersion, out);
+            if (capabilities != null) {
+                out.writeStringCollection(capabilities);
+            }
         }
 
         Version getResponseVersion() {
             return responseVersion;
         }
+
+        @Nullable
+        Set<String> getCapabilities() {
+            return capabilities;
+        }
+    }
+
+    /**
+     * Reads the capabilities that follow the version in handshakes, or returns {@code null} if the handshake ends after the version
+     * because the other node doesn't advertise capabilities.
+     */
+    @Nullable
+    private static Set<String> readCapabilities(StreamInput in) throws IOException {
+        try {
+            return Sets.newHashSet(in.readStringArray());
+        } catch (EOFException e) {
+            return null;
+        }
     }
 
     @FunctionalInterface
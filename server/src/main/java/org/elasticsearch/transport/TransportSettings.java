@@ -22,6 +22,7 @@ import org.elasticsearch.action.admin.cluster.node.liveness.TransportLivenessAct
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 
@@ -68,6 +69,26 @@ public final class TransportSettings {
         boolSetting("transport.tcp.compress", false, Setting.Property.NodeScope);
     public static final Setting<Boolean> TRANSPORT_COMPRESS =
         boolSetting("transport.compress", OLD_TRANSPORT_COMPRESS, Setting.Property.NodeScope);
+    // the scheme messages are compressed with, for connections to nodes that can read it
+    public static final Setting<Compression.Scheme> TRANSPORT_COMPRESSION_SCHEME =
+        new Setting<>("transport.compression_scheme", Compression.Scheme.DEFLATE.toString(), Compression.Scheme::parse,
+            Setting.Property.NodeScope);
+    // the patterns of the actions whose requests are compressed even if transport.compress is disabled
+    public static final Setting<List<String>> TRANSPORT_COMPRESSED_ACTIONS =
+        listSetting("transport.compressed_actions", emptyList(), Function.identity(), Setting.Property.NodeScope);
+    // messages that are larger than this size are split into chunks if the other end supports them, so that other messages can be
+    // written to the same channel in between, 0 disables chunking
+    public static final Setting<ByteSizeValue> TRANSPORT_CHUNK_SIZE =
+        Setting.byteSizeSetting("transport.chunk_size", new ByteSizeValue(256, ByteSizeUnit.KB), new ByteSizeValue(0),
+            new ByteSizeValue(Integer.MAX_VALUE), Setting.Property.NodeScope);
+    // the patterns of the actions whose chunked requests and responses are written to channels ahead of those of other actions
+    public static final Setting<List<String>> TRANSPORT_HIGH_PRIORITY_ACTIONS =
+        listSetting("transport.actions.high_priority", Arrays.asList("internal:discovery/zen/*", "internal:cluster/*",
+            TransportLivenessAction.NAME), Function.identity(), Setting.Property.NodeScope);
+    // the patterns of the actions whose chunked requests and responses are written to channels after those of other actions
+    public static final Setting<List<String>> TRANSPORT_LOW_PRIORITY_ACTIONS =
+        listSetting("transport.actions.low_priority", Arrays.asList("indices:data/write/bulk*", "internal:index/shard/recovery/*"),
+            Function.identity(), Setting.Property.NodeScope);
     // the scheduled internal ping interval setting, defaults to disabled (-1)
     public static final Setting<TimeValue> PING_SCHEDULE =
         timeSetting("transport.ping_schedule", TimeValue.timeValueSeconds(-1), Setting.Property.NodeScope);
@@ -36,13 +36,26 @@ public class TransportStats implements Writeable, ToXContentFragment {
     private final long rxSize;
     private final long txCount;
     private final long txSize;
+    private final long rxCompressedSize;
+    private final long rxUncompressedSize;
+    private final long txCompressedSize;
+    private final long txUncompressedSize;
 
     public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize) {
+        this(serverOpen, rxCount, rxSize, txCount, txSize, 0, 0, 0, 0);
+    }
+
+    public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize,
+                          long rxCompressedSize, long rxUncompressedSize, long txCompressedSize, long txUncompressedSize) {
         this.serverOpen = serverOpen;
         this.rxCount = rxCount;
         this.rxSize = rxSize;
         this.txCount = txCount;
         this.txSize = txSize;
+        this.rxCompressedSize = rxCompressedSize;
+        this.rxUncompressedSize = rxUncompressedSize;
+        this.txCompressedSize = txCompressedSize;
+        this.txUncompressedSize = txUncompressedSize;
     }
 
     public TransportStats(StreamInput in) throws IOException {
@@ -51,6 +64,17 @@ public class TransportStats implements Writeable, ToXContentFragment {
         rxSize = in.readVLong();
         txCount = in.readVLong();
         txSize = in.readVLong();
+        if (in.hasFeature(TransportCapabilities.COMPRESSION_STATS)) {
+            rxCompressedSize = in.readVLong();
+            rxUncompressedSize = in.readVLong();
+            txCompressedSize = in.readVLong();
+            txUncompressedSize = in.readVLong();
+        } else {
+            rxCompressedSize = 0;
+            rxUncompressedSize = 0;
+            txCompressedSize = 0;
+            txUncompressedSize = 0;
+        }
     }
 
     @Override
@@ -60,6 +84,12 @@ public class TransportStats implements Writeable, ToXContentFragment {
         out.writeVLong(rxSize);
         out.writeVLong(txCount);
         out.writeVLong(txSize);
+        if (out.hasFeature(TransportCapabilities.COMPRESSION_STATS)) {
+            out.writeVLong(rxCompressedSize);
+            out.writeVLong(rxUncompressedSize);
+            out.writeVLong(txCompressedSize);
+            out.writeVLong(txUncompressedSize);
+        }
     }
 
     public long serverOpen() {
@@ -102,6 +132,34 @@ public class TransportStats implements Writeable, ToXContentFragment {
         return txSize();
     }
 
+    /**
+     * The number of bytes of the received messages that were compressed, as they were received.
+     */
+    public ByteSizeValue getRxCompressedSize() {
+        return new ByteSizeValue(rxCompressedSize);
+    }
+
+    /**
+     * The number of bytes that the received compressed messages were decompressed to.
+     */
+    public ByteSizeValue getRxUncompressedSize() {
+        return new ByteSizeValue(rxUncompressedSize);
+    }
+
+    /**
+     * The number of bytes that the sent compressed messages were compressed to.
+     */
+    public ByteSizeValue getTxCompressedSize() {
+        return new ByteSizeValue(txCompressedSize);
+    }
+
+    /**
+     * The number of bytes that the sent compressed messages had before they were compressed.
+     */
+    public ByteSizeValue getTxUncompressedSize() {
+        return new ByteSizeValue(txUncompressedSize);
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.TRANSPORT);
@@ -110,6 +168,14 @@ public class TransportStats implements Writeable, ToXContentFragment {
         builder.humanReadableField(Fields.RX_SIZE_IN_BYTES, Fields.RX_SIZE, new ByteSizeValue(rxSize));
         builder.field(Fields.TX_COUNT, txCount);
         builder.humanReadableField(Fields.TX_SIZE_IN_BYTES, Fields.TX_SIZE, new ByteSizeValue(txSize));
+        builder.startObject(Fields.COMPRESSION);
+        builder.humanReadableField(Fields.RX_COMPRESSED_SIZE_IN_BYTES, Fields.RX_COMPRESSED_SIZE, new ByteSizeValue(rxCompressedSize));
+        builder.humanReadableField(Fields.RX_UNCOMPRESSED_SIZE_IN_BYTES, Fields.RX_UNCOMPRESSED_SIZE,
+            new ByteSizeValue(rxUncompressedSize));
+        builder.humanReadableField(Fields.TX_COMPRESSED_SIZE_IN_BYTES, Fields.TX_COMPRESSED_SIZE, new ByteSizeValue(txCompressedSize));
+        builder.humanReadableField(Fields.TX_UNCOMPRESSED_SIZE_IN_BYTES, Fields.TX_UNCOMPRESSED_SIZE,
+            new ByteSizeValue(txUncompressedSize));
+        builder.endObject();
         builder.endObject();
         return builder;
     }
@@ -123,5 +189,14 @@ public class TransportStats implements Writeable, ToXContentFragment {
         static final String TX_COUNT = "tx_count";
         static final String TX_SIZE = "tx_size";
         static final String TX_SIZE_IN_BYTES = "tx_size_in_bytes";
+        static final String COMPRESSION = "compression";
+        static final String RX_COMPRESSED_SIZE = "rx_compressed_size";
+        static final String RX_COMPRESSED_SIZE_IN_BYTES = "rx_compressed_size_in_bytes";
+        static final String RX_UNCOMPRESSED_SIZE = "rx_uncompressed_size";
+        static final String RX_UNCOMPRESSED_SIZE_IN_BYTES = "rx_uncompressed_size_in_bytes";
+        static final String TX_COMPRESSED_SIZE = "tx_compressed_size";
+        static final String TX_COMPRESSED_SIZE_IN_BYTES = "tx_compressed_size_in_bytes";
+        static final String TX_UNCOMPRESSED_SIZE = "tx_uncompressed_size";
+        static final String TX_UNCOMPRESSED_SIZE_IN_BYTES = "tx_uncompressed_size_in_bytes";
     }
 }
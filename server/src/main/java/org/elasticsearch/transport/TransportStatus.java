@@ -25,6 +25,7 @@ public final class TransportStatus {
     private static final byte STATUS_ERROR = 1 << 1;
     private static final byte STATUS_COMPRESS = 1 << 2;
     private static final byte STATUS_HANDSHAKE = 1 << 3;
+    private static final byte STATUS_CHUNK = 1 << 4;
 
     public static boolean isRequest(byte value) {
         return (value & STATUS_REQRES) == 0;
@@ -66,4 +67,18 @@ public final class TransportStatus {
         value |= STATUS_HANDSHAKE;
         return value;
     }
+
+    static boolean isChunk(byte value) { // pkg private since it's only used internally
+        return (value & STATUS_CHUNK) != 0;
+    }
+
+    static byte setChunk(byte value) { // pkg private since it's only used internally
+        value |= STATUS_CHUNK;
+        return value;
+    }
+
+    static byte clearChunk(byte value) { // pkg private since it's only used internally
+        value &= ~STATUS_CHUNK;
+        return value;
+    }
 }
@@ -39,6 +39,7 @@ import org.elasticsearch.script.ScriptStats;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.VersionUtils;
 import org.elasticsearch.threadpool.ThreadPoolStats;
+import org.elasticsearch.transport.TransportCapabilities;
 import org.elasticsearch.transport.TransportStats;
 
 import java.io.IOException;
@@ -57,8 +58,10 @@ public class NodeStatsTests extends ESTestCase {
     public void testSerialization() throws IOException {
         NodeStats nodeStats = createNodeStats();
         try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setFeatures(TransportCapabilities.CURRENT);
             nodeStats.writeTo(out);
             try (StreamInput in = out.bytes().streamInput()) {
+                in.setFeatures(TransportCapabilities.CURRENT);
                 NodeStats deserializedNodeStats = NodeStats.readNodeStats(in);
                 assertEquals(nodeStats.getNode(), deserializedNodeStats.getNode());
                 assertEquals(nodeStats.getTimestamp(), deserializedNodeStats.getTimestamp());
@@ -219,6 +222,14 @@ public class NodeStatsTests extends ESTestCase {
                     assertEquals(nodeStats.getTransport().getServerOpen(), deserializedNodeStats.getTransport().getServerOpen());
                     assertEquals(nodeStats.getTransport().getTxCount(), deserializedNodeStats.getTransport().getTxCount());
                     assertEquals(nodeStats.getTransport().getTxSize(), deserializedNodeStats.getTransport().getTxSize());
+                    assertEquals(nodeStats.getTransport().getRxCompressedSize(),
+                        deserializedNodeStats.getTransport().getRxCompressedSize());
+                    assertEquals(nodeStats.getTransport().getRxUncompressedSize(),
+                        deserializedNodeStats.getTransport().getRxUncompressedSize());
+                    assertEquals(nodeStats.getTransport().getTxCompressedSize(),
+                        deserializedNodeStats.getTransport().getTxCompressedSize());
+                    assertEquals(nodeStats.getTransport().getTxUncompressedSize(),
+                        deserializedNodeStats.getTransport().getTxUncompressedSize());
                 }
                 if (nodeStats.getHttp() == null) {
                     assertNull(deserializedNodeStats.getHttp());
@@ -414,6 +425,7 @@ public class NodeStatsTests extends ESTestCase {
             fsInfo = new FsInfo(randomNonNegativeLong(), ioStats, paths);
         }
         TransportStats transportStats = frequently() ? new TransportStats(randomNonNegativeLong(), randomNonNegativeLong(),
+                randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(),
                 randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong()) : null;
         HttpStats httpStats = frequently() ? new HttpStats(randomNonNegativeLong(), randomNonNegativeLong()) : null;
         AllCircuitBreakerStats allCircuitBreakerStats = null;
@@ -434,6 +446,11 @@ public class NodeStatsTests extends ESTestCase {
                 : null,
                 randomBoolean()
                 ? new PublishClusterStateStats(
+                    randomNonNegativeLong(),
+                    randomNonNegativeLong(),
+                    randomNonNegativeLong(),
+                    randomNonNegativeLong(),
+                    randomNonNegativeLong(),
                     randomNonNegativeLong(),
                     randomNonNegativeLong(),
                     randomNonNegativeLong())
@@ -19,10 +19,20 @@
 
 package org.elasticsearch.action.bulk;
 
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.FilterStreamInput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.test.ESTestCase;
 
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.apache.lucene.util.TestUtil.randomSimpleString;
 
 public class BulkShardRequestTests extends ESTestCase {
@@ -37,4 +47,44 @@ public class BulkShardRequestTests extends ESTestCase {
         r = new BulkShardRequest(shardId, RefreshPolicy.WAIT_UNTIL, new BulkItemRequest[count]);
         assertEquals("BulkShardRequest [" + shardId + "] containing [" + count + "] requests blocking until refresh", r.toString());
     }
+
+    public void testReadSharesSources() throws IOException {
+        final ShardId shardId = new ShardId(randomSimpleString(random(), 10), "ignored", 0);
+        final BulkItemRequest[] items = new BulkItemRequest[between(1, 20)];
+        for (int i = 0; i < items.length; i++) {
+            final IndexRequest indexRequest = new IndexRequest(shardId.getIndexName(), "_doc", Integer.toString(i))
+                .source(new BytesArray("{\"field\":\"" + randomAlphaOfLength(between(1, 100)) + "\"}"), XContentType.JSON);
+            items[i] = new BulkItemRequest(i, indexRequest);
+        }
+        final BulkShardRequest request = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        final AtomicInteger retained = new AtomicInteger();
+        final AtomicInteger released = new AtomicInteger();
+        final BulkShardRequest read = new BulkShardRequest();
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            request.writeTo(out);
+            // stands in for a network buffer that the bytes references read from it share
+            try (StreamInput in = new FilterStreamInput(out.bytes().streamInput()) {
+                @Override
+                public ReleasableBytesReference readReleasableBytesReference(int length) throws IOException {
+                    retained.incrementAndGet();
+                    return new ReleasableBytesReference(readBytesReference(length), released::incrementAndGet);
+                }
+            }) {
+                read.readFrom(in);
+            }
+        }
+        assertEquals(items.length, read.items().length);
+        for (int i = 0; i < items.length; i++) {
+            final IndexRequest indexRequest = (IndexRequest) read.items()[i].request();
+            assertEquals(((IndexRequest) items[i].request()).source(), indexRequest.source());
+            assertTrue(indexRequest.source() instanceof ReleasableBytesReference);
+        }
+        assertEquals(items.length, retained.get());
+        assertEquals(0, released.get());
+        read.close();
+        assertEquals(items.length, released.get());
+        read.close();
+        assertEquals(items.length, released.get());
+    }
 }
@@ -39,10 +39,13 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.mapper.MapperParsingException;
 import org.elasticsearch.index.mapper.Mapping;
 import org.elasticsearch.index.mapper.MetadataFieldMapper;
 import org.elasticsearch.index.seqno.SequenceNumbers;
@@ -51,10 +54,14 @@ import org.elasticsearch.index.shard.IndexShardTestCase;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -65,6 +72,7 @@ import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.Matchers.arrayWithSize;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -276,7 +284,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
 
         IndexShard shard = mock(IndexShard.class);
         when(shard.shardId()).thenReturn(shardId);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean()))
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any()))
             .thenReturn(mappingUpdate);
 
         randomlySetIgnoredPrimaryResponse(items[0]);
@@ -296,9 +304,9 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         assertThat("mappings were \"updated\" once", updateCalled.get(), equalTo(1));
 
         // Verify that the shard "executed" the operation once
-        verify(shard, times(1)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean());
+        verify(shard, times(1)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any());
 
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean()))
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any()))
             .thenReturn(success);
 
         TransportShardBulkAction.executeBulkItemRequest(context, null, randomBoolean(), threadPool::absoluteTimeInMillis,
@@ -307,7 +315,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
 
         // Verify that the shard "executed" the operation only once (1 for previous invocations plus
         // 1 for this execution)
-        verify(shard, times(2)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean());
+        verify(shard, times(2)).applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any());
 
 
         BulkItemResponse primaryResponse = bulkShardRequest.items()[0].getPrimaryResponse();
@@ -508,7 +516,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         Exception err = new ElasticsearchException("I'm dead <(x.x)>");
         Engine.IndexResult indexResult = new Engine.IndexResult(err, 0, 0, 0);
         IndexShard shard = mock(IndexShard.class);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean()))
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any()))
             .thenReturn(indexResult);
         when(shard.indexSettings()).thenReturn(indexSettings);
 
@@ -557,7 +565,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
             "I'm conflicted <(;_;)>");
         Engine.IndexResult indexResult = new Engine.IndexResult(err, 0, 0, 0);
         IndexShard shard = mock(IndexShard.class);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean()))
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any()))
             .thenReturn(indexResult);
         when(shard.indexSettings()).thenReturn(indexSettings);
 
@@ -604,7 +612,7 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         Translog.Location resultLocation = new Translog.Location(42, 42, 42);
         Engine.IndexResult indexResult = new FakeIndexResult(1, 1, 13, created, resultLocation);
         IndexShard shard = mock(IndexShard.class);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean()))
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any()))
             .thenReturn(indexResult);
         when(shard.indexSettings()).thenReturn(indexSettings);
         when(shard.shardId()).thenReturn(shardId);
@@ -798,16 +806,17 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         Engine.IndexResult success = new FakeIndexResult(1, 1, 13, true, resultLocation);
 
         IndexShard shard = mock(IndexShard.class);
-        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean())).thenAnswer(ir -> {
-            if (randomBoolean()) {
-                return conflictedResult;
-            }
-            if (randomBoolean()) {
-                return mappingUpdate;
-            } else {
-                return success;
-            }
-        });
+        when(shard.applyIndexOperationOnPrimary(anyLong(), any(), any(), anyLong(), anyLong(), anyLong(), anyBoolean(), any()))
+            .thenAnswer(ir -> {
+                if (randomBoolean()) {
+                    return conflictedResult;
+                }
+                if (randomBoolean()) {
+                    return mappingUpdate;
+                } else {
+                    return success;
+                }
+            });
         when(shard.indexSettings()).thenReturn(indexSettings);
         when(shard.shardId()).thenReturn(shardId);
 
@@ -859,6 +868,88 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         }
     }
 
+    public void testParseDocumentsInParallel() throws Exception {
+        Settings settings = Settings.builder()
+            .put(IndexSettings.INDEX_BULK_PARSE_PARALLELISM_SETTING.getKey(), randomIntBetween(2, 8))
+            .build();
+        IndexShard shard = newStartedShard(true, settings);
+
+        BulkItemRequest[] items = new BulkItemRequest[randomIntBetween(2, 50)];
+        Set<Integer> malformed = new HashSet<>();
+        for (int i = 0; i < items.length; i++) {
+            IndexRequest writeRequest = new IndexRequest("index", "_doc", "id_" + i);
+            if (rarely()) {
+                writeRequest.source("{\"field\": ", XContentType.JSON);
+                malformed.add(i);
+            } else {
+                writeRequest.source(Requests.INDEX_CONTENT_TYPE);
+            }
+            items[i] = new BulkItemRequest(i, writeRequest);
+        }
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        WritePrimaryResult<BulkShardRequest, BulkShardResponse> result = TransportShardBulkAction.performOnPrimary(
+            bulkShardRequest, shard, null, true, threadPool::absoluteTimeInMillis, new NoopMappingUpdatePerformer(), () -> {},
+            threadPool.executor(ThreadPool.Names.WRITE_PARSE));
+
+        // documents are parsed out of order but sequence numbers are still assigned in the order of the items
+        long lastSeqNo = SequenceNumbers.NO_OPS_PERFORMED;
+        for (int i = 0; i < items.length; i++) {
+            BulkItemResponse response = result.finalResponseIfSuccessful.getResponses()[i];
+            assertThat(response.getId(), equalTo("id_" + i));
+            if (malformed.contains(i)) {
+                assertTrue(response.isFailed());
+                assertThat(response.getFailure().getCause(), instanceOf(MapperParsingException.class));
+                assertThat(response.getFailure().getSeqNo(), equalTo(SequenceNumbers.UNASSIGNED_SEQ_NO));
+            } else {
+                assertFalse(response.isFailed());
+                assertThat(response.getResponse().getSeqNo(), equalTo(lastSeqNo + 1));
+                lastSeqNo = response.getResponse().getSeqNo();
+            }
+        }
+        assertDocCount(shard, items.length - malformed.size());
+        closeShards(shard);
+    }
+
+    public void testApplyOnReplicaInParallel() throws Exception {
+        Settings settings = Settings.builder()
+            .put(IndexSettings.INDEX_BULK_REPLICA_PARALLELISM_SETTING.getKey(), randomIntBetween(2, 8))
+            .build();
+        IndexShard replica = newStartedShard(false, settings);
+
+        BulkItemRequest[] items = new BulkItemRequest[randomIntBetween(2, 50)];
+        int numIds = randomIntBetween(1, items.length);
+        Map<String, Integer> versions = new HashMap<>();
+        Map<String, Integer> lastItems = new HashMap<>();
+        for (int i = 0; i < items.length; i++) {
+            String id = "id_" + randomIntBetween(0, numIds - 1);
+            IndexRequest writeRequest = new IndexRequest("index", "_doc", id)
+                .source(Requests.INDEX_CONTENT_TYPE, "foo", "item_" + i);
+            int version = versions.merge(id, 1, Integer::sum);
+            lastItems.put(id, i);
+            items[i] = new BulkItemRequest(i, writeRequest);
+            items[i].setPrimaryResponse(new BulkItemResponse(i, DocWriteRequest.OpType.INDEX,
+                new IndexResponse(shardId, "_doc", id, i, replica.getOperationPrimaryTerm(), version, version == 1)));
+        }
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        Translog.Location location = TransportShardBulkAction.performOnReplica(bulkShardRequest, replica,
+            threadPool.executor(ThreadPool.Names.WRITE));
+
+        assertThat(location, notNullValue());
+        assertThat(replica.getLocalCheckpoint(), equalTo((long) items.length - 1));
+        assertDocCount(replica, versions.size());
+        // operations on the same id were applied in the order of the items
+        for (Map.Entry<String, Integer> entry : versions.entrySet()) {
+            GetResult getResult = replica.getService().get("_doc", entry.getKey(), null, true, Versions.MATCH_ANY,
+                VersionType.INTERNAL, FetchSourceContext.FETCH_SOURCE);
+            assertTrue(getResult.isExists());
+            assertThat(getResult.getVersion(), equalTo((long) entry.getValue()));
+            assertThat(getResult.sourceAsMap().get("foo"), equalTo("item_" + lastItems.get(entry.getKey())));
+        }
+        closeShards(replica);
+    }
+
     public void testRejectCASUsingSeqNo() throws Exception {
         IndexShard shard = newStartedShard(true);
         BulkItemRequest[] items = new BulkItemRequest[randomIntBetween(1, 10)];
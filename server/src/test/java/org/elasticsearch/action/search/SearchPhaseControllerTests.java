@@ -28,15 +28,26 @@ import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.grouping.CollapseTopFieldDocs;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.SearchModule;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
@@ -50,20 +61,25 @@ import org.elasticsearch.search.query.QuerySearchResult;
 import org.elasticsearch.search.suggest.Suggest;
 import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.TransportCapabilities;
 import org.junit.Before;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
@@ -366,6 +382,190 @@ public class SearchPhaseControllerTests extends ESTestCase {
         assertNull(reduce.sortedTopDocs.collapseValues);
     }
 
+    public void testConsumerReducesOverflowingBuffer() {
+        int expectedNumResults = randomIntBetween(3, 20);
+        int bufferSize = randomIntBetween(2, expectedNumResults - 1);
+        SearchRequest request = randomSearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("foo")).size(0));
+        request.setBatchedReduceSize(bufferSize);
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            searchPhaseController.newSearchPhaseResults(request, expectedNumResults);
+        assertThat(consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
+        SearchPhaseController.QueryPhaseResultConsumer resultConsumer = (SearchPhaseController.QueryPhaseResultConsumer) consumer;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < expectedNumResults; i++) {
+            double value = randomDouble();
+            max = Math.max(max, value);
+            QuerySearchResult result = new QuerySearchResult(i, new SearchShardTarget("node", new Index("a", "b"), i, null));
+            result.topDocs(new TopDocs(1, new ScoreDoc[0], Float.NaN), new DocValueFormat[0]);
+            result.aggregations(new InternalAggregations(Collections.singletonList(new InternalMax("foo", value, DocValueFormat.RAW,
+                Collections.emptyList(), Collections.emptyMap()))));
+            result.setShardIndex(i);
+            consumer.consumeResult(result);
+            // the first overflow reduces a full buffer, the following ones the running result and bufferSize - 1 results
+            final int numConsumed = i + 1;
+            final int numReducePhases = numConsumed <= bufferSize ? 0 : (numConsumed - 2) / (bufferSize - 1);
+            assertEquals(numReducePhases, resultConsumer.getNumReducePhases());
+            assertEquals(numConsumed - numReducePhases * (bufferSize - 1), resultConsumer.getNumBuffered());
+            assertThat(resultConsumer.getNumBuffered(), lessThanOrEqualTo(bufferSize));
+            expectThrows(IllegalStateException.class, result::consumeAggs);
+        }
+        SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
+        assertEquals(resultConsumer.getNumReducePhases() + 1, reduce.numReducePhases);
+        assertEquals((expectedNumResults - 2) / (bufferSize - 1) + 1, reduce.numReducePhases);
+        InternalMax internalMax = (InternalMax) reduce.aggregations.asList().get(0);
+        assertEquals(max, internalMax.getValue(), 0.0D);
+    }
+
+    public void testConsumerAccountsForResultsInTheRequestBreaker() throws IOException {
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.builder()
+            .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "1mb").build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        SearchPhaseController controller = new SearchPhaseController(
+            (finalReduce) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, finalReduce), breaker);
+        int expectedNumResults = randomIntBetween(3, 20);
+        SearchRequest request = randomSearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("foo")).size(0));
+        request.setBatchedReduceSize(randomIntBetween(2, expectedNumResults - 1));
+        SearchPhaseController.QueryPhaseResultConsumer consumer =
+            (SearchPhaseController.QueryPhaseResultConsumer) controller.newSearchPhaseResults(request, expectedNumResults);
+        for (int i = 0; i < expectedNumResults; i++) {
+            consumer.consumeResult(receive(newMaxResult(i, "foo", randomDouble())));
+            assertThat(consumer.getCircuitBreakerBytes(), greaterThan(0L));
+            assertEquals(consumer.getCircuitBreakerBytes(), breaker.getUsed());
+        }
+        consumer.reduce();
+        assertEquals(0, consumer.getCircuitBreakerBytes());
+        assertEquals(0, breaker.getUsed());
+
+        // a result that doesn't fit fails the search once it is reduced, naming the aggregation
+        breakerService = new HierarchyCircuitBreakerService(Settings.builder()
+            .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "10b").build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        CircuitBreaker smallBreaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        controller = new SearchPhaseController(
+            (finalReduce) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, finalReduce), smallBreaker);
+        consumer = (SearchPhaseController.QueryPhaseResultConsumer) controller.newSearchPhaseResults(request, expectedNumResults);
+        for (int i = 0; i < expectedNumResults; i++) {
+            consumer.consumeResult(receive(newMaxResult(i, "large_agg", randomDouble())));
+            assertEquals(0, smallBreaker.getUsed());
+        }
+        CircuitBreakingException e = expectThrows(CircuitBreakingException.class, consumer::reduce);
+        assertThat(e.getMessage(), containsString("[large_agg]"));
+        assertEquals(1, smallBreaker.getTrippedCount());
+        assertEquals(0, smallBreaker.getUsed());
+        consumer.close();
+        assertEquals(0, smallBreaker.getUsed());
+    }
+
+    public void testReduceWithoutConsumerAccountsForResultsInTheRequestBreaker() throws IOException {
+        int expectedNumResults = randomIntBetween(1, 10);
+        SearchRequest request = randomSearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("foo")).size(0));
+        // results are only reduced once they all arrived
+        request.setBatchedReduceSize(randomIntBetween(Math.max(2, expectedNumResults), 100));
+
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.builder()
+            .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "1mb").build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        SearchPhaseController controller = new SearchPhaseController(
+            (finalReduce) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, finalReduce), breaker);
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            controller.newSearchPhaseResults(request, expectedNumResults);
+        assertThat(consumer, not(instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class)));
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < expectedNumResults; i++) {
+            double value = randomDouble();
+            max = Math.max(max, value);
+            consumer.consumeResult(receive(newMaxResult(i, "foo", value)));
+        }
+        SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
+        assertEquals(max, ((InternalMax) reduce.aggregations.asList().get(0)).getValue(), 0.0D);
+        assertEquals(0, breaker.getUsed());
+
+        // the results are charged while they are reduced, a breaker that they don't fit in fails the search naming the aggregation
+        breakerService = new HierarchyCircuitBreakerService(Settings.builder()
+            .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "10b").build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        CircuitBreaker smallBreaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        controller = new SearchPhaseController(
+            (finalReduce) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, finalReduce), smallBreaker);
+        consumer = controller.newSearchPhaseResults(request, expectedNumResults);
+        for (int i = 0; i < expectedNumResults; i++) {
+            consumer.consumeResult(receive(newMaxResult(i, "large_agg", randomDouble())));
+        }
+        CircuitBreakingException e = expectThrows(CircuitBreakingException.class, consumer::reduce);
+        assertThat(e.getMessage(), containsString("[large_agg]"));
+        assertEquals(1, smallBreaker.getTrippedCount());
+        assertEquals(0, smallBreaker.getUsed());
+    }
+
+    public void testOnlyReceivedAggregationsAreAccountedFor() throws IOException {
+        QuerySearchResult local = newMaxResult(0, "foo", randomDouble());
+        assertEquals(-1, local.getAggregationsSize());
+        assertThat(receive(local).getAggregationsSize(), greaterThan(0L));
+        // nodes that don't send the size of the aggregations
+        QuerySearchResult received = receive(local, Collections.emptySet());
+        assertEquals(-1, received.getAggregationsSize());
+        assertEquals(((InternalMax) local.consumeAggs().asList().get(0)).getValue(),
+            ((InternalMax) received.consumeAggs().asList().get(0)).getValue(), 0.0D);
+
+        // results of shards on the coordinating node were never serialized and aren't measured
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.builder()
+            .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "10b").build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        SearchPhaseController controller = new SearchPhaseController(
+            (finalReduce) -> new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, finalReduce), breaker);
+        int expectedNumResults = randomIntBetween(3, 20);
+        SearchRequest request = randomSearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("foo")).size(0));
+        request.setBatchedReduceSize(randomIntBetween(2, expectedNumResults - 1));
+        SearchPhaseController.QueryPhaseResultConsumer consumer =
+            (SearchPhaseController.QueryPhaseResultConsumer) controller.newSearchPhaseResults(request, expectedNumResults);
+        for (int i = 0; i < expectedNumResults; i++) {
+            consumer.consumeResult(newMaxResult(i, "foo", randomDouble()));
+            assertEquals(0, consumer.getCircuitBreakerBytes());
+        }
+        consumer.reduce();
+        assertEquals(0, breaker.getTrippedCount());
+    }
+
+    private static QuerySearchResult receive(QuerySearchResult result) throws IOException {
+        return receive(result, Collections.singleton(TransportCapabilities.SEARCH_AGGS_SIZE));
+    }
+
+    /**
+     * Sends the result through a stream like a shard on another node does.
+     */
+    private static QuerySearchResult receive(QuerySearchResult result, Set<String> features) throws IOException {
+        NamedWriteableRegistry registry = new NamedWriteableRegistry(
+            new SearchModule(Settings.EMPTY, false, Collections.emptyList()).getNamedWriteables());
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setFeatures(features);
+            result.writeTo(out);
+            try (StreamInput in = new NamedWriteableAwareStreamInput(out.bytes().streamInput(), registry)) {
+                in.setFeatures(features);
+                QuerySearchResult received = new QuerySearchResult(in);
+                assertEquals(-1, in.read());
+                received.setSearchShardTarget(result.getSearchShardTarget());
+                received.setShardIndex(result.getShardIndex());
+                return received;
+            }
+        }
+    }
+
+    private static QuerySearchResult newMaxResult(int shardIndex, String name, double value) {
+        QuerySearchResult result = new QuerySearchResult(shardIndex, new SearchShardTarget("node", new Index("a", "b"), shardIndex, null));
+        result.topDocs(new TopDocs(1, new ScoreDoc[0], Float.NaN), new DocValueFormat[0]);
+        result.aggregations(new InternalAggregations(Collections.singletonList(new InternalMax(name, value, DocValueFormat.RAW,
+            Collections.emptyList(), Collections.emptyMap()))));
+        result.setShardIndex(shardIndex);
+        return result;
+    }
+
     public void testConsumerConcurrently() throws InterruptedException {
         int expectedNumResults = randomIntBetween(1, 100);
         int bufferSize = randomIntBetween(2, 200);
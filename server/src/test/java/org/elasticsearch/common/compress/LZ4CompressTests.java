@@ -0,0 +1,140 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.compress;
+
+import org.apache.lucene.util.LineFileDocs;
+import org.apache.lucene.util.TestUtil;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.lessThan;
+
+public class LZ4CompressTests extends ESTestCase {
+
+    private final Compressor compressor = new LZ4Compressor();
+
+    public void testRandom() throws IOException {
+        Random r = random();
+        for (int i = 0; i < 10; i++) {
+            byte[] bytes = new byte[TestUtil.nextInt(r, 1, 200000)];
+            r.nextBytes(bytes);
+            // random bytes don't compress, so they are stored as they are
+            assertThat(doTest(bytes).length(), lessThan(bytes.length + 64));
+        }
+    }
+
+    public void testLineDocs() throws IOException {
+        Random r = random();
+        LineFileDocs lineFileDocs = new LineFileDocs(r);
+        for (int i = 0; i < 10; i++) {
+            int numDocs = TestUtil.nextInt(r, 1, 200);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            for (int j = 0; j < numDocs; j++) {
+                String s = lineFileDocs.nextDoc().get("body");
+                bos.write(s.getBytes(StandardCharsets.UTF_8));
+            }
+            doTest(bos.toByteArray());
+        }
+        lineFileDocs.close();
+    }
+
+    public void testRepetitions() throws IOException {
+        Random r = random();
+        for (int i = 0; i < 10; i++) {
+            final byte[] pattern = new byte[TestUtil.nextInt(r, 1, 100)];
+            r.nextBytes(pattern);
+            final byte[] bytes = new byte[TestUtil.nextInt(r, 1, 200000)];
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = pattern[j % pattern.length];
+            }
+            final BytesReference compressed = doTest(bytes);
+            if (bytes.length > 1000) {
+                assertThat(compressed.length(), lessThan(bytes.length / 10));
+            }
+        }
+    }
+
+    public void testEmpty() throws IOException {
+        doTest(new byte[0]);
+    }
+
+    public void testIsCompressed() throws IOException {
+        final BytesReference compressed = doTest(randomByteArrayOfLength(randomIntBetween(1, 100)));
+        assertTrue(compressor.isCompressed(compressed));
+        assertFalse(new DeflateCompressor().isCompressed(compressed));
+        assertFalse(compressor.isCompressed(new BytesArray(randomByteArrayOfLength(randomIntBetween(0, 3)))));
+        expectThrows(IllegalArgumentException.class, () -> compressor.streamInput(new BytesArray("DFL\0").streamInput()));
+    }
+
+    public void testCorrupted() throws IOException {
+        final byte[] bytes = new byte[TestUtil.nextInt(random(), 1000, 100000)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i % 17);
+        }
+        final byte[] compressed = BytesReference.toBytes(doTest(bytes));
+        // cut the stream short after the first block header
+        final byte[] truncated = new byte[randomIntBetween(8, compressed.length - 2)];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        expectThrows(IOException.class, () -> {
+            try (StreamInput in = compressor.streamInput(new BytesArray(truncated).streamInput())) {
+                in.readBytes(new byte[bytes.length], 0, bytes.length);
+            }
+        });
+    }
+
+    private BytesReference doTest(byte[] bytes) throws IOException {
+        final BytesStreamOutput bos = new BytesStreamOutput();
+        try (StreamOutput os = compressor.streamOutput(bos)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                final int len = Math.min(bytes.length - offset, randomIntBetween(1, 70000));
+                if (randomBoolean()) {
+                    os.writeBytes(bytes, offset, len);
+                } else {
+                    for (int i = offset; i < offset + len; i++) {
+                        os.writeByte(bytes[i]);
+                    }
+                }
+                offset += len;
+            }
+        }
+        final BytesReference compressed = bos.bytes();
+
+        final ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        try (StreamInput in = compressor.streamInput(compressed.streamInput())) {
+            final byte[] buffer = new byte[TestUtil.nextInt(random(), 1, 70000)];
+            int len;
+            while ((len = in.read(buffer, 0, buffer.length)) != -1) {
+                uncompressed.write(buffer, 0, len);
+            }
+        }
+        assertArrayEquals(bytes, uncompressed.toByteArray());
+        return compressed;
+    }
+}
@@ -22,6 +22,7 @@ package org.elasticsearch.common.util;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
@@ -152,6 +153,69 @@ public class BigArraysTests extends ESTestCase {
         array.close();
     }
 
+    public void testGrowRecycledPageWithoutReallocation() {
+        final BigArrays bigArrays = new BigArrays(new PageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService(),
+            CircuitBreaker.REQUEST);
+        final boolean clearOnResize = randomBoolean();
+        final int startLen = randomIntBetween(PageCacheRecycler.INT_PAGE_SIZE / 2, PageCacheRecycler.INT_PAGE_SIZE);
+        final int totalLen = randomIntBetween(PageCacheRecycler.INT_PAGE_SIZE + 1, PageCacheRecycler.INT_PAGE_SIZE * 4);
+        IntArray ints = bigArrays.newIntArray(startLen, clearOnResize);
+        LongArray longs = bigArrays.newLongArray(startLen / 2, clearOnResize);
+        DoubleArray doubles = bigArrays.newDoubleArray(startLen / 2, clearOnResize);
+        for (int i = 0; i < totalLen; ++i) {
+            ints = bigArrays.grow(ints, i + 1);
+            ints.set(i, i);
+            longs = bigArrays.grow(longs, i + 1);
+            longs.set(i, i);
+            doubles = bigArrays.grow(doubles, i + 1);
+            doubles.set(i, i);
+        }
+        for (int i = 0; i < totalLen; ++i) {
+            assertEquals(i, ints.get(i));
+            assertEquals(i, longs.get(i));
+            assertEquals(i, doubles.get(i), 0d);
+        }
+        if (clearOnResize) {
+            ints = bigArrays.grow(ints, ints.size() + 1);
+            assertEquals(0, ints.get(ints.size() - 1));
+        }
+        // the values were never copied, the pages of the recycler were reused as the arrays grew
+        assertEquals(0, bigArrays.reallocations());
+        assertEquals(0, bigArrays.reallocatedBytes());
+        assertThat(bigArrays.recycledGrowths(), greaterThanOrEqualTo(3L));
+        Releasables.close(ints, longs, doubles);
+
+        IntArray small = bigArrays.newIntArray(1, clearOnResize);
+        small = bigArrays.grow(small, 2);
+        assertEquals(1, bigArrays.reallocations());
+        assertEquals(Integer.BYTES, bigArrays.reallocatedBytes());
+        small.close();
+    }
+
+    public void testGrowRecycledBytePageWithoutReallocation() {
+        final BigArrays bigArrays = new BigArrays(new PageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService(),
+            CircuitBreaker.REQUEST);
+        final boolean clearOnResize = randomBoolean();
+        final int startLen = randomIntBetween(PageCacheRecycler.BYTE_PAGE_SIZE / 2, PageCacheRecycler.BYTE_PAGE_SIZE);
+        final int totalLen = randomIntBetween(PageCacheRecycler.BYTE_PAGE_SIZE + 1, PageCacheRecycler.BYTE_PAGE_SIZE * 4);
+        ByteArray bytes = bigArrays.newByteArray(startLen, clearOnResize);
+        for (int i = 0; i < totalLen; ++i) {
+            bytes = bigArrays.grow(bytes, i + 1);
+            bytes.set(i, (byte) i);
+        }
+        for (int i = 0; i < totalLen; ++i) {
+            assertEquals((byte) i, bytes.get(i));
+        }
+        if (clearOnResize) {
+            bytes = bigArrays.grow(bytes, bytes.size() + 1);
+            assertEquals(0, bytes.get(bytes.size() - 1));
+        }
+        assertEquals(0, bigArrays.reallocations());
+        assertEquals(0, bigArrays.reallocatedBytes());
+        assertThat(bigArrays.recycledGrowths(), greaterThanOrEqualTo(1L));
+        bytes.close();
+    }
+
     public void testByteArrayFill() {
         final int len = randomIntBetween(1, 100000);
         final int fromIndex = randomIntBetween(0, len - 1);
@@ -34,6 +34,7 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.common.CheckedRunnable;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Randomness;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
@@ -60,6 +61,7 @@ import org.junit.After;
 import org.junit.Before;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -70,12 +72,16 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -324,13 +330,12 @@ public class PublishClusterStateActionTests extends ESTestCase {
         assertSameStateFromDiff(nodeC.clusterState, clusterState);
         assertThat(nodeC.clusterState.blocks().global().size(), equalTo(0));
 
-        // cluster state update - skipping one version change - should request full cluster state
+        // cluster state update - skipping one version change - should send a diff from the state the nodes acknowledged
         previousClusterState = ClusterState.builder(clusterState).incrementVersion().build();
         clusterState = ClusterState.builder(clusterState).incrementVersion().build();
         publishStateAndWait(nodeA.action, clusterState, previousClusterState);
-        assertSameStateFromFull(nodeB.clusterState, clusterState);
-        assertSameStateFromFull(nodeC.clusterState, clusterState);
-        assertFalse(nodeC.clusterState.wasReadFromDiff());
+        assertSameStateFromDiff(nodeB.clusterState, clusterState);
+        assertSameStateFromDiff(nodeC.clusterState, clusterState);
 
         // node A steps down from being master
         nodeA.resetMasterId();
@@ -747,9 +752,10 @@ public class PublishClusterStateActionTests extends ESTestCase {
         clusterState = ClusterState.builder(previousClusterState).incrementVersion().build();
         publishStateAndWait(nodeA.action, clusterState, previousClusterState);
 
-        // Sent, unsuccessfully, as a diff and then retried as a full update
-        assertPublishClusterStateStats("nodeA: after unsuccessful diff update", nodeA, 0, 0, 0);
-        assertPublishClusterStateStats("nodeB: after unsuccessful diff update", nodeB, 2, 1, 1);
+        // Sent, successfully, as a diff from the cluster state that nodeB acknowledged
+        assertPublishClusterStateStats("nodeA: after diff update from acknowledged state", nodeA, 0, 0, 0);
+        assertPublishClusterStateStats("nodeB: after diff update from acknowledged state", nodeB, 1, 0, 2);
+        assertSentClusterStateStats("nodeA: after diff update from acknowledged state", nodeA, 1, 2, 1);
 
         // node A steps down from being master
         nodeA.resetMasterId();
@@ -768,7 +774,155 @@ public class PublishClusterStateActionTests extends ESTestCase {
 
         // Sent, unsuccessfully, as a diff, and then retried as a full update
         assertPublishClusterStateStats("nodeA: B became master", nodeA, 1, 1, 0);
-        assertPublishClusterStateStats("nodeB: B became master", nodeB, 2, 1, 1);
+        assertPublishClusterStateStats("nodeB: B became master", nodeB, 1, 0, 2);
+        assertSentClusterStateStats("nodeB: B became master", nodeB, 1, 1, 0);
+    }
+
+    private void assertSentClusterStateStats(String description, MockNode node, long expectedFull, long expectedDiffs,
+                                             long expectedHistoryDiffs) {
+        PublishClusterStateStats stats = node.action.stats();
+        assertThat(description + ": full cluster states sent", stats.getFullClusterStateSentCount(), equalTo(expectedFull));
+        assertThat(description + ": cluster state diffs sent", stats.getClusterStateDiffSentCount(), equalTo(expectedDiffs));
+        assertThat(description + ": cluster state diffs sent from history", stats.getHistoryClusterStateDiffSentCount(),
+            equalTo(expectedHistoryDiffs));
+        if (expectedFull + expectedDiffs > 0) {
+            assertThat(description + ": cluster state bytes sent", stats.getClusterStateSentBytes(), greaterThan(0L));
+        }
+    }
+
+    public void testPublishDiffToRejoiningNode() throws Exception {
+        final boolean keepHistory = randomBoolean();
+        final Settings settings = Settings.builder()
+            .put(DiscoverySettings.PUBLISH_DIFF_HISTORY_SIZE_SETTING.getKey(), keepHistory ? randomIntBetween(3, 10) : 0).build();
+        MockNode nodeA = createMockNode("nodeA", settings, null).setAsMaster();
+        MockNode nodeB = createMockNode("nodeB");
+        MockNode nodeC = createMockNode("nodeC");
+
+        // cluster state update - add nodeB and nodeC
+        ClusterState previousClusterState = nodeA.clusterState;
+        final DiscoveryNodes discoveryNodes = DiscoveryNodes.builder(previousClusterState.nodes())
+            .add(nodeB.discoveryNode).add(nodeC.discoveryNode).build();
+        ClusterState clusterState = ClusterState.builder(previousClusterState).nodes(discoveryNodes).incrementVersion().build();
+        publishStateAndWait(nodeA.action, clusterState, previousClusterState);
+        assertSameStateFromFull(nodeB.clusterState, clusterState);
+        assertSameStateFromFull(nodeC.clusterState, clusterState);
+
+        // nodeC leaves the cluster and misses two cluster state updates
+        previousClusterState = clusterState;
+        clusterState = ClusterState.builder(clusterState)
+            .nodes(DiscoveryNodes.builder(discoveryNodes).remove(nodeC.discoveryNode)).incrementVersion().build();
+        publishStateAndWait(nodeA.action, clusterState, previousClusterState);
+        previousClusterState = clusterState;
+        clusterState = ClusterState.builder(clusterState).blocks(ClusterBlocks.builder()
+            .addGlobalBlock(MetaData.CLUSTER_READ_ONLY_BLOCK)).incrementVersion().build();
+        publishStateAndWait(nodeA.action, clusterState, previousClusterState);
+        assertSameStateFromDiff(nodeB.clusterState, clusterState);
+
+        // nodeC rejoins the cluster, and gets a diff from the last cluster state it acknowledged if the master still has it
+        previousClusterState = clusterState;
+        clusterState = ClusterState.builder(clusterState).nodes(discoveryNodes).incrementVersion().build();
+        publishStateAndWait(nodeA.action, clusterState, previousClusterState);
+        assertSameStateFromDiff(nodeB.clusterState, clusterState);
+        assertThat(nodeC.clusterState.blocks().global().size(), equalTo(1));
+        if (keepHistory) {
+            assertSameStateFromDiff(nodeC.clusterState, clusterState);
+            assertSentClusterStateStats("nodeA: nodeC rejoined", nodeA, 2, 4, 1);
+        } else {
+            assertSameStateFromFull(nodeC.clusterState, clusterState);
+            assertSentClusterStateStats("nodeA: nodeC rejoined", nodeA, 3, 3, 0);
+        }
+    }
+
+    public void testFullClusterStatesAreThrottled() throws Exception {
+        final int maxConcurrentFullStates = randomIntBetween(1, 3);
+        final Settings settings = Settings.builder()
+            .put(DiscoverySettings.PUBLISH_MAX_CONCURRENT_FULL_STATES_SETTING.getKey(), maxConcurrentFullStates).build();
+        MockNode master = createMockNode("master", settings, null).setAsMaster();
+        DiscoveryNodes.Builder discoveryNodesBuilder = DiscoveryNodes.builder(master.nodes());
+        final int numberOfNodes = randomIntBetween(1, 10);
+        // the nodes hold on to the full cluster states for a while before responding, so that unthrottled sends would overlap
+        final AtomicInteger fullStatesInFlight = new AtomicInteger();
+        final AtomicInteger maxFullStatesInFlight = new AtomicInteger();
+        final TimeValue responseDelay = TimeValue.timeValueMillis(randomIntBetween(5, 20));
+        for (int i = 0; i < numberOfNodes; i++) {
+            final Settings nodeSettings = randomBoolean() ? Settings.EMPTY
+                : Settings.builder().put(Node.NODE_MASTER_SETTING.getKey(), false).build();
+            final MockNode node = createMockNode("node" + i, nodeSettings, null);
+            node.action.incomingClusterStateHandler = handle -> {
+                maxFullStatesInFlight.accumulateAndGet(fullStatesInFlight.incrementAndGet(), Math::max);
+                threadPool.schedule(() -> {
+                    // counted down before the response is sent, so before the master can send the next full cluster state
+                    fullStatesInFlight.decrementAndGet();
+                    try {
+                        handle.run();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, responseDelay, ThreadPool.Names.GENERIC);
+            };
+            discoveryNodesBuilder.add(node.discoveryNode);
+        }
+
+        ClusterState previousClusterState = master.clusterState;
+        ClusterState clusterState = ClusterState.builder(previousClusterState).nodes(discoveryNodesBuilder).incrementVersion().build();
+        publishStateAndWait(master.action, clusterState, previousClusterState);
+        for (MockNode node : nodes.values()) {
+            if (node != master) {
+                assertSameStateFromFull(node.clusterState, clusterState);
+            }
+        }
+
+        final PublishClusterStateStats stats = master.action.stats();
+        assertThat(stats.getFullClusterStateSentCount(), equalTo((long) numberOfNodes));
+        assertThat(stats.getDelayedFullClusterStateSentCount(),
+            lessThanOrEqualTo((long) Math.max(0, numberOfNodes - maxConcurrentFullStates)));
+        assertThat(maxFullStatesInFlight.get(), greaterThan(0));
+        assertThat(maxFullStatesInFlight.get(), lessThanOrEqualTo(maxConcurrentFullStates));
+    }
+
+    public void testDelayedFullClusterStatesAreDroppedWhenPublishingTimesOut() throws Exception {
+        final Settings settings = Settings.builder()
+            .put(DiscoverySettings.PUBLISH_MAX_CONCURRENT_FULL_STATES_SETTING.getKey(), 1)
+            .put(DiscoverySettings.PUBLISH_TIMEOUT_SETTING.getKey(), "100ms").build();
+        MockNode master = createMockNode("master", settings, null).setAsMaster();
+        // a master node is sent the full cluster state first, and never responds to it
+        MockNode unresponsiveNode = createMockNode("unresponsive");
+        unresponsiveNode.action.timeoutOnSend.set(true);
+        DiscoveryNodes.Builder discoveryNodesBuilder = DiscoveryNodes.builder(master.nodes()).add(unresponsiveNode.discoveryNode);
+        final List<MockNode> dataNodes = new ArrayList<>();
+        final int numberOfDataNodes = randomIntBetween(1, 5);
+        for (int i = 0; i < numberOfDataNodes; i++) {
+            final MockNode node = createMockNode("data_" + i, Settings.builder().put(Node.NODE_MASTER_SETTING.getKey(), false).build(),
+                null);
+            dataNodes.add(node);
+            discoveryNodesBuilder.add(node.discoveryNode);
+        }
+
+        ClusterState previousClusterState = master.clusterState;
+        ClusterState clusterState = ClusterState.builder(previousClusterState).nodes(discoveryNodesBuilder).incrementVersion().build();
+        // publishing returns once it timed out waiting for the unresponsive node, which fails the sends to the data nodes
+        final List<Tuple<DiscoveryNode, Throwable>> errors =
+            publishState(master.action, clusterState, previousClusterState, 0).awaitErrors(1, TimeUnit.SECONDS);
+        assertThat(errors.size(), equalTo(numberOfDataNodes));
+        for (Tuple<DiscoveryNode, Throwable> error : errors) {
+            assertFalse(error.v1().isMasterNode());
+            assertThat(error.v2().getMessage(), containsString("completed before the full cluster state could be sent"));
+        }
+        for (MockNode node : dataNodes) {
+            assertThat(node.clusterState.stateUUID(), not(equalTo(clusterState.stateUUID())));
+        }
+        final PublishClusterStateStats stats = master.action.stats();
+        assertThat(stats.getFullClusterStateSentCount(), equalTo(1L));
+        assertThat(stats.getDelayedFullClusterStateSentCount(), equalTo((long) numberOfDataNodes));
+
+        // once the unresponsive node left, the data nodes are sent the next cluster state
+        previousClusterState = clusterState;
+        clusterState = ClusterState.builder(previousClusterState).nodes(DiscoveryNodes.builder(previousClusterState.nodes())
+            .remove(unresponsiveNode.discoveryNode.getId())).incrementVersion().build();
+        publishStateAndWait(master.action, clusterState, previousClusterState);
+        for (MockNode node : dataNodes) {
+            assertSameStateFromFull(node.clusterState, clusterState);
+        }
     }
 
     private MetaData buildMetaDataForVersion(MetaData metaData, long version) {
@@ -869,6 +1023,8 @@ public class PublishClusterStateActionTests extends ESTestCase {
         AtomicBoolean errorOnSend = new AtomicBoolean();
         AtomicBoolean timeoutOnCommit = new AtomicBoolean();
         AtomicBoolean errorOnCommit = new AtomicBoolean();
+        // when set, handles the incoming cluster states that the node would otherwise handle right away
+        volatile Consumer<CheckedRunnable<IOException>> incomingClusterStateHandler;
 
         public MockPublishAction(TransportService transportService, NamedWriteableRegistry namedWriteableRegistry,
                                  IncomingClusterStateListener listener, DiscoverySettings discoverySettings) {
@@ -883,6 +1039,11 @@ public class PublishClusterStateActionTests extends ESTestCase {
             if (timeoutOnSend.get()) {
                 return;
             }
+            final Consumer<CheckedRunnable<IOException>> handler = incomingClusterStateHandler;
+            if (handler != null) {
+                handler.accept(() -> super.handleIncomingClusterStateRequest(request, channel));
+                return;
+            }
             super.handleIncomingClusterStateRequest(request, channel);
         }
 
@@ -0,0 +1,74 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.discovery.zen;
+
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.TransportCapabilities;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+public class PublishClusterStateStatsTests extends ESTestCase {
+
+    public void testSerialize() throws IOException {
+        PublishClusterStateStats stats = randomStats();
+        PublishClusterStateStats read = copy(stats, TransportCapabilities.CURRENT);
+        assertEquals(stats.getFullClusterStateReceivedCount(), read.getFullClusterStateReceivedCount());
+        assertEquals(stats.getIncompatibleClusterStateDiffReceivedCount(), read.getIncompatibleClusterStateDiffReceivedCount());
+        assertEquals(stats.getCompatibleClusterStateDiffReceivedCount(), read.getCompatibleClusterStateDiffReceivedCount());
+        assertEquals(stats.getFullClusterStateSentCount(), read.getFullClusterStateSentCount());
+        assertEquals(stats.getClusterStateDiffSentCount(), read.getClusterStateDiffSentCount());
+        assertEquals(stats.getHistoryClusterStateDiffSentCount(), read.getHistoryClusterStateDiffSentCount());
+        assertEquals(stats.getDelayedFullClusterStateSentCount(), read.getDelayedFullClusterStateSentCount());
+        assertEquals(stats.getClusterStateSentBytes(), read.getClusterStateSentBytes());
+    }
+
+    public void testSentStatsRequireCapability() throws IOException {
+        PublishClusterStateStats stats = randomStats();
+        PublishClusterStateStats read = copy(stats, Collections.emptySet());
+        assertEquals(stats.getFullClusterStateReceivedCount(), read.getFullClusterStateReceivedCount());
+        assertEquals(stats.getIncompatibleClusterStateDiffReceivedCount(), read.getIncompatibleClusterStateDiffReceivedCount());
+        assertEquals(stats.getCompatibleClusterStateDiffReceivedCount(), read.getCompatibleClusterStateDiffReceivedCount());
+        assertEquals(0, read.getFullClusterStateSentCount());
+        assertEquals(0, read.getClusterStateDiffSentCount());
+        assertEquals(0, read.getHistoryClusterStateDiffSentCount());
+        assertEquals(0, read.getDelayedFullClusterStateSentCount());
+        assertEquals(0, read.getClusterStateSentBytes());
+    }
+
+    private static PublishClusterStateStats randomStats() {
+        return new PublishClusterStateStats(randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(),
+            randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
+    }
+
+    private static PublishClusterStateStats copy(PublishClusterStateStats stats, Set<String> features) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.setFeatures(features);
+        stats.writeTo(out);
+        StreamInput input = out.bytes().streamInput();
+        input.setFeatures(features);
+        PublishClusterStateStats read = new PublishClusterStateStats(input);
+        assertEquals(-1, input.read());
+        return read;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.cache.sketch;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.LogByteSizeMergePolicy;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Accountable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.IndexSettingsModule;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class SegmentSketchCacheTests extends ESTestCase {
+
+    private static final class Sketch implements Accountable {
+
+        private final int maxDoc;
+
+        Sketch(int maxDoc) {
+            this.maxDoc = maxDoc;
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return maxDoc;
+        }
+    }
+
+    private static void addSegment(IndexWriter writer, int numDocs) throws IOException {
+        for (int i = 0; i < numDocs; i++) {
+            Document document = new Document();
+            document.add(new StringField("field", "value", Field.Store.NO));
+            writer.addDocument(document);
+        }
+        writer.commit();
+    }
+
+    public void testDisabledByDefault() {
+        SegmentSketchCache cache = new SegmentSketchCache(IndexSettingsModule.newIndexSettings("test", Settings.EMPTY),
+            new NoneCircuitBreakerService());
+        assertFalse(cache.isEnabled());
+    }
+
+    public void testCachesPerSegmentAndKey() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SETTING.getKey(), true)
+            .build());
+        SegmentSketchCache cache = new SegmentSketchCache(indexSettings, new NoneCircuitBreakerService());
+        assertTrue(cache.isEnabled());
+        AtomicInteger loads = new AtomicInteger();
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(new LogByteSizeMergePolicy()))) {
+            addSegment(writer, 3);
+            addSegment(writer, 5);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                assertThat(reader.leaves().size(), equalTo(2));
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    Sketch sketch = cache.getOrCompute(leaf, "key", ctx -> {
+                        loads.incrementAndGet();
+                        return new Sketch(ctx.reader().maxDoc());
+                    });
+                    assertThat(sketch.maxDoc, equalTo(leaf.reader().maxDoc()));
+                    Sketch cached = cache.getOrCompute(leaf, "key", ctx -> {
+                        throw new AssertionError("should be cached");
+                    });
+                    assertThat(cached, sameInstance(sketch));
+                    cache.getOrCompute(leaf, "other_key", ctx -> {
+                        loads.incrementAndGet();
+                        return new Sketch(0);
+                    });
+                }
+                assertThat(loads.get(), equalTo(4));
+                assertThat(cache.ramBytesUsed(), equalTo(8L));
+            }
+
+            writer.forceMerge(1);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                // the merged segment isn't cached yet
+                Sketch sketch = cache.getOrCompute(reader.leaves().get(0), "key", ctx -> {
+                    loads.incrementAndGet();
+                    return new Sketch(ctx.reader().maxDoc());
+                });
+                assertThat(sketch.maxDoc, equalTo(8));
+                assertThat(loads.get(), equalTo(5));
+            }
+        }
+        // the cores of all segments are closed
+        assertThat(cache.ramBytesUsed(), equalTo(0L));
+    }
+
+    public void testClear() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SETTING.getKey(), true)
+            .build());
+        SegmentSketchCache cache = new SegmentSketchCache(indexSettings, new NoneCircuitBreakerService());
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig())) {
+            addSegment(writer, 2);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                cache.getOrCompute(reader.leaves().get(0), "key", ctx -> new Sketch(ctx.reader().maxDoc()));
+                assertThat(cache.ramBytesUsed(), equalTo(2L));
+                cache.clear("test");
+                assertThat(cache.ramBytesUsed(), equalTo(0L));
+            }
+        }
+    }
+
+    public void testEvictsLeastRecentlyUsedSketchesOnceFull() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SETTING.getKey(), true)
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SIZE_SETTING.getKey(), "6b")
+            .build());
+        SegmentSketchCache cache = new SegmentSketchCache(indexSettings, new NoneCircuitBreakerService());
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            addSegment(writer, 3);
+            addSegment(writer, 5);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                LeafReaderContext first = reader.leaves().get(0);
+                LeafReaderContext second = reader.leaves().get(1);
+                cache.getOrCompute(first, "key", ctx -> new Sketch(ctx.reader().maxDoc()));
+                assertThat(cache.ramBytesUsed(), equalTo(3L));
+                cache.getOrCompute(second, "key", ctx -> new Sketch(ctx.reader().maxDoc()));
+                // both sketches don't fit, so the sketch of the first segment is evicted
+                assertThat(cache.ramBytesUsed(), equalTo(5L));
+                AtomicInteger loads = new AtomicInteger();
+                cache.getOrCompute(first, "key", ctx -> {
+                    loads.incrementAndGet();
+                    return new Sketch(ctx.reader().maxDoc());
+                });
+                assertThat(loads.get(), equalTo(1));
+                assertThat(cache.ramBytesUsed(), equalTo(3L));
+            }
+        }
+    }
+
+    public void testChargesBreakerAndReportsShardMemory() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SETTING.getKey(), true)
+            .build());
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.FIELDDATA);
+        SegmentSketchCache cache = new SegmentSketchCache(indexSettings, breakerService);
+        ShardId shardId = new ShardId(indexSettings.getIndex(), 0);
+        try (Directory dir = newDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            addSegment(writer, 3);
+            addSegment(writer, 5);
+            try (DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), shardId)) {
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    cache.getOrCompute(leaf, "key", ctx -> new Sketch(ctx.reader().maxDoc()));
+                }
+                assertThat(breaker.getUsed(), equalTo(8L));
+                assertThat(cache.ramBytesUsed(shardId), equalTo(8L));
+                assertThat(cache.ramBytesUsed(new ShardId(indexSettings.getIndex(), 1)), equalTo(0L));
+
+                cache.clear("test");
+                assertThat(breaker.getUsed(), equalTo(0L));
+                assertThat(cache.ramBytesUsed(shardId), equalTo(0L));
+            }
+        }
+    }
+
+    public void testClearShard() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SETTING.getKey(), true)
+            .build());
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        SegmentSketchCache cache = new SegmentSketchCache(indexSettings, breakerService);
+        ShardId shardId = new ShardId(indexSettings.getIndex(), 0);
+        ShardId otherShardId = new ShardId(indexSettings.getIndex(), 1);
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig());
+             Directory otherDir = newDirectory(); IndexWriter otherWriter = new IndexWriter(otherDir, new IndexWriterConfig())) {
+            addSegment(writer, 3);
+            addSegment(otherWriter, 5);
+            try (DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), shardId);
+                 DirectoryReader otherReader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(otherWriter), otherShardId)) {
+                cache.getOrCompute(reader.leaves().get(0), "key", ctx -> new Sketch(ctx.reader().maxDoc()));
+                cache.getOrCompute(otherReader.leaves().get(0), "key", ctx -> new Sketch(ctx.reader().maxDoc()));
+                assertThat(cache.ramBytesUsed(), equalTo(8L));
+
+                // searches may still hold on to the readers of a closed shard
+                cache.clearShard(shardId);
+                assertThat(cache.ramBytesUsed(), equalTo(5L));
+                assertThat(cache.ramBytesUsed(shardId), equalTo(0L));
+                assertThat(cache.ramBytesUsed(otherShardId), equalTo(5L));
+                assertThat(breakerService.getBreaker(CircuitBreaker.FIELDDATA).getUsed(), equalTo(5L));
+            }
+        }
+        assertThat(breakerService.getBreaker(CircuitBreaker.FIELDDATA).getUsed(), equalTo(0L));
+    }
+
+    public void testSketchIsNotCachedIfTheBreakerTrips() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SETTING.getKey(), true)
+            .build());
+        Settings breakerSettings = Settings.builder()
+            .put(HierarchyCircuitBreakerService.FIELDDATA_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "4b")
+            .build();
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(breakerSettings,
+            new ClusterSettings(breakerSettings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        SegmentSketchCache cache = new SegmentSketchCache(indexSettings, breakerService);
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig())) {
+            addSegment(writer, 5);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                AtomicInteger loads = new AtomicInteger();
+                for (int i = 0; i < 2; i++) {
+                    // the sketch is still returned, so that the caller doesn't need to collect the segment
+                    Sketch sketch = cache.getOrCompute(reader.leaves().get(0), "key", ctx -> {
+                        loads.incrementAndGet();
+                        return new Sketch(ctx.reader().maxDoc());
+                    });
+                    assertThat(sketch.maxDoc, equalTo(5));
+                    assertThat(cache.ramBytesUsed(), equalTo(0L));
+                    assertThat(breakerService.getBreaker(CircuitBreaker.FIELDDATA).getUsed(), equalTo(0L));
+                }
+                assertThat(loads.get(), equalTo(2));
+            }
+        }
+    }
+}
@@ -101,6 +101,7 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.core.internal.io.IOUtils;
 import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.MergePolicyConfig;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.codec.CodecService;
 import org.elasticsearch.index.engine.Engine.Searcher;
@@ -123,6 +124,7 @@ import org.elasticsearch.index.seqno.RetentionLease;
 import org.elasticsearch.index.seqno.RetentionLeases;
 import org.elasticsearch.index.seqno.SeqNoStats;
 import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.elasticsearch.index.shard.ElasticsearchMergePolicy;
 import org.elasticsearch.index.shard.IndexSearcherWrapper;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.ShardUtils;
@@ -267,6 +269,22 @@ public class InternalEngineTests extends EngineTestCase {
         }
     }
 
+    public void testTimeSeriesMergePolicy() throws Exception {
+        Settings settings = Settings.builder()
+            .put(defaultSettings.getSettings())
+            .put(MergePolicyConfig.INDEX_MERGE_POLICY_TIME_SERIES_FIELD_SETTING.getKey(), "@timestamp")
+            .put(IndexSettings.INDEX_SOFT_DELETES_SETTING.getKey(), false).build();
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings(
+            IndexMetaData.builder(defaultSettings.getIndexMetaData()).settings(settings).build());
+        // the merge policy the index settings hand to the engine of a shard
+        try (Store store = createStore();
+             InternalEngine engine = createEngine(config(indexSettings, store, createTempDir(), indexSettings.getMergePolicy(), null))) {
+            MergePolicy mergePolicy = engine.getCurrentIndexWriterConfig().getMergePolicy();
+            assertThat(mergePolicy, instanceOf(ElasticsearchMergePolicy.class));
+            assertThat(((ElasticsearchMergePolicy) mergePolicy).getDelegate(), instanceOf(TimeSeriesMergePolicy.class));
+        }
+    }
+
     public void testSegmentsWithoutSoftDeletes() throws Exception {
         Settings settings = Settings.builder()
             .put(defaultSettings.getSettings())
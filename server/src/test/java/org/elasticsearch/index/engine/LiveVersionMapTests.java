@@ -24,7 +24,15 @@ import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.Constants;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.MockBigArrays;
+import org.elasticsearch.common.util.MockPageCacheRecycler;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.test.ESTestCase;
 
@@ -446,6 +454,110 @@ public class LiveVersionMapTests extends ESTestCase {
         }
     }
 
+    public void testPagedBasics() throws IOException {
+        BigArrays bigArrays = new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService());
+        LiveVersionMap map = new LiveVersionMap(bigArrays);
+        try (Releasable r = map.acquireLock(uid("test"))) {
+            Translog.Location tlogLoc = randomTranslogLocation();
+            map.putIndexUnderLock(uid("test"), new IndexVersionValue(tlogLoc, 1, 1, 1));
+            assertEquals(new IndexVersionValue(tlogLoc, 1, 1, 1), map.getUnderLock(uid("test")));
+            map.putIndexUnderLock(uid("test"), new IndexVersionValue(tlogLoc, 2, 2, 1));
+            assertEquals(new IndexVersionValue(tlogLoc, 2, 2, 1), map.getUnderLock(uid("test")));
+            assertEquals(1, map.getAllCurrent().size());
+            map.beforeRefresh();
+            assertThat(map.getRefreshingBytes(), greaterThan(0L));
+            assertEquals(new IndexVersionValue(tlogLoc, 2, 2, 1), map.getUnderLock(uid("test")));
+            map.afterRefresh(randomBoolean());
+            assertNull(map.getUnderLock(uid("test")));
+            assertThat(map.getRefreshingBytes(), equalTo(0L));
+
+            map.putDeleteUnderLock(uid("test"), new DeleteVersionValue(3, 3, 1, 1));
+            assertEquals(new DeleteVersionValue(3, 3, 1, 1), map.getUnderLock(uid("test")));
+            assertEquals(0, map.getAllCurrent().size());
+            map.beforeRefresh();
+            map.afterRefresh(randomBoolean());
+            assertEquals(new DeleteVersionValue(3, 3, 1, 1), map.getUnderLock(uid("test")));
+            map.pruneTombstones(2, 3);
+            assertNull(map.getUnderLock(uid("test")));
+        } finally {
+            map.clear();
+        }
+    }
+
+    public void testPagedMapIsReleasedOnClear() throws IOException {
+        HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        BigArrays bigArrays = new BigArrays(null, breakerService, CircuitBreaker.REQUEST).withCircuitBreaking();
+        CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        LiveVersionMap map = new LiveVersionMap(bigArrays);
+        int numUids = randomIntBetween(1, 100);
+        for (int i = 0; i < numUids; i++) {
+            BytesRef uid = uid(Integer.toString(i));
+            try (Releasable r = map.acquireLock(uid)) {
+                map.putIndexUnderLock(uid, randomIndexVersionValue());
+            }
+            if (rarely()) {
+                map.beforeRefresh();
+                map.afterRefresh(randomBoolean());
+            }
+        }
+        assertThat(breaker.getUsed(), greaterThan(0L));
+        map.clear();
+        assertThat(breaker.getUsed(), equalTo(0L));
+    }
+
+    public void testPagedMatchesConcurrent() throws IOException {
+        BigArrays bigArrays = new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService());
+        LiveVersionMap paged = new LiveVersionMap(bigArrays);
+        LiveVersionMap concurrent = new LiveVersionMap();
+        paged.enforceSafeAccess();
+        concurrent.enforceSafeAccess();
+        List<BytesRef> uids = new ArrayList<>();
+        int numUids = randomIntBetween(1, 200);
+        for (int i = 0; i < numUids; i++) {
+            uids.add(uid(TestUtil.randomSimpleString(random(), 10, 20)));
+        }
+        try {
+            int numOps = randomIntBetween(100, 5000);
+            for (int i = 0; i < numOps; i++) {
+                BytesRef uid = randomFrom(uids);
+                try (Releasable r1 = paged.acquireLock(uid); Releasable r2 = concurrent.acquireLock(uid)) {
+                    if (randomBoolean()) {
+                        IndexVersionValue value = randomIndexVersionValue();
+                        paged.putIndexUnderLock(uid, value);
+                        concurrent.putIndexUnderLock(uid, value);
+                    } else {
+                        DeleteVersionValue value = new DeleteVersionValue(randomNonNegativeLong(), randomNonNegativeLong(),
+                            randomNonNegativeLong(), randomNonNegativeLong());
+                        paged.putDeleteUnderLock(uid, value);
+                        concurrent.putDeleteUnderLock(uid, value);
+                    }
+                    assertEquals(concurrent.getUnderLock(uid), paged.getUnderLock(uid));
+                }
+                if (rarely()) {
+                    paged.beforeRefresh();
+                    concurrent.beforeRefresh();
+                    if (randomBoolean()) {
+                        paged.afterRefresh(randomBoolean());
+                        concurrent.afterRefresh(randomBoolean());
+                    }
+                } else if (rarely()) {
+                    paged.afterRefresh(randomBoolean());
+                    concurrent.afterRefresh(randomBoolean());
+                }
+            }
+            assertEquals(concurrent.getAllCurrent(), paged.getAllCurrent());
+            for (BytesRef uid : uids) {
+                try (Releasable r1 = paged.acquireLock(uid); Releasable r2 = concurrent.acquireLock(uid)) {
+                    assertEquals(concurrent.getUnderLock(uid), paged.getUnderLock(uid));
+                }
+            }
+            assertThat(paged.ramBytesUsedForRefresh(), greaterThan(0L));
+        } finally {
+            paged.clear();
+        }
+    }
+
     IndexVersionValue randomIndexVersionValue() {
         return new IndexVersionValue(randomTranslogLocation(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
     }
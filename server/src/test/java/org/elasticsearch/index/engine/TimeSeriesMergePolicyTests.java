@@ -0,0 +1,133 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class TimeSeriesMergePolicyTests extends ESTestCase {
+
+    private static final String FIELD = "@timestamp";
+    private static final long SEGMENT_SPAN = 1000;
+
+    private static void addSegment(IndexWriter writer, long segment) throws IOException {
+        int numDocs = randomIntBetween(1, 20);
+        for (int i = 0; i < numDocs; i++) {
+            Document doc = new Document();
+            doc.add(new LongPoint(FIELD, segment * SEGMENT_SPAN + randomLongBetween(0, SEGMENT_SPAN - 1)));
+            writer.addDocument(doc);
+        }
+        writer.flush();
+    }
+
+    private static IndexWriterConfig newConfig(TieredMergePolicy tieredMergePolicy) {
+        IndexWriterConfig iwc = new IndexWriterConfig();
+        iwc.setMergePolicy(new TimeSeriesMergePolicy(FIELD, tieredMergePolicy));
+        iwc.setMergeScheduler(new SerialMergeScheduler());
+        iwc.setUseCompoundFile(randomBoolean());
+        return iwc;
+    }
+
+    private static void assertSegmentsDoNotOverlap(IndexWriter writer) throws IOException {
+        try (DirectoryReader reader = DirectoryReader.open(writer)) {
+            List<long[]> bounds = new ArrayList<>();
+            for (LeafReaderContext leaf : reader.leaves()) {
+                PointValues values = leaf.reader().getPointValues(FIELD);
+                bounds.add(new long[] {
+                    LongPoint.decodeDimension(values.getMinPackedValue(), 0),
+                    LongPoint.decodeDimension(values.getMaxPackedValue(), 0)
+                });
+            }
+            bounds.sort(Comparator.comparingLong(b -> b[0]));
+            for (int i = 1; i < bounds.size(); i++) {
+                assertThat(bounds.get(i - 1)[1], lessThan(bounds.get(i)[0]));
+            }
+        }
+    }
+
+    public void testMergesOnlyAdjacentSegments() throws IOException {
+        TieredMergePolicy tieredMergePolicy = new TieredMergePolicy();
+        tieredMergePolicy.setMaxMergeAtOnce(randomIntBetween(2, 5));
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, newConfig(tieredMergePolicy))) {
+            // segments arrive out of order, like late data does
+            int numSegments = randomIntBetween(10, 40);
+            List<Long> segments = new ArrayList<>();
+            for (long i = 0; i < numSegments; i++) {
+                segments.add(i);
+            }
+            Collections.shuffle(segments, random());
+            for (long segment : segments) {
+                addSegment(writer, segment);
+            }
+            writer.maybeMerge();
+            assertSegmentsDoNotOverlap(writer);
+
+            writer.forceMerge(randomIntBetween(2, 5));
+            assertSegmentsDoNotOverlap(writer);
+        }
+    }
+
+    public void testMaxMergeSizeIsHalfOfMaxMergedSegmentSize() {
+        TieredMergePolicy tieredMergePolicy = new TieredMergePolicy();
+        double maxMergedSegmentMB = randomIntBetween(1, 10 * 1024);
+        tieredMergePolicy.setMaxMergedSegmentMB(maxMergedSegmentMB);
+        assertEquals(maxMergedSegmentMB / 2, TimeSeriesMergePolicy.maxMergeMB(tieredMergePolicy), 0.0d);
+    }
+
+    public void testReadMinTimestamp() throws IOException {
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, newConfig(new TieredMergePolicy()))) {
+            addSegment(writer, 3);
+            Document doc = new Document();
+            doc.add(new StringField("id", "1", Field.Store.NO));
+            writer.addDocument(doc);
+            writer.commit();
+
+            SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(dir);
+            assertThat(segmentInfos.size(), equalTo(2));
+            SegmentCommitInfo withTimestamps = segmentInfos.info(0);
+            long min = TimeSeriesMergePolicy.readMinTimestamp(withTimestamps, FIELD);
+            assertThat(min / SEGMENT_SPAN, equalTo(3L));
+            assertThat(TimeSeriesMergePolicy.readMinTimestamp(segmentInfos.info(1), FIELD), equalTo(Long.MIN_VALUE));
+            assertThat(TimeSeriesMergePolicy.readMinTimestamp(withTimestamps, "missing"), equalTo(Long.MIN_VALUE));
+        }
+    }
+}
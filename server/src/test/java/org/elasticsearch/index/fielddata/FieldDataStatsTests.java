@@ -23,23 +23,42 @@ import org.elasticsearch.common.FieldMemoryStatsTests;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
 
 public class FieldDataStatsTests extends ESTestCase {
 
     public void testSerialize() throws IOException {
         FieldMemoryStats map = randomBoolean() ? null : FieldMemoryStatsTests.randomFieldMemoryStats();
         FieldDataStats stats = new FieldDataStats(randomNonNegativeLong(), randomNonNegativeLong(), map == null ? null :
-            map);
+            map, randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
+        FieldDataStats read = copy(stats, TransportCapabilities.CURRENT);
+        assertEquals(stats.evictions, read.evictions);
+        assertEquals(stats.memorySize, read.memorySize);
+        assertEquals(stats.getFields(), read.getFields());
+        assertEquals(stats, read);
+    }
+
+    public void testGlobalOrdinalsStatsRequireCapability() throws IOException {
+        FieldMemoryStats map = randomBoolean() ? null : FieldMemoryStatsTests.randomFieldMemoryStats();
+        FieldDataStats stats = new FieldDataStats(randomNonNegativeLong(), randomNonNegativeLong(), map, randomNonNegativeLong(),
+            randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
+        FieldDataStats read = copy(stats, Collections.emptySet());
+        assertEquals(new FieldDataStats(stats.memorySize, stats.evictions, stats.getFields()), read);
+    }
+
+    private static FieldDataStats copy(FieldDataStats stats, Set<String> features) throws IOException {
         BytesStreamOutput out = new BytesStreamOutput();
+        out.setFeatures(features);
         stats.writeTo(out);
         FieldDataStats read = new FieldDataStats();
         StreamInput input = out.bytes().streamInput();
+        input.setFeatures(features);
         read.readFrom(input);
         assertEquals(-1, input.read());
-        assertEquals(stats.evictions, read.evictions);
-        assertEquals(stats.memorySize, read.memorySize);
-        assertEquals(stats.getFields(), read.getFields());
+        return read;
     }
 }
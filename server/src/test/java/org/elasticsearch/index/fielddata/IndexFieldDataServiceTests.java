@@ -22,6 +22,7 @@ package org.elasticsearch.index.fielddata;
 import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
@@ -30,9 +31,12 @@ import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
+import org.elasticsearch.index.fielddata.plain.AbstractAtomicOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.plain.SortedNumericDVIndexFieldData;
 import org.elasticsearch.index.fielddata.plain.SortedSetDVOrdinalsIndexFieldData;
 import org.elasticsearch.index.mapper.BooleanFieldMapper;
@@ -212,6 +216,64 @@ public class IndexFieldDataServiceTests extends ESSingleNodeTestCase {
         ifdService.clear();
     }
 
+    public void testLastGlobalOrdinalMapIsReleased() throws Exception {
+        final IndexService indexService = createIndex("test");
+        final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        final ShardId shardId = new ShardId("test", "_na_", 1);
+        final IndexFieldDataCache cache = indicesService.getIndicesFieldDataCache()
+            .buildIndexFieldDataCache(new IndexFieldDataCache.Listener() {}, indexService.index(), "s");
+        final SortedSetDVOrdinalsIndexFieldData ifd = new SortedSetDVOrdinalsIndexFieldData(indexService.getIndexSettings(), cache, "s",
+            indicesService.getCircuitBreakerService(), AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION);
+        final IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new KeywordAnalyzer()));
+        Document doc = new Document();
+        doc.add(new SortedSetDocValuesField("s", new BytesRef("thisisastring")));
+        writer.addDocument(doc);
+        DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), shardId);
+
+        GlobalOrdinalsIndexFieldData globalOrdinals = (GlobalOrdinalsIndexFieldData) ifd.loadGlobal(reader);
+        assertSame(globalOrdinals.getIncrementalOrdinalMap(), cache.lastGlobalOrdinalMap(reader));
+        // closing the shard releases the map
+        cache.clear(shardId);
+        assertNull(cache.lastGlobalOrdinalMap(reader));
+
+        // the map goes with the global ordinals when the reader is closed
+        reader.close();
+        reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), shardId);
+        globalOrdinals = (GlobalOrdinalsIndexFieldData) ifd.loadGlobal(reader);
+        assertSame(globalOrdinals.getIncrementalOrdinalMap(), cache.lastGlobalOrdinalMap(reader));
+        reader.close();
+        assertNull(cache.lastGlobalOrdinalMap(reader));
+        writer.close();
+    }
+
+    public void testDisableIncrementalGlobalOrdinals() throws Exception {
+        final IndexService indexService = createIndex("test");
+        final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        final ShardId shardId = new ShardId("test", "_na_", 1);
+        final IndexFieldDataCache cache = indicesService.getIndicesFieldDataCache()
+            .buildIndexFieldDataCache(new IndexFieldDataCache.Listener() {}, indexService.index(), "s");
+        final SortedSetDVOrdinalsIndexFieldData ifd = new SortedSetDVOrdinalsIndexFieldData(indexService.getIndexSettings(), cache, "s",
+            indicesService.getCircuitBreakerService(), AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION, false);
+        final IndexWriter writer = new IndexWriter(new RAMDirectory(), new IndexWriterConfig(new KeywordAnalyzer()));
+        final int numSegments = randomIntBetween(2, 5);
+        final DirectoryReader[] readers = new DirectoryReader[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            Document doc = new Document();
+            doc.add(new SortedSetDocValuesField("s", new BytesRef("term" + i)));
+            writer.addDocument(doc);
+            writer.commit();
+            readers[i] = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), shardId);
+            final GlobalOrdinalsIndexFieldData globalOrdinals = (GlobalOrdinalsIndexFieldData) ifd.loadGlobal(readers[i]);
+            // every refresh builds a Lucene ordinal map, so that the join queries never have to build one while searching
+            assertFalse(globalOrdinals.getIncrementalOrdinalMap().isIncremental());
+            assertSame(globalOrdinals.getIncrementalOrdinalMap().getLuceneOrdinalMap(), globalOrdinals.getOrdinalMap());
+        }
+        for (DirectoryReader reader : readers) {
+            reader.close();
+        }
+        writer.close();
+    }
+
     public void testSetCacheListenerTwice() {
         final IndexService indexService = createIndex("test");
         final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
@@ -0,0 +1,162 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.fielddata.ordinals;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class IncrementalOrdinalMapTests extends ESTestCase {
+
+    private static final String FIELD = "field";
+
+    private static void addSegment(IndexWriter writer, String id, int numTerms) throws IOException {
+        int numDocs = randomIntBetween(1, 100);
+        for (int i = 0; i < numDocs; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("segment", id, Field.Store.NO));
+            int numValues = randomIntBetween(0, 3);
+            for (int j = 0; j < numValues; j++) {
+                doc.add(new SortedSetDocValuesField(FIELD, new BytesRef(Integer.toString(randomInt(numTerms)))));
+            }
+            writer.addDocument(doc);
+        }
+        writer.flush();
+    }
+
+    private static SortedSetDocValues[] subs(DirectoryReader reader) throws IOException {
+        SortedSetDocValues[] subs = new SortedSetDocValues[reader.leaves().size()];
+        for (int i = 0; i < subs.length; i++) {
+            subs[i] = DocValues.getSortedSet(reader.leaves().get(i).reader(), FIELD);
+        }
+        return subs;
+    }
+
+    /**
+     * Checks that the given map assigns the same global ordinals as a Lucene {@link OrdinalMap} built from scratch.
+     */
+    private static void assertSameOrdinals(DirectoryReader reader, IncrementalOrdinalMap map) throws IOException {
+        OrdinalMap expected = OrdinalMap.build(null, subs(reader), PackedInts.DEFAULT);
+        assertThat(map.getValueCount(), equalTo(expected.getValueCount()));
+        SortedSetDocValues[] subs = subs(reader);
+        for (int i = 0; i < subs.length; i++) {
+            LongValues expectedGlobalOrds = expected.getGlobalOrds(i);
+            LongValues globalOrds = map.getGlobalOrds(i);
+            for (long ord = 0; ord < subs[i].getValueCount(); ord++) {
+                assertThat(globalOrds.get(ord), equalTo(expectedGlobalOrds.get(ord)));
+            }
+        }
+        SortedSetDocValues[] lookups = subs(reader);
+        for (long globalOrd = 0; globalOrd < map.getValueCount(); globalOrd++) {
+            BytesRef expectedTerm = BytesRef.deepCopyOf(subs[expected.getFirstSegmentNumber(globalOrd)]
+                .lookupOrd(expected.getFirstSegmentOrd(globalOrd)));
+            BytesRef term = lookups[map.getFirstSegmentNumber(globalOrd)].lookupOrd(map.getFirstSegmentOrd(globalOrd));
+            assertThat(term, equalTo(expectedTerm));
+        }
+    }
+
+    public void testBuildFromOlderReader() throws IOException {
+        IndexWriterConfig iwc = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, iwc)) {
+            int numSegments = randomIntBetween(2, 5);
+            for (int i = 0; i < numSegments; i++) {
+                addSegment(writer, Integer.toString(i), 10000);
+            }
+            DirectoryReader reader = DirectoryReader.open(writer);
+            IncrementalOrdinalMap map = IncrementalOrdinalMap.build(reader, subs(reader), null);
+            assertFalse(map.isIncremental());
+            assertSameOrdinals(reader, map);
+
+            int numRefreshes = randomIntBetween(1, 10);
+            for (int refresh = 0; refresh < numRefreshes; refresh++) {
+                if (randomBoolean()) {
+                    // the segment is fully deleted and dropped
+                    writer.deleteDocuments(new Term("segment", Integer.toString(randomInt(numSegments - 1))));
+                }
+                int numNewSegments = randomIntBetween(0, 3);
+                for (int i = 0; i < numNewSegments; i++) {
+                    addSegment(writer, Integer.toString(numSegments++), randomFrom(10, 10000));
+                }
+                DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer);
+                if (newReader == null) {
+                    continue;
+                }
+                reader.close();
+                reader = newReader;
+                map = IncrementalOrdinalMap.build(reader, subs(reader), map);
+                assertSameOrdinals(reader, map);
+            }
+            reader.close();
+        }
+    }
+
+    public void testNewTermsAreMergedIn() throws IOException {
+        IndexWriterConfig iwc = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, iwc)) {
+            for (int i = 0; i < 2; i++) {
+                Document doc = new Document();
+                for (int term = i; term < 1000; term += 2) {
+                    doc.add(new SortedSetDocValuesField(FIELD, new BytesRef(String.format(Locale.ROOT, "%04d", term))));
+                }
+                writer.addDocument(doc);
+                writer.flush();
+            }
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                IncrementalOrdinalMap map = IncrementalOrdinalMap.build(reader, subs(reader), null);
+                Document doc = new Document();
+                doc.add(new SortedSetDocValuesField(FIELD, new BytesRef("0500")));
+                doc.add(new SortedSetDocValuesField(FIELD, new BytesRef("0500a")));
+                doc.add(new SortedSetDocValuesField(FIELD, new BytesRef("9999")));
+                writer.addDocument(doc);
+                try (DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer)) {
+                    IncrementalOrdinalMap newMap = IncrementalOrdinalMap.build(newReader, subs(newReader), map);
+                    assertTrue(newMap.isIncremental());
+                    assertThat(newMap.getValueCount(), equalTo(1002L));
+                    LongValues newGlobalOrds = newMap.getGlobalOrds(2);
+                    assertThat(newGlobalOrds.get(0), equalTo(500L));
+                    assertThat(newGlobalOrds.get(1), equalTo(501L));
+                    assertThat(newGlobalOrds.get(2), equalTo(1001L));
+                    // the terms after the new term moved up
+                    assertThat(newMap.getGlobalOrds(1).get(250), equalTo(502L));
+                    assertSameOrdinals(newReader, newMap);
+                }
+            }
+        }
+    }
+}
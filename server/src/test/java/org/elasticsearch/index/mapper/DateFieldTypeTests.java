@@ -141,6 +141,31 @@ public class DateFieldTypeTests extends FieldTypeTestCase {
         IOUtils.close(reader, w, dir);
     }
 
+    public void testIsFieldWithinQueryAcrossSegments() throws IOException {
+        Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(null));
+        for (String date : new String[] {"2015-10-12", "2016-04-03"}) {
+            Document doc = new Document();
+            doc.add(new LongPoint("my_date", DateFieldMapper.DEFAULT_DATE_TIME_FORMATTER.parseJoda(date).getMillis()));
+            w.addDocument(doc);
+            // one segment per date
+            w.flush();
+        }
+        DirectoryReader reader = DirectoryReader.open(w);
+        assertEquals(2, reader.leaves().size());
+        DateFieldType ft = new DateFieldType();
+        ft.setName("my_date");
+        QueryRewriteContext context = new QueryRewriteContext(xContentRegistry(), writableRegistry(), null, () -> nowInMillis);
+        // falls between the values of the two segments
+        assertEquals(Relation.DISJOINT, ft.isFieldWithinQuery(reader, "2016-01-02", "2016-02-12",
+                randomBoolean(), randomBoolean(), null, null, context));
+        assertEquals(Relation.INTERSECTS, ft.isFieldWithinQuery(reader, "2015-10-09", "2016-01-02",
+                randomBoolean(), randomBoolean(), null, null, context));
+        assertEquals(Relation.WITHIN, ft.isFieldWithinQuery(reader, "2015-09-25", "2016-05-29",
+                randomBoolean(), randomBoolean(), null, null, context));
+        IOUtils.close(reader, w, dir);
+    }
+
     public void testValueFormat() {
         MappedFieldType ft = createDefaultFieldType();
         long instant = DateFieldMapper.DEFAULT_DATE_TIME_FORMATTER.parseJoda("2015-10-12T14:10:55").getMillis();
@@ -31,6 +31,7 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexOrDocValuesQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchNoDocsQuery;
@@ -81,13 +82,58 @@ public class NumberFieldTypeTests extends FieldTypeTestCase {
         assertNotEquals(fieldType, otherFieldType);
     }
 
-    public void testIsFieldWithinQuery() throws IOException {
+    public void testIsFieldWithinQueryEmptyReader() throws IOException {
         MappedFieldType ft = createDefaultFieldType();
-        // current impl ignores args and should always return INTERSECTS
-        assertEquals(Relation.INTERSECTS, ft.isFieldWithinQuery(null, randomDouble(), randomDouble(),
+        ft.setName("field");
+        ft.setIndexOptions(IndexOptions.DOCS);
+        assertEquals(Relation.DISJOINT, ft.isFieldWithinQuery(new MultiReader(), randomIntBetween(0, 10), randomIntBetween(11, 20),
                 randomBoolean(), randomBoolean(), null, null, null));
     }
 
+    public void testIsFieldWithinQuery() throws IOException {
+        MappedFieldType ft = createDefaultFieldType();
+        ft.setName("field");
+        ft.setIndexOptions(IndexOptions.DOCS);
+        try (Directory dir = newDirectory(); IndexWriter w = new IndexWriter(dir, new IndexWriterConfig(null))) {
+            // two segments with a gap between their values
+            for (int value : new int[] {10, 20}) {
+                w.addDocument(type.createFields("field", value, true, true, false));
+            }
+            w.flush();
+            for (int value : new int[] {50, 60}) {
+                w.addDocument(type.createFields("field", value, true, true, false));
+            }
+            try (DirectoryReader reader = DirectoryReader.open(w)) {
+                assertEquals(2, reader.leaves().size());
+                assertEquals(Relation.WITHIN, ft.isFieldWithinQuery(reader, 10, 60, true, true, null, null, null));
+                assertEquals(Relation.WITHIN, ft.isFieldWithinQuery(reader, null, null,
+                    randomBoolean(), randomBoolean(), null, null, null));
+                assertEquals(Relation.INTERSECTS, ft.isFieldWithinQuery(reader, 10, 60, false, true, null, null, null));
+                assertEquals(Relation.INTERSECTS, ft.isFieldWithinQuery(reader, 15, 55,
+                    randomBoolean(), randomBoolean(), null, null, null));
+                assertEquals(Relation.INTERSECTS, ft.isFieldWithinQuery(reader, 5, 30,
+                    randomBoolean(), randomBoolean(), null, null, null));
+                // between the values of the two segments
+                assertEquals(Relation.DISJOINT, ft.isFieldWithinQuery(reader, 25, 45,
+                    randomBoolean(), randomBoolean(), null, null, null));
+                assertEquals(Relation.DISJOINT, ft.isFieldWithinQuery(reader, 20, 50, false, false, null, null, null));
+                assertEquals(Relation.DISJOINT, ft.isFieldWithinQuery(reader, 61, 100,
+                    randomBoolean(), randomBoolean(), null, null, null));
+                assertEquals(Relation.DISJOINT, ft.isFieldWithinQuery(reader, 0, 10, randomBoolean(), false, null, null, null));
+
+                MappedFieldType noValues = createDefaultFieldType();
+                noValues.setName("other_field");
+                noValues.setIndexOptions(IndexOptions.DOCS);
+                assertEquals(Relation.DISJOINT, noValues.isFieldWithinQuery(reader, 0, 100, true, true, null, null, null));
+
+                MappedFieldType notIndexed = createDefaultFieldType();
+                notIndexed.setName("field");
+                notIndexed.setIndexOptions(IndexOptions.NONE);
+                assertEquals(Relation.INTERSECTS, notIndexed.isFieldWithinQuery(reader, 25, 45, true, true, null, null, null));
+            }
+        }
+    }
+
     public void testIntegerTermsQueryWithDecimalPart() {
         MappedFieldType ft = new NumberFieldMapper.NumberFieldType(NumberType.INTEGER);
         ft.setName("field");
@@ -19,12 +19,21 @@
 
 package org.elasticsearch.index.refresh;
 
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.test.AbstractStreamableTestCase;
+import org.elasticsearch.transport.TransportCapabilities;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
 
 public class RefreshStatsTests extends AbstractStreamableTestCase<RefreshStats> {
     @Override
     protected RefreshStats createTestInstance() {
-        return new RefreshStats(randomNonNegativeLong(), randomNonNegativeLong(), between(0, Integer.MAX_VALUE));
+        return new RefreshStats(randomNonNegativeLong(), randomNonNegativeLong(), between(0, Integer.MAX_VALUE),
+            randomNonNegativeLong(), randomNonNegativeLong());
     }
 
     @Override
@@ -37,7 +46,9 @@ public class RefreshStatsTests extends AbstractStreamableTestCase<RefreshStats>
         long total = instance.getTotal();
         long totalInMillis = instance.getTotalTimeInMillis();
         int listeners = instance.getListeners();
-        switch (randomInt(2)) {
+        long adaptiveIntervalInMillis = instance.getAdaptiveInterval().millis();
+        long adaptiveDeferred = instance.getAdaptiveDeferred();
+        switch (randomInt(4)) {
         case 0:
             total += between(1, 2000);
             break;
@@ -45,10 +56,46 @@ public class RefreshStatsTests extends AbstractStreamableTestCase<RefreshStats>
             totalInMillis += between(1, 2000);
             break;
         case 2:
-        default:
             listeners += between(1, 2000);
             break;
+        case 3:
+            adaptiveIntervalInMillis += between(1, 2000);
+            break;
+        case 4:
+        default:
+            adaptiveDeferred += between(1, 2000);
+            break;
+        }
+        return new RefreshStats(total, totalInMillis, listeners, adaptiveIntervalInMillis, adaptiveDeferred);
+    }
+
+    @Override
+    protected RefreshStats copyInstance(RefreshStats instance, Version version) throws IOException {
+        return copyInstance(instance, version, TransportCapabilities.CURRENT);
+    }
+
+    public void testAdaptiveStatsRequireCapability() throws IOException {
+        RefreshStats instance = createTestInstance();
+        RefreshStats copy = copyInstance(instance, Version.CURRENT, Collections.emptySet());
+        assertEquals(instance.getTotal(), copy.getTotal());
+        assertEquals(instance.getTotalTimeInMillis(), copy.getTotalTimeInMillis());
+        assertEquals(instance.getListeners(), copy.getListeners());
+        assertEquals(0, copy.getAdaptiveInterval().millis());
+        assertEquals(0, copy.getAdaptiveDeferred());
+    }
+
+    private RefreshStats copyInstance(RefreshStats instance, Version version, Set<String> features) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setVersion(version);
+            out.setFeatures(features);
+            instance.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                in.setVersion(version);
+                in.setFeatures(features);
+                RefreshStats copy = createBlankInstance();
+                copy.readFrom(in);
+                return copy;
+            }
         }
-        return new RefreshStats(total, totalInMillis, listeners);
     }
 }
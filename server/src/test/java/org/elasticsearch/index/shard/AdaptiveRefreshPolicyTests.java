@@ -0,0 +1,97 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.shard;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class AdaptiveRefreshPolicyTests extends ESTestCase {
+
+    private static final TimeValue REFRESH_INTERVAL = TimeValue.timeValueSeconds(1);
+    private static final TimeValue MIN = TimeValue.timeValueSeconds(1);
+    private static final TimeValue MAX = TimeValue.timeValueSeconds(8);
+
+    private static boolean check(AdaptiveRefreshPolicy policy, long nowInSeconds, long searchCount) {
+        return policy.shouldRefresh(TimeUnit.SECONDS.toNanos(nowInSeconds), searchCount, false, 0, 0, REFRESH_INTERVAL, MIN, MAX);
+    }
+
+    public void testWidensWithoutSearches() {
+        AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        long now = 0;
+        assertTrue(check(policy, now, 0));
+        assertThat(policy.getIntervalInMillis(), equalTo(2000L));
+        assertFalse(check(policy, ++now, 0));
+        assertTrue(check(policy, ++now, 0));
+        assertThat(policy.getIntervalInMillis(), equalTo(4000L));
+        for (int i = 0; i < 3; i++) {
+            assertFalse(check(policy, ++now, 0));
+        }
+        assertTrue(check(policy, ++now, 0));
+        assertThat(policy.getIntervalInMillis(), equalTo(8000L));
+        assertTrue(check(policy, now + 8, 0));
+        assertThat(policy.getIntervalInMillis(), equalTo(8000L));
+        assertThat(policy.getDeferred(), equalTo(4L));
+    }
+
+    public void testNarrowsWhenSearched() {
+        AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        long now = 0;
+        long searches = 0;
+        assertTrue(check(policy, now, searches));
+        while (policy.getIntervalInMillis() < MAX.millis()) {
+            now += 8;
+            assertTrue(check(policy, now, searches));
+        }
+        searches += randomIntBetween(1, 10);
+        assertFalse(check(policy, ++now, searches));
+        assertThat(policy.getIntervalInMillis(), equalTo(4000L));
+        searches += randomIntBetween(1, 10);
+        assertTrue(check(policy, ++now, searches));
+        assertThat(policy.getIntervalInMillis(), equalTo(2000L));
+        for (int i = 0; i < 5; i++) {
+            searches += randomIntBetween(1, 10);
+            assertTrue(check(policy, ++now, searches));
+            assertThat(policy.getIntervalInMillis(), equalTo(MIN.millis()));
+        }
+    }
+
+    public void testRefreshCostIsLowerBound() {
+        AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        long avgRefreshNanos = TimeUnit.MILLISECONDS.toNanos(500);
+        assertTrue(policy.shouldRefresh(0, 0, false, avgRefreshNanos, 0, REFRESH_INTERVAL, MIN, MAX));
+        // doubled from the 5 second floor after a refresh without searches, capped at the maximum
+        assertThat(policy.getIntervalInMillis(), equalTo(MAX.millis()));
+        assertTrue(policy.shouldRefresh(TimeUnit.SECONDS.toNanos(8), 1, false, avgRefreshNanos, 0, REFRESH_INTERVAL, MIN, MAX));
+        assertThat(policy.getIntervalInMillis(), equalTo(5000L));
+    }
+
+    public void testRefreshesRightAwayWhenListenersWaitOrBufferIsFull() {
+        AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+        assertTrue(check(policy, 0, 0));
+        assertFalse(check(policy, 1, 0));
+        assertTrue(policy.shouldRefresh(TimeUnit.SECONDS.toNanos(1), 0, true, 0, 0, REFRESH_INTERVAL, MIN, MAX));
+        assertTrue(policy.shouldRefresh(TimeUnit.SECONDS.toNanos(1), 0, false, 0, randomDoubleBetween(0.5, 1, true),
+            REFRESH_INTERVAL, MIN, MAX));
+    }
+}
@@ -675,7 +675,9 @@ public class IndexShardIT extends ESSingleNodeTestCase {
                 Arrays.asList(listeners),
                 () -> {},
                 RetentionLeaseSyncer.EMPTY,
-                cbs);
+                cbs,
+                null,
+                null);
     }
 
     private static ShardRouting getInitializingShardRouting(ShardRouting existingShardRouting) {
@@ -72,6 +72,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog.Location;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.IndexSettingsModule;
+import org.elasticsearch.transport.TransportCapabilities;
 import org.hamcrest.Matchers;
 import org.junit.After;
 import org.junit.Before;
@@ -325,6 +326,25 @@ public class TranslogTests extends ESTestCase {
     }
 
 
+    public void testLargeAndSmallOperationsInterleaved() throws IOException {
+        ArrayList<Translog.Operation> ops = new ArrayList<>();
+        int numOps = randomIntBetween(1, 50);
+        for (int i = 0; i < numOps; i++) {
+            // operations at least as large as the write buffer bypass it, small ones are buffered
+            final int size = randomBoolean() ? randomIntBetween(1, 128)
+                : randomIntBetween(TranslogConfig.DEFAULT_BUFFER_SIZE.bytesAsInt(), 4 * TranslogConfig.DEFAULT_BUFFER_SIZE.bytesAsInt());
+            addToTranslogAndList(translog, ops,
+                new Translog.Index("test", Integer.toString(i), i, primaryTerm.get(), randomByteArrayOfLength(size)));
+            if (rarely()) {
+                translog.sync();
+            }
+        }
+        try (Translog.Snapshot snapshot = translog.newSnapshot()) {
+            assertThat(snapshot, SnapshotMatchers.equalsTo(ops));
+            assertThat(snapshot.totalOperations(), equalTo(ops.size()));
+        }
+    }
+
     public void testSimpleOperations() throws IOException {
         ArrayList<Translog.Operation> ops = new ArrayList<>();
         try (Translog.Snapshot snapshot = translog.newSnapshot()) {
@@ -390,8 +410,10 @@ public class TranslogTests extends ESTestCase {
         TranslogStats stats = translog.stats();
         if (randomBoolean()) {
             BytesStreamOutput out = new BytesStreamOutput();
+            out.setFeatures(TransportCapabilities.CURRENT);
             stats.writeTo(out);
             StreamInput in = out.bytes().streamInput();
+            in.setFeatures(TransportCapabilities.CURRENT);
             stats = new TranslogStats();
             stats.readFrom(in);
         }
@@ -501,7 +523,8 @@ public class TranslogTests extends ESTestCase {
                 builder.endObject();
                 assertThat(Strings.toString(builder), equalTo("{\"translog\":{\"operations\":4,\"size_in_bytes\":" + expectedSizeInBytes
                     + ",\"uncommitted_operations\":4,\"uncommitted_size_in_bytes\":" + expectedSizeInBytes
-                    + ",\"earliest_last_modified_age\":" + stats.getEarliestLastModifiedAge() + "}}"));
+                    + ",\"earliest_last_modified_age\":" + stats.getEarliestLastModifiedAge()
+                    + ",\"group_commit\":{\"syncs\":0,\"operations\":0,\"total_time_in_millis\":0}}}"));
             }
         }
 
@@ -0,0 +1,218 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.recovery.RecoverySettings;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class MergeIOGovernorTests extends ESTestCase {
+
+    private static final long MB = new ByteSizeValue(1, ByteSizeUnit.MB).getBytes();
+
+    private ThreadPool threadPool;
+    private ClusterSettings clusterSettings;
+    private final AtomicBoolean recoveriesActive = new AtomicBoolean();
+
+    @Before
+    public void setUpThreadPool() {
+        threadPool = new TestThreadPool(getTestName());
+        clusterSettings = new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+    }
+
+    @After
+    public void tearDownThreadPool() {
+        terminate(threadPool);
+    }
+
+    private MergeIOGovernor newGovernor(Settings settings) {
+        Settings withInterval = Settings.builder()
+            .put(settings)
+            .put(MergeIOGovernor.REBALANCE_INTERVAL_SETTING.getKey(), "1h")
+            .build();
+        return new MergeIOGovernor(withInterval, clusterSettings, threadPool, recoveriesActive::get);
+    }
+
+    private static Settings budget(long mb) {
+        return Settings.builder().put(MergeIOGovernor.MAX_BYTES_PER_SEC_SETTING.getKey(), mb + "mb").build();
+    }
+
+    public void testUnlimitedWithoutBudget() {
+        try (MergeIOGovernor governor = newGovernor(Settings.EMPTY)) {
+            MergeIOGovernor.Participant participant = governor.newParticipant(() -> {});
+            MergeIOGovernor.GovernedMerge merge = participant.mergeStarted(randomNonNegativeLong(), randomIntBetween(1, 100));
+            assertThat(merge.getMBPerSec(), equalTo(Double.POSITIVE_INFINITY));
+            MergeIOGovernorStats stats = governor.stats();
+            assertThat(stats.getMaxBytesPerSec().getBytes(), equalTo(0L));
+            assertThat(stats.getCurrentMerges(), equalTo(1L));
+            participant.mergeFinished(merge);
+            assertThat(governor.stats().getCurrentMerges(), equalTo(0L));
+        }
+    }
+
+    public void testRebalancesOnlyWithBudget() {
+        try (MergeIOGovernor governor = newGovernor(Settings.EMPTY)) {
+            assertFalse(governor.isRebalanceScheduled());
+
+            clusterSettings.applySettings(budget(100));
+            assertTrue(governor.isRebalanceScheduled());
+
+            clusterSettings.applySettings(Settings.EMPTY);
+            assertFalse(governor.isRebalanceScheduled());
+
+            clusterSettings.applySettings(budget(50));
+            assertTrue(governor.isRebalanceScheduled());
+            governor.close();
+            assertFalse(governor.isRebalanceScheduled());
+        }
+    }
+
+    public void testSharesBudget() {
+        try (MergeIOGovernor governor = newGovernor(budget(100))) {
+            MergeIOGovernor.Participant participant = governor.newParticipant(() -> {});
+            MergeIOGovernor.GovernedMerge small = participant.mergeStarted(MB, 10);
+            assertThat(small.getMBPerSec(), closeTo(100, 0.001));
+            MergeIOGovernor.GovernedMerge large = participant.mergeStarted(1024 * MB, 10);
+            MergeIOGovernor.GovernedMerge manySegments = participant.mergeStarted(1024 * MB, 40);
+            assertThat(small.getMBPerSec() + large.getMBPerSec() + manySegments.getMBPerSec(), closeTo(100, 0.001));
+            assertThat(small.getMBPerSec(), greaterThan(large.getMBPerSec()));
+            assertThat(manySegments.getMBPerSec(), closeTo(large.getMBPerSec() * 4, 0.001));
+
+            participant.mergeFinished(manySegments);
+            participant.mergeFinished(small);
+            assertThat(large.getMBPerSec(), closeTo(100, 0.001));
+        }
+    }
+
+    public void testEveryMergeMakesProgress() {
+        try (MergeIOGovernor governor = newGovernor(budget(1))) {
+            MergeIOGovernor.Participant participant = governor.newParticipant(() -> {});
+            int numMerges = randomIntBetween(2, 10);
+            MergeIOGovernor.GovernedMerge[] merges = new MergeIOGovernor.GovernedMerge[numMerges];
+            for (int i = 0; i < numMerges; i++) {
+                merges[i] = participant.mergeStarted(randomLongBetween(0, 1024 * MB), randomIntBetween(1, 100));
+            }
+            for (MergeIOGovernor.GovernedMerge merge : merges) {
+                assertThat(merge.getMBPerSec(), closeTo(MergeIOGovernor.MIN_MERGE_BYTES_PER_SEC / (double) MB, 0.001));
+            }
+        }
+    }
+
+    public void testReservesBudgetForRecoveries() {
+        Settings settings = Settings.builder()
+            .put(budget(100))
+            .put(RecoverySettings.INDICES_RECOVERY_MAX_BYTES_PER_SEC_SETTING.getKey(), "40mb")
+            .build();
+        try (MergeIOGovernor governor = newGovernor(settings)) {
+            MergeIOGovernor.Participant participant = governor.newParticipant(() -> {});
+            MergeIOGovernor.GovernedMerge merge = participant.mergeStarted(MB, 10);
+            assertThat(merge.getMBPerSec(), closeTo(100, 0.001));
+
+            recoveriesActive.set(true);
+            governor.rebalance();
+            assertThat(merge.getMBPerSec(), closeTo(60, 0.001));
+            MergeIOGovernorStats stats = governor.stats();
+            assertThat(stats.getAvailableBytesPerSec().getBytes(), equalTo(60 * MB));
+            assertThat(stats.getRecoveryReservedBytesPerSec().getBytes(), equalTo(40 * MB));
+
+            // recoveries never take more than their maximum share, even if they are unlimited
+            clusterSettings.applySettings(Settings.builder()
+                .put(RecoverySettings.INDICES_RECOVERY_MAX_BYTES_PER_SEC_SETTING.getKey(), "0")
+                .put(MergeIOGovernor.MAX_BYTES_PER_SEC_SETTING.getKey(), "100mb")
+                .build());
+            assertThat(merge.getMBPerSec(), closeTo(100 * MergeIOGovernor.MIN_MERGE_SHARE, 0.001));
+
+            recoveriesActive.set(false);
+            governor.rebalance();
+            assertThat(merge.getMBPerSec(), closeTo(100, 0.001));
+            assertThat(governor.stats().getRecoveryReservedBytesPerSec().getBytes(), equalTo(0L));
+        }
+    }
+
+    public void testRecoveriesAreOnlyCheckedWhenRebalancing() {
+        Settings settings = Settings.builder()
+            .put(budget(100))
+            .put(RecoverySettings.INDICES_RECOVERY_MAX_BYTES_PER_SEC_SETTING.getKey(), "40mb")
+            .build();
+        AtomicInteger checks = new AtomicInteger();
+        Settings withInterval = Settings.builder()
+            .put(settings)
+            .put(MergeIOGovernor.REBALANCE_INTERVAL_SETTING.getKey(), "1h")
+            .build();
+        try (MergeIOGovernor governor = new MergeIOGovernor(withInterval, clusterSettings, threadPool, () -> {
+            checks.incrementAndGet();
+            return true;
+        })) {
+            MergeIOGovernor.Participant participant = governor.newParticipant(() -> {});
+            MergeIOGovernor.GovernedMerge merge = participant.mergeStarted(MB, 10);
+            participant.mergeFinished(participant.mergeStarted(MB, 10));
+            // merges that start and finish use what the last rebalance found
+            assertThat(checks.get(), equalTo(0));
+            assertThat(merge.getMBPerSec(), closeTo(100, 0.001));
+
+            governor.rebalance();
+            assertThat(checks.get(), equalTo(1));
+            assertThat(merge.getMBPerSec(), closeTo(60, 0.001));
+        }
+    }
+
+    public void testNotifiesParticipantsOfChanges() {
+        try (MergeIOGovernor governor = newGovernor(budget(100))) {
+            AtomicInteger firstNotifications = new AtomicInteger();
+            AtomicInteger secondNotifications = new AtomicInteger();
+            MergeIOGovernor.Participant first = governor.newParticipant(firstNotifications::incrementAndGet);
+            MergeIOGovernor.Participant second = governor.newParticipant(secondNotifications::incrementAndGet);
+            MergeIOGovernor.GovernedMerge firstMerge = first.mergeStarted(MB, 10);
+            assertThat(firstNotifications.get(), equalTo(1));
+            second.mergeStarted(MB, 10);
+            assertThat(firstNotifications.get(), equalTo(2));
+            assertThat(secondNotifications.get(), equalTo(1));
+            assertThat(firstMerge.getMBPerSec(), closeTo(50, 0.001));
+
+            // nothing changed, nobody is notified
+            governor.rebalance();
+            assertThat(firstNotifications.get(), equalTo(2));
+            assertThat(secondNotifications.get(), equalTo(1));
+
+            clusterSettings.applySettings(budget(200));
+            assertThat(firstMerge.getMBPerSec(), closeTo(100, 0.001));
+            assertThat(firstNotifications.get(), equalTo(3));
+            assertThat(secondNotifications.get(), equalTo(2));
+
+            clusterSettings.applySettings(Settings.EMPTY);
+            assertThat(firstMerge.getMBPerSec(), equalTo(Double.POSITIVE_INFINITY));
+            assertThat(governor.stats().getMaxBytesPerSec().getBytes(), equalTo(0L));
+        }
+    }
+}
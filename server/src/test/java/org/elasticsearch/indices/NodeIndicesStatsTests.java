@@ -19,10 +19,16 @@
 
 package org.elasticsearch.indices;
 
+import org.elasticsearch.action.admin.indices.stats.CommonStats;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.transport.TransportCapabilities;
 
+import java.io.IOException;
 import java.util.Collections;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.object.HasToString.hasToString;
@@ -39,4 +45,29 @@ public class NodeIndicesStatsTests extends ESTestCase {
             hasToString(containsString("level parameter must be one of [indices] or [node] or [shards] but was [" + level + "]")));
     }
 
+    public void testSerializeSearchAggsStats() throws IOException {
+        final SearchAggsStats searchAggs = new SearchAggsStats(randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
+        final NodeIndicesStats stats = new NodeIndicesStats(new CommonStats(), Collections.emptyMap(), null, searchAggs);
+        assertEquals(searchAggs, copy(stats, TransportCapabilities.CURRENT).getSearchAggs());
+    }
+
+    public void testSearchAggsStatsRequireCapability() throws IOException {
+        final SearchAggsStats searchAggs = new SearchAggsStats(randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
+        final NodeIndicesStats stats = new NodeIndicesStats(new CommonStats(), Collections.emptyMap(), null, searchAggs);
+        assertNull(copy(stats, Collections.emptySet()).getSearchAggs());
+    }
+
+    private static NodeIndicesStats copy(NodeIndicesStats stats, Set<String> features) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setFeatures(features);
+            stats.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                in.setFeatures(features);
+                final NodeIndicesStats copy = NodeIndicesStats.readIndicesStats(in);
+                assertEquals(-1, in.read());
+                return copy;
+            }
+        }
+    }
+
 }
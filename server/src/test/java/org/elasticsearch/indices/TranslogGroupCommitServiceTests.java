@@ -0,0 +1,152 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TranslogGroupCommitServiceTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+
+    @Before
+    public void setUpThreadPool() {
+        threadPool = new TestThreadPool(getTestName());
+    }
+
+    @After
+    public void tearDownThreadPool() {
+        terminate(threadPool);
+    }
+
+    private TranslogGroupCommitService newService() {
+        Settings settings = Settings.builder()
+            .put(TranslogGroupCommitService.GROUP_COMMIT_MAX_DELAY_SETTING.getKey(), randomIntBetween(0, 20) + "ms")
+            .build();
+        return new TranslogGroupCommitService(settings, threadPool);
+    }
+
+    public void testCoalescesSyncsPerParticipant() throws Exception {
+        TranslogGroupCommitService service = newService();
+        Path dataPath = createTempDir();
+        AtomicInteger syncs = new AtomicInteger();
+        AtomicLong maxSyncedLocation = new AtomicLong(-1);
+        TranslogGroupCommitService.Participant participant = service.newParticipant(dataPath, locations -> {
+            syncs.incrementAndGet();
+            long max = locations.mapToLong(location -> location.translogLocation).max().getAsLong();
+            maxSyncedLocation.accumulateAndGet(max, Math::max);
+        });
+        int numRequests = randomIntBetween(1, 100);
+        CountDownLatch latch = new CountDownLatch(numRequests);
+        List<Exception> failures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            final long location = i;
+            participant.sync(new Translog.Location(1, location, 1), e -> {
+                if (e != null) {
+                    failures.add(e);
+                }
+                assertThat(maxSyncedLocation.get(), greaterThanOrEqualTo(location));
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(failures.isEmpty());
+        assertThat(maxSyncedLocation.get(), equalTo((long) numRequests - 1));
+        assertThat(participant.getSyncOperations(), equalTo((long) numRequests));
+        assertThat(participant.getSyncCount(), equalTo((long) syncs.get()));
+        assertThat(participant.getSyncCount(), lessThanOrEqualTo((long) numRequests));
+    }
+
+    public void testFailuresAreReportedToAllListenersOfTheParticipant() throws Exception {
+        TranslogGroupCommitService service = newService();
+        Path dataPath = createTempDir();
+        IOException failure = new IOException("simulated");
+        TranslogGroupCommitService.Participant failing = service.newParticipant(dataPath, locations -> {
+            throw failure;
+        });
+        TranslogGroupCommitService.Participant healthy = service.newParticipant(dataPath, locations -> {});
+        int numRequests = randomIntBetween(1, 20);
+        CountDownLatch latch = new CountDownLatch(numRequests * 2);
+        List<Exception> failingResults = new CopyOnWriteArrayList<>();
+        AtomicReference<Exception> healthyResult = new AtomicReference<>();
+        for (int i = 0; i < numRequests; i++) {
+            failing.sync(new Translog.Location(1, i, 1), e -> {
+                failingResults.add(e);
+                latch.countDown();
+            });
+            healthy.sync(new Translog.Location(1, i, 1), e -> {
+                if (e != null) {
+                    healthyResult.set(e);
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(failingResults.size(), equalTo(numRequests));
+        for (Exception e : failingResults) {
+            assertThat(e, sameInstance(failure));
+        }
+        assertNull(healthyResult.get());
+    }
+
+    public void testListenersAreNotifiedInTheirThreadContext() throws Exception {
+        TranslogGroupCommitService service = newService();
+        TranslogGroupCommitService.Participant participant = service.newParticipant(createTempDir(), locations -> {});
+        ThreadContext threadContext = threadPool.getThreadContext();
+        int numRequests = randomIntBetween(1, 20);
+        CountDownLatch latch = new CountDownLatch(numRequests);
+        List<String> mismatches = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            final String header = "request_" + i;
+            try (ThreadContext.StoredContext ignored = threadContext.stashContext()) {
+                threadContext.putHeader("request", header);
+                participant.sync(new Translog.Location(1, i, 1), e -> {
+                    if (header.equals(threadContext.getHeader("request")) == false) {
+                        mismatches.add(header + " was notified with " + threadContext.getHeader("request"));
+                    }
+                    latch.countDown();
+                });
+            }
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertTrue(mismatches.toString(), mismatches.isEmpty());
+    }
+}
@@ -56,7 +56,9 @@ public class TermsDocCountErrorIT extends ESIntegTestCase {
 
 
     public static String randomExecutionHint() {
-        return randomBoolean() ? null : randomFrom(ExecutionMode.values()).toString();
+        // the approximate execution mode doesn't count exactly once a shard has many distinct terms
+        return randomBoolean() ? null
+            : randomValueOtherThan(ExecutionMode.APPROXIMATE, () -> randomFrom(ExecutionMode.values())).toString();
     }
 
     private static int numRoutingValues;
@@ -32,6 +32,8 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.DocValuesFieldExistsQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
@@ -1279,7 +1281,9 @@ public class CompositeAggregatorTests extends AggregatorTestCase {
                 "date",
                 asLong("2016-09-20T11:34:00"),
                 asLong("2017-10-20T06:09:24")
-            )), dataset,
+            ),
+            // cannot be used to visit the documents sorted by date, documents before the after key are skipped with a range query
+            new BooleanQuery.Builder().add(new DocValuesFieldExistsQuery("keyword"), BooleanClause.Occur.FILTER).build()), dataset,
             () ->
                 new CompositeAggregationBuilder("name",
                     Arrays.asList(
@@ -1690,7 +1694,8 @@ public class CompositeAggregatorTests extends AggregatorTestCase {
         AtomicBoolean finish = new AtomicBoolean(false);
         int size = randomIntBetween(1,  expected.size());
         while (finish.get() == false) {
-            testSearchCase(Arrays.asList(new MatchAllDocsQuery(), new DocValuesFieldExistsQuery(field)), dataset,
+            testSearchCase(Arrays.asList(new MatchAllDocsQuery(), new DocValuesFieldExistsQuery(field),
+                new BooleanQuery.Builder().add(new DocValuesFieldExistsQuery(field), BooleanClause.Occur.FILTER).build()), dataset,
                 () -> {
                     Map<String, Object> afterKey = null;
                     if (seen.size() > 0) {
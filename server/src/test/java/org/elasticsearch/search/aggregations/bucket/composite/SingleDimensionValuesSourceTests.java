@@ -19,15 +19,23 @@
 
 package org.elasticsearch.search.aggregations.bucket.composite;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BoostQuery;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.DocValuesFieldExistsQuery;
 import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.index.mapper.IpFieldMapper;
 import org.elasticsearch.index.mapper.KeywordFieldMapper;
@@ -36,6 +44,9 @@ import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.test.ESTestCase;
 
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.instanceOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -194,6 +205,85 @@ public class SingleDimensionValuesSourceTests extends ESTestCase {
         assertNull(source.createSortedDocsProducerOrNull(reader, new TermQuery(new Term("foo", "bar"))));
     }
 
+    public void testNumericAfterValueQuery() throws IOException {
+        for (NumberFieldMapper.NumberType numberType : new NumberFieldMapper.NumberType[] {
+                NumberFieldMapper.NumberType.BYTE, NumberFieldMapper.NumberType.SHORT,
+                NumberFieldMapper.NumberType.INTEGER, NumberFieldMapper.NumberType.LONG }) {
+            MappedFieldType number = new NumberFieldMapper.NumberFieldType(numberType);
+            number.setName("number");
+            LongValuesSource source = new LongValuesSource(
+                BigArrays.NON_RECYCLING_INSTANCE,
+                number,
+                context -> null,
+                value -> value,
+                DocValueFormat.RAW,
+                false,
+                null,
+                1,
+                1
+            );
+            assertNull(source.createAfterValueQueryOrNull());
+            final int after = randomIntBetween(0, 99);
+            source.setAfter((long) after);
+            Query query = source.createAfterValueQueryOrNull();
+            assertThat(numberType.typeName(), query, instanceOf(IndexOrDocValuesQuery.class));
+            Query indexQuery = ((IndexOrDocValuesQuery) query).getIndexQuery();
+            if (numberType == NumberFieldMapper.NumberType.LONG) {
+                assertEquals(LongPoint.newRangeQuery("number", after, Long.MAX_VALUE), indexQuery);
+            } else {
+                assertEquals(IntPoint.newRangeQuery("number", after, Integer.MAX_VALUE), indexQuery);
+            }
+
+            // the documents with a value before the after key are skipped
+            try (Directory directory = newDirectory()) {
+                try (RandomIndexWriter writer = new RandomIndexWriter(random(), directory)) {
+                    for (int i = 0; i < 100; i++) {
+                        Document document = new Document();
+                        for (Field field : numberType.createFields("number", i, true, true, false)) {
+                            document.add(field);
+                        }
+                        writer.addDocument(document);
+                    }
+                }
+                try (IndexReader reader = DirectoryReader.open(directory)) {
+                    assertEquals(100 - after, new IndexSearcher(reader).count(query));
+                }
+            }
+        }
+    }
+
+    public void testRangeQueryRequiresNaturalOrderAndNoMissingValue() {
+        MappedFieldType number = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.INTEGER);
+        number.setName("number");
+        LongValuesSource sourceRev = new LongValuesSource(
+            BigArrays.NON_RECYCLING_INSTANCE,
+            number,
+            context -> null,
+            value -> value,
+            DocValueFormat.RAW,
+            false,
+            null,
+            1,
+            -1
+        );
+        sourceRev.setAfter(42L);
+        assertNull(sourceRev.createAfterValueQueryOrNull());
+
+        LongValuesSource sourceWithMissing = new LongValuesSource(
+            BigArrays.NON_RECYCLING_INSTANCE,
+            number,
+            context -> null,
+            value -> value,
+            DocValueFormat.RAW,
+            false,
+            0d,
+            1,
+            1
+        );
+        sourceWithMissing.setAfter(42L);
+        assertNull(sourceWithMissing.createAfterValueQueryOrNull());
+    }
+
     public void testNumericSorted() {
         for (NumberFieldMapper.NumberType numberType : NumberFieldMapper.NumberType.values()) {
             MappedFieldType number = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
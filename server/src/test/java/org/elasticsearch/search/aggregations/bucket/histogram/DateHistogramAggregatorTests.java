@@ -24,11 +24,16 @@ import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.index.mapper.DateFieldMapper;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
@@ -38,6 +43,9 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static org.elasticsearch.search.aggregations.MultiBucketConsumerService.TooManyBucketsException;
@@ -370,6 +378,65 @@ public class DateHistogramAggregatorTests extends AggregatorTestCase {
             histogram -> {}, 5));
     }
 
+    public void testIndexSortedOnField() throws IOException {
+        final boolean reverse = randomBoolean();
+        final IndexWriterConfig config = new IndexWriterConfig();
+        config.setIndexSort(new Sort(new SortedNumericSortField(DATE_FIELD, SortField.Type.LONG, reverse)));
+        final Map<Integer, Integer> expectedCounts = new TreeMap<>();
+        final Map<Integer, Integer> expectedFilteredCounts = new TreeMap<>();
+        try (Directory directory = newDirectory()) {
+            try (IndexWriter indexWriter = new IndexWriter(directory, config)) {
+                final int numDocs = randomIntBetween(1, 500);
+                for (int i = 0; i < numDocs; i++) {
+                    final Document document = new Document();
+                    if (rarely() == false) {
+                        final int year = randomIntBetween(2000, 2009);
+                        final long instant = asLong(year + "-01-01") + randomLongBetween(0, TimeUnit.DAYS.toMillis(364));
+                        document.add(new SortedNumericDocValuesField(DATE_FIELD, instant));
+                        document.add(new LongPoint(INSTANT_FIELD, instant));
+                        expectedCounts.merge(year, 1, Integer::sum);
+                        if (year >= 2005) {
+                            expectedFilteredCounts.merge(year, 1, Integer::sum);
+                        }
+                    }
+                    indexWriter.addDocument(document);
+                    if (rarely()) {
+                        indexWriter.flush();
+                    }
+                }
+            }
+
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                final IndexSearcher indexSearcher = newSearcher(indexReader, false, true);
+                final DateFieldMapper.DateFieldType fieldType = new DateFieldMapper.Builder("_name").fieldType();
+                fieldType.setHasDocValues(true);
+                fieldType.setName(DATE_FIELD);
+                final DateHistogramAggregationBuilder aggregationBuilder = new DateHistogramAggregationBuilder("_name")
+                    .field(DATE_FIELD)
+                    .dateHistogramInterval(DateHistogramInterval.YEAR)
+                    .minDocCount(1);
+
+                // all documents are counted, and only some documents are collected
+                InternalDateHistogram histogram = search(indexSearcher, new MatchAllDocsQuery(), aggregationBuilder, fieldType);
+                assertBucketCounts(expectedCounts, histogram);
+                histogram = search(indexSearcher, LongPoint.newRangeQuery(INSTANT_FIELD, asLong("2005-01-01"), Long.MAX_VALUE),
+                    aggregationBuilder, fieldType);
+                assertBucketCounts(expectedFilteredCounts, histogram);
+            }
+        }
+    }
+
+    private static void assertBucketCounts(Map<Integer, Integer> expectedCounts, Histogram histogram) {
+        final List<? extends Histogram.Bucket> buckets = histogram.getBuckets();
+        assertEquals(expectedCounts.size(), buckets.size());
+        int i = 0;
+        for (Map.Entry<Integer, Integer> expected : expectedCounts.entrySet()) {
+            final Histogram.Bucket bucket = buckets.get(i++);
+            assertEquals(expected.getKey() + "-01-01T00:00:00.000Z", bucket.getKeyAsString());
+            assertEquals(expected.getValue().longValue(), bucket.getDocCount());
+        }
+    }
+
     private void testSearchCase(Query query, List<String> dataset,
                                 Consumer<DateHistogramAggregationBuilder> configure,
                                 Consumer<Histogram> verify) throws IOException {
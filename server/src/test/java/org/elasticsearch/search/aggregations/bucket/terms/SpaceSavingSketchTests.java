@@ -0,0 +1,95 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class SpaceSavingSketchTests extends ESTestCase {
+
+    public void testExactWhileNotFull() {
+        int capacity = randomIntBetween(1, 100);
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity, bytes -> {});
+        Map<String, Long> expected = new HashMap<>();
+        int numValues = randomIntBetween(0, 1000);
+        for (int i = 0; i < numValues; i++) {
+            String term = "term" + randomInt(capacity - 1);
+            sketch.add(new BytesRef(term));
+            expected.merge(term, 1L, Long::sum);
+        }
+        assertThat(sketch.size(), equalTo(expected.size()));
+        assertThat(sketch.totalCount(), equalTo((long) numValues));
+        for (int slot = 0; slot < sketch.size(); slot++) {
+            assertThat(sketch.count(slot), equalTo(expected.get(sketch.term(slot).utf8ToString())));
+            assertThat(sketch.error(slot), equalTo(0L));
+        }
+        if (sketch.size() < capacity) {
+            assertThat(sketch.minCount(), equalTo(0L));
+        }
+    }
+
+    public void testBounds() {
+        int capacity = randomIntBetween(1, 50);
+        AtomicLong termBytes = new AtomicLong();
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity, termBytes::addAndGet);
+        Map<String, Long> expected = new HashMap<>();
+        int numTerms = randomIntBetween(capacity + 1, capacity * 10);
+        int numValues = randomIntBetween(numTerms, 10000);
+        for (int i = 0; i < numValues; i++) {
+            // skewed, so that there are heavy hitters
+            String term = "term" + (int) (numTerms * Math.pow(random().nextDouble(), 3));
+            sketch.add(new BytesRef(term));
+            expected.merge(term, 1L, Long::sum);
+        }
+        assertThat(sketch.size(), lessThanOrEqualTo(capacity));
+        assertThat(termBytes.get(), greaterThan(0L));
+
+        long totalCount = 0;
+        Set<String> tracked = new HashSet<>();
+        for (int slot = 0; slot < sketch.size(); slot++) {
+            String term = sketch.term(slot).utf8ToString();
+            assertTrue(tracked.add(term));
+            long count = expected.get(term);
+            assertThat(sketch.count(slot), greaterThanOrEqualTo(count));
+            assertThat(sketch.count(slot) - sketch.error(slot), lessThanOrEqualTo(count));
+            assertThat(sketch.error(slot), lessThanOrEqualTo(sketch.minCount()));
+            totalCount += sketch.count(slot);
+        }
+        // every value is counted by exactly one slot, also the ones of the terms it replaced
+        assertThat(totalCount, equalTo((long) numValues));
+        assertThat(sketch.minCount(), lessThanOrEqualTo((long) numValues / sketch.size()));
+        for (Map.Entry<String, Long> entry : expected.entrySet()) {
+            if (tracked.contains(entry.getKey()) == false) {
+                assertThat(entry.getValue(), lessThanOrEqualTo(sketch.minCount()));
+            }
+        }
+    }
+}
@@ -80,13 +80,18 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.elasticsearch.index.mapper.SeqNoFieldMapper.PRIMARY_TERM_NAME;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 
 public class TermsAggregatorTests extends AggregatorTestCase {
 
@@ -198,6 +203,136 @@ public class TermsAggregatorTests extends AggregatorTestCase {
         }
     }
 
+    public void testLowCardinalityCountsBufferedDocs() throws Exception {
+        randomizeAggregatorImpl = false;
+        try (Directory directory = newDirectory()) {
+            Map<String, Integer> expected = new HashMap<>();
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                // enough documents to fill the document buffer of the low cardinality aggregator a couple of times
+                int numDocs = randomIntBetween(GlobalOrdinalsStringTermsAggregator.SegmentOrdinalsCounter.DOC_BUFFER_SIZE,
+                    GlobalOrdinalsStringTermsAggregator.SegmentOrdinalsCounter.DOC_BUFFER_SIZE * 5);
+                int cardinality = randomIntBetween(1, 20);
+                for (int i = 0; i < numDocs; i++) {
+                    Document document = new Document();
+                    if (randomBoolean()) {
+                        String value = "term" + randomInt(cardinality);
+                        document.add(new SortedDocValuesField("string", new BytesRef(value)));
+                        expected.merge(value, 1, Integer::sum);
+                    }
+                    indexWriter.addDocument(document);
+                    if (rarely()) {
+                        indexWriter.commit();
+                    }
+                }
+                try (IndexReader indexReader = maybeWrapReaderEs(indexWriter.getReader())) {
+                    IndexSearcher indexSearcher = newIndexSearcher(indexReader);
+                    TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("_name", ValueType.STRING)
+                        .executionHint("global_ordinals")
+                        .field("string")
+                        .size(cardinality + 1);
+                    MappedFieldType fieldType = new KeywordFieldMapper.KeywordFieldType();
+                    fieldType.setName("string");
+                    fieldType.setHasDocValues(true);
+
+                    TermsAggregatorFactory.COLLECT_SEGMENT_ORDS = true;
+                    TermsAggregator aggregator;
+                    try {
+                        aggregator = createAggregator(aggregationBuilder, indexSearcher, fieldType);
+                    } finally {
+                        TermsAggregatorFactory.COLLECT_SEGMENT_ORDS = null;
+                    }
+                    assertThat(aggregator, instanceOf(GlobalOrdinalsStringTermsAggregator.LowCardinality.class));
+                    aggregator.preCollection();
+                    indexSearcher.search(new MatchAllDocsQuery(), aggregator);
+                    aggregator.postCollection();
+                    Terms result = (Terms) aggregator.buildAggregation(0L);
+                    assertEquals(expected.size(), result.getBuckets().size());
+                    for (Terms.Bucket bucket : result.getBuckets()) {
+                        assertEquals((long) expected.get(bucket.getKeyAsString()), bucket.getDocCount());
+                    }
+                }
+            }
+        }
+    }
+
+    public void testApproximateExecutionHint() throws Exception {
+        try (Directory directory = newDirectory()) {
+            Map<String, Long> expected = new HashMap<>();
+            long numValues = 0;
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                int numTerms = randomIntBetween(1, 200);
+                int numDocs = randomIntBetween(1, 1000);
+                for (int i = 0; i < numDocs; i++) {
+                    Document document = new Document();
+                    // skewed, so that there are heavy hitters
+                    String value = "term" + (int) (numTerms * Math.pow(random().nextDouble(), 3));
+                    document.add(new SortedSetDocValuesField("string", new BytesRef(value)));
+                    indexWriter.addDocument(document);
+                    expected.merge(value, 1L, Long::sum);
+                    numValues++;
+                }
+                try (IndexReader indexReader = maybeWrapReaderEs(indexWriter.getReader())) {
+                    IndexSearcher indexSearcher = newIndexSearcher(indexReader);
+                    int size = randomIntBetween(1, 10);
+                    boolean showTermDocCountError = randomBoolean();
+                    TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("_name", ValueType.STRING)
+                        .executionHint("approximate")
+                        .field("string")
+                        .size(size)
+                        .shardSize(size)
+                        .showTermDocCountError(showTermDocCountError);
+                    MappedFieldType fieldType = new KeywordFieldMapper.KeywordFieldType();
+                    fieldType.setName("string");
+                    fieldType.setHasDocValues(true);
+
+                    TermsAggregator aggregator = createAggregator(aggregationBuilder, indexSearcher, fieldType);
+                    assertThat(aggregator, instanceOf(ApproximateStringTermsAggregator.class));
+                    aggregator.preCollection();
+                    indexSearcher.search(new MatchAllDocsQuery(), aggregator);
+                    aggregator.postCollection();
+                    StringTerms result = (StringTerms) aggregator.buildAggregation(0L);
+                    assertThat(result.getBuckets().size(), equalTo(Math.min(size, expected.size())));
+                    long returnedDocCount = 0;
+                    for (StringTerms.Bucket bucket : result.getBuckets()) {
+                        long count = expected.get(bucket.getKeyAsString());
+                        assertThat(bucket.getDocCount(), lessThanOrEqualTo(count));
+                        if (showTermDocCountError) {
+                            assertThat(bucket.getDocCount() + bucket.getDocCountError(), greaterThanOrEqualTo(count));
+                        } else {
+                            expectThrows(IllegalStateException.class, bucket::getDocCountError);
+                        }
+                        returnedDocCount += bucket.getDocCount();
+                    }
+                    assertThat(result.getSumOfOtherDocCounts(), equalTo(numValues - returnedDocCount));
+                    Set<String> returned = result.getBuckets().stream().map(StringTerms.Bucket::getKeyAsString).collect(Collectors.toSet());
+                    for (Map.Entry<String, Long> entry : expected.entrySet()) {
+                        if (returned.contains(entry.getKey()) == false) {
+                            assertThat(entry.getValue(), lessThanOrEqualTo(result.getDocCountError()));
+                        }
+                    }
+                    if (expected.size() <= size * ApproximateStringTermsAggregator.SKETCH_SIZE_MULTIPLIER) {
+                        // all terms fit into the sketch, so the counts are exact
+                        for (StringTerms.Bucket bucket : result.getBuckets()) {
+                            assertThat(bucket.getDocCount(), equalTo(expected.get(bucket.getKeyAsString())));
+                            if (showTermDocCountError) {
+                                assertThat(bucket.getDocCountError(), equalTo(0L));
+                            }
+                        }
+                    }
+
+                    // sub-aggregations and other orders fall back to exact counts
+                    aggregationBuilder.order(BucketOrder.key(true));
+                    aggregator = createAggregator(aggregationBuilder, indexSearcher, fieldType);
+                    assertThat(aggregator, not(instanceOf(ApproximateStringTermsAggregator.class)));
+                    aggregationBuilder.order(BucketOrder.count(false));
+                    aggregationBuilder.subAggregation(AggregationBuilders.cardinality("card").field("string"));
+                    aggregator = createAggregator(aggregationBuilder, indexSearcher, fieldType);
+                    assertThat(aggregator, not(instanceOf(ApproximateStringTermsAggregator.class)));
+                }
+            }
+        }
+    }
+
     public void testStringIncludeExclude() throws Exception {
         try (Directory directory = newDirectory()) {
             try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
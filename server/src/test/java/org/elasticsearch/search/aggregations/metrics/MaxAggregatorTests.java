@@ -250,4 +250,28 @@ public class MaxAggregatorTests extends AggregatorTestCase {
         });
         assertTrue(seen[0]);
     }
+
+    public void testReduceSlices() throws IOException {
+        try (Directory directory = newDirectory();
+             RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+            long expected = Long.MIN_VALUE;
+            int numSegments = randomIntBetween(2, 5);
+            for (int i = 0; i < numSegments; i++) {
+                for (int j = randomIntBetween(1, 20); j > 0; j--) {
+                    long value = randomIntBetween(-1000, 1000);
+                    expected = Math.max(expected, value);
+                    indexWriter.addDocument(singleton(new SortedNumericDocValuesField("number", value)));
+                }
+                indexWriter.commit();
+            }
+            try (IndexReader reader = indexWriter.getReader()) {
+                MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.INTEGER);
+                fieldType.setName("number");
+                // every segment is collected by its own aggregator and the results are reduced, like the slices of a concurrent search
+                InternalMax result = searchAndReduce(new IndexSearcher(reader), new MatchAllDocsQuery(),
+                    new MaxAggregationBuilder("_name").field("number"), fieldType);
+                assertEquals(expected, result.getValue(), 0);
+            }
+        }
+    }
 }
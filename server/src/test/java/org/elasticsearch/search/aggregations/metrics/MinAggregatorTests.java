@@ -423,4 +423,28 @@ public class MinAggregatorTests extends AggregatorTestCase {
         when(config.fieldContext()).thenReturn(new FieldContext(fieldName, null, ft));
         return config;
     }
+
+    public void testReduceSlices() throws IOException {
+        try (Directory directory = newDirectory();
+             RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+            long expected = Long.MAX_VALUE;
+            int numSegments = randomIntBetween(2, 5);
+            for (int i = 0; i < numSegments; i++) {
+                for (int j = randomIntBetween(1, 20); j > 0; j--) {
+                    long value = randomIntBetween(-1000, 1000);
+                    expected = Math.min(expected, value);
+                    indexWriter.addDocument(Collections.singleton(new SortedNumericDocValuesField("number", value)));
+                }
+                indexWriter.commit();
+            }
+            try (IndexReader reader = indexWriter.getReader()) {
+                MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.INTEGER);
+                fieldType.setName("number");
+                // every segment is collected by its own aggregator and the results are reduced, like the slices of a concurrent search
+                InternalMin result = searchAndReduce(new IndexSearcher(reader), new MatchAllDocsQuery(),
+                    new MinAggregationBuilder("_name").field("number"), fieldType);
+                assertEquals(expected, result.getValue(), 0);
+            }
+        }
+    }
 }
@@ -20,13 +20,20 @@
 package org.elasticsearch.search.aggregations.metrics;
 
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.xcontent.XContentParseException;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.search.aggregations.BaseAggregationTestCase;
 import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesMethod;
+import org.elasticsearch.search.aggregations.metrics.percentiles.ddsketch.DDSketchState;
+import org.elasticsearch.transport.TransportCapabilities;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
 
 import static org.hamcrest.Matchers.containsString;
 
@@ -52,6 +59,10 @@ public class PercentilesTests extends BaseAggregationTestCase<PercentilesAggrega
         if (randomBoolean()) {
             factory.compression(randomIntBetween(1, 50000));
         }
+        if (randomBoolean()) {
+            // the ddsketch method and its relative accuracy are only serialized with the matching capability
+            factory.method(randomFrom(PercentilesMethod.TDIGEST, PercentilesMethod.HDR));
+        }
         String field = randomNumericField();
         randomFieldOrScript(factory, field);
         if (randomBoolean()) {
@@ -72,6 +83,42 @@ public class PercentilesTests extends BaseAggregationTestCase<PercentilesAggrega
         assertEquals("[percents] must not be empty: [testAgg]", ex.getMessage());
     }
 
+    public void testSerializeDDSketch() throws IOException {
+        PercentilesAggregationBuilder builder = new PercentilesAggregationBuilder("testAgg").field(randomNumericField())
+            .method(PercentilesMethod.DDSKETCH);
+        if (randomBoolean()) {
+            builder.relativeAccuracy(randomDoubleBetween(0.0001, 0.5, true));
+        }
+        PercentilesAggregationBuilder copy = copy(builder, TransportCapabilities.CURRENT);
+        assertEquals(builder, copy);
+        assertEquals(builder.relativeAccuracy(), copy.relativeAccuracy(), 0d);
+    }
+
+    public void testDDSketchRequiresCapability() throws IOException {
+        PercentilesAggregationBuilder builder = new PercentilesAggregationBuilder("testAgg").field(randomNumericField())
+            .method(PercentilesMethod.DDSKETCH);
+        IllegalArgumentException ex = expectThrows(IllegalArgumentException.class, () -> copy(builder, Collections.emptySet()));
+        assertThat(ex.getMessage(), containsString("[ddsketch] percentiles are not supported"));
+
+        // the relative accuracy of the other methods isn't sent without the capability
+        PercentilesAggregationBuilder tdigest = new PercentilesAggregationBuilder("testAgg").field(randomNumericField())
+            .relativeAccuracy(0.05);
+        assertEquals(DDSketchState.DEFAULT_RELATIVE_ACCURACY, copy(tdigest, Collections.emptySet()).relativeAccuracy(), 0d);
+    }
+
+    private static PercentilesAggregationBuilder copy(PercentilesAggregationBuilder builder, Set<String> features) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setFeatures(features);
+            builder.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                in.setFeatures(features);
+                PercentilesAggregationBuilder copy = new PercentilesAggregationBuilder(in);
+                assertEquals(-1, in.read());
+                return copy;
+            }
+        }
+    }
+
     public void testExceptionMultipleMethods() throws IOException {
         final String illegalAgg = "{\n" +
             "       \"percentiles\": {\n" +
@@ -176,6 +176,39 @@ public class StatsAggregatorTests extends AggregatorTestCase {
         );
     }
 
+    public void testReduceSlices() throws IOException {
+        try (Directory directory = newDirectory();
+             RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+            long expectedCount = 0;
+            long expectedSum = 0;
+            long expectedMin = Long.MAX_VALUE;
+            long expectedMax = Long.MIN_VALUE;
+            int numSegments = randomIntBetween(2, 5);
+            for (int i = 0; i < numSegments; i++) {
+                for (int j = randomIntBetween(1, 20); j > 0; j--) {
+                    long value = randomIntBetween(-1000, 1000);
+                    expectedCount++;
+                    expectedSum += value;
+                    expectedMin = Math.min(expectedMin, value);
+                    expectedMax = Math.max(expectedMax, value);
+                    indexWriter.addDocument(singleton(new SortedNumericDocValuesField("field", value)));
+                }
+                indexWriter.commit();
+            }
+            try (IndexReader reader = indexWriter.getReader()) {
+                MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.INTEGER);
+                fieldType.setName("field");
+                // every segment is collected by its own aggregator and the results are reduced, like the slices of a concurrent search
+                InternalStats result = searchAndReduce(new IndexSearcher(reader), new MatchAllDocsQuery(),
+                    new StatsAggregationBuilder("_name").field("field"), fieldType);
+                assertEquals(expectedCount, result.getCount());
+                assertEquals(expectedSum, result.getSum(), 0);
+                assertEquals(expectedMin, result.getMin(), 0);
+                assertEquals(expectedMax, result.getMax(), 0);
+            }
+        }
+    }
+
     public void testCase(MappedFieldType ft,
                          CheckedConsumer<RandomIndexWriter, IOException> buildIndex,
                          Consumer<InternalStats> verify) throws IOException {
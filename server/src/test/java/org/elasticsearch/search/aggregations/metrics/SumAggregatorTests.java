@@ -195,4 +195,27 @@ public class SumAggregatorTests extends AggregatorTestCase {
         }
     }
 
+    public void testReduceSlices() throws IOException {
+        try (Directory directory = newDirectory();
+             RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+            long expected = 0;
+            int numSegments = randomIntBetween(2, 5);
+            for (int i = 0; i < numSegments; i++) {
+                for (int j = randomIntBetween(1, 20); j > 0; j--) {
+                    long value = randomIntBetween(-1000, 1000);
+                    expected += value;
+                    indexWriter.addDocument(singleton(new SortedNumericDocValuesField(FIELD_NAME, value)));
+                }
+                indexWriter.commit();
+            }
+            try (IndexReader reader = indexWriter.getReader()) {
+                MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.INTEGER);
+                fieldType.setName(FIELD_NAME);
+                // every segment is collected by its own aggregator and the results are reduced, like the slices of a concurrent search
+                Sum result = searchAndReduce(new IndexSearcher(reader), new MatchAllDocsQuery(),
+                    new SumAggregationBuilder("_name").field(FIELD_NAME), fieldType);
+                assertEquals(expected, result.getValue(), 0);
+            }
+        }
+    }
 }
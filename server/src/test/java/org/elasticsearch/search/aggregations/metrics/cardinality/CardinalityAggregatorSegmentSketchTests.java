@@ -0,0 +1,128 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.cardinality;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.cache.sketch.SegmentSketchCache;
+import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData.NumericType;
+import org.elasticsearch.index.fielddata.plain.AbstractAtomicOrdinalsFieldData;
+import org.elasticsearch.index.fielddata.plain.SortedNumericDVIndexFieldData;
+import org.elasticsearch.index.fielddata.plain.SortedSetDVOrdinalsIndexFieldData;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.test.IndexSettingsModule;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class CardinalityAggregatorSegmentSketchTests extends AggregatorTestCase {
+
+    public void testMergesCachedSketchesOfSegmentsWithoutDeletions() throws IOException {
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SETTING.getKey(), true)
+            .build());
+        final SegmentSketchCache cache = new SegmentSketchCache(indexSettings, new NoneCircuitBreakerService());
+        final boolean keyword = randomBoolean();
+        final int precision = randomIntBetween(HyperLogLogPlusPlus.MIN_PRECISION, HyperLogLogPlusPlus.DEFAULT_PRECISION);
+        try (Directory directory = newDirectory()) {
+            final int numSegments = randomIntBetween(2, 6);
+            final int segmentWithDeletions = randomIntBetween(-1, numSegments - 1);
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+                int id = 0;
+                for (int i = 0; i < numSegments; i++) {
+                    final int numDocs = randomIntBetween(1, 200);
+                    for (int j = 0; j < numDocs; j++) {
+                        final Document document = new Document();
+                        document.add(new StringField("id", Integer.toString(id++), Field.Store.NO));
+                        final long value = randomIntBetween(0, 500);
+                        if (keyword) {
+                            document.add(new SortedSetDocValuesField("field", new BytesRef(Long.toString(value))));
+                        } else {
+                            document.add(new SortedNumericDocValuesField("field", value));
+                        }
+                        writer.addDocument(document);
+                    }
+                    if (i == segmentWithDeletions) {
+                        writer.deleteDocuments(new Term("id", Integer.toString(id - 1)));
+                    }
+                    writer.commit();
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                final IndexSearcher searcher = new IndexSearcher(reader);
+                final ValuesSource valuesSource = keyword
+                    ? new ValuesSource.Bytes.WithOrdinals.FieldData(new SortedSetDVOrdinalsIndexFieldData(indexSettings,
+                        new IndexFieldDataCache.None(), "field", new NoneCircuitBreakerService(),
+                        AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION))
+                    : new ValuesSource.Numeric.FieldData(new SortedNumericDVIndexFieldData(indexSettings.getIndex(), "field",
+                        NumericType.LONG));
+
+                final InternalCardinality collected = aggregate(searcher, indexSettings, valuesSource, precision, null);
+                final InternalCardinality merged = aggregate(searcher, indexSettings, valuesSource, precision, cache);
+                // the sketches of the segments without deletions are cached, the segment with deletions is collected
+                long segmentsWithoutDeletions = 0;
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    if (leaf.reader().getLiveDocs() == null) {
+                        segmentsWithoutDeletions++;
+                    }
+                }
+                assertThat(cache.ramBytesUsed(), equalTo(segmentsWithoutDeletions * HyperLogLogPlusPlus.memoryUsage(precision)));
+                assertThat(merged.getValue(), equalTo(collected.getValue()));
+
+                // the cached sketches are merged again
+                final InternalCardinality cached = aggregate(searcher, indexSettings, valuesSource, precision, cache);
+                assertThat(cached.getValue(), equalTo(collected.getValue()));
+            }
+        }
+        assertThat(cache.ramBytesUsed(), equalTo(0L));
+    }
+
+    private InternalCardinality aggregate(IndexSearcher searcher, IndexSettings indexSettings, ValuesSource valuesSource,
+                                          int precision, SegmentSketchCache cache) throws IOException {
+        final SearchContext context = createSearchContext(searcher, indexSettings);
+        final CardinalityAggregator aggregator = new CardinalityAggregator("_name", valuesSource, precision, cache,
+            "key", context, null, Collections.emptyList(), null);
+        aggregator.preCollection();
+        searcher.search(new MatchAllDocsQuery(), aggregator);
+        aggregator.postCollection();
+        return (InternalCardinality) aggregator.buildAggregation(0L);
+    }
+}
@@ -33,6 +33,7 @@ public class PercentilesMethodTests extends ESTestCase {
     public void testValidOrdinals() {
         assertThat(PercentilesMethod.TDIGEST.ordinal(), equalTo(0));
         assertThat(PercentilesMethod.HDR.ordinal(), equalTo(1));
+        assertThat(PercentilesMethod.DDSKETCH.ordinal(), equalTo(2));
     }
 
     public void testwriteTo() throws Exception {
@@ -49,6 +50,13 @@ public class PercentilesMethodTests extends ESTestCase {
                 assertThat(in.readVInt(), equalTo(1));
             }
         }
+
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            PercentilesMethod.DDSKETCH.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                assertThat(in.readVInt(), equalTo(2));
+            }
+        }
     }
 
     public void testReadFrom() throws Exception {
@@ -64,11 +72,17 @@ public class PercentilesMethodTests extends ESTestCase {
                 assertThat(PercentilesMethod.readFromStream(in), equalTo(PercentilesMethod.HDR));
             }
         }
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.writeVInt(2);
+            try (StreamInput in = out.bytes().streamInput()) {
+                assertThat(PercentilesMethod.readFromStream(in), equalTo(PercentilesMethod.DDSKETCH));
+            }
+        }
     }
 
     public void testInvalidReadFrom() throws Exception {
         try (BytesStreamOutput out = new BytesStreamOutput()) {
-            out.writeVInt(randomIntBetween(2, Integer.MAX_VALUE));
+            out.writeVInt(randomIntBetween(3, Integer.MAX_VALUE));
             try (StreamInput in = out.bytes().streamInput()) {
                 PercentilesMethod.readFromStream(in);
                 fail("Expected IOException");
@@ -0,0 +1,298 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics.percentiles.ddsketch;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocValuesFieldExistsQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.cache.sketch.SegmentSketchCache;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData.NumericType;
+import org.elasticsearch.index.fielddata.plain.SortedNumericDVIndexFieldData;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.AggregatorBase;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesMethod;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.test.IndexSettingsModule;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.mockito.Mockito.when;
+
+public class DDSketchPercentilesAggregatorTests extends AggregatorTestCase {
+
+    private static final double[] PERCENTS = new double[] { 1, 25, 50, 75, 99 };
+
+    public void testNoDocs() throws IOException {
+        testCase(new MatchAllDocsQuery(), iw -> {
+            // Intentionally not writing any docs
+        }, ddsketch -> {
+            assertEquals(0L, ddsketch.state.size());
+            assertTrue(Double.isNaN(ddsketch.percentile(50)));
+        });
+    }
+
+    public void testNoMatchingField() throws IOException {
+        testCase(new MatchAllDocsQuery(), iw -> {
+            iw.addDocument(singleton(new SortedNumericDocValuesField("wrong_number", 7)));
+            iw.addDocument(singleton(new SortedNumericDocValuesField("wrong_number", 1)));
+        }, ddsketch -> {
+            assertEquals(0L, ddsketch.state.size());
+        });
+    }
+
+    public void testSomeMatchesSortedNumericDocValues() throws IOException {
+        testCase(new DocValuesFieldExistsQuery("number"), iw -> {
+            iw.addDocument(singleton(new SortedNumericDocValuesField("number", 8)));
+            iw.addDocument(singleton(new SortedNumericDocValuesField("number", 5)));
+            iw.addDocument(singleton(new SortedNumericDocValuesField("number", 3)));
+            iw.addDocument(singleton(new SortedNumericDocValuesField("number", 2)));
+            iw.addDocument(singleton(new SortedNumericDocValuesField("number", 1)));
+            iw.addDocument(singleton(new SortedNumericDocValuesField("number", 1)));
+            iw.addDocument(singleton(new SortedNumericDocValuesField("number", 0)));
+        }, ddsketch -> {
+            assertEquals(7L, ddsketch.state.size());
+            // the extremes are exact, the other percentiles are within the relative accuracy
+            assertEquals(8.0d, ddsketch.percentile(100), 0.0d);
+            assertEquals(0.0d, ddsketch.percentile(0), 0.0d);
+            assertThat(ddsketch.percentile(75), closeTo(3.0d, 3.0d * DDSketchState.DEFAULT_RELATIVE_ACCURACY));
+            assertThat(ddsketch.percentile(50), closeTo(2.0d, 2.0d * DDSketchState.DEFAULT_RELATIVE_ACCURACY));
+            assertThat(ddsketch.percentile(34), closeTo(1.0d, 1.0d * DDSketchState.DEFAULT_RELATIVE_ACCURACY));
+        });
+    }
+
+    public void testSomeMatchesNumericDocValues() throws IOException {
+        testCase(new DocValuesFieldExistsQuery("number"), iw -> {
+            iw.addDocument(singleton(new NumericDocValuesField("number", 8)));
+            iw.addDocument(singleton(new NumericDocValuesField("number", 5)));
+            iw.addDocument(singleton(new NumericDocValuesField("number", 3)));
+            iw.addDocument(singleton(new NumericDocValuesField("number", 2)));
+            iw.addDocument(singleton(new NumericDocValuesField("number", 1)));
+            iw.addDocument(singleton(new NumericDocValuesField("number", 1)));
+            iw.addDocument(singleton(new NumericDocValuesField("number", 0)));
+        }, ddsketch -> {
+            assertEquals(7L, ddsketch.state.size());
+            assertEquals(8.0d, ddsketch.percentile(100), 0.0d);
+            assertEquals("8.0", ddsketch.percentileAsString(100));
+            assertThat(ddsketch.percentile(90), closeTo(5.0d, 5.0d * DDSketchState.DEFAULT_RELATIVE_ACCURACY));
+            assertThat(ddsketch.percentile(25), closeTo(1.0d, 1.0d * DDSketchState.DEFAULT_RELATIVE_ACCURACY));
+            assertEquals(0.0d, ddsketch.percentile(1), 0.0d);
+        });
+    }
+
+    public void testQueryFiltering() throws IOException {
+        final CheckedConsumer<RandomIndexWriter, IOException> docs = iw -> {
+            iw.addDocument(asList(new LongPoint("row", 7), new SortedNumericDocValuesField("number", 8)));
+            iw.addDocument(asList(new LongPoint("row", 6), new SortedNumericDocValuesField("number", 5)));
+            iw.addDocument(asList(new LongPoint("row", 5), new SortedNumericDocValuesField("number", 3)));
+            iw.addDocument(asList(new LongPoint("row", 4), new SortedNumericDocValuesField("number", 2)));
+            iw.addDocument(asList(new LongPoint("row", 3), new SortedNumericDocValuesField("number", 1)));
+            iw.addDocument(asList(new LongPoint("row", 2), new SortedNumericDocValuesField("number", 1)));
+            iw.addDocument(asList(new LongPoint("row", 1), new SortedNumericDocValuesField("number", 0)));
+        };
+
+        testCase(LongPoint.newRangeQuery("row", 1, 4), docs, ddsketch -> {
+            assertEquals(4L, ddsketch.state.size());
+            assertEquals(2.0d, ddsketch.percentile(100), 0.0d);
+            assertThat(ddsketch.percentile(50), closeTo(1.0d, 1.0d * DDSketchState.DEFAULT_RELATIVE_ACCURACY));
+            assertEquals(0.0d, ddsketch.percentile(25), 0.0d);
+        });
+
+        testCase(LongPoint.newRangeQuery("row", 100, 110), docs, ddsketch -> {
+            assertEquals(0L, ddsketch.state.size());
+        });
+    }
+
+    public void testMergesCachedSketchesOfSegmentsWithoutDeletions() throws IOException {
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("test", Settings.builder()
+            .put(SegmentSketchCache.INDEX_CACHE_SEGMENT_SKETCHES_SETTING.getKey(), true)
+            .build());
+        final SegmentSketchCache cache = new SegmentSketchCache(indexSettings, new NoneCircuitBreakerService());
+        try (Directory directory = newDirectory()) {
+            final int numSegments = randomIntBetween(2, 6);
+            final int segmentWithDeletions = randomIntBetween(-1, numSegments - 1);
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+                int id = 0;
+                for (int i = 0; i < numSegments; i++) {
+                    final int numDocs = randomIntBetween(1, 200);
+                    for (int j = 0; j < numDocs; j++) {
+                        final Document document = new Document();
+                        document.add(new StringField("id", Integer.toString(id++), Field.Store.NO));
+                        final double value = 1 + randomDouble() * 1000;
+                        document.add(new SortedNumericDocValuesField("number", NumericUtils.doubleToSortableLong(value)));
+                        writer.addDocument(document);
+                    }
+                    if (i == segmentWithDeletions) {
+                        writer.deleteDocuments(new Term("id", Integer.toString(id - 1)));
+                    }
+                    writer.commit();
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                final IndexSearcher searcher = new IndexSearcher(reader);
+                final ValuesSource.Numeric valuesSource = doubleValuesSource(indexSettings);
+                final SearchContext context = createSearchContext(searcher, indexSettings);
+
+                final InternalDDSketchPercentiles collected = aggregate(searcher, context, valuesSource, null);
+                final InternalDDSketchPercentiles merged = aggregate(searcher, context, valuesSource, cache);
+                // merging the sketches of the segments is what collecting their values results in
+                assertThat(merged.state, equalTo(collected.state));
+
+                // the cached sketches are merged again
+                final InternalDDSketchPercentiles cached = aggregate(searcher, context, valuesSource, cache);
+                assertThat(cached.state, equalTo(collected.state));
+            }
+        }
+        assertThat(cache.ramBytesUsed(), equalTo(0L));
+    }
+
+    public void testChargesTheRequestBreaker() throws IOException {
+        final IndexSettings indexSettings = createIndexSettings();
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter writer = new RandomIndexWriter(random(), directory)) {
+                // the values span more buckets than the maximum, so the counts of the sketch grow to the maximum number of buckets
+                for (int i = 0; i < 1000; i++) {
+                    final long value = NumericUtils.doubleToSortableLong(Math.pow(2, i));
+                    writer.addDocument(singleton(new SortedNumericDocValuesField("number", value)));
+                }
+            }
+            try (IndexReader reader = DirectoryReader.open(directory)) {
+                final IndexSearcher searcher = newSearcher(reader, true, true);
+                final long countsBytes = DDSketchState.DEFAULT_MAX_BUCKETS * Long.BYTES;
+
+                final CircuitBreaker breaker = collectWithBreaker(searcher, indexSettings, 1024 * 1024, aggregator -> {
+                    try {
+                        searcher.search(new MatchAllDocsQuery(), aggregator);
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }, used -> assertThat(used, greaterThanOrEqualTo(AggregatorBase.DEFAULT_WEIGHT + countsBytes)));
+                assertThat(breaker.getUsed(), equalTo(0L));
+
+                final CircuitBreaker tripped = collectWithBreaker(searcher, indexSettings, AggregatorBase.DEFAULT_WEIGHT + countsBytes / 2,
+                    aggregator -> expectThrows(CircuitBreakingException.class, () -> searcher.search(new MatchAllDocsQuery(), aggregator)),
+                    used -> assertThat(used, greaterThanOrEqualTo((long) AggregatorBase.DEFAULT_WEIGHT)));
+                assertThat(tripped.getUsed(), equalTo(0L));
+            }
+        }
+    }
+
+    /**
+     * Collects with a request circuit breaker of the given limit, checks its usage before the aggregator is closed and returns it.
+     */
+    private CircuitBreaker collectWithBreaker(IndexSearcher searcher, IndexSettings indexSettings, long limit,
+                                              Consumer<DDSketchPercentilesAggregator> collect, Consumer<Long> verifyUsed)
+            throws IOException {
+        final HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(
+            Settings.builder().put(REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), limit, ByteSizeUnit.BYTES).build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        final SearchContext context = createSearchContext(searcher, indexSettings);
+        when(context.bigArrays()).thenReturn(new BigArrays(null, breakerService, CircuitBreaker.REQUEST).withCircuitBreaking());
+        final DDSketchPercentilesAggregator aggregator = new DDSketchPercentilesAggregator("_name", doubleValuesSource(indexSettings),
+            context, null, PERCENTS, DDSketchState.DEFAULT_RELATIVE_ACCURACY, false, DocValueFormat.RAW, null, null,
+            Collections.emptyList(), null);
+        try {
+            aggregator.preCollection();
+            collect.accept(aggregator);
+            verifyUsed.accept(breaker.getUsed());
+        } finally {
+            aggregator.close();
+        }
+        return breaker;
+    }
+
+    private ValuesSource.Numeric doubleValuesSource(IndexSettings indexSettings) {
+        return new ValuesSource.Numeric.FieldData(new SortedNumericDVIndexFieldData(indexSettings.getIndex(), "number",
+            NumericType.DOUBLE));
+    }
+
+    private InternalDDSketchPercentiles aggregate(IndexSearcher searcher, SearchContext context, ValuesSource.Numeric valuesSource,
+                                                  SegmentSketchCache cache) throws IOException {
+        final DDSketchPercentilesAggregator aggregator = new DDSketchPercentilesAggregator("_name", valuesSource, context, null,
+            PERCENTS, DDSketchState.DEFAULT_RELATIVE_ACCURACY, false, DocValueFormat.RAW, cache, "key", Collections.emptyList(),
+            null);
+        aggregator.preCollection();
+        searcher.search(new MatchAllDocsQuery(), aggregator);
+        aggregator.postCollection();
+        return (InternalDDSketchPercentiles) aggregator.buildAggregation(0L);
+    }
+
+    private void testCase(Query query, CheckedConsumer<RandomIndexWriter, IOException> buildIndex,
+                          Consumer<InternalDDSketchPercentiles> verify) throws IOException {
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                buildIndex.accept(indexWriter);
+            }
+
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+
+                PercentilesAggregationBuilder builder =
+                        new PercentilesAggregationBuilder("test").field("number").method(PercentilesMethod.DDSKETCH);
+
+                MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+                fieldType.setName("number");
+                DDSketchPercentilesAggregator aggregator = createAggregator(builder, indexSearcher, fieldType);
+                aggregator.preCollection();
+                indexSearcher.search(query, aggregator);
+                aggregator.postCollection();
+                verify.accept((InternalDDSketchPercentiles) aggregator.buildAggregation(0L));
+            }
+        }
+    }
+}
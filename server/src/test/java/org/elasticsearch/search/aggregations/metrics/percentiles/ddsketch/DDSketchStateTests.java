@@ -0,0 +1,129 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles.ddsketch;
+
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class DDSketchStateTests extends ESTestCase {
+
+    // enough buckets for the range of the random values, so that no buckets are collapsed
+    private static final int MAX_BUCKETS = 20000;
+
+    public void testRelativeError() {
+        final double relativeAccuracy = randomFrom(0.001, 0.01, 0.05);
+        final DDSketchState sketch = new DDSketchState(relativeAccuracy, MAX_BUCKETS);
+        final double[] values = randomValues();
+        for (double value : values) {
+            sketch.add(value);
+        }
+        Arrays.sort(values);
+        assertThat(sketch.size(), equalTo((long) values.length));
+        assertThat(sketch.quantile(0), equalTo(values[0]));
+        assertThat(sketch.quantile(1), equalTo(values[values.length - 1]));
+        for (double q : new double[] { 0.01, 0.25, 0.5, 0.75, 0.99, randomDouble() }) {
+            final double expected = values[(int) (q * (values.length - 1))];
+            final double actual = sketch.quantile(q);
+            assertThat("q=" + q, Math.abs(actual - expected), lessThanOrEqualTo(relativeAccuracy * Math.abs(expected) * (1 + 1e-9)));
+        }
+    }
+
+    public void testCollapseKeepsHighQuantiles() {
+        final DDSketchState sketch = new DDSketchState(0.01, 100);
+        final double[] values = new double[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1 + i * 100;
+            sketch.add(values[i]);
+        }
+        assertThat(sketch.ramBytesUsed(), lessThanOrEqualTo(2048L));
+        for (double q : new double[] { 0.9, 0.95, 0.99 }) {
+            final double expected = values[(int) (q * (values.length - 1))];
+            assertThat(Math.abs(sketch.quantile(q) - expected), lessThanOrEqualTo(0.01 * expected * (1 + 1e-9)));
+        }
+        assertThat(sketch.quantile(0), equalTo(1.0));
+    }
+
+    public void testMergeIsOrderIndependent() {
+        final double relativeAccuracy = randomFrom(0.001, 0.01, 0.05);
+        final DDSketchState all = new DDSketchState(relativeAccuracy, MAX_BUCKETS);
+        final DDSketchState first = new DDSketchState(relativeAccuracy, MAX_BUCKETS);
+        final DDSketchState second = new DDSketchState(relativeAccuracy, MAX_BUCKETS);
+        for (double value : randomValues()) {
+            all.add(value);
+            (randomBoolean() ? first : second).add(value);
+        }
+        final DDSketchState merged = new DDSketchState(relativeAccuracy, MAX_BUCKETS);
+        merged.add(second);
+        merged.add(first);
+        assertEquals(all, merged);
+        assertEquals(all.hashCode(), merged.hashCode());
+
+        final DDSketchState other = new DDSketchState(relativeAccuracy / 2, MAX_BUCKETS);
+        expectThrows(IllegalArgumentException.class, () -> merged.add(other));
+    }
+
+    public void testSerialization() throws IOException {
+        final DDSketchState sketch = new DDSketchState(randomFrom(0.001, 0.01, 0.05), randomIntBetween(1, 4096));
+        if (randomBoolean()) {
+            for (double value : randomValues()) {
+                sketch.add(value);
+            }
+        }
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            DDSketchState.write(sketch, out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                final DDSketchState read = DDSketchState.read(in);
+                assertEquals(sketch, read);
+                assertThat(read.size(), equalTo(sketch.size()));
+                assertThat(read.quantile(0.5), equalTo(sketch.quantile(0.5)));
+            }
+        }
+    }
+
+    public void testEmpty() {
+        final DDSketchState sketch = new DDSketchState(0.01, DDSketchState.DEFAULT_MAX_BUCKETS);
+        assertThat(sketch.size(), equalTo(0L));
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        expectThrows(IllegalArgumentException.class, () -> sketch.add(Double.NaN));
+        expectThrows(IllegalArgumentException.class, () -> new DDSketchState(0, 1));
+        expectThrows(IllegalArgumentException.class, () -> new DDSketchState(1, 1));
+    }
+
+    private static double[] randomValues() {
+        final double[] values = new double[randomIntBetween(1, 10000)];
+        final boolean withNegatives = randomBoolean();
+        for (int i = 0; i < values.length; i++) {
+            if (rarely()) {
+                values[i] = 0;
+            } else {
+                final double value = Math.exp(randomDoubleBetween(-10, 20, true));
+                values[i] = withNegatives && randomBoolean() ? -value : value;
+            }
+        }
+        return values;
+    }
+}
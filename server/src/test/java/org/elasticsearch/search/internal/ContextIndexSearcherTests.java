@@ -0,0 +1,259 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.internal;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.tasks.TaskCancelledException;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ContextIndexSearcherTests extends ESTestCase {
+
+    private ExecutorService executor;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        executor = EsExecutors.newFixed("search_worker", randomIntBetween(1, 4), 100, EsExecutors.daemonThreadFactory("search_worker"),
+            new ThreadContext(Settings.EMPTY));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        ThreadPool.terminate(executor, 10, TimeUnit.SECONDS);
+        super.tearDown();
+    }
+
+    public void testComputeSlices() throws IOException {
+        try (Directory dir = newDirectory()) {
+            final int numSegments = randomIntBetween(1, 20);
+            try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+                for (int i = 0; i < numSegments; i++) {
+                    final int numDocs = randomIntBetween(1, 50);
+                    for (int j = 0; j < numDocs; j++) {
+                        w.addDocument(new Document());
+                    }
+                    w.flush();
+                }
+            }
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                final List<LeafReaderContext> leaves = reader.leaves();
+                assertEquals(numSegments, leaves.size());
+
+                assertEquals(Collections.singletonList(leaves), ContextIndexSearcher.computeSlices(leaves, 1, 1));
+                assertEquals(Collections.singletonList(leaves), ContextIndexSearcher.computeSlices(leaves, numSegments,
+                    reader.maxDoc() + 1));
+                assertEquals(Collections.singletonList(Collections.emptyList()),
+                    ContextIndexSearcher.computeSlices(Collections.emptyList(), randomIntBetween(1, 8), 1));
+
+                final int maxSlices = randomIntBetween(1, numSegments + 2);
+                final int minDocsPerSlice = randomIntBetween(1, 100);
+                final List<List<LeafReaderContext>> slices = ContextIndexSearcher.computeSlices(leaves, maxSlices, minDocsPerSlice);
+                assertThat(slices.size(), lessThanOrEqualTo(maxSlices));
+                final List<LeafReaderContext> concatenated = new ArrayList<>();
+                for (int i = 0; i < slices.size(); i++) {
+                    final List<LeafReaderContext> slice = slices.get(i);
+                    assertThat(slice.size(), greaterThan(0));
+                    concatenated.addAll(slice);
+                    if (i < slices.size() - 1) {
+                        // only the last slice may be smaller than the minimum
+                        int sliceDocs = 0;
+                        for (LeafReaderContext leaf : slice) {
+                            sliceDocs += leaf.reader().maxDoc();
+                        }
+                        assertThat(sliceDocs, greaterThanOrEqualTo(minDocsPerSlice));
+                    }
+                }
+                // the segments are neither split, reordered, duplicated nor dropped
+                assertEquals(leaves, concatenated);
+            }
+        }
+    }
+
+    public void testSearchSlicesConcurrently() throws IOException {
+        try (Directory dir = newDirectory(); DirectoryReader reader = newMultiSegmentReader(dir)) {
+            final ContextIndexSearcher searcher = newSearcher(reader, executor);
+            assertTrue(searcher.isSearchingConcurrently());
+            final Set<String> threads = ConcurrentHashMap.newKeySet();
+            final CountingCollectorManager manager = new CountingCollectorManager(threads);
+            final Query query = randomBoolean() ? new MatchAllDocsQuery() : new TermQuery(new Term("foo", "bar"));
+            assertEquals(new IndexSearcher(reader).count(query), (int) searcher.search(query, manager));
+            assertThat(manager.collectors.size(), greaterThan(1));
+            assertTrue(threads.contains(Thread.currentThread().getName()));
+        }
+    }
+
+    public void testRejectedSlicesAreSearchedByTheCallingThread() throws IOException {
+        try (Directory dir = newDirectory(); DirectoryReader reader = newMultiSegmentReader(dir)) {
+            final ContextIndexSearcher searcher = newSearcher(reader, command -> {
+                throw new EsRejectedExecutionException("rejected");
+            });
+            assertTrue(searcher.isSearchingConcurrently());
+            final Set<String> threads = ConcurrentHashMap.newKeySet();
+            final CountingCollectorManager manager = new CountingCollectorManager(threads);
+            assertEquals(reader.numDocs(), (int) searcher.search(new MatchAllDocsQuery(), manager));
+            assertThat(manager.collectors.size(), greaterThan(1));
+            assertEquals(Collections.singleton(Thread.currentThread().getName()), threads);
+        }
+    }
+
+    public void testCancellationOfASliceFailsTheSearch() throws IOException {
+        try (Directory dir = newDirectory(); DirectoryReader reader = newMultiSegmentReader(dir)) {
+            final ContextIndexSearcher searcher = newSearcher(reader, executor);
+            // cancels the search while one of the slices is searched
+            final AtomicBoolean cancelled = new AtomicBoolean();
+            searcher.setCheckCancelled(() -> {
+                if (cancelled.getAndSet(true)) {
+                    throw new TaskCancelledException("cancelled");
+                }
+            });
+            final CountingCollectorManager manager = new CountingCollectorManager(ConcurrentHashMap.newKeySet());
+            expectThrows(TaskCancelledException.class, () -> searcher.search(new MatchAllDocsQuery(), manager));
+            assertFalse("the collectors of the slices must not be reduced", manager.reduced.get());
+        }
+    }
+
+    public void testTimeoutOfASliceFailsTheSearch() throws IOException {
+        try (Directory dir = newDirectory(); DirectoryReader reader = newMultiSegmentReader(dir)) {
+            final ContextIndexSearcher searcher = newSearcher(reader, executor);
+            // a clock that moves forward with every check, like the time estimate counter of the query phase
+            final AtomicLong time = new AtomicLong();
+            final long maxTime = randomIntBetween(0, 3);
+            searcher.setCheckCancelled(() -> {
+                if (time.incrementAndGet() > maxTime) {
+                    throw new TimeExceededException();
+                }
+            });
+            final CountingCollectorManager manager = new CountingCollectorManager(ConcurrentHashMap.newKeySet());
+            expectThrows(TimeExceededException.class, () -> searcher.search(new MatchAllDocsQuery(), manager));
+            assertFalse("the collectors of the slices must not be reduced", manager.reduced.get());
+
+            // the search succeeds once the check doesn't fail anymore
+            searcher.setCheckCancelled(() -> {});
+            assertEquals(reader.numDocs(), (int) searcher.search(new MatchAllDocsQuery(),
+                new CountingCollectorManager(ConcurrentHashMap.newKeySet())));
+        }
+    }
+
+    /**
+     * Opens a reader that has enough segments for several slices.
+     */
+    private static DirectoryReader newMultiSegmentReader(Directory dir) throws IOException {
+        try (IndexWriter w = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final int numSegments = randomIntBetween(4, 10);
+            for (int i = 0; i < numSegments; i++) {
+                final int numDocs = randomIntBetween(1, 100);
+                for (int j = 0; j < numDocs; j++) {
+                    Document doc = new Document();
+                    if (randomBoolean()) {
+                        doc.add(new StringField("foo", "bar", Store.NO));
+                    }
+                    w.addDocument(doc);
+                }
+                w.flush();
+            }
+        }
+        return DirectoryReader.open(dir);
+    }
+
+    private static ContextIndexSearcher newSearcher(DirectoryReader reader, Executor executor) {
+        Engine.Searcher engineSearcher = new Engine.Searcher("test", new IndexSearcher(reader), () -> {});
+        return new ContextIndexSearcher(engineSearcher, null, IndexSearcher.getDefaultQueryCachingPolicy(), executor,
+            randomIntBetween(2, 8), 1);
+    }
+
+    private static class TimeExceededException extends RuntimeException {}
+
+    /**
+     * Counts the hits of all slices and records the threads that searched them.
+     */
+    private static class CountingCollectorManager implements CollectorManager<TotalHitCountCollector, Integer> {
+
+        private final Set<String> threads;
+        private final List<TotalHitCountCollector> collectors = new ArrayList<>();
+        private final AtomicBoolean reduced = new AtomicBoolean();
+
+        CountingCollectorManager(Set<String> threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public TotalHitCountCollector newCollector() {
+            final TotalHitCountCollector collector = new TotalHitCountCollector() {
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    threads.add(Thread.currentThread().getName());
+                    super.doSetNextReader(context);
+                }
+            };
+            collectors.add(collector);
+            return collector;
+        }
+
+        @Override
+        public Integer reduce(Collection<TotalHitCountCollector> collectors) {
+            assertThat(collectors.size(), equalTo(this.collectors.size()));
+            reduced.set(true);
+            int totalHits = 0;
+            for (TotalHitCountCollector collector : collectors) {
+                totalHits += collector.getTotalHits();
+            }
+            return totalHits;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.CheckedFunction;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.DeprecationHandler;
@@ -40,6 +41,9 @@ import org.elasticsearch.index.query.RandomQueryBuilder;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.InvalidAliasNameException;
 import org.elasticsearch.search.AbstractSearchTestCase;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesMethod;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
 
 import java.io.IOException;
 
@@ -78,6 +82,21 @@ public class ShardSearchTransportRequestTests extends AbstractSearchTestCase {
         assertEquals(deserializedRequest.getClusterAlias(), shardSearchTransportRequest.getClusterAlias());
     }
 
+    public void testCacheKeyContainsCapabilityGatedFields() throws IOException {
+        final ShardId shardId = new ShardId("index", "_na_", 0);
+        final BytesReference[] cacheKeys = new BytesReference[2];
+        for (int i = 0; i < cacheKeys.length; i++) {
+            final SearchRequest searchRequest = new SearchRequest().source(new SearchSourceBuilder().size(0).aggregation(
+                new PercentilesAggregationBuilder("percentiles").field("field").method(PercentilesMethod.DDSKETCH)
+                    .relativeAccuracy(i == 0 ? 0.01 : 0.05)));
+            final ShardSearchTransportRequest request = new ShardSearchTransportRequest(new OriginalIndices(searchRequest),
+                searchRequest, shardId, 1, new AliasFilter(null, Strings.EMPTY_ARRAY), 1.0f, 0L, null, Strings.EMPTY_ARRAY);
+            cacheKeys[i] = request.cacheKey();
+        }
+        // requests that only differ in a field that is only written with a capability must not share a cache entry
+        assertNotEquals(cacheKeys[0], cacheKeys[1]);
+    }
+
     private ShardSearchTransportRequest createShardSearchTransportRequest() throws IOException {
         SearchRequest searchRequest = createSearchRequest();
         ShardId shardId = new ShardId(randomAlphaOfLengthBetween(2, 10), randomAlphaOfLengthBetween(2, 10), randomInt());
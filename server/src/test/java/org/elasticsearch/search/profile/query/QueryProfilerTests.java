@@ -119,6 +119,26 @@ public class QueryProfilerTests extends ESTestCase {
         assertThat(rewriteTime, greaterThan(0L));
     }
 
+    public void testPrunedSegments() throws IOException {
+        QueryProfiler profiler = new QueryProfiler();
+        searcher.setProfiler(profiler);
+        // no segment has this term, so none of them needs a scorer
+        Query query = new TermQuery(new Term("foo", "baz"));
+        searcher.search(query, 1);
+        List<ProfileResult> results = profiler.getTree();
+        assertEquals(1, results.size());
+        Map<String, Long> breakdown = results.get(0).getTimeBreakdown();
+        assertThat(breakdown.get(QueryProfileBreakdown.PRUNED_SEGMENTS_COUNT).longValue(), equalTo((long) reader.leaves().size()));
+        assertThat(breakdown.get(QueryTimingType.NEXT_DOC.toString() + "_count").longValue(), equalTo(0L));
+
+        // neither the pruned segments nor the other counts add to the time of the node
+        long timings = 0;
+        for (QueryTimingType timingType : QueryTimingType.values()) {
+            timings += breakdown.get(timingType.toString());
+        }
+        assertThat(results.get(0).getTime(), equalTo(timings));
+    }
+
     public void testConstantScoreQuery() throws IOException {
         QueryProfiler profiler = new QueryProfiler();
         searcher.setProfiler(profiler);
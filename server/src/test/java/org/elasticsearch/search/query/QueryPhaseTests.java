@@ -47,28 +47,47 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.action.search.SearchTask;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.query.ParsedQuery;
+import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.index.query.TermQueryBuilder;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardTestCase;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.sort.SortAndFormats;
+import org.elasticsearch.tasks.TaskCancelledException;
 import org.elasticsearch.test.TestSearchContext;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
+import static org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.Mockito.mock;
 
 public class QueryPhaseTests extends IndexShardTestCase {
 
@@ -548,6 +567,192 @@ public class QueryPhaseTests extends IndexShardTestCase {
         };
     }
 
+    public void testConcurrentSegmentSearch() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+        final int numDocs = scaledRandomIntBetween(100, 200);
+        for (int i = 0; i < numDocs; ++i) {
+            Document doc = new Document();
+            if (randomBoolean()) {
+                doc.add(new StringField("foo", "bar", Store.NO));
+            }
+            doc.add(new NumericDocValuesField("rank", randomIntBetween(0, 50)));
+            w.addDocument(doc);
+            if (rarely()) {
+                w.commit();
+            }
+        }
+        w.commit();
+        final IndexReader reader = w.getReader();
+        w.close();
+        Engine.Searcher engineSearcher = new Engine.Searcher("test", new IndexSearcher(reader), () -> {});
+        ContextIndexSearcher concurrentSearcher = new ContextIndexSearcher(engineSearcher, null,
+            IndexSearcher.getDefaultQueryCachingPolicy(), threadPool.executor(ThreadPool.Names.SEARCH_WORKER), randomIntBetween(2, 8), 1);
+        assertEquals(reader.leaves().size() > 1, concurrentSearcher.isSearchingConcurrently());
+        IndexSearcher sequentialSearcher = new IndexSearcher(reader);
+
+        final Sort sort = new Sort(new SortField("rank", SortField.Type.INT), SortField.FIELD_DOC);
+        for (Query query : new Query[] { new MatchAllDocsQuery(), new TermQuery(new Term("foo", "bar")) }) {
+            for (boolean sorted : new boolean[] { false, true }) {
+                TestSearchContext context = new TestSearchContext(null, indexShard);
+                context.setTask(new SearchTask(123L, "", "", "", null, Collections.emptyMap()));
+                context.parsedQuery(new ParsedQuery(query));
+                context.setSize(randomIntBetween(0, 20));
+                if (sorted) {
+                    context.sort(new SortAndFormats(sort, new DocValueFormat[] {DocValueFormat.RAW, DocValueFormat.RAW}));
+                }
+                if (randomBoolean()) {
+                    context.parsedPostFilter(new ParsedQuery(new MinDocQuery(randomIntBetween(0, numDocs))));
+                }
+                QueryPhase.execute(context, sequentialSearcher, checkCancelled -> {});
+                TopDocs expected = context.queryResult().topDocs();
+                QueryPhase.execute(context, concurrentSearcher, concurrentSearcher::setCheckCancelled);
+                TopDocs actual = context.queryResult().topDocs();
+                assertEquals(expected.totalHits, actual.totalHits);
+                assertEquals(expected.getMaxScore(), actual.getMaxScore(), 0f);
+                assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+                for (int i = 0; i < expected.scoreDocs.length; i++) {
+                    assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+                    assertEquals(expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0f);
+                    assertEquals(-1, actual.scoreDocs[i].shardIndex);
+                }
+            }
+        }
+        reader.close();
+        dir.close();
+    }
+
+    public void testConcurrentSegmentSearchAggregations() throws Exception {
+        Directory dir = newDirectory();
+        IndexReader reader = newMultiSegmentReader(dir);
+        ContextIndexSearcher concurrentSearcher = newConcurrentSearcher(reader, threadPool.executor(ThreadPool.Names.SEARCH_WORKER));
+        assertTrue(concurrentSearcher.isSearchingConcurrently());
+        Engine.Searcher engineSearcher = new Engine.Searcher("test", new IndexSearcher(reader), () -> {});
+        ContextIndexSearcher sequentialSearcher = new ContextIndexSearcher(engineSearcher, null,
+            IndexSearcher.getDefaultQueryCachingPolicy());
+
+        for (Query query : new Query[] { new MatchAllDocsQuery(), new TermQuery(new Term("foo", "bar")) }) {
+            final long expected = executeFilterAggregation(sequentialSearcher, query);
+            assertEquals(new IndexSearcher(reader).count(new BooleanQuery.Builder()
+                .add(query, Occur.FILTER)
+                .add(new TermQuery(new Term("foo", "baz")), Occur.FILTER)
+                .build()), expected);
+            // the aggregators of every slice collect their documents and are reduced with the ones of the first slice
+            assertEquals(expected, executeFilterAggregation(concurrentSearcher, query));
+        }
+        reader.close();
+        dir.close();
+    }
+
+    /**
+     * Runs a {@code filter} aggregation on documents that have {@code foo:baz} through the query and aggregation phases and returns its
+     * document count.
+     */
+    private long executeFilterAggregation(ContextIndexSearcher searcher, Query query) throws IOException {
+        final BigArrays bigArrays = new BigArrays(null, new NoneCircuitBreakerService(), CircuitBreaker.REQUEST);
+        TestSearchContext context = new TestSearchContext(mock(QueryShardContext.class), indexShard) {
+            @Override
+            public ContextIndexSearcher searcher() {
+                return searcher;
+            }
+
+            @Override
+            public BigArrays bigArrays() {
+                return bigArrays;
+            }
+        };
+        context.setTask(new SearchTask(123L, "", "", "", null, Collections.emptyMap()));
+        context.parsedQuery(new ParsedQuery(query));
+        context.setSize(0);
+        AggregatorFactories factories = AggregatorFactories.builder()
+            .addAggregator(new FilterAggregationBuilder("filter", new TermQueryBuilder("foo", "baz")))
+            .build(context, null);
+        context.aggregations(new SearchContextAggregations(factories, new MultiBucketConsumer(Integer.MAX_VALUE)));
+        AggregationPhase aggregationPhase = new AggregationPhase();
+        aggregationPhase.preProcess(context);
+        QueryPhase.execute(context, searcher, searcher::setCheckCancelled);
+        aggregationPhase.execute(context);
+        Filter filter = context.queryResult().consumeAggs().get("filter");
+        return filter.getDocCount();
+    }
+
+    public void testConcurrentSegmentSearchCancellation() throws Exception {
+        Directory dir = newDirectory();
+        IndexReader reader = newMultiSegmentReader(dir);
+        ContextIndexSearcher searcher = newConcurrentSearcher(reader, threadPool.executor(ThreadPool.Names.SEARCH_WORKER));
+        assertTrue(searcher.isSearchingConcurrently());
+        TestSearchContext context = new TestSearchContext(null, indexShard);
+        context.setTask(new SearchTask(123L, "", "", "", null, Collections.emptyMap()) {
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        });
+        context.parsedQuery(new ParsedQuery(new MatchAllDocsQuery()));
+        context.setSize(randomIntBetween(0, 10));
+        QueryPhaseExecutionException e = expectThrows(QueryPhaseExecutionException.class,
+            () -> QueryPhase.execute(context, searcher, searcher::setCheckCancelled));
+        assertThat(e.getCause(), instanceOf(TaskCancelledException.class));
+        reader.close();
+        dir.close();
+    }
+
+    public void testConcurrentSegmentSearchRejection() throws Exception {
+        Directory dir = newDirectory();
+        IndexReader reader = newMultiSegmentReader(dir);
+        // the calling thread searches the slices that the pool rejects
+        ContextIndexSearcher searcher = newConcurrentSearcher(reader, command -> {
+            throw new EsRejectedExecutionException("rejected");
+        });
+        assertTrue(searcher.isSearchingConcurrently());
+        TestSearchContext context = new TestSearchContext(null, indexShard);
+        context.setTask(new SearchTask(123L, "", "", "", null, Collections.emptyMap()));
+        context.parsedQuery(new ParsedQuery(new MatchAllDocsQuery()));
+        context.setSize(reader.numDocs());
+        QueryPhase.execute(context, searcher, searcher::setCheckCancelled);
+        TopDocs topDocs = context.queryResult().topDocs();
+        assertEquals(reader.numDocs(), topDocs.totalHits);
+        assertEquals(reader.numDocs(), topDocs.scoreDocs.length);
+        for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+            assertEquals(i, topDocs.scoreDocs[i].doc);
+        }
+        reader.close();
+        dir.close();
+    }
+
+    /**
+     * Opens a reader that has enough segments to be searched in several slices.
+     */
+    private static IndexReader newMultiSegmentReader(Directory dir) throws IOException {
+        IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+        final int numSegments = randomIntBetween(2, 6);
+        for (int i = 0; i < numSegments; ++i) {
+            final int numDocs = randomIntBetween(10, 50);
+            for (int j = 0; j < numDocs; ++j) {
+                Document doc = new Document();
+                if (randomBoolean()) {
+                    doc.add(new StringField("foo", "bar", Store.NO));
+                }
+                if (randomBoolean()) {
+                    doc.add(new StringField("foo", "baz", Store.NO));
+                }
+                w.addDocument(doc);
+            }
+            w.commit();
+        }
+        final IndexReader reader = w.getReader();
+        w.close();
+        return reader;
+    }
+
+    private static ContextIndexSearcher newConcurrentSearcher(IndexReader reader, Executor executor) {
+        Engine.Searcher engineSearcher = new Engine.Searcher("test", new IndexSearcher(reader), () -> {});
+        return new ContextIndexSearcher(engineSearcher, null, IndexSearcher.getDefaultQueryCachingPolicy(), executor,
+            randomIntBetween(2, 8), 1);
+    }
+
     private static class AssertingEalyTerminationFilterCollector extends FilterCollector {
         private final int size;
 
@@ -33,7 +33,7 @@ public class CompressibleBytesOutputStreamTests extends ESTestCase {
 
     public void testStreamWithoutCompression() throws IOException {
         BytesStream bStream = new ZeroOutOnCloseStream();
-        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, false);
+        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, null);
 
         byte[] expectedBytes = randomBytes(randomInt(30));
         stream.write(expectedBytes);
@@ -61,7 +61,7 @@ public class CompressibleBytesOutputStreamTests extends ESTestCase {
 
     public void testStreamWithCompression() throws IOException {
         BytesStream bStream = new ZeroOutOnCloseStream();
-        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, true);
+        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, CompressorFactory.COMPRESSOR);
 
         byte[] expectedBytes = randomBytes(randomInt(30));
         stream.write(expectedBytes);
@@ -70,6 +70,7 @@ public class CompressibleBytesOutputStreamTests extends ESTestCase {
         stream.close();
 
         assertTrue(CompressorFactory.COMPRESSOR.isCompressed(bytesRef));
+        assertEquals(expectedBytes.length, stream.getUncompressedLength());
 
         StreamInput streamInput = CompressorFactory.COMPRESSOR.streamInput(bytesRef.streamInput());
         byte[] actualBytes = new byte[expectedBytes.length];
@@ -88,7 +89,7 @@ public class CompressibleBytesOutputStreamTests extends ESTestCase {
 
     public void testCompressionWithCallingMaterializeFails() throws IOException {
         BytesStream bStream = new ZeroOutOnCloseStream();
-        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, true);
+        CompressibleBytesOutputStream stream = new CompressibleBytesOutputStream(bStream, CompressorFactory.COMPRESSOR);
 
         byte[] expectedBytes = randomBytes(between(1, 30));
         stream.write(expectedBytes);
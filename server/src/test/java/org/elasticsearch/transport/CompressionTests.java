@@ -0,0 +1,58 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class CompressionTests extends ESTestCase {
+
+    public void testFallbackToDeflate() {
+        assertEquals(Compression.Scheme.LZ4, Compression.Scheme.LZ4.forCapabilities(TransportCapabilities.CURRENT));
+        assertEquals(Compression.Scheme.LZ4,
+            Compression.Scheme.LZ4.forCapabilities(Collections.singleton(TransportCapabilities.LZ4_COMPRESSION)));
+        assertEquals(Compression.Scheme.DEFLATE, Compression.Scheme.LZ4.forCapabilities(Collections.emptySet()));
+        assertEquals(Compression.Scheme.DEFLATE, Compression.Scheme.DEFLATE.forCapabilities(TransportCapabilities.CURRENT));
+        assertEquals(Compression.Scheme.DEFLATE, Compression.Scheme.DEFLATE.forCapabilities(Collections.emptySet()));
+    }
+
+    public void testParse() {
+        assertEquals(Compression.Scheme.LZ4, Compression.Scheme.parse("lz4"));
+        assertEquals(Compression.Scheme.DEFLATE, Compression.Scheme.parse("DEFLATE"));
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> Compression.Scheme.parse("snappy"));
+        assertEquals("unknown transport compression scheme [snappy]", e.getMessage());
+    }
+
+    public void testSchemeOfCompressedBytes() throws IOException {
+        final byte[] bytes = randomByteArrayOfLength(randomIntBetween(1, 1024));
+        for (Compression.Scheme scheme : Compression.Scheme.values()) {
+            final BytesStreamOutput bytesStreamOutput = new BytesStreamOutput();
+            try (StreamOutput out = scheme.compressor().streamOutput(bytesStreamOutput)) {
+                out.writeBytes(bytes);
+            }
+            assertEquals(scheme, Compression.Scheme.of(bytesStreamOutput.bytes()));
+        }
+        assertNull(Compression.Scheme.of(new BytesArray("uncompressed")));
+    }
+}
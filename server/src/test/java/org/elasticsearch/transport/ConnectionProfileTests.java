@@ -179,6 +179,10 @@ public class ConnectionProfileTests extends ESTestCase {
         if (connectionCompressSet) {
             builder.setCompressionEnabled(randomBoolean());
         }
+        final boolean compressionSchemeSet = randomBoolean();
+        if (compressionSchemeSet) {
+            builder.setCompressionScheme(randomFrom(Compression.Scheme.values()));
+        }
 
         final ConnectionProfile profile = builder.build();
         final ConnectionProfile resolved = ConnectionProfile.resolveConnectionProfile(profile, defaultProfile);
@@ -194,6 +198,8 @@ public class ConnectionProfileTests extends ESTestCase {
             equalTo(pingIntervalSet ? profile.getPingInterval() : defaultProfile.getPingInterval()));
         assertThat(resolved.getCompressionEnabled(),
             equalTo(connectionCompressSet ? profile.getCompressionEnabled() : defaultProfile.getCompressionEnabled()));
+        assertThat(resolved.getCompressionScheme(),
+            equalTo(compressionSchemeSet ? profile.getCompressionScheme() : defaultProfile.getCompressionScheme()));
     }
 
     public void testDefaultConnectionProfile() {
@@ -207,6 +213,7 @@ public class ConnectionProfileTests extends ESTestCase {
         assertEquals(TransportSettings.CONNECT_TIMEOUT.get(Settings.EMPTY), profile.getConnectTimeout());
         assertEquals(TransportSettings.CONNECT_TIMEOUT.get(Settings.EMPTY), profile.getHandshakeTimeout());
         assertEquals(TransportSettings.TRANSPORT_COMPRESS.get(Settings.EMPTY), profile.getCompressionEnabled());
+        assertEquals(Compression.Scheme.DEFLATE, profile.getCompressionScheme());
         assertEquals(TransportSettings.PING_SCHEDULE.get(Settings.EMPTY), profile.getPingInterval());
 
         profile = ConnectionProfile.buildDefaultConnectionProfile(Settings.builder().put("node.master", false).build());
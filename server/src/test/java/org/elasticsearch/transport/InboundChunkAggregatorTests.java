@@ -0,0 +1,115 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.transport;
+
+
+package org.elasticsearch.transport;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasablePagedBytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class InboundChunkAggregatorTests extends ESTestCase {
+
+    public void testAggregate() throws IOException, InboundChunkAggregator.RejectedRequestException {
+        final boolean isRequest = randomBoolean();
+        final byte[] payload = randomByteArrayOfLength(randomIntBetween(2, 1024));
+        final int split = randomIntBetween(1, payload.length - 1);
+        try (InboundChunkAggregator aggregator = new InboundChunkAggregator(BigArrays.NON_RECYCLING_INSTANCE, Long.MAX_VALUE)) {
+            assertNull(aggregator.aggregate(chunk(1, isRequest, false, new BytesArray(payload, 0, split))));
+            try (ReleasablePagedBytesReference message =
+                     aggregator.aggregate(chunk(1, isRequest, true, new BytesArray(payload, split, payload.length - split)))) {
+                final int prefix = TcpHeader.REQUEST_ID_SIZE + TcpHeader.STATUS_SIZE + TcpHeader.VERSION_ID_SIZE;
+                assertFalse(InboundChunkAggregator.isChunk(message));
+                assertThat(message.slice(prefix, message.length() - prefix), equalTo(new BytesArray(payload)));
+            }
+        }
+    }
+
+    public void testTooManyPartialMessages() throws IOException, InboundChunkAggregator.RejectedRequestException {
+        final boolean isRequest = randomBoolean();
+        try (InboundChunkAggregator aggregator = new InboundChunkAggregator(BigArrays.NON_RECYCLING_INSTANCE, Long.MAX_VALUE)) {
+            for (int i = 0; i < InboundChunkAggregator.MAX_PARTIAL_MESSAGES; i++) {
+                assertNull(aggregator.aggregate(chunk(i, isRequest, false, new BytesArray(randomByteArrayOfLength(8)))));
+            }
+            // the other direction has its own limit
+            assertNull(aggregator.aggregate(chunk(0, isRequest == false, false, new BytesArray(randomByteArrayOfLength(8)))));
+            IllegalStateException e = expectThrows(IllegalStateException.class, () -> aggregator.aggregate(
+                chunk(InboundChunkAggregator.MAX_PARTIAL_MESSAGES, isRequest, false, new BytesArray(randomByteArrayOfLength(8)))));
+            assertThat(e.getMessage(), containsString("messages are partially received"));
+        }
+    }
+
+    public void testRequestsTripTheInFlightRequestsBreaker() throws IOException, InboundChunkAggregator.RejectedRequestException {
+        final CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(
+            Settings.builder().put(HierarchyCircuitBreakerService.IN_FLIGHT_REQUESTS_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "1kb").build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final BigArrays bigArrays =
+            new BigArrays(PageCacheRecycler.NON_RECYCLING_INSTANCE, breakerService, CircuitBreaker.IN_FLIGHT_REQUESTS);
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.IN_FLIGHT_REQUESTS);
+        try (InboundChunkAggregator aggregator = new InboundChunkAggregator(bigArrays, Long.MAX_VALUE)) {
+            final InboundChunkAggregator.RejectedRequestException e = expectThrows(InboundChunkAggregator.RejectedRequestException.class,
+                () -> aggregator.aggregate(chunk(1, true, false, new BytesArray(randomByteArrayOfLength(2048)))));
+            assertEquals(1, e.getRequestId());
+            assertEquals(Version.CURRENT, e.getVersion());
+            assertThat(e.getCause(), instanceOf(CircuitBreakingException.class));
+            assertEquals(0, breaker.getUsed());
+
+            // the rest of the chunks of the rejected request are dropped
+            assertNull(aggregator.aggregate(chunk(1, true, false, new BytesArray(randomByteArrayOfLength(8)))));
+            assertNull(aggregator.aggregate(chunk(1, true, true, new BytesArray(randomByteArrayOfLength(8)))));
+            assertEquals(0, breaker.getUsed());
+
+            // responses are accounted for without tripping the breaker
+            assertNull(aggregator.aggregate(chunk(1, false, false, new BytesArray(randomByteArrayOfLength(2048)))));
+            assertThat(breaker.getUsed(), greaterThan(0L));
+        }
+        assertEquals(0, breaker.getUsed());
+    }
+
+    private static BytesReference chunk(long requestId, boolean isRequest, boolean lastChunk, BytesReference payload)
+        throws IOException {
+        byte status = isRequest ? TransportStatus.setRequest((byte) 0) : TransportStatus.setResponse((byte) 0);
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.writeLong(requestId);
+        out.writeByte(TransportStatus.setChunk(status));
+        out.writeInt(Version.CURRENT.id);
+        out.writeBoolean(lastChunk);
+        payload.writeTo(out);
+        return out.bytes();
+    }
+}
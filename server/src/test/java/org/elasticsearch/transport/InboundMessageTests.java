@@ -47,10 +47,11 @@ public class InboundMessageTests extends ESTestCase {
         long requestId = randomLong();
         boolean isHandshake = randomBoolean();
         boolean compress = randomBoolean();
+        Compression.Scheme compressionScheme = compress ? randomFrom(Compression.Scheme.values()) : null;
         threadContext.putHeader("header", "header_value");
         Version version = randomFrom(Version.CURRENT, Version.CURRENT.minimumCompatibilityVersion());
         OutboundMessage.Request request = new OutboundMessage.Request(threadContext, features, message, version, action, requestId,
-            isHandshake, compress);
+            isHandshake, compressionScheme);
         BytesReference reference;
         try (BytesStreamOutput streamOutput = new BytesStreamOutput()) {
             reference = request.serialize(streamOutput);
@@ -70,6 +71,7 @@ public class InboundMessageTests extends ESTestCase {
         assertEquals("header_value", threadContext.getHeader("header"));
         assertEquals(isHandshake, inboundMessage.isHandshake());
         assertEquals(compress, inboundMessage.isCompress());
+        assertEquals(compressionScheme, inboundMessage.getCompressionScheme());
         assertEquals(version, inboundMessage.getVersion());
         assertEquals(action, inboundMessage.getActionName());
         if (version.onOrAfter(Version.V_6_3_0)) {
@@ -90,10 +92,11 @@ public class InboundMessageTests extends ESTestCase {
         long requestId = randomLong();
         boolean isHandshake = randomBoolean();
         boolean compress = randomBoolean();
+        Compression.Scheme compressionScheme = compress ? randomFrom(Compression.Scheme.values()) : null;
         threadContext.putHeader("header", "header_value");
         Version version = randomFrom(Version.CURRENT, Version.CURRENT.minimumCompatibilityVersion());
         OutboundMessage.Response request = new OutboundMessage.Response(threadContext, features, message, version, requestId, isHandshake,
-            compress);
+            compressionScheme);
         BytesReference reference;
         try (BytesStreamOutput streamOutput = new BytesStreamOutput()) {
             reference = request.serialize(streamOutput);
@@ -113,6 +116,7 @@ public class InboundMessageTests extends ESTestCase {
         assertEquals("header_value", threadContext.getHeader("header"));
         assertEquals(isHandshake, inboundMessage.isHandshake());
         assertEquals(compress, inboundMessage.isCompress());
+        assertEquals(compressionScheme, inboundMessage.getCompressionScheme());
         assertEquals(version, inboundMessage.getVersion());
         assertTrue(inboundMessage.isResponse());
         assertFalse(inboundMessage.isRequest());
@@ -126,10 +130,11 @@ public class InboundMessageTests extends ESTestCase {
         long requestId = randomLong();
         boolean isHandshake = randomBoolean();
         boolean compress = randomBoolean();
+        Compression.Scheme compressionScheme = compress ? randomFrom(Compression.Scheme.values()) : null;
         threadContext.putHeader("header", "header_value");
         Version version = randomFrom(Version.CURRENT, Version.CURRENT.minimumCompatibilityVersion());
         OutboundMessage.Response request = new OutboundMessage.Response(threadContext, features, exception, version, requestId,
-            isHandshake, compress);
+            isHandshake, compressionScheme);
         BytesReference reference;
         try (BytesStreamOutput streamOutput = new BytesStreamOutput()) {
             reference = request.serialize(streamOutput);
@@ -149,6 +154,7 @@ public class InboundMessageTests extends ESTestCase {
         assertEquals("header_value", threadContext.getHeader("header"));
         assertEquals(isHandshake, inboundMessage.isHandshake());
         assertEquals(compress, inboundMessage.isCompress());
+        assertEquals(compressionScheme, inboundMessage.getCompressionScheme());
         assertEquals(version, inboundMessage.getVersion());
         assertTrue(inboundMessage.isResponse());
         assertFalse(inboundMessage.isRequest());
@@ -192,8 +198,9 @@ public class InboundMessageTests extends ESTestCase {
         String action = randomAlphaOfLength(10);
         long requestId = randomLong();
         boolean compress = randomBoolean();
+        Compression.Scheme compressionScheme = compress ? randomFrom(Compression.Scheme.values()) : null;
         OutboundMessage.Request request = new OutboundMessage.Request(threadContext, features, message, version, action, requestId,
-            isHandshake, compress);
+            isHandshake, compressionScheme);
         BytesReference reference;
         try (BytesStreamOutput streamOutput = new BytesStreamOutput()) {
             reference = request.serialize(streamOutput);
@@ -0,0 +1,64 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.transport;
+
+import org.elasticsearch.test.ESTestCase;
+
+import static org.elasticsearch.transport.MessageSizePredictor.MAX_PREDICTION;
+import static org.elasticsearch.transport.MessageSizePredictor.MIN_PREDICTION;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+public class MessageSizePredictorTests extends ESTestCase {
+
+    public void testUnknownType() {
+        MessageSizePredictor predictor = new MessageSizePredictor();
+        assertEquals(MIN_PREDICTION, predictor.predict(String.class));
+        predictor.record(Integer.class, MIN_PREDICTION * 4);
+        assertEquals(MIN_PREDICTION, predictor.predict(String.class));
+        assertEquals(MIN_PREDICTION * 4, predictor.predict(Integer.class));
+    }
+
+    public void testBounds() {
+        MessageSizePredictor predictor = new MessageSizePredictor();
+        predictor.record(String.class, randomIntBetween(0, MIN_PREDICTION));
+        assertEquals(MIN_PREDICTION, predictor.predict(String.class));
+        predictor.record(String.class, randomIntBetween(MAX_PREDICTION, Integer.MAX_VALUE));
+        assertEquals(MAX_PREDICTION, predictor.predict(String.class));
+    }
+
+    public void testFollowsLargerMessagesAndDecaysTowardsSmallerOnes() {
+        MessageSizePredictor predictor = new MessageSizePredictor();
+        int large = randomIntBetween(MIN_PREDICTION * 8, MAX_PREDICTION);
+        predictor.record(String.class, large);
+        assertEquals(large, predictor.predict(String.class));
+
+        predictor.record(String.class, MIN_PREDICTION);
+        int decayed = predictor.predict(String.class);
+        assertThat(decayed, lessThan(large));
+        assertThat(decayed, greaterThan(MIN_PREDICTION));
+        for (int i = 0; i < 1000; i++) {
+            predictor.record(String.class, MIN_PREDICTION);
+        }
+        assertEquals(MIN_PREDICTION, predictor.predict(String.class));
+
+        predictor.record(String.class, large);
+        assertEquals(large, predictor.predict(String.class));
+    }
+}
@@ -21,8 +21,10 @@ package org.elasticsearch.transport;
 
 import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.Priority;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasablePagedBytesReference;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -39,10 +41,14 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
 public class OutboundHandlerTests extends ESTestCase {
 
     private final TestThreadPool threadPool = new TestThreadPool(getClass().getName());
@@ -55,7 +61,9 @@ public class OutboundHandlerTests extends ESTestCase {
         super.setUp();
         TransportLogger transportLogger = new TransportLogger();
         fakeTcpChannel = new FakeTcpChannel(randomBoolean());
-        handler = new OutboundHandler(threadPool, BigArrays.NON_RECYCLING_INSTANCE, transportLogger);
+        // the messages of these tests fit in a chunk
+        handler = new OutboundHandler(threadPool, BigArrays.NON_RECYCLING_INSTANCE, transportLogger,
+            randomBoolean() ? 0 : randomIntBetween(1024, 1 << 20));
     }
 
     @After
@@ -96,6 +104,7 @@ public class OutboundHandlerTests extends ESTestCase {
         long requestId = randomLongBetween(0, 300);
         boolean isHandshake = randomBoolean();
         boolean compress = randomBoolean();
+        Compression.Scheme compressionScheme = compress ? randomFrom(Compression.Scheme.values()) : null;
         String value = "message";
         threadContext.putHeader("header", "header_value");
         Writeable writeable = new Message(value);
@@ -103,15 +112,16 @@ public class OutboundHandlerTests extends ESTestCase {
         boolean isRequest = randomBoolean();
         if (isRequest) {
             message = new OutboundMessage.Request(threadContext, new String[0], writeable, version, actionName, requestId, isHandshake,
-                compress);
+                compressionScheme);
         } else {
-            message = new OutboundMessage.Response(threadContext, new HashSet<>(), writeable, version, requestId, isHandshake, compress);
+            message = new OutboundMessage.Response(threadContext, new HashSet<>(), writeable, version, requestId, isHandshake,
+                compressionScheme);
         }
 
         AtomicBoolean isSuccess = new AtomicBoolean(false);
         AtomicReference<Exception> exception = new AtomicReference<>();
         ActionListener<Void> listener = ActionListener.wrap((v) -> isSuccess.set(true), exception::set);
-        handler.sendMessage(fakeTcpChannel, message, listener);
+        handler.sendMessage(fakeTcpChannel, message, randomFrom(Priority.values()), listener);
 
         BytesReference reference = fakeTcpChannel.getMessageCaptor().get();
         ActionListener<Void> sendListener  = fakeTcpChannel.getListenerCaptor().get();
@@ -147,6 +157,7 @@ public class OutboundHandlerTests extends ESTestCase {
             } else {
                 assertFalse(inboundMessage.isCompress());
             }
+            assertEquals(compressionScheme, inboundMessage.getCompressionScheme());
             Message readMessage = new Message();
             readMessage.readFrom(inboundMessage.getStreamInput());
             assertEquals(value, readMessage.value);
@@ -160,6 +171,148 @@ public class OutboundHandlerTests extends ESTestCase {
         }
     }
 
+    public void testSendChunkedMessage() throws IOException {
+        final int chunkSize = randomIntBetween(1, 64);
+        handler = new OutboundHandler(threadPool, BigArrays.NON_RECYCLING_INSTANCE, new TransportLogger(), chunkSize);
+        final long requestId = randomLongBetween(0, 300);
+        final boolean isRequest = randomBoolean();
+        final String value = randomAlphaOfLength(randomIntBetween(chunkSize * 2, chunkSize * 10));
+        final OutboundMessage message = newMessage(isRequest, requestId, value, true);
+
+        AtomicBoolean isSuccess = new AtomicBoolean(false);
+        AtomicReference<Exception> exception = new AtomicReference<>();
+        ActionListener<Void> listener = ActionListener.wrap((v) -> isSuccess.set(true), exception::set);
+        handler.sendMessage(fakeTcpChannel, message, randomFrom(Priority.values()), listener);
+
+        final InboundChunkAggregator aggregator = new InboundChunkAggregator(BigArrays.NON_RECYCLING_INSTANCE, Long.MAX_VALUE);
+        ReleasablePagedBytesReference aggregated = null;
+        int chunks = 0;
+        while (aggregated == null) {
+            assertFalse(isSuccess.get());
+            BytesReference frame = fakeTcpChannel.getMessageCaptor().get();
+            BytesReference chunk = frame.slice(6, frame.length() - 6);
+            assertTrue(InboundChunkAggregator.isChunk(chunk));
+            assertThat(frame.length(), lessThanOrEqualTo(OutboundQueue.CHUNK_HEADER_SIZE + chunkSize));
+            aggregated = aggregator.aggregate(chunk);
+            chunks++;
+            fakeTcpChannel.getListenerCaptor().get().onResponse(null);
+        }
+        assertTrue(isSuccess.get());
+        assertNull(exception.get());
+        assertThat(chunks, greaterThan(1));
+
+        try (ReleasablePagedBytesReference reference = aggregated) {
+            assertMessage(reference, isRequest, requestId, value);
+        }
+    }
+
+    public void testNoChunksWithoutCapability() throws IOException {
+        final int chunkSize = randomIntBetween(1, 64);
+        handler = new OutboundHandler(threadPool, BigArrays.NON_RECYCLING_INSTANCE, new TransportLogger(), chunkSize);
+        final boolean isRequest = randomBoolean();
+        final String value = randomAlphaOfLength(randomIntBetween(chunkSize * 2, chunkSize * 10));
+        final OutboundMessage message = newMessage(isRequest, 1, value, false);
+
+        AtomicBoolean isSuccess = new AtomicBoolean(false);
+        handler.sendMessage(fakeTcpChannel, message, randomFrom(Priority.values()), ActionListener.wrap(() -> isSuccess.set(true)));
+        BytesReference frame = fakeTcpChannel.getMessageCaptor().get();
+        BytesReference reference = frame.slice(6, frame.length() - 6);
+        assertFalse(InboundChunkAggregator.isChunk(reference));
+        assertMessage(reference, isRequest, 1, value);
+        fakeTcpChannel.getListenerCaptor().get().onResponse(null);
+        assertTrue(isSuccess.get());
+    }
+
+    public void testSmallMessagesAreNotQueuedBehindChunks() throws IOException {
+        final int chunkSize = randomIntBetween(1024, 4096);
+        handler = new OutboundHandler(threadPool, BigArrays.NON_RECYCLING_INSTANCE, new TransportLogger(), chunkSize);
+        final OutboundMessage large = newMessage(randomBoolean(), 1, randomAlphaOfLength(chunkSize * 4), true);
+        final OutboundMessage small = newMessage(randomBoolean(), 2, "small", true);
+
+        AtomicBoolean largeSent = new AtomicBoolean(false);
+        handler.sendMessage(fakeTcpChannel, large, randomFrom(Priority.values()), ActionListener.wrap(() -> largeSent.set(true)));
+        BytesReference frame = fakeTcpChannel.getMessageCaptor().get();
+        assertTrue(InboundChunkAggregator.isChunk(frame.slice(6, frame.length() - 6)));
+        ActionListener<Void> chunkListener = fakeTcpChannel.getListenerCaptor().get();
+
+        // the first chunk is still being written, but the small message is written right away
+        AtomicBoolean smallSent = new AtomicBoolean(false);
+        handler.sendMessage(fakeTcpChannel, small, randomFrom(Priority.values()), ActionListener.wrap(() -> smallSent.set(true)));
+        frame = fakeTcpChannel.getMessageCaptor().get();
+        assertFalse(InboundChunkAggregator.isChunk(frame.slice(6, frame.length() - 6)));
+        assertMessage(frame.slice(6, frame.length() - 6), small.isRequest(), 2, "small");
+        fakeTcpChannel.getListenerCaptor().get().onResponse(null);
+        assertTrue(smallSent.get());
+        assertFalse(largeSent.get());
+
+        chunkListener.onResponse(null);
+        while (largeSent.get() == false) {
+            frame = fakeTcpChannel.getMessageCaptor().get();
+            assertTrue(InboundChunkAggregator.isChunk(frame.slice(6, frame.length() - 6)));
+            fakeTcpChannel.getListenerCaptor().get().onResponse(null);
+        }
+    }
+
+    public void testHigherPriorityChunksGetAheadOfChunks() throws IOException {
+        final int chunkSize = randomIntBetween(1024, 4096);
+        handler = new OutboundHandler(threadPool, BigArrays.NON_RECYCLING_INSTANCE, new TransportLogger(), chunkSize);
+        final OutboundMessage low = newMessage(randomBoolean(), 1, randomAlphaOfLength(chunkSize * 4), true);
+        final OutboundMessage high = newMessage(randomBoolean(), 2, randomAlphaOfLength(chunkSize * 4), true);
+
+        AtomicBoolean lowSent = new AtomicBoolean(false);
+        handler.sendMessage(fakeTcpChannel, low, Priority.LOW, ActionListener.wrap(() -> lowSent.set(true)));
+        BytesReference frame = fakeTcpChannel.getMessageCaptor().get();
+        assertEquals(1, chunkRequestId(frame));
+
+        // the first chunk is still being written, so the chunks of the other message are queued
+        AtomicBoolean highSent = new AtomicBoolean(false);
+        handler.sendMessage(fakeTcpChannel, high, Priority.HIGH, ActionListener.wrap(() -> highSent.set(true)));
+        assertSame(frame, fakeTcpChannel.getMessageCaptor().get());
+
+        fakeTcpChannel.getListenerCaptor().get().onResponse(null);
+        while (highSent.get() == false) {
+            assertEquals(2, chunkRequestId(fakeTcpChannel.getMessageCaptor().get()));
+            fakeTcpChannel.getListenerCaptor().get().onResponse(null);
+        }
+        assertFalse(lowSent.get());
+        while (lowSent.get() == false) {
+            assertEquals(1, chunkRequestId(fakeTcpChannel.getMessageCaptor().get()));
+            fakeTcpChannel.getListenerCaptor().get().onResponse(null);
+        }
+    }
+
+    private static long chunkRequestId(BytesReference frame) throws IOException {
+        final BytesReference chunk = frame.slice(6, frame.length() - 6);
+        assertTrue(InboundChunkAggregator.isChunk(chunk));
+        try (StreamInput in = chunk.streamInput()) {
+            return in.readLong();
+        }
+    }
+
+    private OutboundMessage newMessage(boolean isRequest, long requestId, String value, boolean chunkable) {
+        ThreadContext threadContext = threadPool.getThreadContext();
+        if (isRequest) {
+            final String[] features = chunkable ? new String[] {TransportCapabilities.CHUNKED_MESSAGES} : new String[0];
+            return new OutboundMessage.Request(threadContext, features, new Message(value), Version.CURRENT, "action", requestId,
+                false, null);
+        } else {
+            final Set<String> features = chunkable ? Collections.singleton(TransportCapabilities.CHUNKED_MESSAGES) : new HashSet<>();
+            return new OutboundMessage.Response(threadContext, features, new Message(value), Version.CURRENT, requestId, false,
+                null);
+        }
+    }
+
+    private void assertMessage(BytesReference reference, boolean isRequest, long requestId, String value) throws IOException {
+        InboundMessage.Reader reader = new InboundMessage.Reader(Version.CURRENT, namedWriteableRegistry, threadPool.getThreadContext());
+        try (InboundMessage inboundMessage = reader.deserialize(reference)) {
+            assertEquals(requestId, inboundMessage.getRequestId());
+            assertEquals(isRequest, inboundMessage.isRequest());
+            Message readMessage = new Message();
+            readMessage.readFrom(inboundMessage.getStreamInput());
+            assertEquals(value, readMessage.value);
+        }
+    }
+
     private static final class Message extends TransportMessage {
 
         public String value;
@@ -45,9 +45,12 @@ import java.io.StreamCorruptedException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.mockito.Mockito.mock;
 
@@ -191,7 +194,7 @@ public class TcpTransportTests extends ESTestCase {
                     for (int i = 0; i < numConnections; ++i) {
                         fakeChannels.add(new FakeTcpChannel(false, messageCaptor));
                     }
-                    listener.onResponse(new NodeChannels(node, fakeChannels, profile, Version.CURRENT));
+                    listener.onResponse(new NodeChannels(node, fakeChannels, profile, Version.CURRENT, Collections.emptySet()));
                     return () -> CloseableChannel.closeChannels(fakeChannels, false);
                 }
             };
@@ -243,6 +246,89 @@ public class TcpTransportTests extends ESTestCase {
         }
     }
 
+    @SuppressForbidden(reason = "Allow accessing localhost")
+    public void testCompressedActions() throws IOException {
+        // LZ4 is only used towards nodes that advertised it in the handshake, others get deflate
+        final Set<String> capabilities = randomBoolean() ? TransportCapabilities.CURRENT : Collections.emptySet();
+        final Compression.Scheme expectedScheme = capabilities.contains(TransportCapabilities.LZ4_COMPRESSION)
+            ? Compression.Scheme.LZ4 : Compression.Scheme.DEFLATE;
+        final String compressedAction = "internal:index/shard/recovery/file_chunk";
+        Settings settings = Settings.builder()
+            .putList(TransportSettings.TRANSPORT_COMPRESSED_ACTIONS.getKey(), "internal:index/shard/recovery/*")
+            .build();
+        Req request = new Req(randomRealisticUnicodeOfLengthBetween(10, 100));
+        ThreadPool threadPool = new TestThreadPool(TcpTransportTests.class.getName());
+        AtomicReference<BytesReference> messageCaptor = new AtomicReference<>();
+        try {
+            TcpTransport transport = new TcpTransport("test", settings, Version.CURRENT, threadPool,
+                PageCacheRecycler.NON_RECYCLING_INSTANCE, new NoneCircuitBreakerService(), null, null) {
+
+                @Override
+                protected FakeServerChannel bind(String name, InetSocketAddress address) throws IOException {
+                    return null;
+                }
+
+                @Override
+                protected FakeTcpChannel initiateChannel(DiscoveryNode node) throws IOException {
+                    return new FakeTcpChannel(false);
+                }
+
+                @Override
+                protected void stopInternal() {
+                }
+
+                @Override
+                public Releasable openConnection(DiscoveryNode node, ConnectionProfile profile, ActionListener<Connection> listener) {
+                    int numConnections = profile.getNumConnections();
+                    ArrayList<TcpChannel> fakeChannels = new ArrayList<>(numConnections);
+                    for (int i = 0; i < numConnections; ++i) {
+                        fakeChannels.add(new FakeTcpChannel(false, messageCaptor));
+                    }
+                    listener.onResponse(new NodeChannels(node, fakeChannels, profile, Version.CURRENT, capabilities));
+                    return () -> CloseableChannel.closeChannels(fakeChannels, false);
+                }
+            };
+            transport.registerRequestHandler(new RequestHandlerRegistry<>(compressedAction, Req::new, mock(TaskManager.class),
+                (request1, channel) -> channel.sendResponse(TransportResponse.Empty.INSTANCE), ThreadPool.Names.SAME,
+                true, true));
+
+            DiscoveryNode node = new DiscoveryNode("foo", buildNewFakeTransportAddress(), Version.CURRENT);
+            ConnectionProfile.Builder profileBuilder = new ConnectionProfile.Builder(MockTcpTransport.LIGHT_PROFILE);
+            profileBuilder.setCompressionEnabled(false);
+            profileBuilder.setCompressionScheme(Compression.Scheme.LZ4);
+            PlainActionFuture<Transport.Connection> future = PlainActionFuture.newFuture();
+            transport.openConnection(node, profileBuilder.build(), future);
+            Transport.Connection connection = future.actionGet();
+            assertEquals(expectedScheme, ((TcpTransport.NodeChannels) connection).getCompressionScheme());
+
+            connection.sendRequest(1, "foobar", request, TransportRequestOptions.EMPTY);
+            BytesReference reference = messageCaptor.get();
+            assertFalse(TransportStatus.isCompress(reference.get(TcpHeader.HEADER_SIZE - TcpHeader.VERSION_ID_SIZE - 1)));
+            assertEquals(0, transport.getStats().getTxCompressedSize().getBytes());
+            assertEquals(0, transport.getStats().getTxUncompressedSize().getBytes());
+
+            connection.sendRequest(2, compressedAction, request, TransportRequestOptions.EMPTY);
+            reference = messageCaptor.get();
+            assertTrue(TransportStatus.isCompress(reference.get(TcpHeader.HEADER_SIZE - TcpHeader.VERSION_ID_SIZE - 1)));
+            final BytesReference compressed = reference.slice(TcpHeader.HEADER_SIZE, reference.length() - TcpHeader.HEADER_SIZE);
+            assertEquals(expectedScheme, Compression.Scheme.of(compressed));
+            TransportStats stats = transport.getStats();
+            assertEquals(compressed.length(), stats.getTxCompressedSize().getBytes());
+            assertThat(stats.getTxUncompressedSize().getBytes(), greaterThan(0L));
+            assertEquals(0, stats.getRxCompressedSize().getBytes());
+            assertEquals(0, stats.getRxUncompressedSize().getBytes());
+
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLocalHost(), 0);
+            FakeTcpChannel requestChannel = new FakeTcpChannel(true, address, address, "profile", new AtomicReference<>());
+            transport.messageReceived(reference.slice(6, reference.length() - 6), requestChannel);
+            stats = transport.getStats();
+            assertEquals(compressed.length(), stats.getRxCompressedSize().getBytes());
+            assertThat(stats.getRxUncompressedSize().getBytes(), greaterThan(0L));
+        } finally {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
     private static final class FakeServerChannel implements TcpServerChannel {
 
         @Override
@@ -21,9 +21,11 @@ package org.elasticsearch.transport;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.threadpool.TestThreadPool;
@@ -31,6 +33,7 @@ import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.containsString;
@@ -42,6 +45,7 @@ import static org.mockito.Mockito.verify;
 public class TransportHandshakerTests extends ESTestCase {
 
     private TransportHandshaker handshaker;
+    private Set<String> capabilities;
     private DiscoveryNode node;
     private TcpChannel channel;
     private TestThreadPool threadPool;
@@ -58,7 +62,8 @@ public class TransportHandshakerTests extends ESTestCase {
         node = new DiscoveryNode(nodeId, nodeId, nodeId, "host", "host_address", buildNewFakeTransportAddress(), Collections.emptyMap(),
             Collections.emptySet(), Version.CURRENT);
         threadPool = new TestThreadPool("thread-poll");
-        handshaker = new TransportHandshaker(Version.CURRENT, threadPool, requestSender, responseSender);
+        capabilities = Sets.newHashSet("capability_a", "capability_b");
+        handshaker = new TransportHandshaker(Version.CURRENT, capabilities, threadPool, requestSender, responseSender);
     }
 
     @Override
@@ -68,7 +73,7 @@ public class TransportHandshakerTests extends ESTestCase {
     }
 
     public void testHandshakeRequestAndResponse() throws IOException {
-        PlainActionFuture<Version> versionFuture = PlainActionFuture.newFuture();
+        PlainActionFuture<Tuple<Version, Set<String>>> versionFuture = PlainActionFuture.newFuture();
         long reqId = randomLongBetween(1, 10);
         handshaker.sendHandshake(reqId, node, channel, new TimeValue(30, TimeUnit.SECONDS), versionFuture);
 
@@ -77,7 +82,7 @@ public class TransportHandshakerTests extends ESTestCase {
         assertFalse(versionFuture.isDone());
 
         TcpChannel mockChannel = mock(TcpChannel.class);
-        TransportHandshaker.HandshakeRequest handshakeRequest = new TransportHandshaker.HandshakeRequest(Version.CURRENT);
+        TransportHandshaker.HandshakeRequest handshakeRequest = new TransportHandshaker.HandshakeRequest(Version.CURRENT, capabilities);
         BytesStreamOutput bytesStreamOutput = new BytesStreamOutput();
         handshakeRequest.writeTo(bytesStreamOutput);
         StreamInput input = bytesStreamOutput.bytes().streamInput();
@@ -92,7 +97,69 @@ public class TransportHandshakerTests extends ESTestCase {
         handler.handleResponse((TransportHandshaker.HandshakeResponse) responseCaptor.getValue());
 
         assertTrue(versionFuture.isDone());
-        assertEquals(Version.CURRENT, versionFuture.actionGet());
+        assertEquals(Version.CURRENT, versionFuture.actionGet().v1());
+        assertEquals(capabilities, versionFuture.actionGet().v2());
+    }
+
+    public void testHandshakeNegotiatesCapabilities() throws IOException {
+        PlainActionFuture<Tuple<Version, Set<String>>> versionFuture = PlainActionFuture.newFuture();
+        long reqId = randomLongBetween(1, 10);
+        handshaker.sendHandshake(reqId, node, channel, new TimeValue(30, TimeUnit.SECONDS), versionFuture);
+
+        TcpChannel mockChannel = mock(TcpChannel.class);
+        Set<String> remoteCapabilities = Sets.newHashSet("capability_b", "capability_c");
+        BytesStreamOutput bytesStreamOutput = new BytesStreamOutput();
+        new TransportHandshaker.HandshakeRequest(Version.CURRENT, remoteCapabilities).writeTo(bytesStreamOutput);
+        handshaker.handleHandshake(Version.CURRENT, Collections.emptySet(), mockChannel, reqId, bytesStreamOutput.bytes().streamInput());
+
+        ArgumentCaptor<TransportResponse> responseCaptor = ArgumentCaptor.forClass(TransportResponse.class);
+        verify(responseSender).sendResponse(eq(Version.CURRENT), eq(Collections.emptySet()), eq(mockChannel), responseCaptor.capture(),
+            eq(reqId));
+        TransportHandshaker.HandshakeResponse response = (TransportHandshaker.HandshakeResponse) responseCaptor.getValue();
+        // a node responds with all of its capabilities, the requesting node picks the ones that it has too
+        assertEquals(capabilities, response.getCapabilities());
+
+        TransportResponseHandler<TransportHandshaker.HandshakeResponse> handler = handshaker.removeHandlerForHandshake(reqId);
+        handler.handleResponse(new TransportHandshaker.HandshakeResponse(Version.CURRENT, remoteCapabilities));
+
+        assertTrue(versionFuture.isDone());
+        assertEquals(Version.CURRENT, versionFuture.actionGet().v1());
+        assertEquals(Collections.singleton("capability_b"), versionFuture.actionGet().v2());
+    }
+
+    public void testHandshakeWithNodeWithoutCapabilities() throws IOException {
+        PlainActionFuture<Tuple<Version, Set<String>>> versionFuture = PlainActionFuture.newFuture();
+        long reqId = randomLongBetween(1, 10);
+        handshaker.sendHandshake(reqId, node, channel, new TimeValue(30, TimeUnit.SECONDS), versionFuture);
+
+        // nodes that don't know about capabilities end their handshake request after the version
+        TcpChannel mockChannel = mock(TcpChannel.class);
+        BytesStreamOutput handshake = new BytesStreamOutput();
+        TaskId.EMPTY_TASK_ID.writeTo(handshake);
+        try (BytesStreamOutput internalMessage = new BytesStreamOutput()) {
+            Version.writeVersion(Version.CURRENT, internalMessage);
+            handshake.writeBytesReference(internalMessage.bytes());
+        }
+        handshaker.handleHandshake(Version.CURRENT, Collections.emptySet(), mockChannel, reqId, handshake.bytes().streamInput());
+
+        ArgumentCaptor<TransportResponse> responseCaptor = ArgumentCaptor.forClass(TransportResponse.class);
+        verify(responseSender).sendResponse(eq(Version.CURRENT), eq(Collections.emptySet()), eq(mockChannel), responseCaptor.capture(),
+            eq(reqId));
+        TransportHandshaker.HandshakeResponse response = (TransportHandshaker.HandshakeResponse) responseCaptor.getValue();
+        // and expect the response to end after the version
+        assertNull(response.getCapabilities());
+        try (BytesStreamOutput responseBytes = new BytesStreamOutput()) {
+            response.writeTo(responseBytes);
+            StreamInput responseInput = responseBytes.bytes().streamInput();
+            TransportResponseHandler<TransportHandshaker.HandshakeResponse> handler = handshaker.removeHandlerForHandshake(reqId);
+            TransportHandshaker.HandshakeResponse readResponse = handler.read(responseInput);
+            assertEquals(-1, responseInput.read());
+            handler.handleResponse(readResponse);
+        }
+
+        assertTrue(versionFuture.isDone());
+        assertEquals(Version.CURRENT, versionFuture.actionGet().v1());
+        assertEquals(Collections.emptySet(), versionFuture.actionGet().v2());
     }
 
     public void testHandshakeRequestFutureVersionsCompatibility() throws IOException {
@@ -102,7 +169,7 @@ public class TransportHandshakerTests extends ESTestCase {
         verify(requestSender).sendRequest(node, channel, reqId, Version.CURRENT.minimumCompatibilityVersion());
 
         TcpChannel mockChannel = mock(TcpChannel.class);
-        TransportHandshaker.HandshakeRequest handshakeRequest = new TransportHandshaker.HandshakeRequest(Version.CURRENT);
+        TransportHandshaker.HandshakeRequest handshakeRequest = new TransportHandshaker.HandshakeRequest(Version.CURRENT, capabilities);
         BytesStreamOutput currentHandshakeBytes = new BytesStreamOutput();
         handshakeRequest.writeTo(currentHandshakeBytes);
 
@@ -112,6 +179,7 @@ public class TransportHandshakerTests extends ESTestCase {
         TaskId.EMPTY_TASK_ID.writeTo(futureHandshake);
         try (BytesStreamOutput internalMessage = new BytesStreamOutput()) {
             Version.writeVersion(Version.CURRENT, internalMessage);
+            internalMessage.writeStringCollection(capabilities);
             lengthCheckingHandshake.writeBytesReference(internalMessage.bytes());
             internalMessage.write(new byte[1024]);
             futureHandshake.writeBytesReference(internalMessage.bytes());
@@ -120,7 +188,7 @@ public class TransportHandshakerTests extends ESTestCase {
         // We check that the handshake we serialize for this test equals the actual request.
         // Otherwise, we need to update the test.
         assertEquals(currentHandshakeBytes.bytes().length(), lengthCheckingHandshake.bytes().length());
-        assertEquals(1031, futureHandshakeStream.available());
+        assertEquals(lengthCheckingHandshake.bytes().length() + 1024 + 1, futureHandshakeStream.available());
         handshaker.handleHandshake(Version.CURRENT, Collections.emptySet(), mockChannel, reqId, futureHandshakeStream);
         assertEquals(0, futureHandshakeStream.available());
 
@@ -135,7 +203,7 @@ public class TransportHandshakerTests extends ESTestCase {
     }
 
     public void testHandshakeError() throws IOException {
-        PlainActionFuture<Version> versionFuture = PlainActionFuture.newFuture();
+        PlainActionFuture<Tuple<Version, Set<String>>> versionFuture = PlainActionFuture.newFuture();
         long reqId = randomLongBetween(1, 10);
         handshaker.sendHandshake(reqId, node, channel, new TimeValue(30, TimeUnit.SECONDS), versionFuture);
 
@@ -152,7 +220,7 @@ public class TransportHandshakerTests extends ESTestCase {
     }
 
     public void testSendRequestThrowsException() throws IOException {
-        PlainActionFuture<Version> versionFuture = PlainActionFuture.newFuture();
+        PlainActionFuture<Tuple<Version, Set<String>>> versionFuture = PlainActionFuture.newFuture();
         long reqId = randomLongBetween(1, 10);
         Version compatibilityVersion = Version.CURRENT.minimumCompatibilityVersion();
         doThrow(new IOException("boom")).when(requestSender).sendRequest(node, channel, reqId, compatibilityVersion);
@@ -166,7 +234,7 @@ public class TransportHandshakerTests extends ESTestCase {
     }
 
     public void testHandshakeTimeout() throws IOException {
-        PlainActionFuture<Version> versionFuture = PlainActionFuture.newFuture();
+        PlainActionFuture<Tuple<Version, Set<String>>> versionFuture = PlainActionFuture.newFuture();
         long reqId = randomLongBetween(1, 10);
         handshaker.sendHandshake(reqId, node, channel, new TimeValue(100, TimeUnit.MILLISECONDS), versionFuture);
 